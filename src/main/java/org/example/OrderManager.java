@@ -1,20 +1,24 @@
 package org.example;
 
-import org.example.dispatchers.MatchingResultDispatcher;
-import org.example.dispatchers.NewRestingOrderEventDispatcher;
-import org.example.dispatchers.OrderCancelledEventDispatcher;
+import org.example.dispatchers.AsyncEventPipeline;
+import org.example.dispatchers.BackpressurePolicy;
+import org.example.dispatchers.ListenerLag;
+import org.example.dispatchers.MatchingResultListener;
 import org.example.entities.MatchingResult;
 import org.example.entities.Order;
 import org.example.index.OrderIndex;
+import org.example.metrics.PartitionMetricsSnapshot;
+import org.example.orderbook.OrderBatch;
 import org.example.orderbook.OrderBook;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * OrderManager is a wrapper class that provide interface to buy,
  * sell books, cancel pending orders.
  */
-public class OrderManager {
+public class OrderManager implements AutoCloseable {
     /**
      * OrderBook provide functionality for buy, sell books, cancel orders
      */
@@ -26,40 +30,96 @@ public class OrderManager {
      */
     private final OrderIndex orderIndex;
 
+    /**
+     * Pipeline that keep orderIndex up to date, off the matching threads
+     */
+    private final AsyncEventPipeline orderIndexPipeline;
+
+    /**
+     * Pipeline that log matching results, off the matching threads
+     */
+    private final AsyncEventPipeline loggingPipeline;
+
     public OrderManager(OrderBook orderBook) {
         this.orderBook = orderBook;
         this.orderIndex = new OrderIndex();
+        // orders recovered on restart were indexed before the restart, their events are not dispatched again
+        orderBook.takeRecoveredOrders().forEach(orderIndex::add);
 
-        // Register a listener that remove matched orders from orderIndex
-        // whenever 2 orders are matched
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            orderIndex.remove(result.getBuyOrder());
-            orderIndex.remove(result.getSellOrder());
-        });
-
-        // Register a listener that remove orders from orderIndex whenever they are cancelled
-        OrderCancelledEventDispatcher.getInstance().registerListener((order, success) -> {
-            if (success) {
-                orderIndex.remove(order);
-            }
-        });
-        NewRestingOrderEventDispatcher.getInstance().registerListener(orderIndex::add);
+        // The listeners that maintain orderIndex share a pipeline,
+        // so an order is always added before it is removed.
+        // No event can be lost, otherwise the index would be wrong,
+        // so the matching threads wait if the index fall too far behind.
+        this.orderIndexPipeline = AsyncEventPipeline.builder()
+                .name("order-index")
+                .backpressurePolicy(BackpressurePolicy.BLOCK)
+                // Remove matched orders from orderIndex
+                // whenever 2 orders are matched and have no quantity left,
+                // otherwise refresh their remaining quantity
+                .matchingResultListener(result -> {
+                    if (result.isBuyOrderFilled()) {
+                        orderIndex.remove(result.getBuyOrder());
+                    } else {
+                        orderIndex.update(result.getBuyOrder());
+                    }
+                    if (result.isSellOrderFilled()) {
+                        orderIndex.remove(result.getSellOrder());
+                    } else {
+                        orderIndex.update(result.getSellOrder());
+                    }
+                })
+                // Remove orders from orderIndex whenever they are cancelled
+                .orderCancelListener((order, success) -> {
+                    if (success) {
+                        orderIndex.remove(order);
+                    }
+                })
+                // Remove orders from orderIndex whenever they expire
+                .orderExpiredListener(orderIndex::remove)
+                .newRestingOrderListener(orderIndex::add)
+                .build();
 
         // Register matching result handler
         // For the sake of simplicity, we directly log the matching result to the console
-        // In real live situation, we probably need to push to results into a queue
-        // and have difference threads polling from the queue to process the results
-        MatchingResultDispatcher.getInstance().registerListener(this::logMatchingResult);
+        // Logs are not worth slowing matching down, so they are dropped if the console cannot keep up
+        this.loggingPipeline = AsyncEventPipeline.builder()
+                .name("matching-result-logger")
+                .backpressurePolicy(BackpressurePolicy.DROP)
+                .matchingResultListener(new MatchingResultListener() {
+                    @Override
+                    public void onMatched(MatchingResult result) {
+                        System.out.println(formatMatchingResult(result));
+                    }
+
+                    @Override
+                    public void onMatchedBatch(List<MatchingResult> results) {
+                        // write the whole batch at once to pay for console I/O once per batch
+                        StringBuilder builder = new StringBuilder();
+                        for (MatchingResult result : results) {
+                            builder.append(formatMatchingResult(result)).append(System.lineSeparator());
+                        }
+                        System.out.print(builder);
+                    }
+                })
+                .build();
     }
 
     public void buy(int customerId, int bookId, int price, Long expireAfterSeconds) {
         orderBook.buy(customerId, bookId, price, expireAfterSeconds);
     }
 
+    public void buy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        orderBook.buy(customerId, bookId, price, quantity, expireAfterSeconds);
+    }
+
     public void sell(int customerId, int bookId, int price, Long expireAfterSeconds) {
         orderBook.sell(customerId, bookId, price, expireAfterSeconds);
     }
 
+    public void sell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        orderBook.sell(customerId, bookId, price, quantity, expireAfterSeconds);
+    }
+
     /**
      * Cancel an order. Return true if order is waiting to be matched and has been
      * cancelled successfully, otherwise return false.
@@ -68,16 +128,46 @@ public class OrderManager {
         orderBook.cancel(order);
     }
 
+    /**
+     * Place every command of the batch, the acknowledgement of every command is recorded in the batch
+     */
+    public void submit(OrderBatch batch) {
+        orderBook.submit(batch);
+    }
+
     public Collection<Order> findUnMatchedOrdersByCustomer(int customerId) {
         return orderIndex.findRestingOrdersByCustomer(customerId);
     }
 
-    private void logMatchingResult(MatchingResult result) {
-        System.out.println(
-                "Matched seller id " + result.getSellOrder().getCustomerId() +
-                        " with buyer id " + result.getBuyOrder().getCustomerId() +
-                        ". Book id: " + result.getSellOrder().getBookId() +
-                        ". Price: " + result.getSellOrder().getExpectedPrice()
-        );
+    /**
+     * Return how far the listeners of this OrderManager are behind the matching engine
+     */
+    public List<ListenerLag> getListenerLags() {
+        return List.of(orderIndexPipeline.getLag(), loggingPipeline.getLag());
+    }
+
+    /**
+     * Return a snapshot of the metrics of every partition of the order book
+     */
+    public List<PartitionMetricsSnapshot> getMetrics() {
+        return orderBook.snapshotMetrics();
+    }
+
+    /**
+     * Close the underlying order book, then deliver the pending events to the listeners
+     */
+    @Override
+    public void close() {
+        orderBook.close();
+        orderIndexPipeline.close();
+        loggingPipeline.close();
+    }
+
+    private static String formatMatchingResult(MatchingResult result) {
+        return "Matched seller id " + result.getSellOrder().getCustomerId() +
+                " with buyer id " + result.getBuyOrder().getCustomerId() +
+                ". Book id: " + result.getSellOrder().getBookId() +
+                ". Price: " + result.getPrice() +
+                ". Quantity: " + result.getQuantity();
     }
 }
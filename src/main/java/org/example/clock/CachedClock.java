@@ -0,0 +1,40 @@
+package org.example.clock;
+
+/**
+ * {@link EngineClock} returning the time read from its source by the last {@link #update()}.
+ *
+ * <p>The event loop of a partition updates the clock once before processing a batch of requests,
+ * so every request of the batch sees the same time, and the matching thread never pays for
+ * reading the system clock. Any thread can read the clock, only the owner should update it.
+ */
+public class CachedClock implements EngineClock {
+    private final EngineClock source;
+
+    private volatile long currentTimeMillis;
+
+    public CachedClock(EngineClock source) {
+        this.source = source;
+        update();
+    }
+
+    /**
+     * Read the time from the source and return it
+     */
+    public long update() {
+        long now = source.currentTimeMillis();
+        currentTimeMillis = now;
+        return now;
+    }
+
+    /**
+     * Set the time without reading the source, to replay the time of journaled batches
+     */
+    public void set(long timeMillis) {
+        currentTimeMillis = timeMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.clock;
+
+/**
+ * Wall clock time as seen by the matching engine, used to compute and check the expiry time of orders.
+ *
+ * <p>{@link SystemClock} reads the system time on every call. {@link CachedClock} is refreshed
+ * once per batch by the event loop, so the matching thread reads a field instead of the system
+ * clock. {@link ManualClock} only moves when told to, for replay and reproducible tests.
+ */
+@FunctionalInterface
+public interface EngineClock {
+    /**
+     * Current time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+}
@@ -0,0 +1,31 @@
+package org.example.clock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EngineClock} that only moves when it is set or advanced, so expiry behaves the same
+ * on every run whatever the speed of the machine. Used for replay, tests and benchmarks.
+ */
+public class ManualClock implements EngineClock {
+    private final AtomicLong currentTimeMillis;
+
+    public ManualClock(long startTimeMillis) {
+        this.currentTimeMillis = new AtomicLong(startTimeMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis.get();
+    }
+
+    public void set(long timeMillis) {
+        currentTimeMillis.set(timeMillis);
+    }
+
+    /**
+     * Move the clock forward and return the new time
+     */
+    public long advance(long millis) {
+        return currentTimeMillis.addAndGet(millis);
+    }
+}
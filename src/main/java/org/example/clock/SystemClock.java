@@ -0,0 +1,20 @@
+package org.example.clock;
+
+/**
+ * {@link EngineClock} reading {@link System#currentTimeMillis()} on every call
+ */
+public class SystemClock implements EngineClock {
+    private static final SystemClock INSTANCE = new SystemClock();
+
+    public static SystemClock getInstance() {
+        return INSTANCE;
+    }
+
+    private SystemClock() {
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
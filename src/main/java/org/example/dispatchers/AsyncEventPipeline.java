@@ -0,0 +1,505 @@
+package org.example.dispatchers;
+
+import lombok.Builder;
+import org.example.entities.CancelResult;
+import org.example.entities.MatchingResult;
+import org.example.entities.Order;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deliver engine events to a group of listeners on dedicated consumer threads,
+ * so that what the listeners do does not add to matching latency.
+ *
+ * <p>The pipeline registers itself to the 4 dispatchers. Events received from the
+ * matching threads are copied into a bounded buffer and the matching thread returns
+ * immediately. Consumer threads take the events out of the buffer and hand them to the
+ * listeners, grouping consecutive events of the same type into one batch call.
+ *
+ * <p>The buffer is split into shards, each with its own consumer thread. Events are routed
+ * to a shard by their book id, and every shard keeps the order in which events were received,
+ * so events of a same book are always delivered in order, including across event types.
+ * For example, an order is always seen resting before it is seen matched, cancelled or expired.
+ * That is why listeners that depend on each other, like the listeners maintaining
+ * an order index, should be registered in the same pipeline.
+ *
+ * <p>What happens when a shard is full is decided by the {@link BackpressurePolicy}.
+ * How far the listeners are behind can be read with {@link #getLag()}.
+ */
+public class AsyncEventPipeline implements MatchingResultListener, NewRestingOrderListener,
+        OrderCancelListener, OrderExpiredListener, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final String name;
+
+    private final BackpressurePolicy backpressurePolicy;
+
+    private final MatchingResultListener matchingResultListener;
+
+    private final NewRestingOrderListener newRestingOrderListener;
+
+    private final OrderCancelListener orderCancelListener;
+
+    private final OrderExpiredListener orderExpiredListener;
+
+    private final Shard[] shards;
+
+    private final AtomicLong published;
+
+    private final AtomicLong delivered;
+
+    private final AtomicLong dropped;
+
+    private final AtomicLong spilled;
+
+    private final AtomicLong lastDeliveryLagNanos;
+
+    private final AtomicLong maxDeliveryLagNanos;
+
+    private volatile boolean closed;
+
+    /**
+     * Create and start a pipeline. Listeners that are not needed can be left null.
+     *
+     * @param shards   number of consumer threads, 1 by default
+     * @param capacity capacity of the bounded buffer of each shard, {@link #DEFAULT_CAPACITY} by default
+     */
+    @Builder
+    public AsyncEventPipeline(
+            String name, int shards, int capacity, BackpressurePolicy backpressurePolicy,
+            MatchingResultListener matchingResultListener,
+            NewRestingOrderListener newRestingOrderListener,
+            OrderCancelListener orderCancelListener,
+            OrderExpiredListener orderExpiredListener
+    ) {
+        this.name = name != null ? name : "async-event-pipeline";
+        this.backpressurePolicy = backpressurePolicy != null ? backpressurePolicy : BackpressurePolicy.BLOCK;
+        this.matchingResultListener = matchingResultListener;
+        this.newRestingOrderListener = newRestingOrderListener;
+        this.orderCancelListener = orderCancelListener;
+        this.orderExpiredListener = orderExpiredListener;
+        this.published = new AtomicLong();
+        this.delivered = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.spilled = new AtomicLong();
+        this.lastDeliveryLagNanos = new AtomicLong();
+        this.maxDeliveryLagNanos = new AtomicLong();
+
+        int shardCount = Math.max(1, shards);
+        int shardCapacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new Shard(this.name + "-" + i, shardCapacity);
+        }
+        for (Shard shard : this.shards) {
+            shard.consumer.start();
+        }
+
+        if (matchingResultListener != null) {
+            MatchingResultDispatcher.getInstance().registerListener(this);
+        }
+        if (newRestingOrderListener != null) {
+            NewRestingOrderEventDispatcher.getInstance().registerListener(this);
+        }
+        if (orderCancelListener != null) {
+            OrderCancelledEventDispatcher.getInstance().registerListener(this);
+        }
+        if (orderExpiredListener != null) {
+            OrderExpiredEventDispatcher.getInstance().registerListener(this);
+        }
+    }
+
+    @Override
+    public void onMatched(MatchingResult result) {
+        shardOf(result.getBuyOrder().getBookId()).publish(result);
+    }
+
+    @Override
+    public void onMatchedBatch(List<MatchingResult> results) {
+        if (shards.length == 1) {
+            shards[0].publishAll(results);
+        } else {
+            for (int i = 0; i < results.size(); i++) {
+                onMatched(results.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void onNewRestingOrder(Order order) {
+        shardOf(order.getBookId()).publish(order);
+    }
+
+    @Override
+    public void onNewRestingOrderBatch(List<Order> orders) {
+        if (shards.length == 1) {
+            shards[0].publishAll(orders);
+        } else {
+            for (int i = 0; i < orders.size(); i++) {
+                onNewRestingOrder(orders.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void onCancelled(Order order, boolean isCancelled) {
+        shardOf(order.getBookId()).publish(CancelResult.builder().order(order).cancelled(isCancelled).build());
+    }
+
+    @Override
+    public void onCancelledBatch(List<CancelResult> results) {
+        if (shards.length == 1) {
+            shards[0].publishAll(results);
+        } else {
+            for (int i = 0; i < results.size(); i++) {
+                CancelResult result = results.get(i);
+                shardOf(result.getOrder().getBookId()).publish(result);
+            }
+        }
+    }
+
+    @Override
+    public void onExpired(Order order) {
+        shardOf(order.getBookId()).publish(new ExpiredOrder(order));
+    }
+
+    @Override
+    public void onExpiredBatch(List<Order> orders) {
+        if (shards.length == 1) {
+            List<ExpiredOrder> events = new ArrayList<>(orders.size());
+            for (int i = 0; i < orders.size(); i++) {
+                events.add(new ExpiredOrder(orders.get(i)));
+            }
+            shards[0].publishAll(events);
+        } else {
+            for (int i = 0; i < orders.size(); i++) {
+                onExpired(orders.get(i));
+            }
+        }
+    }
+
+    public ListenerLag getLag() {
+        long publishedCount = published.get();
+        long deliveredCount = delivered.get();
+        long droppedCount = dropped.get();
+        return ListenerLag.builder()
+                .name(name)
+                .published(publishedCount)
+                .delivered(deliveredCount)
+                .dropped(droppedCount)
+                .spilled(spilled.get())
+                .backlog(Math.max(0, publishedCount - deliveredCount - droppedCount))
+                .lastDeliveryLagNanos(lastDeliveryLagNanos.get())
+                .maxDeliveryLagNanos(maxDeliveryLagNanos.get())
+                .build();
+    }
+
+    /**
+     * Stop receiving events, deliver the events that are already buffered,
+     * then stop the consumer threads
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+
+        MatchingResultDispatcher.getInstance().unregisterListener(this);
+        NewRestingOrderEventDispatcher.getInstance().unregisterListener(this);
+        OrderCancelledEventDispatcher.getInstance().unregisterListener(this);
+        OrderExpiredEventDispatcher.getInstance().unregisterListener(this);
+
+        for (Shard shard : shards) {
+            shard.close();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Shard shardOf(int bookId) {
+        return shards[Math.floorMod(bookId, shards.length)];
+    }
+
+    private void deliver(List<Object> events, long[] enqueueTimes) {
+        long now = System.nanoTime();
+        int start = 0;
+        while (start < events.size()) {
+            // group consecutive events of a same type into one batch
+            Class<?> type = eventType(events.get(start));
+            int end = start + 1;
+            while (end < events.size() && eventType(events.get(end)) == type) {
+                end++;
+            }
+            deliverRun(type, events.subList(start, end));
+            start = end;
+        }
+
+        long lag = now - enqueueTimes[0];
+        lastDeliveryLagNanos.set(lag);
+        maxDeliveryLagNanos.accumulateAndGet(lag, Math::max);
+        delivered.addAndGet(events.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliverRun(Class<?> type, List<Object> run) {
+        try {
+            if (type == MatchingResult.class) {
+                matchingResultListener.onMatchedBatch((List<MatchingResult>) (List<?>) run);
+            } else if (type == Order.class) {
+                newRestingOrderListener.onNewRestingOrderBatch((List<Order>) (List<?>) run);
+            } else if (type == CancelResult.class) {
+                orderCancelListener.onCancelledBatch((List<CancelResult>) (List<?>) run);
+            } else {
+                List<Order> orders = new ArrayList<>(run.size());
+                for (int i = 0; i < run.size(); i++) {
+                    orders.add(((ExpiredOrder) run.get(i)).order);
+                }
+                orderExpiredListener.onExpiredBatch(orders);
+            }
+        } catch (Throwable e) {
+            ListenerErrors.report(e);
+        }
+    }
+
+    private static Class<?> eventType(Object event) {
+        if (event instanceof MatchingResult) return MatchingResult.class;
+        if (event instanceof Order) return Order.class;
+        if (event instanceof CancelResult) return CancelResult.class;
+        return ExpiredOrder.class;
+    }
+
+    /**
+     * Tell expired orders apart from new resting orders in the buffers
+     */
+    private static class ExpiredOrder {
+        private final Order order;
+
+        private ExpiredOrder(Order order) {
+            this.order = order;
+        }
+    }
+
+    /**
+     * A bounded buffer with its own consumer thread
+     */
+    private class Shard {
+        private final ReentrantLock lock;
+
+        private final Condition notEmpty;
+
+        private final Condition notFull;
+
+        private final EventQueue buffer;
+
+        /**
+         * Events that did not fit in the buffer, only used by {@link BackpressurePolicy#SPILL}.
+         * They are always newer than the events of the buffer.
+         */
+        private final EventQueue overflow;
+
+        private final Thread consumer;
+
+        private boolean stopped;
+
+        private Shard(String threadName, int capacity) {
+            this.lock = new ReentrantLock();
+            this.notEmpty = lock.newCondition();
+            this.notFull = lock.newCondition();
+            this.buffer = new EventQueue(capacity, false);
+            this.overflow = new EventQueue(16, true);
+            this.consumer = new Thread(this::consume, threadName);
+            this.consumer.setDaemon(true);
+        }
+
+        private void publish(Object event) {
+            long now = System.nanoTime();
+            lock.lock();
+            try {
+                offer(event, now);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void publishAll(List<?> events) {
+            if (events.isEmpty()) return;
+
+            long now = System.nanoTime();
+            lock.lock();
+            try {
+                for (int i = 0; i < events.size(); i++) {
+                    offer(events.get(i), now);
+                }
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Must be called while holding the lock
+         */
+        private void offer(Object event, long enqueueTime) {
+            published.incrementAndGet();
+            if (overflow.isEmpty() && !buffer.isFull()) {
+                buffer.add(event, enqueueTime);
+                return;
+            }
+
+            switch (backpressurePolicy) {
+                case BLOCK:
+                    while (buffer.isFull() && !stopped) {
+                        // let the consumer take what is already there while we wait
+                        notEmpty.signal();
+                        notFull.awaitUninterruptibly();
+                    }
+                    if (stopped) {
+                        dropped.incrementAndGet();
+                    } else {
+                        buffer.add(event, enqueueTime);
+                    }
+                    break;
+                case DROP:
+                    dropped.incrementAndGet();
+                    break;
+                case SPILL:
+                    overflow.add(event, enqueueTime);
+                    spilled.incrementAndGet();
+                    break;
+            }
+        }
+
+        private void close() {
+            lock.lock();
+            try {
+                stopped = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void consume() {
+            List<Object> events = new ArrayList<>();
+            long[] enqueueTimes = new long[16];
+            while (true) {
+                lock.lock();
+                try {
+                    while (buffer.isEmpty() && !stopped) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    if (buffer.isEmpty()) return;
+
+                    enqueueTimes = buffer.drainTo(events, enqueueTimes);
+                    // move spilled events into the freed space, oldest first
+                    overflow.transferTo(buffer);
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                deliver(events, enqueueTimes);
+                events.clear();
+            }
+        }
+    }
+
+    /**
+     * Circular FIFO of events and their enqueue time.
+     * Not synchronized, always used under the lock of its shard.
+     */
+    private static class EventQueue {
+        private final boolean growable;
+
+        private Object[] events;
+
+        private long[] enqueueTimes;
+
+        private int head;
+
+        private int size;
+
+        private EventQueue(int capacity, boolean growable) {
+            this.growable = growable;
+            this.events = new Object[capacity];
+            this.enqueueTimes = new long[capacity];
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private boolean isFull() {
+            return size == events.length;
+        }
+
+        private void add(Object event, long enqueueTime) {
+            if (isFull()) {
+                if (!growable) throw new IllegalStateException("Event queue is full");
+                grow();
+            }
+            int tail = (head + size) % events.length;
+            events[tail] = event;
+            enqueueTimes[tail] = enqueueTime;
+            size++;
+        }
+
+        /**
+         * Move all the events to the given list, and their enqueue times to the given array,
+         * which is replaced by a bigger one if needed
+         */
+        private long[] drainTo(List<Object> target, long[] times) {
+            if (times.length < size) {
+                times = new long[Math.max(size, times.length * 2)];
+            }
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % events.length;
+                target.add(events[index]);
+                times[i] = enqueueTimes[index];
+                events[index] = null;
+            }
+            head = 0;
+            size = 0;
+            return times;
+        }
+
+        /**
+         * Move as many events as possible, oldest first, to the given queue
+         */
+        private void transferTo(EventQueue target) {
+            while (size > 0 && !target.isFull()) {
+                target.add(events[head], enqueueTimes[head]);
+                events[head] = null;
+                head = (head + 1) % events.length;
+                size--;
+            }
+        }
+
+        private void grow() {
+            int capacity = events.length * 2;
+            Object[] newEvents = new Object[capacity];
+            long[] newTimes = new long[capacity];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % events.length;
+                newEvents[i] = events[index];
+                newTimes[i] = enqueueTimes[index];
+            }
+            Arrays.fill(events, null);
+            events = newEvents;
+            enqueueTimes = newTimes;
+            head = 0;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.dispatchers;
+
+/**
+ * What an {@link AsyncEventPipeline} does with new events when its buffer is full
+ */
+public enum BackpressurePolicy {
+    /**
+     * The publishing thread waits until the consumer frees some space.
+     * No event is lost, but a slow listener ends up slowing matching down.
+     */
+    BLOCK,
+
+    /**
+     * New events are discarded and counted as dropped.
+     * Matching is never slowed down, but the listener miss events.
+     */
+    DROP,
+
+    /**
+     * New events are appended to an unbounded overflow buffer, which the consumer
+     * drains after the bounded buffer, so event ordering is kept.
+     * No event is lost and matching is not slowed down, at the cost of memory.
+     */
+    SPILL
+}
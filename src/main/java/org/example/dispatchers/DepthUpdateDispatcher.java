@@ -0,0 +1,50 @@
+package org.example.dispatchers;
+
+import org.example.entities.DepthUpdate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class DepthUpdateDispatcher {
+    private static final DepthUpdateDispatcher INSTANCE = new DepthUpdateDispatcher();
+
+    public static DepthUpdateDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    private final List<DepthUpdateListener> listeners;
+
+    private DepthUpdateDispatcher() {
+        listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public void registerListener(DepthUpdateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unregisterListener(DepthUpdateListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Whether some listener is registered, the engine does not build the updates otherwise
+     */
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Hand a whole batch of updates to every listener in one call
+     */
+    public void dispatchBatch(List<DepthUpdate> updates) {
+        if (updates.isEmpty()) return;
+
+        for (DepthUpdateListener listener : listeners) {
+            try {
+                listener.onDepthUpdateBatch(updates);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.dispatchers;
+
+import org.example.entities.DepthUpdate;
+
+import java.util.List;
+
+public interface DepthUpdateListener {
+    void onDepthUpdate(DepthUpdate update);
+
+    /**
+     * Receive the updates of the price levels changed by a batch of requests, one per level,
+     * grouped by book and side. The list is reused by the engine once this method returns, so it must not be kept.
+     */
+    default void onDepthUpdateBatch(List<DepthUpdate> updates) {
+        for (int i = 0; i < updates.size(); i++) {
+            onDepthUpdate(updates.get(i));
+        }
+    }
+}
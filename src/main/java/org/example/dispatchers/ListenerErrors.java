@@ -0,0 +1,17 @@
+package org.example.dispatchers;
+
+/**
+ * Error handling shared by the dispatchers.
+ * A listener that throws must not prevent the other listeners from receiving the event,
+ * so the error is reported to the uncaught exception handler of the dispatching thread
+ * and dispatching goes on.
+ */
+final class ListenerErrors {
+    private ListenerErrors() {
+    }
+
+    static void report(Throwable error) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+    }
+}
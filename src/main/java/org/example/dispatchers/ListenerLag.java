@@ -0,0 +1,49 @@
+package org.example.dispatchers;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Snapshot of how far the listeners of an {@link AsyncEventPipeline}
+ * are behind the matching engine
+ */
+@Builder
+@Getter
+public class ListenerLag {
+    private String name;
+
+    /**
+     * Number of events received from the dispatchers
+     */
+    private long published;
+
+    /**
+     * Number of events handed to the listeners
+     */
+    private long delivered;
+
+    /**
+     * Number of events discarded because the buffer was full, see {@link BackpressurePolicy#DROP}
+     */
+    private long dropped;
+
+    /**
+     * Number of events that went to the overflow buffer, see {@link BackpressurePolicy#SPILL}
+     */
+    private long spilled;
+
+    /**
+     * Number of events waiting to be delivered
+     */
+    private long backlog;
+
+    /**
+     * Time the oldest event of the last delivered batch spent waiting in the pipeline
+     */
+    private long lastDeliveryLagNanos;
+
+    /**
+     * Longest time an event spent waiting in the pipeline
+     */
+    private long maxDeliveryLagNanos;
+}
@@ -2,8 +2,8 @@ package org.example.dispatchers;
 
 import org.example.entities.MatchingResult;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class MatchingResultDispatcher {
     private static final MatchingResultDispatcher INSTANCE = new MatchingResultDispatcher();
@@ -15,16 +15,39 @@ public class MatchingResultDispatcher {
     private final List<MatchingResultListener> listeners;
 
     private MatchingResultDispatcher() {
-        listeners = new ArrayList<>();
+        listeners = new CopyOnWriteArrayList<>();
     }
 
     public void registerListener(MatchingResultListener listener) {
         listeners.add(listener);
     }
 
+    public void unregisterListener(MatchingResultListener listener) {
+        listeners.remove(listener);
+    }
+
     public void dispatch(MatchingResult result) {
         for (MatchingResultListener listener : listeners) {
-            listener.onMatched(result);
+            try {
+                listener.onMatched(result);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
+        }
+    }
+
+    /**
+     * Hand a whole batch of events to every listener in one call
+     */
+    public void dispatchBatch(List<MatchingResult> results) {
+        if (results.isEmpty()) return;
+
+        for (MatchingResultListener listener : listeners) {
+            try {
+                listener.onMatchedBatch(results);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
         }
     }
 }
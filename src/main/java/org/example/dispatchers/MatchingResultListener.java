@@ -2,6 +2,19 @@ package org.example.dispatchers;
 
 import org.example.entities.MatchingResult;
 
+import java.util.List;
+
 public interface MatchingResultListener {
     void onMatched(MatchingResult result);
+
+    /**
+     * Receive all the matching results produced while processing a batch of requests,
+     * in the order they were produced. The list is reused by the engine once
+     * this method returns, so it must not be kept.
+     */
+    default void onMatchedBatch(List<MatchingResult> results) {
+        for (int i = 0; i < results.size(); i++) {
+            onMatched(results.get(i));
+        }
+    }
 }
@@ -2,8 +2,8 @@ package org.example.dispatchers;
 
 import org.example.entities.Order;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class NewRestingOrderEventDispatcher {
     private static final NewRestingOrderEventDispatcher INSTANCE = new NewRestingOrderEventDispatcher();
@@ -15,16 +15,39 @@ public class NewRestingOrderEventDispatcher {
     private final List<NewRestingOrderListener> listeners;
 
     private NewRestingOrderEventDispatcher() {
-        listeners = new ArrayList<>();
+        listeners = new CopyOnWriteArrayList<>();
     }
 
     public void registerListener(NewRestingOrderListener listener) {
         listeners.add(listener);
     }
 
+    public void unregisterListener(NewRestingOrderListener listener) {
+        listeners.remove(listener);
+    }
+
     public void dispatch(Order order) {
         for (NewRestingOrderListener listener : listeners) {
-            listener.onNewRestingOrder(order);
+            try {
+                listener.onNewRestingOrder(order);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
+        }
+    }
+
+    /**
+     * Hand a whole batch of events to every listener in one call
+     */
+    public void dispatchBatch(List<Order> orders) {
+        if (orders.isEmpty()) return;
+
+        for (NewRestingOrderListener listener : listeners) {
+            try {
+                listener.onNewRestingOrderBatch(orders);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
         }
     }
 }
@@ -2,6 +2,19 @@ package org.example.dispatchers;
 
 import org.example.entities.Order;
 
+import java.util.List;
+
 public interface NewRestingOrderListener {
     void onNewRestingOrder(Order order);
+
+    /**
+     * Receive all the orders that started resting while processing a batch of requests,
+     * in the order they were added. The list is reused by the engine once
+     * this method returns, so it must not be kept.
+     */
+    default void onNewRestingOrderBatch(List<Order> orders) {
+        for (int i = 0; i < orders.size(); i++) {
+            onNewRestingOrder(orders.get(i));
+        }
+    }
 }
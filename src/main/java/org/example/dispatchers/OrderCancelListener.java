@@ -1,7 +1,22 @@
 package org.example.dispatchers;
 
+import org.example.entities.CancelResult;
 import org.example.entities.Order;
 
+import java.util.List;
+
 public interface OrderCancelListener {
     void onCancelled(Order order, boolean isCancelled);
+
+    /**
+     * Receive the outcome of all the cancel requests processed in a batch of requests,
+     * in the order they were processed. The list is reused by the engine once
+     * this method returns, so it must not be kept.
+     */
+    default void onCancelledBatch(List<CancelResult> results) {
+        for (int i = 0; i < results.size(); i++) {
+            CancelResult result = results.get(i);
+            onCancelled(result.getOrder(), result.isCancelled());
+        }
+    }
 }
@@ -1,9 +1,10 @@
 package org.example.dispatchers;
 
+import org.example.entities.CancelResult;
 import org.example.entities.Order;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class OrderCancelledEventDispatcher {
     private static final OrderCancelledEventDispatcher INSTANCE = new OrderCancelledEventDispatcher();
@@ -15,16 +16,39 @@ public class OrderCancelledEventDispatcher {
     private final List<OrderCancelListener> listeners;
 
     private OrderCancelledEventDispatcher() {
-        listeners = new ArrayList<>();
+        listeners = new CopyOnWriteArrayList<>();
     }
 
     public void registerListener(OrderCancelListener listener) {
         listeners.add(listener);
     }
 
+    public void unregisterListener(OrderCancelListener listener) {
+        listeners.remove(listener);
+    }
+
     public void dispatch(Order order, boolean isCancelled) {
         for (OrderCancelListener listener : listeners) {
-            listener.onCancelled(order, isCancelled);
+            try {
+                listener.onCancelled(order, isCancelled);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
+        }
+    }
+
+    /**
+     * Hand a whole batch of events to every listener in one call
+     */
+    public void dispatchBatch(List<CancelResult> results) {
+        if (results.isEmpty()) return;
+
+        for (OrderCancelListener listener : listeners) {
+            try {
+                listener.onCancelledBatch(results);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
         }
     }
 }
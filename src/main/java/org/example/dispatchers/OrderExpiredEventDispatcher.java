@@ -0,0 +1,53 @@
+package org.example.dispatchers;
+
+import org.example.entities.Order;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class OrderExpiredEventDispatcher {
+    private static final OrderExpiredEventDispatcher INSTANCE = new OrderExpiredEventDispatcher();
+
+    public static OrderExpiredEventDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    private final List<OrderExpiredListener> listeners;
+
+    private OrderExpiredEventDispatcher() {
+        listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public void registerListener(OrderExpiredListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unregisterListener(OrderExpiredListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void dispatch(Order order) {
+        for (OrderExpiredListener listener : listeners) {
+            try {
+                listener.onExpired(order);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
+        }
+    }
+
+    /**
+     * Hand a whole batch of events to every listener in one call
+     */
+    public void dispatchBatch(List<Order> orders) {
+        if (orders.isEmpty()) return;
+
+        for (OrderExpiredListener listener : listeners) {
+            try {
+                listener.onExpiredBatch(orders);
+            } catch (Throwable e) {
+                ListenerErrors.report(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.dispatchers;
+
+import org.example.entities.Order;
+
+import java.util.List;
+
+public interface OrderExpiredListener {
+    /**
+     * Receive a resting order that has been removed from its book because it expired
+     */
+    void onExpired(Order order);
+
+    /**
+     * Receive all the orders that expired before or while processing a batch of requests,
+     * in the order they expired. The list is reused by the engine once
+     * this method returns, so it must not be kept.
+     */
+    default void onExpiredBatch(List<Order> orders) {
+        for (int i = 0; i < orders.size(); i++) {
+            onExpired(orders.get(i));
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package org.example.entities;
 
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.experimental.SuperBuilder;
-
-import java.util.UUID;
 
+/**
+ * Base class of buy and sell orders.
+ *
+ * <p>Resting orders are not kept as objects by the matching engine, they live in the
+ * {@code OrderStore} of their partition. An {@link AbstractOrder} is an immutable copy of
+ * an order taken when the engine hands it out, so it can be read safely from any thread
+ * and kept after the order has been traded or cancelled. Two copies of the same order
+ * are equal, whatever their remaining quantity.
+ */
 @Getter
-@SuperBuilder
 public abstract class AbstractOrder implements Order {
-    private final UUID id;
+    private final long id;
 
     private final int customerId;
 
@@ -17,23 +21,45 @@ public abstract class AbstractOrder implements Order {
 
     private final int expectedPrice;
 
-    @EqualsAndHashCode.Exclude
-    private Long expiryTimeMillis;
+    private final int quantity;
+
+    private final int remainingQuantity;
+
+    private final long expiryTimeMillis;
+
+    /**
+     * Handle of the order in the store of its partition, used by the engine to find the order back
+     */
+    private final int storeHandle;
+
+    protected AbstractOrder(
+            long id, int customerId, int bookId, int expectedPrice, int quantity, int remainingQuantity,
+            long expiryTimeMillis, int storeHandle
+    ) {
+        this.id = id;
+        this.customerId = customerId;
+        this.bookId = bookId;
+        this.expectedPrice = expectedPrice;
+        this.quantity = quantity;
+        this.remainingQuantity = remainingQuantity;
+        this.expiryTimeMillis = expiryTimeMillis;
+        this.storeHandle = storeHandle;
+    }
 
     @Override
     public int hashCode() {
-        return id.hashCode();
+        return Long.hashCode(id);
     }
 
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof AbstractOrder)) return false;
 
-        return id.equals(((AbstractOrder) obj).getId());
+        return id == ((AbstractOrder) obj).getId();
     }
 
     @Override
-    public boolean isExpired() {
-        return expiryTimeMillis != null && expiryTimeMillis <= System.currentTimeMillis();
+    public boolean isExpired(long nowMillis) {
+        return expiryTimeMillis <= nowMillis;
     }
 }
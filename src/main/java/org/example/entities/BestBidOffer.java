@@ -0,0 +1,41 @@
+package org.example.entities;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Best bid and best ask of a book as last published by its matching thread.
+ * A side without resting order has a price and a quantity of 0.
+ */
+@Builder
+@Getter
+public class BestBidOffer {
+    private int bookId;
+
+    private int bidPrice;
+
+    /**
+     * Remaining quantity of the buy orders resting at the best bid
+     */
+    private long bidQuantity;
+
+    private int askPrice;
+
+    /**
+     * Remaining quantity of the sell orders resting at the best ask
+     */
+    private long askQuantity;
+
+    /**
+     * Number of the publication, increasing every time the best bid or the best ask of the book changes
+     */
+    private long version;
+
+    public boolean hasBid() {
+        return bidQuantity > 0;
+    }
+
+    public boolean hasAsk() {
+        return askQuantity > 0;
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.entities;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Outcome of a cancel request
+ */
+@Builder
+@Getter
+public class CancelResult {
+    private Order order;
+
+    /**
+     * Whether the order was still resting and has been removed from the book
+     */
+    private boolean cancelled;
+}
@@ -0,0 +1,20 @@
+package org.example.entities;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Aggregated orders resting at one price of a book, see {@link DepthSnapshot}
+ */
+@Builder
+@Getter
+public class DepthLevel {
+    private int price;
+
+    /**
+     * Remaining quantity of the orders resting at the price
+     */
+    private long quantity;
+
+    private int orderCount;
+}
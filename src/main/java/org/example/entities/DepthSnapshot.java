@@ -0,0 +1,26 @@
+package org.example.entities;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Best price levels of both sides of a book at a point in time, best price first.
+ * The {@link DepthUpdate}s published after the snapshot keep it up to date.
+ */
+@Builder
+@Getter
+public class DepthSnapshot {
+    private int bookId;
+
+    /**
+     * Buy levels, from the highest price down
+     */
+    private List<DepthLevel> bids;
+
+    /**
+     * Sell levels, from the lowest price up
+     */
+    private List<DepthLevel> asks;
+}
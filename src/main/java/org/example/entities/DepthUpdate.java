@@ -0,0 +1,35 @@
+package org.example.entities;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * New state of a price level of a book after a batch of requests.
+ * Updates are conflated: a level that changed several times during the batch gets a single update,
+ * and a level that ended the batch as it started gets none. The update carries the whole state of the
+ * level rather than a difference, so applying it again, or on top of a snapshot that already has it, is harmless.
+ */
+@Builder
+@Getter
+public class DepthUpdate {
+    private int bookId;
+
+    /**
+     * Side of the level, BUY for bids and SELL for asks
+     */
+    private OrderType side;
+
+    private int price;
+
+    private DepthUpdateAction action;
+
+    /**
+     * Remaining quantity of the orders resting at the price, 0 once the level is removed
+     */
+    private long quantity;
+
+    /**
+     * Number of orders resting at the price, 0 once the level is removed
+     */
+    private int orderCount;
+}
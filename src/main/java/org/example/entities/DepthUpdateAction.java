@@ -0,0 +1,21 @@
+package org.example.entities;
+
+/**
+ * What happened to a price level during a batch of requests, see {@link DepthUpdate}
+ */
+public enum DepthUpdateAction {
+    /**
+     * The price had no order before the batch and has some after it
+     */
+    ADDED,
+
+    /**
+     * The price has orders before and after the batch, with another quantity or order count
+     */
+    CHANGED,
+
+    /**
+     * The price had orders before the batch and has none after it
+     */
+    REMOVED
+}
@@ -3,9 +3,33 @@ package org.example.entities;
 import lombok.Builder;
 import lombok.Getter;
 
+/**
+ * A trade between a buy order and a sell order.
+ * An order that is traded partially can appear in several matching results.
+ */
 @Builder
 @Getter
 public class MatchingResult {
     private Order buyOrder;
     private Order sellOrder;
+
+    /**
+     * Traded quantity
+     */
+    private int quantity;
+
+    /**
+     * Traded price, which is the price of the resting order
+     */
+    private int price;
+
+    /**
+     * Whether the buy order has no remaining quantity after this trade
+     */
+    private boolean buyOrderFilled;
+
+    /**
+     * Whether the sell order has no remaining quantity after this trade
+     */
+    private boolean sellOrderFilled;
 }
@@ -1,12 +1,37 @@
 package org.example.entities;
 
-import java.util.UUID;
-
 public interface Order {
-    UUID getId();
+    /**
+     * Expiry time of orders that never expire
+     */
+    long NO_EXPIRY = Long.MAX_VALUE;
+
+    long getId();
     int getCustomerId();
     int getBookId();
     int getExpectedPrice();
+
+    /**
+     * Quantity requested when the order was placed
+     */
+    int getQuantity();
+
+    /**
+     * Quantity that had not been traded yet when this order was handed out
+     */
+    int getRemainingQuantity();
     OrderType getType();
-    boolean isExpired();
+
+    /**
+     * Whether the order had expired at the given time
+     */
+    boolean isExpired(long nowMillis);
+
+    /**
+     * Whether the order has expired according to the system clock.
+     * The engine itself expires orders with its {@link org.example.clock.EngineClock}.
+     */
+    default boolean isExpired() {
+        return isExpired(System.currentTimeMillis());
+    }
 }
@@ -1,11 +1,13 @@
 package org.example.entities;
 
-import lombok.Getter;
-import lombok.experimental.SuperBuilder;
-
-@Getter
-@SuperBuilder
 public class SellOrder extends AbstractOrder {
+    public SellOrder(
+            long id, int customerId, int bookId, int expectedPrice, int quantity, int remainingQuantity,
+            long expiryTimeMillis, int storeHandle
+    ) {
+        super(id, customerId, bookId, expectedPrice, quantity, remainingQuantity, expiryTimeMillis, storeHandle);
+    }
+
     @Override
     public OrderType getType() {
         return OrderType.SELL;
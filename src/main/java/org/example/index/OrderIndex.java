@@ -1,37 +1,251 @@
 package org.example.index;
 
 import org.example.entities.Order;
+import org.example.utilities.IntObjectHashMap;
+import org.example.utilities.LongIntHashMap;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+import java.util.List;
 
+/**
+ * Resting orders of every customer, written by any number of threads and read by any thread.
+ *
+ * <p>Customers are spread over a fixed number of stripes, each guarded by its own lock, so writers
+ * of different stripes never wait for each other. A stripe maps its customers by primitive id, and every
+ * customer maps the ids of its orders to their slots in its array. Order ids are only unique within an order
+ * book, and several order books may dispatch their events to the same index, so two customers of a stripe
+ * may hold orders with the same id.
+ *
+ * <p>The orders of a customer are appended to an array, in the order they are added. A removed order
+ * leaves an empty slot, and the array is compacted once half of its slots are empty, so adding,
+ * updating and removing an order cost the same whatever the number of orders of the customer.
+ * A customer left without order is removed from its stripe.
+ *
+ * <p>A query returns an immutable snapshot of the orders of the customer. The snapshot is built by the
+ * first query after a change and kept for the next ones until the orders of the customer change again,
+ * so queries of a customer that does not trade do not copy anything. A snapshot never changes while
+ * it is read, and the orders it holds were all resting together at some point.
+ */
 public class OrderIndex {
-    private static final Set<Order> EMPTY_ORDER_SET = Set.of();
+    private static final Collection<Order> EMPTY_ORDER_COLLECTION = List.of();
 
-    private final Map<Integer, Set<Order>> customerIdToOrdersMap;
+    /**
+     * Number of stripes, a power of 2
+     */
+    private static final int STRIPES = 64;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Number of slots under which the orders of a customer are not compacted
+     */
+    private static final int MIN_COMPACTION_SIZE = 16;
+
+    private final Stripe[] stripes;
 
     public OrderIndex() {
-        this.customerIdToOrdersMap = new ConcurrentHashMap<>();
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
     }
 
+    /**
+     * Index an order, or replace the indexed copy of the same order
+     */
     public void add(Order order) {
-        customerIdToOrdersMap.computeIfAbsent(order.getCustomerId(), k -> new HashSet<>())
-                .add(order);
+        Stripe stripe = stripeOf(order.getCustomerId());
+        synchronized (stripe) {
+            stripe.add(order);
+        }
+    }
+
+    /**
+     * Replace the indexed copy of an order by a newer one, after the order was partially traded.
+     * Do nothing if the order is not indexed. Since the remaining quantity of an order only
+     * decreases, the copy with the lowest remaining quantity is the most recent one and is kept,
+     * whatever the order the copies are received in.
+     */
+    public void update(Order order) {
+        Stripe stripe = stripeOf(order.getCustomerId());
+        synchronized (stripe) {
+            stripe.update(order);
+        }
     }
 
     public void remove(Order order) {
-        customerIdToOrdersMap.computeIfPresent(
-                order.getCustomerId(),
-                (k, v) -> {
-                    v.remove(order);
-                    return v;
-                });
+        Stripe stripe = stripeOf(order.getCustomerId());
+        synchronized (stripe) {
+            stripe.remove(order);
+        }
     }
 
+    /**
+     * Return the resting orders of the customer in the order they were added. The collection is immutable,
+     * the orders traded or cancelled later are not removed from it.
+     */
     public Collection<Order> findRestingOrdersByCustomer(int customerId) {
-        return customerIdToOrdersMap.getOrDefault(customerId, EMPTY_ORDER_SET);
+        Stripe stripe = stripeOf(customerId);
+        synchronized (stripe) {
+            CustomerOrders orders = stripe.customers.get(customerId);
+            return orders != null ? orders.snapshot() : EMPTY_ORDER_COLLECTION;
+        }
+    }
+
+    private Stripe stripeOf(int customerId) {
+        return stripes[customerId & (STRIPES - 1)];
+    }
+
+    /**
+     * Customers of a stripe, only used while holding the lock of the stripe
+     */
+    private static final class Stripe {
+        private final IntObjectHashMap<CustomerOrders> customers = new IntObjectHashMap<>();
+
+        private void add(Order order) {
+            CustomerOrders orders = customers.computeIfAbsent(order.getCustomerId(), customerId -> new CustomerOrders());
+            int slot = orders.slotOf(order.getId());
+            if (slot != LongIntHashMap.NO_VALUE) {
+                orders.replace(slot, order);
+            } else {
+                orders.append(order);
+            }
+        }
+
+        private void update(Order order) {
+            CustomerOrders orders = customers.get(order.getCustomerId());
+            if (orders == null) return;
+            int slot = orders.slotOf(order.getId());
+            if (slot == LongIntHashMap.NO_VALUE) return;
+
+            if (order.getRemainingQuantity() < orders.get(slot).getRemainingQuantity()) {
+                orders.replace(slot, order);
+            }
+        }
+
+        private void remove(Order order) {
+            CustomerOrders orders = customers.get(order.getCustomerId());
+            if (orders == null || !orders.clear(order.getId())) return;
+
+            if (orders.isEmpty()) {
+                customers.remove(order.getCustomerId());
+            } else if (orders.needsCompaction()) {
+                orders.compact();
+            }
+        }
+    }
+
+    /**
+     * Orders of a customer in the order they were added, removed orders leave an empty slot until compaction
+     */
+    private static final class CustomerOrders {
+        private Order[] orders;
+
+        /**
+         * Map from the id of every order to its slot
+         */
+        private final LongIntHashMap slots = new LongIntHashMap();
+
+        /**
+         * Number of used slots, empty or not
+         */
+        private int size;
+
+        /**
+         * Number of orders
+         */
+        private int count;
+
+        /**
+         * Orders handed out to the queries since the last change, null if they changed since
+         */
+        private List<Order> snapshot;
+
+        private CustomerOrders() {
+            this.orders = new Order[INITIAL_CAPACITY];
+        }
+
+        private Order get(int slot) {
+            return orders[slot];
+        }
+
+        /**
+         * Return the slot of the order, or {@link LongIntHashMap#NO_VALUE} if it is not indexed
+         */
+        private int slotOf(long orderId) {
+            return slots.get(orderId);
+        }
+
+        /**
+         * Add an order after the others
+         */
+        private void append(Order order) {
+            if (size == orders.length) {
+                orders = Arrays.copyOf(orders, size * 2);
+            }
+            slots.put(order.getId(), size);
+            orders[size++] = order;
+            count += 1;
+            snapshot = null;
+        }
+
+        private void replace(int slot, Order order) {
+            orders[slot] = order;
+            snapshot = null;
+        }
+
+        /**
+         * Empty the slot of the order, and return whether the order was indexed
+         */
+        private boolean clear(long orderId) {
+            int slot = slots.remove(orderId);
+            if (slot == LongIntHashMap.NO_VALUE) return false;
+
+            orders[slot] = null;
+            count -= 1;
+            snapshot = null;
+            return true;
+        }
+
+        private boolean isEmpty() {
+            return count == 0;
+        }
+
+        private boolean needsCompaction() {
+            return size >= MIN_COMPACTION_SIZE && count * 2 <= size;
+        }
+
+        /**
+         * Move the orders to a smaller array without empty slot, and record their new slots
+         */
+        private void compact() {
+            Order[] compacted = new Order[Math.max(INITIAL_CAPACITY, count * 2)];
+            int slot = 0;
+            for (int i = 0; i < size; i++) {
+                if (orders[i] != null) {
+                    compacted[slot] = orders[i];
+                    slots.put(orders[i].getId(), slot);
+                    slot++;
+                }
+            }
+            orders = compacted;
+            size = count;
+        }
+
+        private List<Order> snapshot() {
+            if (snapshot == null) {
+                Order[] copy = new Order[count];
+                int index = 0;
+                for (int i = 0; i < size; i++) {
+                    if (orders[i] != null) {
+                        copy[index++] = orders[i];
+                    }
+                }
+                snapshot = Collections.unmodifiableList(Arrays.asList(copy));
+            }
+            return snapshot;
+        }
     }
 }
@@ -0,0 +1,129 @@
+package org.example.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Counters of a single book, written by the matching thread of its partition.
+ *
+ * <p>Unlike {@link Counter}, the counters of a book are not padded: a partition may hold
+ * hundreds of thousands of books, and only the matching thread of the partition writes them.
+ * Updates are ordered stores, so readers on other threads see consistent, if slightly stale, values.
+ */
+public class BookMetrics {
+    private static final VarHandle REQUESTS;
+    private static final VarHandle MATCHES;
+    private static final VarHandle TRADED_QUANTITY;
+    private static final VarHandle RESTED_ORDERS;
+    private static final VarHandle CANCELLED_ORDERS;
+    private static final VarHandle EXPIRED_ORDERS;
+    private static final VarHandle SAME_CUSTOMER_SKIPS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            REQUESTS = lookup.findVarHandle(BookMetrics.class, "requests", long.class);
+            MATCHES = lookup.findVarHandle(BookMetrics.class, "matches", long.class);
+            TRADED_QUANTITY = lookup.findVarHandle(BookMetrics.class, "tradedQuantity", long.class);
+            RESTED_ORDERS = lookup.findVarHandle(BookMetrics.class, "restedOrders", long.class);
+            CANCELLED_ORDERS = lookup.findVarHandle(BookMetrics.class, "cancelledOrders", long.class);
+            EXPIRED_ORDERS = lookup.findVarHandle(BookMetrics.class, "expiredOrders", long.class);
+            SAME_CUSTOMER_SKIPS = lookup.findVarHandle(BookMetrics.class, "sameCustomerSkips", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int bookId;
+
+    /**
+     * Levels walked by the match calls of the whole partition
+     */
+    private final Log2Histogram levelsWalked;
+
+    private long requests;
+
+    private long matches;
+
+    private long tradedQuantity;
+
+    private long restedOrders;
+
+    private long cancelledOrders;
+
+    private long expiredOrders;
+
+    private long sameCustomerSkips;
+
+    BookMetrics(int bookId, Log2Histogram levelsWalked) {
+        this.bookId = bookId;
+        this.levelsWalked = levelsWalked;
+    }
+
+    /**
+     * Continue the counters of a book that moved from another partition
+     */
+    BookMetrics(BookMetrics previous, Log2Histogram levelsWalked) {
+        this(previous.bookId, levelsWalked);
+        BookMetricsSnapshot counters = previous.snapshot();
+        this.requests = counters.getRequests();
+        this.matches = counters.getMatches();
+        this.tradedQuantity = counters.getTradedQuantity();
+        this.restedOrders = counters.getRestedOrders();
+        this.cancelledOrders = counters.getCancelledOrders();
+        this.expiredOrders = counters.getExpiredOrders();
+        this.sameCustomerSkips = counters.getSameCustomerSkips();
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    /**
+     * Record a buy, sell or cancel request of the book
+     */
+    public void onRequest() {
+        REQUESTS.setRelease(this, requests + 1);
+    }
+
+    public void onMatch(int quantity) {
+        MATCHES.setRelease(this, matches + 1);
+        TRADED_QUANTITY.setRelease(this, tradedQuantity + quantity);
+    }
+
+    public void onRested() {
+        RESTED_ORDERS.setRelease(this, restedOrders + 1);
+    }
+
+    public void onCancelled() {
+        CANCELLED_ORDERS.setRelease(this, cancelledOrders + 1);
+    }
+
+    public void onExpired() {
+        EXPIRED_ORDERS.setRelease(this, expiredOrders + 1);
+    }
+
+    public void onSameCustomerSkip() {
+        SAME_CUSTOMER_SKIPS.setRelease(this, sameCustomerSkips + 1);
+    }
+
+    /**
+     * Record the number of price levels walked by a match call
+     */
+    public void onMatchCompleted(int levels) {
+        levelsWalked.record(levels);
+    }
+
+    public BookMetricsSnapshot snapshot() {
+        return BookMetricsSnapshot.builder()
+                .bookId(bookId)
+                .requests((long) REQUESTS.getAcquire(this))
+                .matches((long) MATCHES.getAcquire(this))
+                .tradedQuantity((long) TRADED_QUANTITY.getAcquire(this))
+                .restedOrders((long) RESTED_ORDERS.getAcquire(this))
+                .cancelledOrders((long) CANCELLED_ORDERS.getAcquire(this))
+                .expiredOrders((long) EXPIRED_ORDERS.getAcquire(this))
+                .sameCustomerSkips((long) SAME_CUSTOMER_SKIPS.getAcquire(this))
+                .build();
+    }
+}
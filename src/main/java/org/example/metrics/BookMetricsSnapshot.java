@@ -0,0 +1,46 @@
+package org.example.metrics;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Counters of a book at a point in time. Counters only grow, rates are obtained
+ * by comparing 2 snapshots.
+ */
+@Builder
+@Getter
+public class BookMetricsSnapshot {
+    private final int bookId;
+
+    /**
+     * Number of buy, sell and cancel requests of the book, the load it puts on its partition
+     */
+    private final long requests;
+
+    /**
+     * Number of trades
+     */
+    private final long matches;
+
+    private final long tradedQuantity;
+
+    /**
+     * Number of orders that started resting in the book
+     */
+    private final long restedOrders;
+
+    /**
+     * Number of orders removed by a successful cancel
+     */
+    private final long cancelledOrders;
+
+    /**
+     * Number of resting orders removed because they expired
+     */
+    private final long expiredOrders;
+
+    /**
+     * Number of resting orders skipped because they belong to the customer of the incoming order
+     */
+    private final long sameCustomerSkips;
+}
@@ -0,0 +1,54 @@
+package org.example.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A counter written by a single thread and read by any thread.
+ *
+ * <p>The writer never takes a lock or runs an atomic read-modify-write instruction: an increment
+ * is a plain read followed by an ordered store. The value is surrounded by padding, so a counter
+ * updated by one matching thread never shares a cache line with data used by another thread.
+ */
+public class Counter extends CounterValue {
+    // padding after the value, the padding before it is in CounterPadding
+    @SuppressWarnings("unused")
+    private long p11, p12, p13, p14, p15, p16, p17;
+
+    /**
+     * Must only be called by the writer thread
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Must only be called by the writer thread
+     */
+    public void add(long delta) {
+        VALUE.setRelease(this, value + delta);
+    }
+
+    public long get() {
+        return value;
+    }
+}
+
+class CounterPadding {
+    @SuppressWarnings("unused")
+    private long p01, p02, p03, p04, p05, p06, p07;
+}
+
+class CounterValue extends CounterPadding {
+    static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(CounterValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    protected volatile long value;
+}
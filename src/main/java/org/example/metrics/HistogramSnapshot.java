@@ -0,0 +1,49 @@
+package org.example.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Counts of a {@link Log2Histogram} at a point in time
+ */
+public class HistogramSnapshot {
+    private final long[] counts;
+
+    private final long totalCount;
+
+    HistogramSnapshot(long[] counts) {
+        this.counts = counts;
+        this.totalCount = Arrays.stream(counts).sum();
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Number of values recorded in a bucket, see {@link Log2Histogram}
+     */
+    public long getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * Return the upper bound of the bucket holding the given percentile, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long threshold = (long) Math.ceil(totalCount * percentile / 100);
+        long count = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            count += counts[bucket];
+            if (count >= threshold && count > 0) {
+                return bucket == 0 ? 0 : bucket == Long.SIZE ? Long.MAX_VALUE : (1L << bucket) - 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + totalCount + " p50<=" + getValueAtPercentile(50) + " p99<=" + getValueAtPercentile(99)
+                + " max<=" + getValueAtPercentile(100);
+    }
+}
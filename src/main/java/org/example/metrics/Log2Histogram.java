@@ -0,0 +1,35 @@
+package org.example.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A histogram written by a single thread and read by any thread.
+ *
+ * <p>Values are counted in power of 2 buckets: bucket 0 counts the value 0, bucket {@code n}
+ * counts the values from {@code 2^(n-1)} to {@code 2^n - 1}. That is coarse, but recording
+ * a value is a couple of instructions and a store, without lock or allocation.
+ */
+public class Log2Histogram {
+    public static final int BUCKETS = Long.SIZE + 1;
+
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] counts = new long[BUCKETS];
+
+    /**
+     * Must only be called by the writer thread
+     */
+    public void record(long value) {
+        int bucket = Long.SIZE - Long.numberOfLeadingZeros(value);
+        COUNTS.setRelease(counts, bucket, counts[bucket] + 1);
+    }
+
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = (long) COUNTS.getAcquire(counts, i);
+        }
+        return new HistogramSnapshot(copy);
+    }
+}
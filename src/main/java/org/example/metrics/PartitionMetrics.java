@@ -0,0 +1,232 @@
+package org.example.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics of a partition, i.e. of the books matched by one thread.
+ *
+ * <p>Everything is written by the matching thread of the partition only, so recording never
+ * takes a lock. Any thread can take a {@link #snapshot()}, and the partition can be exposed
+ * as a JMX MBean named {@code org.example:type=OrderBookPartition,engine=<name>,partition=<id>}.
+ * Books are only registered here when they are created or move between partitions,
+ * which are the only times the matching thread touches a concurrent structure.
+ */
+public class PartitionMetrics implements PartitionMetricsMBean {
+    private static final LongSupplier NO_QUEUE = () -> 0;
+
+    private final int partitionId;
+
+    private final Counter requests;
+
+    private final Log2Histogram levelsWalked;
+
+    private final Log2Histogram journalSyncNanos;
+
+    private final Log2Histogram snapshotNanos;
+
+    private final Map<Integer, BookMetrics> books;
+
+    private volatile LongSupplier queueDepth;
+
+    private ObjectName objectName;
+
+    public PartitionMetrics(int partitionId) {
+        this.partitionId = partitionId;
+        this.requests = new Counter();
+        this.levelsWalked = new Log2Histogram();
+        this.journalSyncNanos = new Log2Histogram();
+        this.snapshotNanos = new Log2Histogram();
+        this.books = new ConcurrentHashMap<>();
+        this.queueDepth = NO_QUEUE;
+    }
+
+    /**
+     * Create and register the metrics of a new book
+     */
+    public BookMetrics createBookMetrics(int bookId) {
+        BookMetrics bookMetrics = new BookMetrics(bookId, levelsWalked);
+        books.put(bookId, bookMetrics);
+        return bookMetrics;
+    }
+
+    /**
+     * Register the metrics of a book that moved from another partition, its counters continue from there
+     */
+    public BookMetrics adoptBookMetrics(BookMetrics previous) {
+        BookMetrics bookMetrics = new BookMetrics(previous, levelsWalked);
+        books.put(bookMetrics.getBookId(), bookMetrics);
+        return bookMetrics;
+    }
+
+    /**
+     * Unregister the metrics of a book that moves to another partition, return null if there is none
+     */
+    public BookMetrics removeBookMetrics(int bookId) {
+        return books.remove(bookId);
+    }
+
+    public void onRequest() {
+        requests.increment();
+    }
+
+    /**
+     * Record the time spent forcing the journal of the partition to disk after a batch
+     */
+    public void onJournalSync(long nanos) {
+        journalSyncNanos.record(nanos);
+    }
+
+    /**
+     * Record the time the event loop spent writing a snapshot of the partition
+     */
+    public void onSnapshot(long nanos) {
+        snapshotNanos.record(nanos);
+    }
+
+    /**
+     * Set the gauge reporting the number of requests waiting for the partition
+     */
+    public void setQueueDepth(LongSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public PartitionMetricsSnapshot snapshot() {
+        long timestamp = System.nanoTime();
+        List<BookMetricsSnapshot> bookSnapshots = new ArrayList<>(books.size());
+        long matches = 0;
+        long tradedQuantity = 0;
+        long restedOrders = 0;
+        long cancelledOrders = 0;
+        long expiredOrders = 0;
+        long sameCustomerSkips = 0;
+        for (BookMetrics book : books.values()) {
+            BookMetricsSnapshot snapshot = book.snapshot();
+            bookSnapshots.add(snapshot);
+            matches += snapshot.getMatches();
+            tradedQuantity += snapshot.getTradedQuantity();
+            restedOrders += snapshot.getRestedOrders();
+            cancelledOrders += snapshot.getCancelledOrders();
+            expiredOrders += snapshot.getExpiredOrders();
+            sameCustomerSkips += snapshot.getSameCustomerSkips();
+        }
+
+        return PartitionMetricsSnapshot.builder()
+                .partitionId(partitionId)
+                .timestampNanos(timestamp)
+                .requests(requests.get())
+                .queueDepth(queueDepth.getAsLong())
+                .matches(matches)
+                .tradedQuantity(tradedQuantity)
+                .restedOrders(restedOrders)
+                .cancelledOrders(cancelledOrders)
+                .expiredOrders(expiredOrders)
+                .sameCustomerSkips(sameCustomerSkips)
+                .levelsWalked(levelsWalked.snapshot())
+                .journalSyncNanos(journalSyncNanos.snapshot())
+                .snapshotNanos(snapshotNanos.snapshot())
+                .books(bookSnapshots)
+                .build();
+    }
+
+    /**
+     * Expose this partition as an MBean of the platform MBean server
+     */
+    public synchronized void registerMBean(String engineName) {
+        if (objectName != null) return;
+
+        try {
+            ObjectName name = new ObjectName(
+                    "org.example:type=OrderBookPartition,engine=" + ObjectName.quote(engineName) + ",partition=" + partitionId
+            );
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics of partition " + partitionId, e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) return;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            // already gone, nothing to clean up
+        }
+        objectName = null;
+    }
+
+    @Override
+    public int getPartitionId() {
+        return partitionId;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queueDepth.getAsLong();
+    }
+
+    @Override
+    public long getMatches() {
+        return snapshot().getMatches();
+    }
+
+    @Override
+    public long getTradedQuantity() {
+        return snapshot().getTradedQuantity();
+    }
+
+    @Override
+    public long getRestedOrders() {
+        return snapshot().getRestedOrders();
+    }
+
+    @Override
+    public long getCancelledOrders() {
+        return snapshot().getCancelledOrders();
+    }
+
+    @Override
+    public long getExpiredOrders() {
+        return snapshot().getExpiredOrders();
+    }
+
+    @Override
+    public long getSameCustomerSkips() {
+        return snapshot().getSameCustomerSkips();
+    }
+
+    @Override
+    public int getBookCount() {
+        return books.size();
+    }
+
+    @Override
+    public long getLevelsWalkedP50() {
+        return levelsWalked.snapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getLevelsWalkedP99() {
+        return levelsWalked.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getLevelsWalkedMax() {
+        return levelsWalked.snapshot().getValueAtPercentile(100);
+    }
+}
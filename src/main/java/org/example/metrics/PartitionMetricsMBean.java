@@ -0,0 +1,32 @@
+package org.example.metrics;
+
+/**
+ * JMX view of {@link PartitionMetrics}, every attribute is computed from a fresh snapshot
+ */
+public interface PartitionMetricsMBean {
+    int getPartitionId();
+
+    long getRequests();
+
+    long getQueueDepth();
+
+    long getMatches();
+
+    long getTradedQuantity();
+
+    long getRestedOrders();
+
+    long getCancelledOrders();
+
+    long getExpiredOrders();
+
+    long getSameCustomerSkips();
+
+    int getBookCount();
+
+    long getLevelsWalkedP50();
+
+    long getLevelsWalkedP99();
+
+    long getLevelsWalkedMax();
+}
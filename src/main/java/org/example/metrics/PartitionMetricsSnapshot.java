@@ -0,0 +1,60 @@
+package org.example.metrics;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Metrics of a partition at a point in time.
+ * The book counters of the partition are summed up, and also available book by book.
+ */
+@Builder
+@Getter
+public class PartitionMetricsSnapshot {
+    private final int partitionId;
+
+    /**
+     * Nanotime the snapshot was taken at, to compute rates between 2 snapshots
+     */
+    private final long timestampNanos;
+
+    /**
+     * Number of buy, sell and cancel requests processed
+     */
+    private final long requests;
+
+    /**
+     * Number of requests waiting to be processed, 0 if the partition has no request queue
+     */
+    private final long queueDepth;
+
+    private final long matches;
+
+    private final long tradedQuantity;
+
+    private final long restedOrders;
+
+    private final long cancelledOrders;
+
+    private final long expiredOrders;
+
+    private final long sameCustomerSkips;
+
+    /**
+     * Number of price levels walked per match call
+     */
+    private final HistogramSnapshot levelsWalked;
+
+    /**
+     * Time spent forcing the journal to disk per batch, empty if the partition has no journal
+     */
+    private final HistogramSnapshot journalSyncNanos;
+
+    /**
+     * Time the event loop spent writing each snapshot of the partition, empty if the partition has no journal
+     */
+    private final HistogramSnapshot snapshotNanos;
+
+    private final List<BookMetricsSnapshot> books;
+}
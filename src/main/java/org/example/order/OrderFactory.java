@@ -1,32 +1,62 @@
 package org.example.order;
 
+import org.example.clock.EngineClock;
 import org.example.entities.BuyOrder;
+import org.example.entities.Order;
+import org.example.entities.OrderType;
 import org.example.entities.SellOrder;
-
-import java.util.UUID;
+import org.example.store.OrderStore;
 
 public class OrderFactory {
-    public static SellOrder buildSellOrder(int customerId, int bookId, int price, Long expireAfterSeconds) {
-        return SellOrder.builder()
-                .id(UUID.randomUUID())
-                .bookId(bookId)
-                .customerId(customerId)
-                .expectedPrice(price)
-                .expiryTimeMillis(expiryTime(expireAfterSeconds))
-                .build();
+    /**
+     * Store a new sell order and return its handle.
+     * The expiry time is counted from the current time of the given clock.
+     */
+    public static int allocateSellOrder(
+            OrderStore store, EngineClock clock, long id, int customerId, int bookId, int price, int quantity,
+            Long expireAfterSeconds
+    ) {
+        checkQuantity(quantity);
+        return store.allocate(
+                id, OrderType.SELL, customerId, bookId, price, quantity, expiryTime(clock, expireAfterSeconds)
+        );
+    }
+
+    /**
+     * Store a new buy order and return its handle.
+     * The expiry time is counted from the current time of the given clock.
+     */
+    public static int allocateBuyOrder(
+            OrderStore store, EngineClock clock, long id, int customerId, int bookId, int price, int quantity,
+            Long expireAfterSeconds
+    ) {
+        checkQuantity(quantity);
+        return store.allocate(
+                id, OrderType.BUY, customerId, bookId, price, quantity, expiryTime(clock, expireAfterSeconds)
+        );
+    }
+
+    /**
+     * Copy a stored order into an {@link Order} that can be handed out of the matching engine
+     */
+    public static Order buildOrder(OrderStore store, int order) {
+        if (store.getType(order) == OrderType.BUY) {
+            return new BuyOrder(
+                    store.getId(order), store.getCustomerId(order), store.getBookId(order), store.getPrice(order),
+                    store.getQuantity(order), store.getRemainingQuantity(order), store.getExpiryTimeMillis(order), order
+            );
+        }
+        return new SellOrder(
+                store.getId(order), store.getCustomerId(order), store.getBookId(order), store.getPrice(order),
+                store.getQuantity(order), store.getRemainingQuantity(order), store.getExpiryTimeMillis(order), order
+        );
     }
 
-    public static BuyOrder buildBuyOrder(int customerId, int bookId, int price, Long expireAfterSeconds) {
-        return BuyOrder.builder()
-                .id(UUID.randomUUID())
-                .bookId(bookId)
-                .customerId(customerId)
-                .expectedPrice(price)
-                .expiryTimeMillis(expiryTime(expireAfterSeconds))
-                .build();
+    private static void checkQuantity(int quantity) {
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity must be positive: " + quantity);
     }
 
-    private static Long expiryTime(Long expireAfterSeconds) {
-        return expireAfterSeconds != null ? System.currentTimeMillis() + expireAfterSeconds * 1000 : null;
+    private static long expiryTime(EngineClock clock, Long expireAfterSeconds) {
+        return expireAfterSeconds != null ? clock.currentTimeMillis() + expireAfterSeconds * 1000 : Order.NO_EXPIRY;
     }
 }
@@ -0,0 +1,70 @@
+package org.example.order;
+
+/**
+ * Assign order ids of a partition.
+ *
+ * <p>Ids are monotonically increasing within a partition: the partition id is kept in the
+ * upper bits and a counter in the lower {@value #SEQUENCE_BITS} bits, so ids are also unique
+ * across partitions without any coordination between them. Unlike {@code UUID.randomUUID()},
+ * getting the next id is a plain increment and never touch {@code SecureRandom}.
+ *
+ * <p>Ids start at 1, 0 is never a valid id.
+ *
+ * <p>This class is not synchronized, it must only be used by the thread that owns the partition.
+ */
+public class OrderIdSequencer {
+    public static final int SEQUENCE_BITS = 40;
+
+    public static final int MAX_PARTITION_ID = (1 << (Long.SIZE - 1 - SEQUENCE_BITS)) - 1;
+
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private final long partitionBits;
+
+    private long sequence;
+
+    public OrderIdSequencer(int partitionId) {
+        if (partitionId < 0 || partitionId > MAX_PARTITION_ID) {
+            throw new IllegalArgumentException("Partition id must be between 0 and " + MAX_PARTITION_ID + ": " + partitionId);
+        }
+        this.partitionBits = (long) partitionId << SEQUENCE_BITS;
+    }
+
+    public long next() {
+        if (sequence == MAX_SEQUENCE) {
+            throw new IllegalStateException("Order ids of partition " + getPartitionId(partitionBits) + " are exhausted");
+        }
+        return partitionBits | ++sequence;
+    }
+
+    /**
+     * Position of the last id assigned, 0 if none has been assigned yet
+     */
+    public long lastSequence() {
+        return sequence;
+    }
+
+    /**
+     * Continue assigning ids after the given position, when the partition is loaded from a snapshot
+     */
+    public void resume(long lastSequence) {
+        if (lastSequence < 0 || lastSequence > MAX_SEQUENCE) {
+            throw new IllegalArgumentException("Sequence must be between 0 and " + MAX_SEQUENCE + ": " + lastSequence);
+        }
+        this.sequence = lastSequence;
+    }
+
+    /**
+     * Return the partition that assigned the given order id
+     */
+    public static int getPartitionId(long orderId) {
+        return (int) (orderId >>> SEQUENCE_BITS);
+    }
+
+    /**
+     * Return the position of the given order id in the ids assigned by its partition, starting at 1
+     */
+    public static long getSequence(long orderId) {
+        return orderId & MAX_SEQUENCE;
+    }
+}
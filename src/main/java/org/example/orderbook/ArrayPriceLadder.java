@@ -0,0 +1,245 @@
+package org.example.orderbook;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * {@link PriceLadder} implementation backed by a dense array of levels.
+ *
+ * <p>Prices are bounded ints that move by a known tick size, and most of the activity
+ * of a book happen close to the best price. So we keep a window of {@code windowSize}
+ * ticks starting at {@code basePrice}, and the level of a price inside the window is
+ * found directly by its index: (price - basePrice) / tickSize. Inserting or removing
+ * a level is O(1) and does not box the price.
+ *
+ * <p>The lowest and highest occupied indexes are cached, so best bid/ask is O(1).
+ * When the best level is removed, the next one is found by scanning the array
+ * toward the other end of the window.
+ *
+ * <p>Prices that fall outside the window, or are not a multiple of the tick size away from
+ * {@code basePrice}, are stored in a sparse {@link TreeMap}. Whenever the window becomes
+ * empty, it is re-centered around the next price that is added, and the sparse levels
+ * that fall into the new window are moved back into the array.
+ */
+public class ArrayPriceLadder<L> implements PriceLadder<L> {
+    public static final int DEFAULT_TICK_SIZE = 1;
+
+    public static final int DEFAULT_WINDOW_SIZE = 256;
+
+    private static final int NO_INDEX = -1;
+
+    private final int tickSize;
+
+    private final Object[] levels;
+
+    private final NavigableMap<Integer, L> sparseLevels;
+
+    private final Supplier<L> levelFactory;
+
+    private int basePrice;
+
+    /**
+     * Number of occupied slots in the window
+     */
+    private int denseCount;
+
+    private int lowestIndex;
+
+    private int highestIndex;
+
+    public ArrayPriceLadder(Supplier<L> levelFactory) {
+        this(DEFAULT_TICK_SIZE, DEFAULT_WINDOW_SIZE, levelFactory);
+    }
+
+    public ArrayPriceLadder(int tickSize, int windowSize, Supplier<L> levelFactory) {
+        if (tickSize <= 0) throw new IllegalArgumentException("tickSize must be positive");
+        if (windowSize <= 0) throw new IllegalArgumentException("windowSize must be positive");
+
+        this.tickSize = tickSize;
+        this.levels = new Object[windowSize];
+        this.sparseLevels = new TreeMap<>();
+        this.levelFactory = levelFactory;
+        this.lowestIndex = NO_INDEX;
+        this.highestIndex = NO_INDEX;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public L get(int price) {
+        int index = indexOf(price);
+        if (index != NO_INDEX) {
+            return (L) levels[index];
+        }
+        return sparseLevels.isEmpty() ? null : sparseLevels.get(price);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public L getOrCreate(int price) {
+        int index = indexOf(price);
+        if (index == NO_INDEX && denseCount == 0) {
+            recenter(price);
+            index = indexOf(price);
+        }
+
+        if (index == NO_INDEX) {
+            return sparseLevels.computeIfAbsent(price, p -> levelFactory.get());
+        }
+
+        L level = (L) levels[index];
+        if (level == null) {
+            level = levelFactory.get();
+            occupy(index, level);
+        }
+        return level;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public L remove(int price) {
+        int index = indexOf(price);
+        if (index == NO_INDEX) {
+            return sparseLevels.isEmpty() ? null : sparseLevels.remove(price);
+        }
+
+        L level = (L) levels[index];
+        if (level == null) return null;
+
+        levels[index] = null;
+        denseCount -= 1;
+        if (denseCount == 0) {
+            lowestIndex = NO_INDEX;
+            highestIndex = NO_INDEX;
+        } else if (index == lowestIndex) {
+            lowestIndex = scanUp(index + 1, highestIndex);
+        } else if (index == highestIndex) {
+            highestIndex = scanDown(index - 1, lowestIndex);
+        }
+        return level;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return denseCount == 0 && sparseLevels.isEmpty();
+    }
+
+    @Override
+    public int lowestPrice() {
+        int densePrice = denseCount == 0 ? NO_PRICE : priceOf(lowestIndex);
+        if (sparseLevels.isEmpty()) return densePrice;
+
+        int sparsePrice = sparseLevels.firstKey();
+        return densePrice == NO_PRICE ? sparsePrice : Math.min(densePrice, sparsePrice);
+    }
+
+    @Override
+    public int highestPrice() {
+        int densePrice = denseCount == 0 ? NO_PRICE : priceOf(highestIndex);
+        if (sparseLevels.isEmpty()) return densePrice;
+
+        return Math.max(densePrice, sparseLevels.lastKey());
+    }
+
+    @Override
+    public int higherPrice(int price) {
+        int densePrice = NO_PRICE;
+        if (denseCount > 0) {
+            // smallest index whose price is greater than the given price
+            long from = Math.floorDiv((long) price - basePrice, tickSize) + 1;
+            if (from <= highestIndex) {
+                int index = scanUp((int) Math.max(from, lowestIndex), highestIndex);
+                densePrice = priceOf(index);
+            }
+        }
+        if (sparseLevels.isEmpty()) return densePrice;
+
+        Integer sparsePrice = sparseLevels.higherKey(price);
+        if (sparsePrice == null) return densePrice;
+        return densePrice == NO_PRICE ? sparsePrice : Math.min(densePrice, sparsePrice);
+    }
+
+    @Override
+    public int lowerPrice(int price) {
+        int densePrice = NO_PRICE;
+        if (denseCount > 0) {
+            // greatest index whose price is smaller than the given price
+            long from = Math.floorDiv((long) price - basePrice - 1, tickSize);
+            if (from >= lowestIndex) {
+                int index = scanDown((int) Math.min(from, highestIndex), lowestIndex);
+                densePrice = priceOf(index);
+            }
+        }
+        if (sparseLevels.isEmpty()) return densePrice;
+
+        Integer sparsePrice = sparseLevels.lowerKey(price);
+        if (sparsePrice == null) return densePrice;
+        return Math.max(densePrice, sparsePrice);
+    }
+
+    /**
+     * Return the index of the given price inside the window,
+     * or {@link #NO_INDEX} if the price cannot be stored in the window
+     */
+    private int indexOf(int price) {
+        long offset = (long) price - basePrice;
+        if (offset < 0 || offset % tickSize != 0) return NO_INDEX;
+
+        long index = offset / tickSize;
+        return index < levels.length ? (int) index : NO_INDEX;
+    }
+
+    private int priceOf(int index) {
+        return basePrice + index * tickSize;
+    }
+
+    private void occupy(int index, L level) {
+        levels[index] = level;
+        denseCount += 1;
+        if (lowestIndex == NO_INDEX || index < lowestIndex) lowestIndex = index;
+        if (highestIndex == NO_INDEX || index > highestIndex) highestIndex = index;
+    }
+
+    /**
+     * Move the window so that the given price is in its middle, then pull
+     * the sparse levels that fit in the new window into the array.
+     * Must only be called when the window is empty.
+     */
+    private void recenter(int price) {
+        long base = (long) price - (long) (levels.length / 2) * tickSize;
+        basePrice = (int) Math.max(Integer.MIN_VALUE + 1L, base);
+        // keep basePrice on the tick grid of the price
+        basePrice += Math.floorMod((long) price - basePrice, tickSize);
+
+        if (sparseLevels.isEmpty()) return;
+
+        long windowEnd = (long) basePrice + (long) levels.length * tickSize;
+        NavigableMap<Integer, L> inWindow = sparseLevels.subMap(
+                basePrice, true, (int) Math.min(Integer.MAX_VALUE, windowEnd - 1), true
+        );
+        var iterator = inWindow.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, L> entry = iterator.next();
+            int index = indexOf(entry.getKey());
+            if (index != NO_INDEX) {
+                occupy(index, entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private int scanUp(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            if (levels[i] != null) return i;
+        }
+        return NO_INDEX;
+    }
+
+    private int scanDown(int from, int to) {
+        for (int i = from; i >= to; i--) {
+            if (levels[i] != null) return i;
+        }
+        return NO_INDEX;
+    }
+}
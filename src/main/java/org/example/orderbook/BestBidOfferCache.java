@@ -0,0 +1,166 @@
+package org.example.orderbook;
+
+import org.example.entities.BestBidOffer;
+import org.example.utilities.IntObjectHashMap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Best bid and best ask of every book, published by the matching threads and read by any thread
+ * without going through the request queues.
+ *
+ * <p>Give the cache to the {@link OrderBookConfig} of an order book, every partition of a
+ * {@link PartitionedOrderBook} then publishes into it. After every request, the matching thread compares
+ * the best levels of the books it touched with their last publication, and only writes the ones that changed,
+ * so readers see the latest state of a book and skip the intermediate ones.
+ *
+ * <p>Every book has a {@link Quote} guarded by a sequence lock: the writer makes the version odd, writes the
+ * fields, then makes it even again. A reader copies the fields between 2 reads of the version and retries
+ * if they differ or if the version was odd. The writer never waits for the readers, and a reader only
+ * retries while a publication of the same book is in progress, which is a few stores.
+ *
+ * <p>The quotes are found through a map replaced on the first publication of a book, like {@link PartitionMap},
+ * so reading a book takes no lock. A book keeps its quote when it moves to another partition, the new partition
+ * publishes into it once the book is imported.
+ */
+public class BestBidOfferCache {
+    /**
+     * Map from book id to the quote of the book, never modified once published
+     */
+    private volatile IntObjectHashMap<Quote> quotes;
+
+    public BestBidOfferCache() {
+        this.quotes = new IntObjectHashMap<>();
+    }
+
+    /**
+     * Return the last published best bid and best ask of a book, or null if nothing was published for the book
+     */
+    public BestBidOffer get(int bookId) {
+        Quote quote = quotes.get(bookId);
+        return quote != null ? quote.read() : null;
+    }
+
+    /**
+     * Return the number of the last publication of a book, 0 if nothing was published for the book.
+     * Pollers can compare it with the version of the last {@link BestBidOffer} they read to skip unchanged books.
+     */
+    public long getVersion(int bookId) {
+        Quote quote = quotes.get(bookId);
+        return quote != null ? quote.stableVersion() >>> 1 : 0;
+    }
+
+    /**
+     * Return the quote of a book, created on the first call for the book.
+     * Called by the matching threads when they create or import a book.
+     */
+    Quote quoteOf(int bookId) {
+        Quote quote = quotes.get(bookId);
+        return quote != null ? quote : createQuote(bookId);
+    }
+
+    /**
+     * Matching threads of different partitions can create quotes at the same time
+     */
+    private synchronized Quote createQuote(int bookId) {
+        IntObjectHashMap<Quote> current = quotes;
+        Quote quote = current.get(bookId);
+        if (quote != null) return quote;
+
+        IntObjectHashMap<Quote> copy = new IntObjectHashMap<>(current.size() + 1);
+        current.forEach(copy::put);
+        quote = new Quote(bookId);
+        copy.put(bookId, quote);
+        quotes = copy;
+        return quote;
+    }
+
+    /**
+     * Best bid and best ask of one book, written by the thread matching the book
+     */
+    static final class Quote {
+        private static final VarHandle VERSION;
+
+        static {
+            try {
+                VERSION = MethodHandles.lookup().findVarHandle(Quote.class, "version", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final int bookId;
+
+        /**
+         * Twice the number of publications, odd while a publication is in progress
+         */
+        private long version;
+
+        private int bidPrice;
+
+        private long bidQuantity;
+
+        private int askPrice;
+
+        private long askQuantity;
+
+        private Quote(int bookId) {
+            this.bookId = bookId;
+        }
+
+        /**
+         * Publish the best levels of the book if they changed, a side without order has a quantity of 0.
+         * Must only be called by the thread matching the book.
+         */
+        void publish(int bidPrice, long bidQuantity, int askPrice, long askQuantity) {
+            if (bidPrice == this.bidPrice && bidQuantity == this.bidQuantity
+                    && askPrice == this.askPrice && askQuantity == this.askQuantity) return;
+
+            long current = version;
+            VERSION.setOpaque(this, current + 1);
+            // the odd version is visible before any of the fields
+            VarHandle.storeStoreFence();
+            this.bidPrice = bidPrice;
+            this.bidQuantity = bidQuantity;
+            this.askPrice = askPrice;
+            this.askQuantity = askQuantity;
+            VERSION.setRelease(this, current + 2);
+        }
+
+        private BestBidOffer read() {
+            while (true) {
+                long before = stableVersion();
+                int bidPrice = this.bidPrice;
+                long bidQuantity = this.bidQuantity;
+                int askPrice = this.askPrice;
+                long askQuantity = this.askQuantity;
+                // the fields are read before the version is read again
+                VarHandle.loadLoadFence();
+                if ((long) VERSION.getOpaque(this) == before) {
+                    return BestBidOffer.builder()
+                            .bookId(bookId)
+                            .bidPrice(bidPrice)
+                            .bidQuantity(bidQuantity)
+                            .askPrice(askPrice)
+                            .askQuantity(askQuantity)
+                            .version(before >>> 1)
+                            .build();
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        /**
+         * Wait for the publication in progress, if any, and return the version
+         */
+        private long stableVersion() {
+            long version = (long) VERSION.getAcquire(this);
+            while ((version & 1) != 0) {
+                Thread.onSpinWait();
+                version = (long) VERSION.getAcquire(this);
+            }
+            return version;
+        }
+    }
+}
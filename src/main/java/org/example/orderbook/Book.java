@@ -0,0 +1,177 @@
+package org.example.orderbook;
+
+import lombok.Getter;
+import org.example.entities.OrderType;
+import org.example.metrics.BookMetrics;
+import org.example.store.OrderStore;
+import org.example.utilities.LongIntHashMap;
+
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Resting orders of a single book.
+ * Each book keeps its own pair of price ladders, so matching an order
+ * only walks price levels of the book the order belongs to, no matter how many
+ * other books are handled by the same {@link FIFOOrderBook}.
+ * The order records themselves are kept in the {@link OrderStore} shared by the books,
+ * and emptied price levels go back to the {@link PriceLevelPool} shared by the books.
+ *
+ * <p>A book that moved from another partition also remembers the handles its orders got
+ * in this partition, because the copies of the orders handed out to listeners before the
+ * move still carry the handles of the previous partition. An order is forgotten once it leaves the book.
+ */
+@Getter
+class Book {
+    private final int bookId;
+
+    private final RestingBuyQueue restingBuyQueue;
+
+    private final RestingSellQueue restingSellQueue;
+
+    /**
+     * Counters of the book, null if metrics are disabled
+     */
+    private final BookMetrics metrics;
+
+    /**
+     * Best bid and best ask published for the book, null if they are not published
+     */
+    private final BestBidOfferCache.Quote quote;
+
+    /**
+     * Map from order id to the handle of the orders that were resting when the book moved in and are
+     * still resting, null if the book never moved or all of them left the book
+     */
+    private LongIntHashMap movedOrderHandles;
+
+    /**
+     * @param ladderFactory creates the price ladder of each side of the book
+     * @param metrics       counters of the book, null if metrics are disabled
+     * @param depthTracker  tracker of the changed levels of the order book, null if the depth is not published
+     * @param bboCache      cache the best bid and best ask of the book are published to, null if they are not published
+     */
+    Book(
+            int bookId, OrderStore store, Supplier<PriceLadder<PriceLevel>> ladderFactory,
+            SelfTradePolicy selfTradePolicy, PriceLevelPool levelPool, BookMetrics metrics,
+            DepthTracker depthTracker, BestBidOfferCache bboCache
+    ) {
+        this.bookId = bookId;
+        this.restingBuyQueue = new RestingBuyQueue(
+                store, ladderFactory.get(), selfTradePolicy, levelPool, metrics,
+                depthTracker != null ? depthTracker.createSide(bookId, OrderType.BUY) : null
+        );
+        this.restingSellQueue = new RestingSellQueue(
+                store, ladderFactory.get(), selfTradePolicy, levelPool, metrics,
+                depthTracker != null ? depthTracker.createSide(bookId, OrderType.SELL) : null
+        );
+        this.metrics = metrics;
+        this.quote = bboCache != null ? bboCache.quoteOf(bookId) : null;
+    }
+
+    /**
+     * Publish the best bid and best ask of the book to the cache if they changed since the last publication
+     */
+    void publishBestBidOffer() {
+        if (quote == null) return;
+
+        int bidPrice = restingBuyQueue.bestPrice();
+        int askPrice = restingSellQueue.bestPrice();
+        quote.publish(
+                bidPrice != PriceLadder.NO_PRICE ? bidPrice : 0, restingBuyQueue.bestQuantity(),
+                askPrice != PriceLadder.NO_PRICE ? askPrice : 0, restingSellQueue.bestQuantity()
+        );
+    }
+
+    void addMovedOrder(long orderId, int order) {
+        if (movedOrderHandles == null) {
+            movedOrderHandles = new LongIntHashMap();
+        }
+        movedOrderHandles.put(orderId, order);
+    }
+
+    /**
+     * Forget an order leaving the book, do nothing if it was not resting when the book moved in
+     */
+    void removeMovedOrder(long orderId) {
+        if (movedOrderHandles == null) return;
+
+        movedOrderHandles.remove(orderId);
+        if (movedOrderHandles.isEmpty()) {
+            movedOrderHandles = null;
+        }
+    }
+
+    /**
+     * Return the handle of an order that was resting when the book moved in,
+     * or {@link OrderStore#NULL} if the order is not in the book anymore
+     */
+    int findMovedOrder(OrderStore store, long orderId) {
+        if (movedOrderHandles == null) return OrderStore.NULL;
+
+        int order = movedOrderHandles.get(orderId);
+        if (order == LongIntHashMap.NO_VALUE || !store.contains(order, orderId)) return OrderStore.NULL;
+        return order;
+    }
+
+    /**
+     * Write the resting orders of the book in time priority, with their handles, then the handles
+     * of its moved orders, see {@link FIFOOrderBook#writeSnapshot(SnapshotWriter)}
+     */
+    void writeTo(SnapshotWriter out, OrderStore store) {
+        out.putInt(bookId);
+        IntConsumer orderWriter = order -> {
+            out.putInt(order);
+            out.putLong(store.getId(order));
+            out.putInt(store.getCustomerId(order));
+            out.putInt(store.getPrice(order));
+            out.putInt(store.getQuantity(order));
+            out.putInt(store.getRemainingQuantity(order));
+            out.putLong(store.getExpiryTimeMillis(order));
+        };
+        restingBuyQueue.forEach(orderWriter);
+        out.putInt(OrderStore.NULL);
+        restingSellQueue.forEach(orderWriter);
+        out.putInt(OrderStore.NULL);
+
+        if (movedOrderHandles == null) {
+            out.putInt(0);
+            return;
+        }
+        out.putInt(movedOrderHandles.size());
+        movedOrderHandles.forEach((orderId, order) -> {
+            out.putLong(orderId);
+            out.putInt(order);
+        });
+    }
+
+    /**
+     * Rest the orders written by {@link #writeTo} at their handles, in an empty book. Their expiry
+     * is scheduled by the caller, which restores the expiry wheel as a whole.
+     */
+    void readFrom(SnapshotReader in, OrderStore store) {
+        readOrders(in, store, OrderType.BUY);
+        readOrders(in, store, OrderType.SELL);
+        int movedOrderCount = in.getInt();
+        for (int i = 0; i < movedOrderCount; i++) {
+            addMovedOrder(in.getLong(), in.getInt());
+        }
+    }
+
+    private void readOrders(SnapshotReader in, OrderStore store, OrderType type) {
+        for (int order = in.getInt(); order != OrderStore.NULL; order = in.getInt()) {
+            long id = in.getLong();
+            int customerId = in.getInt();
+            int price = in.getInt();
+            int quantity = in.getInt();
+            int remainingQuantity = in.getInt();
+            long expiryTimeMillis = in.getLong();
+            store.restore(order, id, type, customerId, bookId, price, quantity, remainingQuantity, expiryTimeMillis);
+            if (type == OrderType.BUY) {
+                restingBuyQueue.restore(order);
+            } else {
+                restingSellQueue.restore(order);
+            }
+        }
+    }
+}
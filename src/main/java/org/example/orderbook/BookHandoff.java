@@ -0,0 +1,101 @@
+package org.example.orderbook;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Move of a book from a partition of a {@link PartitionedOrderBook} to another.
+ *
+ * <p>The handoff goes through the request rings of both partitions, so it is ordered with the requests:
+ * <ol>
+ *     <li>the target partition is told to expect the book, and parks the requests of the book it receives</li>
+ *     <li>the route of the book is switched to the target partition</li>
+ *     <li>the source partition exports the book once it has processed the requests routed to it before
+ *     the switch, and passes the {@link BookSnapshot} to the target partition</li>
+ *     <li>the target partition imports the book, processes the parked requests, and completes the handoff</li>
+ * </ol>
+ */
+class BookHandoff {
+    /**
+     * Number of the move, increasing with every move of the {@link PartitionedOrderBook}
+     */
+    private final long moveId;
+
+    private final int bookId;
+
+    private final QueueBasedOrderBook target;
+
+    private final CompletableFuture<Void> done;
+
+    /**
+     * Set by the source partition before the handoff is passed to the target partition
+     */
+    private BookSnapshot snapshot;
+
+    private Throwable failure;
+
+    BookHandoff(long moveId, int bookId, QueueBasedOrderBook target) {
+        this.moveId = moveId;
+        this.bookId = bookId;
+        this.target = target;
+        this.done = new CompletableFuture<>();
+    }
+
+    long getMoveId() {
+        return moveId;
+    }
+
+    int getBookId() {
+        return bookId;
+    }
+
+    QueueBasedOrderBook getTarget() {
+        return target;
+    }
+
+    BookSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    void setSnapshot(BookSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Record the first failure of the source or target partition, the handoff still completes
+     */
+    void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Whether the target partition has taken the book over, or the handoff failed
+     */
+    boolean isDone() {
+        return done.isDone();
+    }
+
+    void complete() {
+        if (failure == null) {
+            done.complete(null);
+        } else {
+            done.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Wait until the target partition has taken the book over
+     *
+     * @throws IllegalStateException if the book could not be exported or imported, in which case
+     *                               its resting orders are lost and the target starts with an empty book
+     */
+    void await() {
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Book " + bookId + " could not be moved", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.orderbook;
+
+import org.example.entities.OrderType;
+import org.example.metrics.BookMetrics;
+import org.example.store.OrderStore;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Resting orders of a book taken out of a {@link FIFOOrderBook}, to be rested again in another one,
+ * see {@link FIFOOrderBook#exportBook(int)} and {@link FIFOOrderBook#importBook(BookSnapshot)}.
+ *
+ * <p>The order records are copied field by field into primitive arrays, since store handles mean
+ * nothing outside of their store. Orders are kept in the order they were taken out, which is the
+ * time priority of every price level, so appending them back in that order keeps their priority.
+ * Snapshots are also written to the {@link CommandJournal}, see {@link #encode(ByteBuffer, int)}.
+ */
+class BookSnapshot {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Encoded size of the book id and order count, then of every order
+     */
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final int ORDER_SIZE = Long.BYTES * 2 + Integer.BYTES * 4 + 1;
+
+    private final int bookId;
+
+    /**
+     * Metrics of the book in the partition it leaves, null if metrics are disabled
+     */
+    private final BookMetrics metrics;
+
+    private long[] ids;
+
+    private OrderType[] types;
+
+    private int[] customerIds;
+
+    private int[] prices;
+
+    private int[] quantities;
+
+    private int[] remainingQuantities;
+
+    private long[] expiryTimes;
+
+    private int size;
+
+    BookSnapshot(int bookId, BookMetrics metrics) {
+        this.bookId = bookId;
+        this.metrics = metrics;
+        this.ids = new long[INITIAL_CAPACITY];
+        this.types = new OrderType[INITIAL_CAPACITY];
+        this.customerIds = new int[INITIAL_CAPACITY];
+        this.prices = new int[INITIAL_CAPACITY];
+        this.quantities = new int[INITIAL_CAPACITY];
+        this.remainingQuantities = new int[INITIAL_CAPACITY];
+        this.expiryTimes = new long[INITIAL_CAPACITY];
+    }
+
+    int getBookId() {
+        return bookId;
+    }
+
+    BookMetrics getMetrics() {
+        return metrics;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copy the record of an order, the order can be freed afterward
+     */
+    void add(OrderStore store, int order) {
+        if (size == ids.length) {
+            grow(size * 2);
+        }
+        ids[size] = store.getId(order);
+        types[size] = store.getType(order);
+        customerIds[size] = store.getCustomerId(order);
+        prices[size] = store.getPrice(order);
+        quantities[size] = store.getQuantity(order);
+        remainingQuantities[size] = store.getRemainingQuantity(order);
+        expiryTimes[size] = store.getExpiryTimeMillis(order);
+        size += 1;
+    }
+
+    /**
+     * Allocate a copy of the i-th order in the given store and return its handle
+     */
+    int restore(OrderStore store, int i) {
+        int order = store.allocate(
+                ids[i], types[i], customerIds[i], bookId, prices[i], quantities[i], expiryTimes[i]
+        );
+        store.setRemainingQuantity(order, remainingQuantities[i]);
+        return order;
+    }
+
+    int encodedSize() {
+        return HEADER_SIZE + size * ORDER_SIZE;
+    }
+
+    /**
+     * Write the snapshot at the given index of the buffer, without its metrics, return the index after it
+     */
+    int encode(ByteBuffer buffer, int index) {
+        buffer.putInt(index, bookId);
+        buffer.putInt(index + 4, size);
+        index += HEADER_SIZE;
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(index, ids[i]);
+            buffer.put(index + 8, (byte) types[i].ordinal());
+            buffer.putInt(index + 9, customerIds[i]);
+            buffer.putInt(index + 13, prices[i]);
+            buffer.putInt(index + 17, quantities[i]);
+            buffer.putInt(index + 21, remainingQuantities[i]);
+            buffer.putLong(index + 25, expiryTimes[i]);
+            index += ORDER_SIZE;
+        }
+        return index;
+    }
+
+    /**
+     * Read a snapshot written by {@link #encode(ByteBuffer, int)} at the given index of the buffer
+     */
+    static BookSnapshot decode(ByteBuffer buffer, int index) {
+        BookSnapshot snapshot = new BookSnapshot(buffer.getInt(index), null);
+        int size = buffer.getInt(index + 4);
+        snapshot.grow(Math.max(INITIAL_CAPACITY, size));
+        index += HEADER_SIZE;
+        OrderType[] orderTypes = OrderType.values();
+        for (int i = 0; i < size; i++) {
+            snapshot.ids[i] = buffer.getLong(index);
+            snapshot.types[i] = orderTypes[buffer.get(index + 8)];
+            snapshot.customerIds[i] = buffer.getInt(index + 9);
+            snapshot.prices[i] = buffer.getInt(index + 13);
+            snapshot.quantities[i] = buffer.getInt(index + 17);
+            snapshot.remainingQuantities[i] = buffer.getInt(index + 21);
+            snapshot.expiryTimes[i] = buffer.getLong(index + 25);
+            index += ORDER_SIZE;
+        }
+        snapshot.size = size;
+        return snapshot;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        types = Arrays.copyOf(types, capacity);
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        remainingQuantities = Arrays.copyOf(remainingQuantities, capacity);
+        expiryTimes = Arrays.copyOf(expiryTimes, capacity);
+    }
+}
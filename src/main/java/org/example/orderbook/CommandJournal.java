@@ -0,0 +1,610 @@
+package org.example.orderbook;
+
+import org.example.entities.AbstractOrder;
+import org.example.entities.BuyOrder;
+import org.example.entities.Order;
+import org.example.entities.OrderType;
+import org.example.entities.SellOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal of the commands processed by a partition, replayed to rebuild its books on restart.
+ *
+ * <p>Commands are appended by the event loop right before they are processed, in the order they are
+ * processed, along with the time of the clock of every batch, so replaying them through a
+ * {@link FIFOOrderBook} gives the same orders, with the same ids, handles and expiry times. Books
+ * leaving or joining the partition are journaled with their resting orders, see {@link BookSnapshot}.
+ *
+ * <p>The journal is a sequence of segment files named {@code partition-<id>-<index>.journal}, allocated
+ * in full and memory-mapped when created, so appending a record is a few stores into memory. Every record
+ * is {@code [length][checksum][type][payload]}, little endian. The length is written last, so a record
+ * cut by a crash has a zero length or a wrong checksum, and replay stops at the last complete record.
+ * A length of -1 marks the end of a segment that was full. Records are forced to disk by
+ * {@link #commit()} according to the {@link JournalSyncPolicy}, once per batch of requests.
+ *
+ * <p>A position in the journal is the index of its segment in the upper 32 bits and the offset in the segment
+ * in the lower bits. Once a snapshot of the partition has been taken at a {@link #checkpoint()}, a restart
+ * only replays the journal from that position, and the segments before it are deleted. Without snapshot,
+ * a restart replays every command since the journal was created.
+ *
+ * <p>Not thread-safe, the journal is only used by the event loop of its partition.
+ */
+class CommandJournal implements AutoCloseable {
+    static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * Position of the first record of the journal
+     */
+    static final long START = 0;
+
+    private static final int MAGIC = 0x4a424f31;
+
+    private static final int SEGMENT_HEADER_SIZE = Integer.BYTES;
+
+    /**
+     * Length, checksum and type
+     */
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2 + 1;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final int ZERO_CHUNK_SIZE = 1 << 20;
+
+    private static final byte CLOCK = 1;
+    private static final byte BUY = 2;
+    private static final byte SELL = 3;
+    private static final byte CANCEL = 4;
+    private static final byte EXPORT = 5;
+    private static final byte IMPORT = 6;
+
+    private static final int CLOCK_SIZE = Long.BYTES;
+    private static final int ORDER_SIZE = Integer.BYTES * 4 + Long.BYTES;
+    private static final int CANCEL_SIZE = Long.BYTES + Integer.BYTES * 2 + 1;
+
+    /**
+     * Encoded expiry of the orders that never expire
+     */
+    private static final long NO_EXPIRY = Long.MIN_VALUE;
+
+    private final Path directory;
+
+    private final int partitionId;
+
+    private final JournalSyncPolicy syncPolicy;
+
+    private final long syncIntervalNanos;
+
+    private final int segmentSize;
+
+    private final Pattern segmentName;
+
+    private final CRC32C checksum;
+
+    private MappedByteBuffer segment;
+
+    private int segmentIndex;
+
+    /**
+     * Index of the next record in the current segment
+     */
+    private int position;
+
+    /**
+     * Index up to which the current segment has been forced
+     */
+    private int syncedPosition;
+
+    private long lastSyncNanos;
+
+    /**
+     * Time of the current batch, written before the first command of the batch
+     */
+    private long batchTimeMillis;
+
+    private boolean batchTimePending;
+
+    /**
+     * Receive the records of the journal in the order they were appended
+     */
+    interface Handler {
+        void onClock(long timeMillis);
+
+        void onBuy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds);
+
+        void onSell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds);
+
+        void onCancel(Order order);
+
+        void onExport(long moveId, int targetPartitionId, BookSnapshot snapshot);
+
+        void onImport(long moveId, BookSnapshot snapshot);
+    }
+
+    CommandJournal(Path directory, int partitionId, JournalSyncPolicy syncPolicy, long syncIntervalMillis, int segmentSize) {
+        if (segmentSize < SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + ORDER_SIZE + Integer.BYTES) {
+            throw new IllegalArgumentException("Journal segments are too small: " + segmentSize);
+        }
+
+        this.directory = directory;
+        this.partitionId = partitionId;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.segmentSize = segmentSize;
+        this.segmentName = Pattern.compile("partition-" + partitionId + "-(\\d+)\\.journal");
+        this.checksum = new CRC32C();
+        this.segmentIndex = -1;
+    }
+
+    /**
+     * Pass every complete record of the journal to the handler, then get ready to append after them.
+     * Must be called once, before anything is appended. Whatever follows the last complete record,
+     * such as a record cut by a crash, is erased.
+     */
+    void replay(Handler handler) {
+        replay(START, handler);
+    }
+
+    /**
+     * Like {@link #replay(Handler)}, from the given position, which is the {@link #checkpoint()}
+     * of the snapshot the partition has been loaded from
+     *
+     * @throws IllegalStateException if the segment of the position has been deleted
+     */
+    void replay(long fromPosition, Handler handler) {
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegmentsFrom(fromPosition);
+            for (int i = 0; i < segments.size(); i++) {
+                int index = indexOf(segments.get(i));
+                MappedByteBuffer buffer = map(segments.get(i));
+                int start = i == 0 ? Math.max(offsetOf(fromPosition), SEGMENT_HEADER_SIZE) : SEGMENT_HEADER_SIZE;
+                int end = buffer.getInt(0) == MAGIC ? replaySegment(buffer, start, handler) : SEGMENT_HEADER_SIZE;
+                if (end == END_OF_SEGMENT && i < segments.size() - 1) {
+                    continue;
+                }
+
+                if (end == END_OF_SEGMENT) {
+                    // the last segment is full, the next record goes to a new one
+                    createSegment(index + 1, segmentSize);
+                } else {
+                    // the journal ends in this segment, anything left after the end is garbage
+                    open(buffer, index, end);
+                    for (int j = i + 1; j < segments.size(); j++) {
+                        Files.delete(segments.get(j));
+                    }
+                }
+                return;
+            }
+            createSegment(0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay the journal of partition " + partitionId, e);
+        }
+    }
+
+    /**
+     * Pass every complete record from the given position to the handler, like {@link #replay(long, Handler)},
+     * but leave the journal untouched: nothing is erased and nothing can be appended afterwards.
+     * Used to read the journal recorded by another engine.
+     *
+     * @throws IllegalStateException if the segment of the position has been deleted
+     */
+    void read(long fromPosition, Handler handler) {
+        try {
+            List<Path> segments = listSegmentsFrom(fromPosition);
+            for (int i = 0; i < segments.size(); i++) {
+                MappedByteBuffer buffer = mapReadOnly(segments.get(i));
+                if (buffer.getInt(0) != MAGIC) return;
+
+                int start = i == 0 ? Math.max(offsetOf(fromPosition), SEGMENT_HEADER_SIZE) : SEGMENT_HEADER_SIZE;
+                if (replaySegment(buffer, start, handler) != END_OF_SEGMENT) return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the journal of partition " + partitionId, e);
+        }
+    }
+
+    /**
+     * Position of the first record the journal still holds, {@link #START} unless segments have been
+     * deleted once a snapshot covered them
+     */
+    long firstPosition() {
+        try {
+            List<Path> segments = listSegments();
+            return segments.isEmpty() ? START : (long) indexOf(segments.get(0)) << 32;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list the journal of partition " + partitionId, e);
+        }
+    }
+
+    /**
+     * Return the id of every partition with a journal in the directory, in increasing order
+     */
+    static int[] listPartitions(Path directory) {
+        Pattern name = Pattern.compile("partition-(\\d+)-\\d+\\.journal");
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> name.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToInt(matcher -> Integer.parseInt(matcher.group(1)))
+                    .distinct()
+                    .sorted()
+                    .toArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list the journals of " + directory, e);
+        }
+    }
+
+    /**
+     * Force what has been appended, whatever the policy, and return the position of the next record
+     */
+    long checkpoint() {
+        if (position > syncedPosition) {
+            force();
+        }
+        return position();
+    }
+
+    /**
+     * Position of the next record
+     */
+    long position() {
+        return ((long) segmentIndex << 32) | position;
+    }
+
+    /**
+     * Delete the segments holding only records before the given position, once a snapshot covers them
+     */
+    void deleteSegmentsBefore(long position) {
+        try {
+            for (Path segment : listSegments()) {
+                if (indexOf(segment) < segmentOf(position)) {
+                    Files.delete(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete the journal segments of partition " + partitionId, e);
+        }
+    }
+
+    static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Set the time of the batch being processed, it is journaled with the first command of the batch
+     */
+    void beginBatch(long timeMillis) {
+        batchTimeMillis = timeMillis;
+        batchTimePending = true;
+    }
+
+    /**
+     * Journal the time of the batch right away, for a batch that expired orders before any command
+     */
+    void appendClock() {
+        if (!batchTimePending) return;
+
+        batchTimePending = false;
+        int index = beginRecord(CLOCK, CLOCK_SIZE);
+        segment.putLong(index, batchTimeMillis);
+        endRecord(CLOCK_SIZE);
+    }
+
+    void appendBuy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        appendOrder(BUY, customerId, bookId, price, quantity, expireAfterSeconds);
+    }
+
+    void appendSell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        appendOrder(SELL, customerId, bookId, price, quantity, expireAfterSeconds);
+    }
+
+    /**
+     * Journal the cancel of a copy handed out by the engine, other orders cannot be found in a book
+     * and their cancel changes nothing, so they are not journaled
+     */
+    void appendCancel(Order order) {
+        if (!(order instanceof AbstractOrder)) return;
+
+        int index = beginRecord(CANCEL, CANCEL_SIZE);
+        segment.putLong(index, order.getId());
+        segment.putInt(index + 8, order.getBookId());
+        segment.putInt(index + 12, ((AbstractOrder) order).getStoreHandle());
+        segment.put(index + 16, (byte) order.getType().ordinal());
+        endRecord(CANCEL_SIZE);
+    }
+
+    void appendExport(long moveId, int targetPartitionId, BookSnapshot snapshot) {
+        int size = Long.BYTES + Integer.BYTES + snapshot.encodedSize();
+        int index = beginRecord(EXPORT, size);
+        segment.putLong(index, moveId);
+        segment.putInt(index + 8, targetPartitionId);
+        snapshot.encode(segment, index + 12);
+        endRecord(size);
+    }
+
+    void appendImport(long moveId, BookSnapshot snapshot) {
+        int size = Long.BYTES + snapshot.encodedSize();
+        int index = beginRecord(IMPORT, size);
+        segment.putLong(index, moveId);
+        snapshot.encode(segment, index + 8);
+        endRecord(size);
+    }
+
+    /**
+     * End the batch, and force what has been appended since the last force if the policy asks for it
+     *
+     * @return true if the journal has been forced
+     */
+    boolean commit() {
+        batchTimePending = false;
+        if (syncPolicy == JournalSyncPolicy.NONE || position == syncedPosition) return false;
+
+        long now = System.nanoTime();
+        if (syncPolicy == JournalSyncPolicy.INTERVAL && now - lastSyncNanos < syncIntervalNanos) return false;
+
+        force();
+        lastSyncNanos = now;
+        return true;
+    }
+
+    /**
+     * Force what has been appended, whatever the policy
+     */
+    @Override
+    public void close() {
+        if (segment != null && position > syncedPosition) {
+            force();
+        }
+    }
+
+    private void appendOrder(byte type, int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        int index = beginRecord(type, ORDER_SIZE);
+        segment.putInt(index, customerId);
+        segment.putInt(index + 4, bookId);
+        segment.putInt(index + 8, price);
+        segment.putInt(index + 12, quantity);
+        segment.putLong(index + 16, expireAfterSeconds != null ? expireAfterSeconds : NO_EXPIRY);
+        endRecord(ORDER_SIZE);
+    }
+
+    /**
+     * Make room for a record, write its type and return the index of its payload
+     */
+    private int beginRecord(byte type, int payloadSize) {
+        if (batchTimePending) {
+            appendClock();
+        }
+
+        int recordSize = RECORD_HEADER_SIZE + payloadSize;
+        // keep room for the end of segment marker after the record
+        if (position + recordSize + Integer.BYTES > segment.capacity()) {
+            rollSegment(recordSize);
+        }
+        segment.put(position + Integer.BYTES * 2, type);
+        return position + RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Write the checksum then the length of the record started at the current position
+     */
+    private void endRecord(int payloadSize) {
+        int length = 1 + payloadSize;
+        int start = position + Integer.BYTES * 2;
+        checksum.reset();
+        segment.limit(start + length).position(start);
+        checksum.update(segment);
+        segment.limit(segment.capacity());
+        segment.putInt(position + Integer.BYTES, (int) checksum.getValue());
+        segment.putInt(position, length);
+        position = start + length;
+    }
+
+    private void rollSegment(int recordSize) {
+        segment.putInt(position, END_OF_SEGMENT);
+        position += Integer.BYTES;
+        if (syncPolicy != JournalSyncPolicy.NONE) {
+            force();
+        }
+        // a record bigger than a segment, such as a large book moving in, gets a segment of its own
+        int size = Math.max(segmentSize, SEGMENT_HEADER_SIZE + recordSize + Integer.BYTES);
+        try {
+            createSegment(segmentIndex + 1, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create a journal segment for partition " + partitionId, e);
+        }
+    }
+
+    private void force() {
+        // Java 11 has no ranged force, but only the dirty pages of the mapping are written
+        segment.force();
+        syncedPosition = position;
+    }
+
+    /**
+     * Pass the records of a segment from the given index to the handler, return the index where the journal ends in the segment,
+     * or {@link #END_OF_SEGMENT} if it goes on in the next segment
+     */
+    private int replaySegment(ByteBuffer buffer, int from, Handler handler) {
+        int index = from;
+        while (index + Integer.BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(index);
+            if (length == END_OF_SEGMENT) return END_OF_SEGMENT;
+
+            int start = index + Integer.BYTES * 2;
+            if (length <= 0 || start + length > buffer.capacity()) return index;
+
+            checksum.reset();
+            buffer.limit(start + length).position(start);
+            checksum.update(buffer);
+            buffer.limit(buffer.capacity());
+            if ((int) checksum.getValue() != buffer.getInt(index + Integer.BYTES)) return index;
+
+            replayRecord(buffer, buffer.get(start), start + 1, handler);
+            index = start + length;
+        }
+        return index;
+    }
+
+    private void replayRecord(ByteBuffer buffer, byte type, int index, Handler handler) {
+        switch (type) {
+            case CLOCK:
+                handler.onClock(buffer.getLong(index));
+                break;
+            case BUY:
+            case SELL: {
+                long expiry = buffer.getLong(index + 16);
+                Long expireAfterSeconds = expiry != NO_EXPIRY ? expiry : null;
+                if (type == BUY) {
+                    handler.onBuy(buffer.getInt(index), buffer.getInt(index + 4), buffer.getInt(index + 8),
+                            buffer.getInt(index + 12), expireAfterSeconds);
+                } else {
+                    handler.onSell(buffer.getInt(index), buffer.getInt(index + 4), buffer.getInt(index + 8),
+                            buffer.getInt(index + 12), expireAfterSeconds);
+                }
+                break;
+            }
+            case CANCEL: {
+                // only the id, book and handle are needed to find the order back
+                long id = buffer.getLong(index);
+                int bookId = buffer.getInt(index + 8);
+                int handle = buffer.getInt(index + 12);
+                Order order = buffer.get(index + 16) == OrderType.BUY.ordinal()
+                        ? new BuyOrder(id, 0, bookId, 0, 0, 0, Order.NO_EXPIRY, handle)
+                        : new SellOrder(id, 0, bookId, 0, 0, 0, Order.NO_EXPIRY, handle);
+                handler.onCancel(order);
+                break;
+            }
+            case EXPORT:
+                handler.onExport(buffer.getLong(index), buffer.getInt(index + 8), BookSnapshot.decode(buffer, index + 12));
+                break;
+            case IMPORT:
+                handler.onImport(buffer.getLong(index), BookSnapshot.decode(buffer, index + 8));
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type + " in partition " + partitionId);
+        }
+    }
+
+    /**
+     * Return the segments holding the records from the given position on, the first one being the segment of the position
+     *
+     * @throws IllegalStateException if the segment of the position has been deleted
+     */
+    private List<Path> listSegmentsFrom(long fromPosition) throws IOException {
+        List<Path> segments = listSegments();
+        int fromSegment = segmentOf(fromPosition);
+        segments.removeIf(segment -> indexOf(segment) < fromSegment);
+        if (!segments.isEmpty() ? indexOf(segments.get(0)) != fromSegment : fromPosition != START) {
+            throw new IllegalStateException(
+                    "The journal of partition " + partitionId + " does not contain segment " + fromSegment
+            );
+        }
+        return segments;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> segmentName.matcher(file.getFileName().toString()).matches()).forEach(segments::add);
+        }
+        segments.sort((a, b) -> Integer.compare(indexOf(a), indexOf(b)));
+        return segments;
+    }
+
+    private int indexOf(Path segment) {
+        Matcher matcher = segmentName.matcher(segment.getFileName().toString());
+        if (!matcher.matches()) throw new IllegalArgumentException("Not a journal segment: " + segment);
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("partition-%d-%06d.journal", partitionId, index));
+    }
+
+    /**
+     * Allocate a segment on disk, filled with zeros, so appending never extends the file
+     */
+    private void createSegment(int index, int size) throws IOException {
+        Path path = segmentPath(index);
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        )) {
+            ByteBuffer zeros = ByteBuffer.allocate(Math.min(size, ZERO_CHUNK_SIZE));
+            for (long written = 0; written < size; ) {
+                zeros.clear().limit((int) Math.min(zeros.capacity(), size - written));
+                written += channel.write(zeros, written);
+            }
+            channel.force(true);
+        }
+        MappedByteBuffer buffer = map(path);
+        buffer.putInt(0, MAGIC);
+        // the header is forced by open
+        open(buffer, index, SEGMENT_HEADER_SIZE);
+    }
+
+    /**
+     * Append to the given segment from the given index, erasing whatever is written after it
+     */
+    private void open(MappedByteBuffer buffer, int index, int position) {
+        if (buffer.getInt(0) != MAGIC) {
+            // the process stopped while the segment was being created
+            buffer.putInt(0, MAGIC);
+        }
+        if (!isZero(buffer, position)) {
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        buffer.force();
+        this.segment = buffer;
+        this.segmentIndex = index;
+        this.position = position;
+        this.syncedPosition = position;
+    }
+
+    private static boolean isZero(ByteBuffer buffer, int from) {
+        int i = from;
+        for (; i + Long.BYTES <= buffer.capacity(); i += Long.BYTES) {
+            if (buffer.getLong(i) != 0) return false;
+        }
+        for (; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    private static MappedByteBuffer mapReadOnly(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.example.orderbook;
+
+import org.example.entities.DepthUpdate;
+import org.example.entities.DepthUpdateAction;
+import org.example.entities.OrderType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collect the price levels changed by the books of a {@link FIFOOrderBook} between 2 publications
+ * of the depth, and turn them into conflated {@link DepthUpdate}s.
+ *
+ * <p>Every side of a book has a {@link BookSide}, given to its resting queue. The queue calls
+ * {@link BookSide#change} right before an order joins, trades or leaves a level. The first change of a level
+ * since the last publication records the quantity and order count the level had, and marks the level, so
+ * the next changes cost a comparison. When the depth is published, the state recorded for every changed
+ * price is compared with the level now in the ladder, which gives one update per price at most.
+ *
+ * <p>A level emptied during the batch goes back to the {@link PriceLevelPool}, and its price may get a new
+ * level before the publication, whose first change records an empty state. The update is built from the first
+ * record of the price, and the new level is marked as published so the second record is skipped.
+ *
+ * <p>Not synchronized, the tracker belongs to the thread of its order book.
+ */
+class DepthTracker {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Number of the current publication, levels changed since the last one are marked with it
+     */
+    private long epoch;
+
+    /**
+     * Sides with changed levels since the last publication, in the order of their first change
+     */
+    private final List<BookSide> changedSides;
+
+    /**
+     * Updates of the last publication, reused
+     */
+    private final List<DepthUpdate> updates;
+
+    DepthTracker() {
+        this.epoch = 1;
+        this.changedSides = new ArrayList<>();
+        this.updates = new ArrayList<>();
+    }
+
+    BookSide createSide(int bookId, OrderType side) {
+        return new BookSide(bookId, side);
+    }
+
+    /**
+     * Return the updates of the levels changed since the last publication, grouped by book and side,
+     * and start a new publication. The list is reused by the next publication.
+     */
+    List<DepthUpdate> publish() {
+        updates.clear();
+        for (BookSide side : changedSides) {
+            side.collect(updates);
+        }
+        discard();
+        return updates;
+    }
+
+    /**
+     * Forget the levels changed since the last publication and start a new one
+     */
+    void discard() {
+        for (BookSide side : changedSides) {
+            side.size = 0;
+        }
+        changedSides.clear();
+        epoch += 1;
+    }
+
+    /**
+     * Changed levels of one side of a book
+     */
+    class BookSide {
+        private final int bookId;
+
+        private final OrderType side;
+
+        /**
+         * Levels of the side, set by the resting queue
+         */
+        private PriceLadder<PriceLevel> ladder;
+
+        /**
+         * Price, quantity and order count of every level before its first change, in the order of the first changes
+         */
+        private int[] prices;
+
+        private long[] quantities;
+
+        private int[] orderCounts;
+
+        private int size;
+
+        private BookSide(int bookId, OrderType side) {
+            this.bookId = bookId;
+            this.side = side;
+            this.prices = new int[INITIAL_CAPACITY];
+            this.quantities = new long[INITIAL_CAPACITY];
+            this.orderCounts = new int[INITIAL_CAPACITY];
+        }
+
+        void attach(PriceLadder<PriceLevel> ladder) {
+            this.ladder = ladder;
+        }
+
+        /**
+         * Record the state of a level that is about to change, unless it already changed since the last publication.
+         * A level just created for a new price is empty.
+         */
+        void change(int price, PriceLevel level) {
+            if (level.changedEpoch == epoch) return;
+
+            level.changedEpoch = epoch;
+            if (size == 0) {
+                changedSides.add(this);
+            } else if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+                orderCounts = Arrays.copyOf(orderCounts, size * 2);
+            }
+            prices[size] = price;
+            quantities[size] = level.quantity();
+            orderCounts[size] = level.size();
+            size += 1;
+        }
+
+        private void collect(List<DepthUpdate> updates) {
+            for (int i = 0; i < size; i++) {
+                int price = prices[i];
+                PriceLevel level = ladder.get(price);
+                boolean existed = orderCounts[i] > 0;
+                if (level == null) {
+                    if (existed) {
+                        updates.add(update(price, DepthUpdateAction.REMOVED, 0, 0));
+                    }
+                    continue;
+                }
+                // the price got a new level after its first one was emptied, it is already published
+                if (level.publishedEpoch == epoch) continue;
+
+                level.publishedEpoch = epoch;
+                if (!existed) {
+                    updates.add(update(price, DepthUpdateAction.ADDED, level.quantity(), level.size()));
+                } else if (level.quantity() != quantities[i] || level.size() != orderCounts[i]) {
+                    updates.add(update(price, DepthUpdateAction.CHANGED, level.quantity(), level.size()));
+                }
+            }
+        }
+
+        private DepthUpdate update(int price, DepthUpdateAction action, long quantity, int orderCount) {
+            return DepthUpdate.builder()
+                    .bookId(bookId)
+                    .side(side)
+                    .price(price)
+                    .action(action)
+                    .quantity(quantity)
+                    .orderCount(orderCount)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.orderbook;
+
+/**
+ * How a {@link FIFOOrderBook} hands its events to the dispatchers
+ */
+public enum DispatchMode {
+    /**
+     * Every event is dispatched as soon as it happens
+     */
+    IMMEDIATE,
+
+    /**
+     * Events are buffered and dispatched in batches when
+     * {@link FIFOOrderBook#flush()} is called
+     */
+    BATCH
+}
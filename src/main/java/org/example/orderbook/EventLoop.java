@@ -0,0 +1,137 @@
+package org.example.orderbook;
+
+import org.example.sequencer.WaitStrategy;
+import org.example.utilities.CpuAffinity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread running the event loop of one or more {@link QueueBasedOrderBook} partitions.
+ *
+ * <p>The partitions are processed in turn, one batch each, and the thread only waits once none of
+ * them had anything to process. The rings of the partitions share the wait strategy of the loop, so
+ * a request published to any of them wakes the thread up. Partitions are added before the loop is
+ * started, and closing the loop closes all of them.
+ */
+class EventLoop {
+    private final List<QueueBasedOrderBook> partitions;
+
+    private final WaitStrategy waitStrategy;
+
+    private final Thread thread;
+
+    /**
+     * CPU the thread is pinned to, or -1 if it is not pinned
+     */
+    private final int cpu;
+
+    private volatile boolean running;
+
+    private boolean closed;
+
+    EventLoop(String name, WaitStrategy waitStrategy, boolean daemon, int priority, int cpu) {
+        this.partitions = new ArrayList<>();
+        this.waitStrategy = waitStrategy;
+        this.cpu = cpu;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(daemon);
+        this.thread.setPriority(priority);
+    }
+
+    WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    void add(QueueBasedOrderBook partition) {
+        if (running) throw new IllegalStateException("Partitions must be added before the event loop starts");
+        partitions.add(partition);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stop accepting requests, process the requests that are already claimed, waiting for the ones
+     * still being published, then stop the thread and close the partitions. Return once the partitions
+     * are closed, unless called by the thread of the loop itself, from a listener for instance,
+     * in which case the loop closes them once it drained them.
+     */
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            for (QueueBasedOrderBook partition : partitions) {
+                partition.closeQueue();
+            }
+            running = false;
+            waitStrategy.signal();
+        }
+        // the loop cannot wait for itself to stop
+        if (Thread.currentThread() == thread) return;
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        if (cpu >= 0) {
+            try {
+                CpuAffinity.pinCurrentThread(cpu);
+            } catch (RuntimeException e) {
+                // an unpinned event loop is slower but still correct
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+
+        int idleCount = 0;
+        while (running) {
+            if (processBatches() > 0) {
+                idleCount = 0;
+            } else if (hasExpiringOrders()) {
+                waitStrategy.idle(idleCount++, QueueBasedOrderBook.EXPIRY_CHECK_INTERVAL_NANOS);
+            } else {
+                waitStrategy.idle(idleCount++);
+            }
+        }
+
+        // drain what was claimed before the queues were closed, including the requests still being published
+        idleCount = 0;
+        while (!isDrained()) {
+            if (processBatches() > 0) {
+                idleCount = 0;
+            } else {
+                waitStrategy.idle(idleCount++);
+            }
+        }
+        for (QueueBasedOrderBook partition : partitions) {
+            partition.closeBook();
+        }
+    }
+
+    private int processBatches() {
+        int count = 0;
+        for (int i = 0; i < partitions.size(); i++) {
+            count += partitions.get(i).processBatch();
+        }
+        return count;
+    }
+
+    private boolean isDrained() {
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!partitions.get(i).isDrained()) return false;
+        }
+        return true;
+    }
+
+    private boolean hasExpiringOrders() {
+        for (int i = 0; i < partitions.size(); i++) {
+            if (partitions.get(i).hasExpiringOrders()) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.orderbook;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.example.sequencer.BusySpinWaitStrategy;
+import org.example.sequencer.WaitStrategy;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Settings of the threads running the partitions of a {@link PartitionedOrderBook}.
+ * Every setting has a default, so only the ones that differ need to be given to the builder.
+ *
+ * <p>By default every partition gets its own busy-spinning daemon thread, which gives the lowest
+ * latency but keeps one core per partition busy. On hosts shared with other processes, partitions
+ * can share threads, threads can wait without spinning, and they can be pinned to CPUs kept apart
+ * from the rest of the host.
+ */
+@Builder(toBuilder = true)
+@Getter
+public class EventLoopConfig {
+    /**
+     * Threads are named with this prefix followed by their index
+     */
+    @Builder.Default
+    private final String threadNamePrefix = "order-book-event-loop";
+
+    @Builder.Default
+    private final boolean daemon = true;
+
+    @Builder.Default
+    private final int priority = Thread.NORM_PRIORITY;
+
+    /**
+     * Number of consecutive partitions run by each thread, which process their requests in turn
+     */
+    @Builder.Default
+    private final int partitionsPerThread = 1;
+
+    /**
+     * Create the wait strategy of each thread, shared by the partitions of the thread
+     */
+    @Builder.Default
+    private final Supplier<WaitStrategy> waitStrategyFactory = BusySpinWaitStrategy::new;
+
+    /**
+     * CPU each thread is pinned to, by thread index. Threads past the end of the list are not pinned.
+     * Pinning only works on Linux, see {@link org.example.utilities.CpuAffinity}.
+     */
+    @Builder.Default
+    private final List<Integer> cpus = List.of();
+
+    public static EventLoopConfig defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Return the CPU of the given thread, or -1 if it is not pinned
+     */
+    int cpuOf(int threadIndex) {
+        return threadIndex < cpus.size() ? cpus.get(threadIndex) : -1;
+    }
+}
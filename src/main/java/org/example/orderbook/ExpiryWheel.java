@@ -0,0 +1,301 @@
+package org.example.orderbook;
+
+import org.example.store.OrderStore;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hierarchical timing wheel firing the resting orders of a partition at their expiry time.
+ *
+ * <p>The wheel has {@link #LEVELS} levels of {@link #SLOTS} slots. A slot of level 0 covers one
+ * millisecond, a slot of level {@code n} covers {@code SLOTS^n} milliseconds, so the wheel spans
+ * {@code 2^30} milliseconds, about 12 days. An order is scheduled in the lowest level whose range
+ * covers its expiry time, and moves to a lower level each time the wheel reaches its slot, until
+ * it reaches level 0 and fires. Scheduling and removing an order is O(1). Advancing the wheel
+ * is O(1) per elapsed slot of the lowest level holding orders, plus the orders that fire or move:
+ * while a level and the ones below are empty, the wheel jumps to the next slot of the level above.
+ * Orders expiring beyond the span of the wheel are kept in the last slot of the top level,
+ * and scheduled again when it is reached.
+ *
+ * <p>Like the price levels, slots are 2-way linked lists of order handles. The links are kept
+ * in arrays indexed by the order handle, so the wheel does not allocate per order, and an order
+ * that is filled or cancelled before it expires is unlinked right away. The expiry time is read
+ * from the {@link OrderStore}, so the wheel does not keep a copy of it.
+ *
+ * <p>Not thread-safe, the wheel is advanced by the thread matching the orders of the partition.
+ */
+class ExpiryWheel {
+    static final int SLOT_BITS = 6;
+
+    static final int SLOTS = 1 << SLOT_BITS;
+
+    static final int LEVELS = 5;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final OrderStore store;
+
+    /**
+     * Head of the list of orders of every slot, level by level
+     */
+    private final int[] slotHeads;
+
+    /**
+     * Links and slot of the scheduled orders, indexed by order handle.
+     * The slot of an order that is not scheduled is {@link OrderStore#NULL}.
+     */
+    private int[] prevs;
+
+    private int[] nexts;
+
+    private int[] slots;
+
+    /**
+     * Number of orders in each level
+     */
+    private final int[] levelSizes;
+
+    private int size;
+
+    /**
+     * Next millisecond to process, every order expiring before it has been fired
+     */
+    private long currentTick;
+
+    ExpiryWheel(OrderStore store, long startTimeMillis) {
+        this.store = store;
+        this.slotHeads = new int[LEVELS * SLOTS];
+        Arrays.fill(slotHeads, OrderStore.NULL);
+        this.levelSizes = new int[LEVELS];
+        this.prevs = new int[0];
+        this.nexts = new int[0];
+        this.slots = new int[0];
+        this.currentTick = startTimeMillis;
+    }
+
+    /**
+     * Restart the wheel at the given time, which may be in the past. Only allowed while no order is scheduled.
+     */
+    void restart(long startTimeMillis) {
+        if (size > 0) throw new IllegalStateException("Cannot restart a wheel holding " + size + " orders");
+        currentTick = startTimeMillis;
+    }
+
+    /**
+     * Write the current tick, then the orders of every slot in the order the slot holds them,
+     * so a wheel read back fires them in the same order
+     */
+    void writeTo(SnapshotWriter out) {
+        out.putLong(currentTick);
+        for (int slot = 0; slot < slotHeads.length; slot++) {
+            int order = slotHeads[slot];
+            if (order == OrderStore.NULL) continue;
+
+            out.putInt(slot);
+            for (; order != OrderStore.NULL; order = nexts[order]) {
+                out.putInt(order);
+            }
+            out.putInt(OrderStore.NULL);
+        }
+        out.putInt(-1);
+    }
+
+    /**
+     * Load the slots written by {@link #writeTo} into an empty wheel, the orders must already be in the store
+     */
+    void readFrom(SnapshotReader in) {
+        restart(in.getLong());
+        for (int slot = in.getInt(); slot != -1; slot = in.getInt()) {
+            int tail = OrderStore.NULL;
+            for (int order = in.getInt(); order != OrderStore.NULL; order = in.getInt()) {
+                if (order >= slots.length) {
+                    grow(order + 1);
+                }
+                prevs[order] = tail;
+                nexts[order] = OrderStore.NULL;
+                slots[order] = slot;
+                if (tail == OrderStore.NULL) {
+                    slotHeads[slot] = order;
+                } else {
+                    nexts[tail] = order;
+                }
+                tail = order;
+                levelSizes[slot / SLOTS] += 1;
+                size += 1;
+            }
+        }
+    }
+
+    /**
+     * Number of scheduled orders
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Schedule a resting order to fire at its expiry time. An order that is already expired
+     * fires the next time {@link #advance} moves the wheel to a later millisecond.
+     */
+    void schedule(int order) {
+        if (order >= slots.length) {
+            grow(order + 1);
+        }
+        insert(order, store.getExpiryTimeMillis(order));
+        size += 1;
+    }
+
+    /**
+     * Forget an order that left the book before its expiry time.
+     * Must be called before the order is freed from the store, do nothing if it is not scheduled.
+     */
+    void remove(int order) {
+        if (order < slots.length && slots[order] != OrderStore.NULL) {
+            unlink(order);
+            size -= 1;
+        }
+    }
+
+    /**
+     * Move the wheel up to the given time, and pass every order that expired
+     * to the expiryHandler. The handler must remove the order from the store.
+     */
+    void advance(long nowMillis, IntConsumer expiryHandler) {
+        while (currentTick <= nowMillis) {
+            if (size == 0) {
+                // nothing to cascade or fire, skip the elapsed milliseconds at once
+                currentTick = nowMillis + 1;
+                return;
+            }
+
+            int index = (int) (currentTick & SLOT_MASK);
+            if (index == 0) {
+                cascade();
+            }
+
+            int level = lowestUsedLevel();
+            if (level > 0) {
+                // nothing can fire before the next slot of that level is cascaded
+                int shift = level * SLOT_BITS;
+                currentTick = Math.min(((currentTick >>> shift) + 1) << shift, nowMillis + 1);
+                continue;
+            }
+
+            int order = detach(index);
+            while (order != OrderStore.NULL) {
+                int next = nexts[order];
+                levelSizes[0] -= 1;
+                long expiryTimeMillis = store.getExpiryTimeMillis(order);
+                if (expiryTimeMillis > nowMillis) {
+                    insert(order, expiryTimeMillis);
+                } else {
+                    slots[order] = OrderStore.NULL;
+                    size -= 1;
+                    expiryHandler.accept(order);
+                }
+                order = next;
+            }
+            currentTick += 1;
+        }
+    }
+
+    /**
+     * When level 0 wraps around, move the orders of the slot that is now current
+     * in the level above down the wheel, and so on while the upper levels wrap around too
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int index = (int) ((currentTick >>> (level * SLOT_BITS)) & SLOT_MASK);
+            int order = detach(level * SLOTS + index);
+            while (order != OrderStore.NULL) {
+                int next = nexts[order];
+                levelSizes[level] -= 1;
+                insert(order, store.getExpiryTimeMillis(order));
+                order = next;
+            }
+
+            if (index != 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Lowest level holding orders, the wheel must not be empty
+     */
+    private int lowestUsedLevel() {
+        int level = 0;
+        while (levelSizes[level] == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private void insert(int order, long expiryTimeMillis) {
+        long delay = expiryTimeMillis - currentTick;
+        int level;
+        int slot;
+        if (delay < SLOTS) {
+            // expired orders go to the current slot and fire first
+            level = 0;
+            slot = (int) (Math.max(expiryTimeMillis, currentTick) & SLOT_MASK);
+        } else {
+            long tick = currentTick + Math.min(delay, MAX_DELAY);
+            level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.min(delay, MAX_DELAY))) / SLOT_BITS;
+            slot = level * SLOTS + (int) ((tick >>> (level * SLOT_BITS)) & SLOT_MASK);
+        }
+        levelSizes[level] += 1;
+
+        int head = slotHeads[slot];
+        prevs[order] = OrderStore.NULL;
+        nexts[order] = head;
+        slots[order] = slot;
+        if (head != OrderStore.NULL) {
+            prevs[head] = order;
+        }
+        slotHeads[slot] = order;
+    }
+
+    private void unlink(int order) {
+        levelSizes[slots[order] / SLOTS] -= 1;
+        int prev = prevs[order];
+        int next = nexts[order];
+        if (prev == OrderStore.NULL) {
+            slotHeads[slots[order]] = next;
+        } else {
+            nexts[prev] = next;
+        }
+        if (next != OrderStore.NULL) {
+            prevs[next] = prev;
+        }
+        slots[order] = OrderStore.NULL;
+    }
+
+    /**
+     * Empty a slot and return the head of its list of orders, which stay chained by their next link
+     * until each of them is inserted again or fired
+     */
+    private int detach(int slot) {
+        int head = slotHeads[slot];
+        slotHeads[slot] = OrderStore.NULL;
+        return head;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, Math.max(DEFAULT_CAPACITY, slots.length << 1));
+        int oldCapacity = slots.length;
+        prevs = Arrays.copyOf(prevs, capacity);
+        nexts = Arrays.copyOf(nexts, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+        Arrays.fill(slots, oldCapacity, capacity, OrderStore.NULL);
+    }
+}
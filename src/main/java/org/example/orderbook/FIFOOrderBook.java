@@ -1,93 +1,696 @@
 package org.example.orderbook;
 
+import org.example.clock.EngineClock;
+import org.example.dispatchers.DepthUpdateDispatcher;
 import org.example.dispatchers.MatchingResultDispatcher;
 import org.example.dispatchers.NewRestingOrderEventDispatcher;
 import org.example.dispatchers.OrderCancelledEventDispatcher;
-import org.example.entities.BuyOrder;
+import org.example.dispatchers.OrderExpiredEventDispatcher;
+import org.example.entities.AbstractOrder;
+import org.example.entities.CancelResult;
+import org.example.entities.DepthSnapshot;
 import org.example.entities.MatchingResult;
 import org.example.entities.Order;
-import org.example.entities.SellOrder;
+import org.example.entities.OrderType;
+import org.example.metrics.BookMetrics;
+import org.example.metrics.PartitionMetrics;
+import org.example.metrics.PartitionMetricsSnapshot;
 import org.example.order.OrderFactory;
+import org.example.order.OrderIdSequencer;
+import org.example.store.OrderStore;
+import org.example.store.StorageMode;
+import org.example.utilities.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 /**
  * An OrderBook implementation using price/time priority algorithm
- * It maintains a {@link RestingSellQueue} to store pending sell order
+ * For every book, it maintains a {@link RestingSellQueue} to store pending sell order
  * and a {@link RestingBuyQueue} to store pending buy queue.
+ * Books are kept in a registry keyed by bookId, so orders are only matched
+ * against orders of the same book. The price ladder used by the books
+ * can be chosen with {@link LadderType}, and sized in the {@link OrderBookConfig}.
  *
  * <p>A buy order will first be matched with orders inside the sell queue.
- * If not matching order is found, the buy order will be added to buy queue
- * for future matching. Same for sell orders.
+ * It trades with as many sell orders as needed, across as many price levels as needed,
+ * to fill its quantity. If the buy order cannot be completely filled, its remaining
+ * quantity will be added to buy queue for future matching. Same for sell orders.
+ * Orders of a same customer never trade together, the {@link SelfTradePolicy} decides
+ * which order is kept. Orders cancelled by the policy are dispatched as cancel results,
+ * including incoming orders that never rested.
+ *
+ * <p>Orders are kept in an {@link OrderStore} as primitive records, on or off the heap
+ * depending on the {@link StorageMode}, and get their id from the
+ * {@link OrderIdSequencer} of the partition the order book belongs to. Listeners receive
+ * immutable copies of the orders, built with {@link OrderFactory#buildOrder}, and those copies
+ * can be passed back to {@link #cancel(Order)}.
+ *
+ * <p>Resting orders with an expiry time are scheduled in an {@link ExpiryWheel}, and removed
+ * from their book when {@link #expireOrders()} reaches their expiry time, so matching never
+ * meets an expired order and does not read the clock. Time is read from the {@link EngineClock}
+ * of the {@link OrderBookConfig}. In {@link DispatchMode#IMMEDIATE}, the
+ * order book expires orders itself before every request. In {@link DispatchMode#BATCH}, the
+ * owner of the order book drives it, like it drives {@link #flush()}.
+ *
+ * <p>With {@link DispatchMode#BATCH}, matching results, new resting orders, cancel results and
+ * expired orders are collected into reusable buffers instead of being dispatched one by one, and
+ * each listener receives them in one call per type when {@link #flush()} is called.
+ * Batches are flushed in this order: new resting orders, matching results, cancel results,
+ * expired orders, so a listener always see an order start resting before it is matched,
+ * cancelled or expired.
+ *
+ * <p>Every price level keeps the quantity and the number of its orders. Unless disabled in the
+ * {@link OrderBookConfig}, the levels changed by a batch are published as conflated depth updates once the
+ * batch is flushed, after the other events, or after every request in {@link DispatchMode#IMMEDIATE},
+ * see {@link DepthTracker}. The best levels of a book can be read at any time with {@link #getDepth(int, int)}.
+ *
+ * <p>With a {@link BestBidOfferCache} in the {@link OrderBookConfig}, the best bid and best ask of a book are
+ * published to the cache after every request that changed them, for threads that cannot send requests.
+ *
+ * <p>Unless disabled in the {@link OrderBookConfig}, the order book records {@link PartitionMetrics}
+ * for itself and each of its books.
+ *
+ * <p>A book can move to another order book with {@link #exportBook(int)} and {@link #importBook(BookSnapshot)},
+ * its resting orders keep their ids and time priority. The copies of those orders handed out before
+ * the move can still be cancelled in the order book the book moved to.
  *
  * <p>Note that this implementation is not synchronized. If multiple thread
  * want to access and modifying the orderBook concurrently, it must be
  * synchronized externally
  */
 public class FIFOOrderBook implements OrderBook {
-    private final RestingSellQueue restingSellQueue;
+    /**
+     * Book registry, map from bookId to the resting orders of the book
+     */
+    private final IntObjectHashMap<Book> books;
+
+    /**
+     * Records of the orders of every book
+     */
+    private final OrderStore store;
+
+    private final OrderIdSequencer idSequencer;
+
+    private final EngineClock clock;
+
+    /**
+     * Resting orders waiting for their expiry time
+     */
+    private final ExpiryWheel expiryWheel;
+
+    /**
+     * Remove the orders fired by the expiry wheel
+     */
+    private final IntConsumer expiryHandler;
+
+    /**
+     * Metrics of the order book and its books, null if metrics are disabled
+     */
+    private final PartitionMetrics metrics;
+
+    /**
+     * Create the price ladders of the resting queues of every book,
+     * with the ladder type, tick size and window size of the config
+     */
+    private final Supplier<PriceLadder<PriceLevel>> ladderFactory;
+
+    private final SelfTradePolicy selfTradePolicy;
+
+    /**
+     * Empty price levels shared by the books, reused when a book quotes a new price
+     */
+    private final PriceLevelPool levelPool;
+
+    /**
+     * Levels changed since the depth was last published, null if the depth is not published
+     */
+    private final DepthTracker depthTracker;
 
-    private final RestingBuyQueue restingBuyQueue;
+    /**
+     * Cache the best bid and best ask of every book are published to, null if they are not published
+     */
+    private final BestBidOfferCache bboCache;
+
+    /**
+     * Dispatch the trades and self-trade cancels produced by the resting queues,
+     * and forget the orders leaving the book in the expiry wheel
+     */
+    private final MatchHandler matchHandler;
+
+    private final DispatchMode dispatchMode;
+
+    /**
+     * Buffers of the events waiting for the next flush, only used in {@link DispatchMode#BATCH}
+     */
+    private final List<MatchingResult> matchingResultBuffer;
+
+    private final List<Order> newRestingOrderBuffer;
+
+    private final List<CancelResult> cancelResultBuffer;
+
+    private final List<Order> expiredOrderBuffer;
 
     public FIFOOrderBook() {
-        this.restingBuyQueue = new RestingBuyQueue();
-        this.restingSellQueue = new RestingSellQueue();
+        this(LadderType.TREE);
+    }
+
+    public FIFOOrderBook(LadderType ladderType) {
+        this(ladderType, DispatchMode.IMMEDIATE);
+    }
+
+    public FIFOOrderBook(LadderType ladderType, DispatchMode dispatchMode) {
+        this(OrderBookConfig.builder().ladderType(ladderType).dispatchMode(dispatchMode).build());
+    }
+
+    public FIFOOrderBook(OrderBookConfig config) {
+        this.books = new IntObjectHashMap<>();
+        this.store = config.getStorageMode().create();
+        this.idSequencer = new OrderIdSequencer(config.getPartitionId());
+        this.clock = config.getClock();
+        this.expiryWheel = new ExpiryWheel(store, clock.currentTimeMillis());
+        this.expiryHandler = this::expire;
+        this.metrics = config.isMetricsEnabled() ? new PartitionMetrics(config.getPartitionId()) : null;
+        if (metrics != null && config.getJmxEngineName() != null) {
+            metrics.registerMBean(config.getJmxEngineName());
+        }
+        this.selfTradePolicy = config.getSelfTradePolicy();
+        this.levelPool = new PriceLevelPool(config.getPriceLevelPoolCapacity());
+        LadderType ladderType = config.getLadderType();
+        int tickSize = config.getLadderTickSize();
+        int windowSize = config.getLadderWindowSize();
+        this.ladderFactory = () -> ladderType.create(tickSize, windowSize, levelPool::acquire);
+        this.depthTracker = config.isDepthUpdatesEnabled() ? new DepthTracker() : null;
+        this.bboCache = config.getBestBidOfferCache();
+        this.matchHandler = new MatchHandler() {
+            @Override
+            public void onMatch(int buyOrder, int sellOrder, int quantity, int price) {
+                FIFOOrderBook.this.onMatch(buyOrder, sellOrder, quantity, price);
+            }
+
+            @Override
+            public void onSelfTradeCancel(int restingOrder) {
+                cancelSelfTrade(restingOrder);
+            }
+        };
+        this.dispatchMode = config.getDispatchMode();
+        this.matchingResultBuffer = new ArrayList<>();
+        this.newRestingOrderBuffer = new ArrayList<>();
+        this.cancelResultBuffer = new ArrayList<>();
+        this.expiredOrderBuffer = new ArrayList<>();
     }
 
     @Override
-    public void buy(int customerId, int bookId, int price, Long expireAfterSeconds) {
-        BuyOrder buyOrder = OrderFactory.buildBuyOrder(customerId, bookId, price, expireAfterSeconds);
-
-        // find a matching sell order from pending sell order queue
-        SellOrder sellOrder = restingSellQueue.match(buyOrder);
-        if (sellOrder != null) {
-            // if a matching order is founded, remove the matched order from pending queue
-            // and dispatch the matching result
-            restingSellQueue.remove(sellOrder);
-            dispatchResult(sellOrder, buyOrder);
+    public void buy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        recordRequest();
+        expireOrdersBeforeRequest();
+        int buyOrder = OrderFactory.allocateBuyOrder(
+                store, clock, idSequencer.next(), customerId, bookId, price, quantity, expireAfterSeconds
+        );
+        Book book = getOrCreateBook(bookId);
+        recordBookRequest(book);
+
+        // sweep the pending sell order queue, every trade is dispatched as soon as it happens
+        boolean canRest = book.getRestingSellQueue().match(buyOrder, matchHandler);
+        if (!canRest) {
+            // the self-trade policy cancelled what was left of the buy order
+            dispatchCancelResult(OrderFactory.buildOrder(store, buyOrder), true);
+            store.free(buyOrder);
+        } else if (store.getRemainingQuantity(buyOrder) > 0) {
+            // if the buy request cannot be completely filled by pending sell orders
+            // add the rest of the buy order to buy order queue
+            book.getRestingBuyQueue().add(buyOrder);
+            scheduleExpiry(buyOrder);
+            dispatchNewRestingOrder(buyOrder);
         } else {
-            // if we cannot match the buy request with any pending sell order
-            // add buy order to buy order queue
-            restingBuyQueue.add(buyOrder);
-            NewRestingOrderEventDispatcher.getInstance().dispatch(buyOrder);
+            store.free(buyOrder);
         }
+        book.publishBestBidOffer();
+        publishDepthAfterRequest();
     }
 
     @Override
-    public void sell(int customerId, int bookId, int price, Long expireAfterSeconds) {
-        SellOrder sellOrder = OrderFactory.buildSellOrder(customerId, bookId, price, expireAfterSeconds);
-
-        // find a matching buy order from pending buy order queue
-        BuyOrder buyOrder = restingBuyQueue.match(sellOrder);
-        if (buyOrder != null) {
-            // if a matching order is founded, remove the matched order from pending queue
-            // and dispatch the matching result
-            restingBuyQueue.remove(buyOrder);
-            dispatchResult(sellOrder, buyOrder);
+    public void sell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        recordRequest();
+        expireOrdersBeforeRequest();
+        int sellOrder = OrderFactory.allocateSellOrder(
+                store, clock, idSequencer.next(), customerId, bookId, price, quantity, expireAfterSeconds
+        );
+        Book book = getOrCreateBook(bookId);
+        recordBookRequest(book);
+
+        // sweep the pending buy order queue, every trade is dispatched as soon as it happens
+        boolean canRest = book.getRestingBuyQueue().match(sellOrder, matchHandler);
+        if (!canRest) {
+            // the self-trade policy cancelled what was left of the sell order
+            dispatchCancelResult(OrderFactory.buildOrder(store, sellOrder), true);
+            store.free(sellOrder);
+        } else if (store.getRemainingQuantity(sellOrder) > 0) {
+            // if the sell request cannot be completely filled by pending buy orders
+            // add the rest of the sell order to sell order queue
+            book.getRestingSellQueue().add(sellOrder);
+            scheduleExpiry(sellOrder);
+            dispatchNewRestingOrder(sellOrder);
         } else {
-            // if we cannot match the sell request with any pending buy order
-            // add sell order to sell order queue
-            restingSellQueue.add(sellOrder);
-            NewRestingOrderEventDispatcher.getInstance().dispatch(sellOrder);
+            store.free(sellOrder);
         }
+        book.publishBestBidOffer();
+        publishDepthAfterRequest();
     }
 
     @Override
     public void cancel(Order order) {
+        recordRequest();
+        expireOrdersBeforeRequest();
         // to cancel and order, we just simply remove the order from the corresponding queue
+        // the order is found back from its store handle, and the id check make sure
+        // the handle has not been reused since the order was handed out
         boolean isCancelled = false;
-        if (order instanceof BuyOrder) {
-            isCancelled = restingBuyQueue.remove((BuyOrder) order);
-        } else if (order instanceof SellOrder) {
-            isCancelled = restingSellQueue.remove((SellOrder) order);
+        Book book = books.get(order.getBookId());
+        if (book != null) {
+            recordBookRequest(book);
+        }
+        if (book != null && order instanceof AbstractOrder) {
+            int handle = ((AbstractOrder) order).getStoreHandle();
+            if (!store.contains(handle, order.getId())) {
+                // the copy may have been handed out before the book moved to this order book
+                handle = book.findMovedOrder(store, order.getId());
+            }
+            if (handle != OrderStore.NULL) {
+                expiryWheel.remove(handle);
+                book.removeMovedOrder(order.getId());
+                if (store.getType(handle) == OrderType.BUY) {
+                    book.getRestingBuyQueue().remove(handle);
+                } else {
+                    book.getRestingSellQueue().remove(handle);
+                }
+                isCancelled = true;
+                book.publishBestBidOffer();
+            }
+        }
+
+        dispatchCancelResult(order, isCancelled);
+        publishDepthAfterRequest();
+    }
+
+    /**
+     * Remove the resting orders that expired at the current time of the clock, and dispatch them
+     * as expired orders. Called by the owner of the order book in {@link DispatchMode#BATCH},
+     * and by the order book itself before every request in {@link DispatchMode#IMMEDIATE}.
+     */
+    public void expireOrders() {
+        expiryWheel.advance(clock.currentTimeMillis(), expiryHandler);
+        publishDepthAfterRequest();
+    }
+
+    /**
+     * Whether some resting orders are waiting for their expiry time,
+     * in which case {@link #expireOrders()} must keep being called
+     */
+    public boolean hasExpiringOrders() {
+        return !expiryWheel.isEmpty();
+    }
+
+    /**
+     * Take a book out of this order book: its resting orders are copied into a {@link BookSnapshot}
+     * in time priority, forgotten by the expiry wheel and freed, and its metrics are unregistered.
+     * No event is dispatched, the orders keep resting in the order book that imports the snapshot.
+     * Return an empty snapshot if the book has no order book here.
+     */
+    BookSnapshot exportBook(int bookId) {
+        Book book = books.remove(bookId);
+        BookSnapshot snapshot = new BookSnapshot(bookId, metrics != null ? metrics.removeBookMetrics(bookId) : null);
+        if (book != null) {
+            IntConsumer exporter = order -> {
+                expiryWheel.remove(order);
+                snapshot.add(store, order);
+                store.free(order);
+            };
+            book.getRestingBuyQueue().transferTo(exporter);
+            book.getRestingSellQueue().transferTo(exporter);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Rest the orders of a book exported by another order book, with their ids, remaining
+     * quantities and expiry times. The book must not be known by this order book yet.
+     * Orders that expired in the meantime are expired by the next {@link #expireOrders()}.
+     */
+    void importBook(BookSnapshot snapshot) {
+        int bookId = snapshot.getBookId();
+        if (books.containsKey(bookId)) {
+            throw new IllegalStateException("Book " + bookId + " is already in this order book");
+        }
+
+        BookMetrics bookMetrics = null;
+        if (metrics != null) {
+            bookMetrics = snapshot.getMetrics() != null
+                    ? metrics.adoptBookMetrics(snapshot.getMetrics())
+                    : metrics.createBookMetrics(bookId);
+        }
+        Book book = new Book(
+                bookId, store, ladderFactory, selfTradePolicy, levelPool, bookMetrics, depthTracker, bboCache
+        );
+        books.put(bookId, book);
+        for (int i = 0; i < snapshot.size(); i++) {
+            int order = snapshot.restore(store, i);
+            if (store.getType(order) == OrderType.BUY) {
+                book.getRestingBuyQueue().restore(order);
+            } else {
+                book.getRestingSellQueue().restore(order);
+            }
+            scheduleExpiry(order);
+            book.addMovedOrder(store.getId(order), order);
+        }
+        book.publishBestBidOffer();
+    }
+
+    /**
+     * Write the resting state of the order book: the last order id, the resting orders of every book
+     * with their store handles, the freed handles in the order they will be reused, and the slots of the
+     * expiry wheel. An order book loaded from it with {@link #readSnapshot(SnapshotReader)} hands out the
+     * same ids and handles, and expires the same orders in the same order, for the same requests.
+     * Must be called between 2 batches, while no event is buffered.
+     */
+    void writeSnapshot(SnapshotWriter out) {
+        out.putLong(idSequencer.lastSequence());
+        out.putInt(books.size());
+        books.forEach((bookId, book) -> book.writeTo(out, store));
+
+        int freeCount = 0;
+        for (int order = store.getFreeHead(); order != OrderStore.NULL; order = store.getNext(order)) {
+            freeCount++;
+        }
+        out.putInt(store.getHandleCount());
+        out.putInt(freeCount);
+        for (int order = store.getFreeHead(); order != OrderStore.NULL; order = store.getNext(order)) {
+            out.putInt(order);
         }
 
-        OrderCancelledEventDispatcher.getInstance().dispatch(order, isCancelled);
+        expiryWheel.writeTo(out);
+    }
+
+    /**
+     * Load the state written by {@link #writeSnapshot(SnapshotWriter)} into this order book,
+     * which must not have any book yet. Book metrics start again from zero.
+     */
+    void readSnapshot(SnapshotReader in) {
+        if (!books.isEmpty()) throw new IllegalStateException("Cannot load a snapshot into an order book holding books");
+
+        idSequencer.resume(in.getLong());
+        int bookCount = in.getInt();
+        for (int i = 0; i < bookCount; i++) {
+            getOrCreateBook(in.getInt()).readFrom(in, store);
+        }
+
+        int handleCount = in.getInt();
+        int[] freeHandles = new int[in.getInt()];
+        for (int i = 0; i < freeHandles.length; i++) {
+            freeHandles[i] = in.getInt();
+        }
+        store.restoreFreeHandles(handleCount, freeHandles);
+
+        expiryWheel.readFrom(in);
+        books.forEach((bookId, book) -> book.publishBestBidOffer());
+    }
+
+    /**
+     * Return a copy of every resting order, book by book in time priority
+     */
+    List<Order> copyRestingOrders() {
+        List<Order> orders = new ArrayList<>(store.size());
+        IntConsumer copier = order -> orders.add(OrderFactory.buildOrder(store, order));
+        books.forEach((bookId, book) -> {
+            book.getRestingBuyQueue().forEach(copier);
+            book.getRestingSellQueue().forEach(copier);
+        });
+        return orders;
+    }
+
+    /**
+     * Move the expiry wheel back to the given time, before replaying requests processed from that time on.
+     * Only allowed while no order waits for its expiry time.
+     */
+    void rewindExpiry(long timeMillis) {
+        expiryWheel.restart(timeMillis);
+    }
+
+    /**
+     * Whether some orders expired since the last flush, only known in {@link DispatchMode#BATCH}
+     */
+    boolean hasExpiredOrders() {
+        return !expiredOrderBuffer.isEmpty();
+    }
+
+    /**
+     * Drop the events buffered since the last flush, for requests that are replayed
+     * and whose events have already been dispatched
+     */
+    void discardEvents() {
+        newRestingOrderBuffer.clear();
+        matchingResultBuffer.clear();
+        cancelResultBuffer.clear();
+        expiredOrderBuffer.clear();
+        if (depthTracker != null) {
+            depthTracker.discard();
+        }
+    }
+
+    /**
+     * Pass the events buffered since the last flush to the consumers instead of the dispatchers,
+     * in the order of {@link #flush()}. Used to replay a journal without listeners.
+     */
+    void drainEvents(
+            Consumer<Order> newRestingOrders, Consumer<MatchingResult> matchingResults,
+            Consumer<CancelResult> cancelResults, Consumer<Order> expiredOrders
+    ) {
+        newRestingOrderBuffer.forEach(newRestingOrders);
+        matchingResultBuffer.forEach(matchingResults);
+        cancelResultBuffer.forEach(cancelResults);
+        expiredOrderBuffer.forEach(expiredOrders);
+        discardEvents();
     }
 
-    private void dispatchResult(SellOrder sellOrder, BuyOrder buyOrder) {
+    /**
+     * Return the id of every book known by this order book
+     */
+    int[] getBookIds() {
+        int[] bookIds = new int[books.size()];
+        int[] count = {0};
+        books.forEach((bookId, book) -> bookIds[count[0]++] = bookId);
+        return bookIds;
+    }
+
+    /**
+     * Dispatch the events buffered since the last flush, one batch per event type.
+     * Do nothing in {@link DispatchMode#IMMEDIATE}.
+     */
+    public void flush() {
+        if (!newRestingOrderBuffer.isEmpty()) {
+            NewRestingOrderEventDispatcher.getInstance().dispatchBatch(newRestingOrderBuffer);
+            newRestingOrderBuffer.clear();
+        }
+        if (!matchingResultBuffer.isEmpty()) {
+            MatchingResultDispatcher.getInstance().dispatchBatch(matchingResultBuffer);
+            matchingResultBuffer.clear();
+        }
+        if (!cancelResultBuffer.isEmpty()) {
+            OrderCancelledEventDispatcher.getInstance().dispatchBatch(cancelResultBuffer);
+            cancelResultBuffer.clear();
+        }
+        if (!expiredOrderBuffer.isEmpty()) {
+            OrderExpiredEventDispatcher.getInstance().dispatchBatch(expiredOrderBuffer);
+            expiredOrderBuffer.clear();
+        }
+        publishDepth();
+    }
+
+    /**
+     * Return the given number of best levels of both sides of a book, an empty snapshot if the book is unknown
+     */
+    public DepthSnapshot getDepth(int bookId, int levels) {
+        Book book = books.get(bookId);
+        return DepthSnapshot.builder()
+                .bookId(bookId)
+                .bids(book != null ? book.getRestingBuyQueue().topLevels(levels) : List.of())
+                .asks(book != null ? book.getRestingSellQueue().topLevels(levels) : List.of())
+                .build();
+    }
+
+    /**
+     * Return the depth of the book right away, see {@link #getDepth(int, int)}
+     */
+    @Override
+    public CompletableFuture<DepthSnapshot> requestDepth(int bookId, int levels) {
+        return CompletableFuture.completedFuture(getDepth(bookId, levels));
+    }
+
+    /**
+     * Return the metrics of the order book, null if metrics are disabled.
+     * They are updated by the thread using the order book and can be read by any thread.
+     */
+    public PartitionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public List<PartitionMetricsSnapshot> snapshotMetrics() {
+        return metrics != null ? List.of(metrics.snapshot()) : List.of();
+    }
+
+    /**
+     * Stop exposing the metrics through JMX
+     */
+    @Override
+    public void close() {
+        if (metrics != null) {
+            metrics.unregisterMBean();
+        }
+    }
+
+    private void recordRequest() {
+        if (metrics != null) {
+            metrics.onRequest();
+        }
+    }
+
+    private void recordBookRequest(Book book) {
+        if (book.getMetrics() != null) {
+            book.getMetrics().onRequest();
+        }
+    }
+
+    private void expireOrdersBeforeRequest() {
+        // checking the wheel first saves reading the clock when no order can expire
+        if (dispatchMode == DispatchMode.IMMEDIATE && !expiryWheel.isEmpty()) {
+            expireOrders();
+        }
+    }
+
+    private void scheduleExpiry(int restingOrder) {
+        if (store.getExpiryTimeMillis(restingOrder) != Order.NO_EXPIRY) {
+            expiryWheel.schedule(restingOrder);
+        }
+    }
+
+    /**
+     * Remove an order fired by the expiry wheel from its book
+     */
+    private void expire(int restingOrder) {
+        // the order is copied before being freed by its queue
+        Order order = OrderFactory.buildOrder(store, restingOrder);
+        Book book = books.get(store.getBookId(restingOrder));
+        book.removeMovedOrder(order.getId());
+        if (store.getType(restingOrder) == OrderType.BUY) {
+            book.getRestingBuyQueue().expire(restingOrder);
+        } else {
+            book.getRestingSellQueue().expire(restingOrder);
+        }
+        book.publishBestBidOffer();
+
+        if (dispatchMode == DispatchMode.BATCH) {
+            expiredOrderBuffer.add(order);
+        } else {
+            OrderExpiredEventDispatcher.getInstance().dispatch(order);
+        }
+    }
+
+    private Book getOrCreateBook(int bookId) {
+        Book book = books.get(bookId);
+        if (book == null) {
+            book = new Book(
+                    bookId, store, ladderFactory, selfTradePolicy, levelPool,
+                    metrics != null ? metrics.createBookMetrics(bookId) : null, depthTracker, bboCache
+            );
+            books.put(bookId, book);
+        }
+        return book;
+    }
+
+    /**
+     * Dispatch the updates of the levels changed since the last publication, or forget them if nobody listens
+     */
+    private void publishDepth() {
+        if (depthTracker == null) return;
+
+        if (DepthUpdateDispatcher.getInstance().hasListeners()) {
+            DepthUpdateDispatcher.getInstance().dispatchBatch(depthTracker.publish());
+        } else {
+            depthTracker.discard();
+        }
+    }
+
+    private void publishDepthAfterRequest() {
+        if (dispatchMode == DispatchMode.IMMEDIATE) {
+            publishDepth();
+        }
+    }
+
+    private void onMatch(int buyOrder, int sellOrder, int quantity, int price) {
+        dispatchResult(buyOrder, sellOrder, quantity, price);
+        // a filled resting order is freed by its queue once this returns,
+        // the incoming order is never scheduled so removing it does nothing
+        if (store.getRemainingQuantity(buyOrder) == 0) {
+            expiryWheel.remove(buyOrder);
+            forgetMovedOrder(buyOrder);
+        }
+        if (store.getRemainingQuantity(sellOrder) == 0) {
+            expiryWheel.remove(sellOrder);
+            forgetMovedOrder(sellOrder);
+        }
+    }
+
+    /**
+     * Dispatch a resting order cancelled by the self-trade policy, before its queue frees it
+     */
+    private void cancelSelfTrade(int restingOrder) {
+        expiryWheel.remove(restingOrder);
+        forgetMovedOrder(restingOrder);
+        dispatchCancelResult(OrderFactory.buildOrder(store, restingOrder), true);
+    }
+
+    /**
+     * Forget a resting order that leaves its book, in case it was resting when the book moved in
+     */
+    private void forgetMovedOrder(int restingOrder) {
+        books.get(store.getBookId(restingOrder)).removeMovedOrder(store.getId(restingOrder));
+    }
+
+    private void dispatchResult(int buyOrder, int sellOrder, int quantity, int price) {
         MatchingResult result = MatchingResult.builder()
-                .buyOrder(buyOrder)
-                .sellOrder(sellOrder)
+                .buyOrder(OrderFactory.buildOrder(store, buyOrder))
+                .sellOrder(OrderFactory.buildOrder(store, sellOrder))
+                .quantity(quantity)
+                .price(price)
+                .buyOrderFilled(store.getRemainingQuantity(buyOrder) == 0)
+                .sellOrderFilled(store.getRemainingQuantity(sellOrder) == 0)
                 .build();
-        MatchingResultDispatcher.getInstance().dispatch(result);
+        if (dispatchMode == DispatchMode.BATCH) {
+            matchingResultBuffer.add(result);
+        } else {
+            MatchingResultDispatcher.getInstance().dispatch(result);
+        }
+    }
+
+    private void dispatchCancelResult(Order order, boolean isCancelled) {
+        if (dispatchMode == DispatchMode.BATCH) {
+            cancelResultBuffer.add(CancelResult.builder().order(order).cancelled(isCancelled).build());
+        } else {
+            OrderCancelledEventDispatcher.getInstance().dispatch(order, isCancelled);
+        }
+    }
+
+    private void dispatchNewRestingOrder(int restingOrder) {
+        Order order = OrderFactory.buildOrder(store, restingOrder);
+        if (dispatchMode == DispatchMode.BATCH) {
+            newRestingOrderBuffer.add(order);
+        } else {
+            NewRestingOrderEventDispatcher.getInstance().dispatch(order);
+        }
     }
 }
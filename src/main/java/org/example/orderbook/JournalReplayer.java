@@ -0,0 +1,323 @@
+package org.example.orderbook;
+
+import org.example.clock.ManualClock;
+import org.example.entities.CancelResult;
+import org.example.entities.MatchingResult;
+import org.example.entities.Order;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Replay the journals recorded by a journaled {@link QueueBasedOrderBook} or {@link PartitionedOrderBook}
+ * through the matching logic of {@link FIFOOrderBook}, as fast as it goes, to backtest other settings
+ * or another version of the matching logic against recorded order flow.
+ *
+ * <p>Every partition is replayed synchronously, straight from its journal into its order book: no ring buffer,
+ * no event loop and no listener. The time of every journaled batch is set on a {@link ManualClock} before its
+ * commands, so orders expire at the same point of the flow as when it was recorded, however fast the replay goes.
+ * The journals are only read, so an engine can keep recording into another directory while a copy is replayed.
+ *
+ * <p>Journaled cancels find their order back from the store handle it had when it was recorded. The handles of
+ * a replay with other settings can differ once trades differ, so the replayer keeps the copies of the resting
+ * orders of the replay by id, and cancels them with their own handle. A cancel of an order that is no longer
+ * resting in the replay, because it traded or expired earlier than in the recording, cancels nothing.
+ *
+ * <p>Partitions only share their books through moves, and the journal of an import holds the resting orders of
+ * the moved book, so every partition is replayed on its own. With a {@link ReplayConfig#getParallelism()} above 1,
+ * partitions are replayed at the same time on a fork-join pool. Note that a moved book starts again in its new
+ * partition from the resting orders it had when it was recorded, whatever the replay made of it before the move.
+ *
+ * <p>If older journal segments of a partition have been deleted once covered by a snapshot, the partition is
+ * replayed from its latest snapshot. Record the flow with {@link OrderBookConfig#getSnapshotIntervalMillis()}
+ * set to 0 to keep it all.
+ *
+ * <p>With a {@link ReplayConfig#getFillsDirectory()}, the trades of every partition are written to
+ * {@code partition-<id>.fills.csv}, one line per trade:
+ * {@code timeMillis,bookId,price,quantity,buyOrderId,buyCustomerId,sellOrderId,sellCustomerId}.
+ * The time is the time of the batch of the trade.
+ */
+public class JournalReplayer {
+    private static final String FILLS_HEADER = "timeMillis,bookId,price,quantity,buyOrderId,buyCustomerId,sellOrderId,sellCustomerId";
+
+    private final ReplayConfig config;
+
+    public JournalReplayer(ReplayConfig config) {
+        if (config.getJournalDirectory() == null) throw new IllegalArgumentException("journalDirectory must be set");
+        if (config.getParallelism() <= 0) throw new IllegalArgumentException("parallelism must be positive");
+
+        this.config = config;
+    }
+
+    /**
+     * Replay the journal of every partition found in the journal directory, and return once they are all replayed
+     */
+    public ReplayReport replay() {
+        long start = System.nanoTime();
+        if (config.getFillsDirectory() != null) {
+            try {
+                Files.createDirectories(config.getFillsDirectory());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create the fills directory " + config.getFillsDirectory(), e);
+            }
+        }
+
+        List<PartitionReplay> replays = new ArrayList<>();
+        for (int partitionId : CommandJournal.listPartitions(config.getJournalDirectory())) {
+            replays.add(new PartitionReplay(partitionId));
+        }
+        if (config.getParallelism() > 1 && replays.size() > 1) {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(config.getParallelism(), replays.size()));
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                for (PartitionReplay replay : replays) {
+                    tasks.add(pool.submit(replay));
+                }
+                // rethrow the first failure of a partition
+                tasks.forEach(ForkJoinTask::join);
+            } finally {
+                pool.shutdownNow();
+            }
+        } else {
+            replays.forEach(PartitionReplay::run);
+        }
+
+        long commands = 0;
+        long rejectedCommands = 0;
+        long fills = 0;
+        for (PartitionReplay replay : replays) {
+            commands += replay.commands;
+            rejectedCommands += replay.rejectedCommands;
+            fills += replay.fills;
+        }
+        return ReplayReport.builder()
+                .partitions(replays.size())
+                .commands(commands)
+                .rejectedCommands(rejectedCommands)
+                .fills(fills)
+                .elapsedNanos(System.nanoTime() - start)
+                .build();
+    }
+
+    /**
+     * Replay of the journal of one partition into its own order book, run by a single thread
+     */
+    private class PartitionReplay implements CommandJournal.Handler, Runnable {
+        private final int partitionId;
+
+        private final ManualClock clock;
+
+        private final FIFOOrderBook orderBook;
+
+        private final CommandJournal journal;
+
+        /**
+         * Line of a fill, reused for every fill
+         */
+        private final StringBuilder line;
+
+        /**
+         * Copy of every resting order of the replay by id, to cancel them with their handle in the replay
+         */
+        private final Map<Long, Order> restingOrders;
+
+        private final Consumer<Order> onNewRestingOrder;
+
+        private final Consumer<MatchingResult> onMatchingResult;
+
+        private final Consumer<CancelResult> onCancelResult;
+
+        private final Consumer<Order> onExpiredOrder;
+
+        /**
+         * Fills of the partition, null if they are not written
+         */
+        private Writer fillsWriter;
+
+        /**
+         * Whether the expiry wheel has been moved to the time of the journal
+         */
+        private boolean started;
+
+        private long commands;
+
+        private long rejectedCommands;
+
+        private long fills;
+
+        private PartitionReplay(int partitionId) {
+            this.partitionId = partitionId;
+            this.clock = new ManualClock(0);
+            this.orderBook = new FIFOOrderBook(config.getOrderBookConfig().toBuilder()
+                    .partitionId(partitionId)
+                    .clock(clock)
+                    .dispatchMode(DispatchMode.BATCH)
+                    .depthUpdatesEnabled(false)
+                    .bestBidOfferCache(null)
+                    .jmxEngineName(null)
+                    .journalDirectory(null)
+                    .build());
+            this.journal = new CommandJournal(
+                    config.getJournalDirectory(), partitionId, JournalSyncPolicy.NONE, 0, CommandJournal.DEFAULT_SEGMENT_SIZE
+            );
+            this.line = new StringBuilder();
+            this.restingOrders = new HashMap<>();
+            this.onNewRestingOrder = order -> restingOrders.put(order.getId(), order);
+            this.onMatchingResult = this::onFill;
+            this.onCancelResult = result -> {
+                if (result.isCancelled()) {
+                    restingOrders.remove(result.getOrder().getId());
+                }
+            };
+            this.onExpiredOrder = order -> restingOrders.remove(order.getId());
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (config.getFillsDirectory() != null) {
+                    fillsWriter = Files.newBufferedWriter(
+                            config.getFillsDirectory().resolve("partition-" + partitionId + ".fills.csv")
+                    );
+                    fillsWriter.append(FILLS_HEADER).append('\n');
+                }
+                long fromPosition = journal.firstPosition() != CommandJournal.START ? loadSnapshot() : CommandJournal.START;
+                journal.read(fromPosition, this);
+                if (fillsWriter != null) {
+                    fillsWriter.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write the fills of partition " + partitionId, e);
+            } finally {
+                orderBook.close();
+            }
+        }
+
+        /**
+         * Load the latest snapshot of the partition and return the journal position to replay from
+         */
+        private long loadSnapshot() {
+            try (SnapshotReader in = SnapshotReader.openLatest(config.getJournalDirectory(), partitionId)) {
+                if (in == null) {
+                    throw new IllegalStateException(
+                            "The journal of partition " + partitionId + " has been compacted but has no snapshot"
+                    );
+                }
+                clock.set(in.getLong());
+                // moves are only needed to finish the ones cut by a restart, every partition replays its own imports
+                int moveCount = in.getInt();
+                for (int i = 0; i < moveCount; i++) {
+                    in.getInt();
+                    JournaledMove.readFrom(in);
+                }
+                orderBook.readSnapshot(in);
+                in.verify();
+                for (Order order : orderBook.copyRestingOrders()) {
+                    restingOrders.put(order.getId(), order);
+                }
+                started = true;
+                return in.getJournalPosition();
+            }
+        }
+
+        @Override
+        public void onClock(long timeMillis) {
+            if (!started) {
+                // the wheel starts at the time of the clock, orders expire from the time of the journal
+                orderBook.rewindExpiry(timeMillis);
+                started = true;
+            }
+            clock.set(timeMillis);
+            orderBook.expireOrders();
+            drainEvents();
+        }
+
+        @Override
+        public void onBuy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+            commands++;
+            try {
+                orderBook.buy(customerId, bookId, price, quantity, expireAfterSeconds);
+            } catch (RuntimeException e) {
+                rejectedCommands++;
+            }
+            drainEvents();
+        }
+
+        @Override
+        public void onSell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+            commands++;
+            try {
+                orderBook.sell(customerId, bookId, price, quantity, expireAfterSeconds);
+            } catch (RuntimeException e) {
+                rejectedCommands++;
+            }
+            drainEvents();
+        }
+
+        @Override
+        public void onCancel(Order order) {
+            commands++;
+            try {
+                Order restingOrder = restingOrders.get(order.getId());
+                orderBook.cancel(restingOrder != null ? restingOrder : order);
+            } catch (RuntimeException e) {
+                rejectedCommands++;
+            }
+            drainEvents();
+        }
+
+        @Override
+        public void onExport(long moveId, int targetPartitionId, BookSnapshot snapshot) {
+            int bookId = snapshot.getBookId();
+            orderBook.exportBook(bookId);
+            restingOrders.values().removeIf(order -> order.getBookId() == bookId);
+        }
+
+        @Override
+        public void onImport(long moveId, BookSnapshot snapshot) {
+            // the orders moved in are found back by id when cancelled, like any moved order
+            orderBook.importBook(snapshot);
+        }
+
+        private void drainEvents() {
+            orderBook.drainEvents(onNewRestingOrder, onMatchingResult, onCancelResult, onExpiredOrder);
+        }
+
+        private void onFill(MatchingResult result) {
+            fills++;
+            if (result.isBuyOrderFilled()) {
+                restingOrders.remove(result.getBuyOrder().getId());
+            }
+            if (result.isSellOrderFilled()) {
+                restingOrders.remove(result.getSellOrder().getId());
+            }
+            if (fillsWriter == null) return;
+
+            Order buyOrder = result.getBuyOrder();
+            Order sellOrder = result.getSellOrder();
+            line.setLength(0);
+            line.append(clock.currentTimeMillis()).append(',')
+                    .append(buyOrder.getBookId()).append(',')
+                    .append(result.getPrice()).append(',')
+                    .append(result.getQuantity()).append(',')
+                    .append(buyOrder.getId()).append(',')
+                    .append(buyOrder.getCustomerId()).append(',')
+                    .append(sellOrder.getId()).append(',')
+                    .append(sellOrder.getCustomerId()).append('\n');
+            try {
+                fillsWriter.append(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write the fills of partition " + partitionId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.orderbook;
+
+/**
+ * When the journal of a partition is forced to disk, see {@link OrderBookConfig#getJournalDirectory()}.
+ * Journaled commands are written to a memory-mapped file, so they survive a crash of the process
+ * as soon as they are written. Forcing them to disk is what makes them survive a crash of the host.
+ */
+public enum JournalSyncPolicy {
+    /**
+     * Never force, the operating system writes the journal back on its own
+     */
+    NONE,
+
+    /**
+     * Force after every batch of requests, before its events are dispatched, so the commands of a batch
+     * are committed together and every event seen by listeners comes from a durable command
+     */
+    BATCH,
+
+    /**
+     * Force after a batch of requests only if the previous force is older than
+     * {@link OrderBookConfig#getJournalSyncIntervalMillis()}, which bounds both the cost of forcing
+     * and the commands lost by a crash of the host
+     */
+    INTERVAL
+}
@@ -0,0 +1,68 @@
+package org.example.orderbook;
+
+/**
+ * Last move of a book in or out of a partition, as journaled. A book exported by a partition but
+ * never imported by the target, because the engine stopped in the middle of the move, is imported
+ * from the snapshot of the export when the {@link PartitionedOrderBook} recovers. The moves are
+ * written to the snapshots of the partition, since the journal of the move may have been deleted.
+ */
+class JournaledMove {
+    /**
+     * Moves are numbered by the {@link PartitionedOrderBook}, the highest one is the latest
+     */
+    private final long moveId;
+
+    private final boolean exported;
+
+    private final int targetPartitionId;
+
+    /**
+     * Resting orders of the book when it was exported, null for an import,
+     * or once the target partition has taken the book over
+     */
+    private final BookSnapshot snapshot;
+
+    JournaledMove(long moveId, boolean exported, int targetPartitionId, BookSnapshot snapshot) {
+        this.moveId = moveId;
+        this.exported = exported;
+        this.targetPartitionId = targetPartitionId;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Read a move written by {@link #writeTo(SnapshotWriter)}
+     */
+    static JournaledMove readFrom(SnapshotReader in) {
+        long moveId = in.getLong();
+        boolean exported = in.getByte() == 1;
+        int targetPartitionId = in.getInt();
+        BookSnapshot snapshot = in.getByte() == 1 ? in.getBookSnapshot() : null;
+        return new JournaledMove(moveId, exported, targetPartitionId, snapshot);
+    }
+
+    void writeTo(SnapshotWriter out) {
+        out.putLong(moveId);
+        out.putByte((byte) (exported ? 1 : 0));
+        out.putInt(targetPartitionId);
+        out.putByte((byte) (snapshot != null ? 1 : 0));
+        if (snapshot != null) {
+            out.putBookSnapshot(snapshot);
+        }
+    }
+
+    long getMoveId() {
+        return moveId;
+    }
+
+    boolean isExported() {
+        return exported;
+    }
+
+    int getTargetPartitionId() {
+        return targetPartitionId;
+    }
+
+    BookSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
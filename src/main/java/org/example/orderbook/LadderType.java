@@ -0,0 +1,40 @@
+package org.example.orderbook;
+
+import java.util.function.Supplier;
+
+/**
+ * Type of {@link PriceLadder} used by a {@link FIFOOrderBook} to store price levels.
+ * The tick size and the window size only apply to {@link #ARRAY}.
+ */
+public enum LadderType {
+    /**
+     * Price levels are stored in a {@link TreePriceLadder}.
+     * Suitable for any price distribution.
+     */
+    TREE {
+        @Override
+        public <L> PriceLadder<L> create(int tickSize, int windowSize, Supplier<L> levelFactory) {
+            return new TreePriceLadder<>(levelFactory);
+        }
+    },
+
+    /**
+     * Price levels are stored in an {@link ArrayPriceLadder}.
+     * Suitable for books whose prices are concentrated around the best price.
+     */
+    ARRAY {
+        @Override
+        public <L> PriceLadder<L> create(int tickSize, int windowSize, Supplier<L> levelFactory) {
+            return new ArrayPriceLadder<>(tickSize, windowSize, levelFactory);
+        }
+    };
+
+    /**
+     * Create a ladder with the default tick size and window size of {@link ArrayPriceLadder}
+     */
+    public <L> PriceLadder<L> create(Supplier<L> levelFactory) {
+        return create(ArrayPriceLadder.DEFAULT_TICK_SIZE, ArrayPriceLadder.DEFAULT_WINDOW_SIZE, levelFactory);
+    }
+
+    public abstract <L> PriceLadder<L> create(int tickSize, int windowSize, Supplier<L> levelFactory);
+}
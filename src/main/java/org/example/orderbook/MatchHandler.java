@@ -0,0 +1,18 @@
+package org.example.orderbook;
+
+/**
+ * Receive the trades produced while a resting queue is matching an incoming order.
+ * Orders are handles into the {@link org.example.store.OrderStore} of the partition,
+ * they are only valid during the call: a filled resting order is freed right after.
+ */
+@FunctionalInterface
+public interface MatchHandler {
+    void onMatch(int buyOrder, int sellOrder, int quantity, int price);
+
+    /**
+     * Receive a resting order cancelled by {@link SelfTradePolicy#CANCEL_RESTING},
+     * the order is freed right after
+     */
+    default void onSelfTradeCancel(int restingOrder) {
+    }
+}
@@ -0,0 +1,199 @@
+package org.example.orderbook;
+
+import org.example.entities.Order;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of buy, sell and cancel commands submitted together with {@link OrderBook#submit(OrderBatch)}.
+ *
+ * <p>Commands are kept in parallel arrays that grow as needed and are reused after {@link #clear()},
+ * so a gateway can fill the same batch for every network batch it receives without allocating.
+ * Submitting a batch records an acknowledgement for every command: the partition it was queued to,
+ * and its sequence in the requests of that partition. Commands of a partition are processed in
+ * sequence order, so the commands of a book are processed in the order they were added.
+ *
+ * <p>This class is not synchronized, a batch must only be used by one thread at a time.
+ */
+public class OrderBatch {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    public enum CommandType {
+        BUY, SELL, CANCEL
+    }
+
+    private CommandType[] types;
+
+    private int[] customerIds;
+
+    private int[] bookIds;
+
+    private int[] prices;
+
+    private int[] quantities;
+
+    private Long[] expireAfterSeconds;
+
+    private Order[] orders;
+
+    /**
+     * Partition each command has been queued to, set when the batch is submitted
+     */
+    private int[] partitionIds;
+
+    /**
+     * Sequence of each command in the requests of its partition, set when the batch is submitted
+     */
+    private long[] sequences;
+
+    /**
+     * Indexes of the commands grouped by partition, used by {@link PartitionedOrderBook} while routing
+     */
+    private int[] routingOrder;
+
+    private int size;
+
+    public OrderBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public OrderBatch(int capacity) {
+        int initialCapacity = Math.max(1, capacity);
+        this.types = new CommandType[initialCapacity];
+        this.customerIds = new int[initialCapacity];
+        this.bookIds = new int[initialCapacity];
+        this.prices = new int[initialCapacity];
+        this.quantities = new int[initialCapacity];
+        this.expireAfterSeconds = new Long[initialCapacity];
+        this.orders = new Order[initialCapacity];
+        this.partitionIds = new int[initialCapacity];
+        this.sequences = new long[initialCapacity];
+        this.routingOrder = new int[initialCapacity];
+    }
+
+    /**
+     * Add a buy order for a single unit
+     */
+    public void buy(int customerId, int bookId, int price, Long expireAfterSeconds) {
+        buy(customerId, bookId, price, 1, expireAfterSeconds);
+    }
+
+    /**
+     * Add a sell order for a single unit
+     */
+    public void sell(int customerId, int bookId, int price, Long expireAfterSeconds) {
+        sell(customerId, bookId, price, 1, expireAfterSeconds);
+    }
+
+    public void buy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        add(CommandType.BUY, customerId, bookId, price, quantity, expireAfterSeconds, null);
+    }
+
+    public void sell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        add(CommandType.SELL, customerId, bookId, price, quantity, expireAfterSeconds, null);
+    }
+
+    public void cancel(Order order) {
+        add(CommandType.CANCEL, 0, order.getBookId(), 0, 0, null, order);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove every command, keeping the arrays for the next batch
+     */
+    public void clear() {
+        // do not keep orders reachable from the batch
+        Arrays.fill(expireAfterSeconds, 0, size, null);
+        Arrays.fill(orders, 0, size, null);
+        size = 0;
+    }
+
+    public CommandType getType(int i) {
+        return types[i];
+    }
+
+    public int getCustomerId(int i) {
+        return customerIds[i];
+    }
+
+    public int getBookId(int i) {
+        return bookIds[i];
+    }
+
+    public int getPrice(int i) {
+        return prices[i];
+    }
+
+    public int getQuantity(int i) {
+        return quantities[i];
+    }
+
+    public Long getExpireAfterSeconds(int i) {
+        return expireAfterSeconds[i];
+    }
+
+    /**
+     * Return the order of a cancel command, null for other commands
+     */
+    public Order getOrder(int i) {
+        return orders[i];
+    }
+
+    /**
+     * Return the partition the command has been queued to,
+     * or -1 if the command has been processed synchronously by the call to submit
+     */
+    public int getPartitionId(int i) {
+        return partitionIds[i];
+    }
+
+    /**
+     * Return the sequence of the command in the requests of its partition,
+     * or -1 if the command has been processed synchronously by the call to submit
+     */
+    public long getSequence(int i) {
+        return sequences[i];
+    }
+
+    void acknowledge(int i, int partitionId, long sequence) {
+        partitionIds[i] = partitionId;
+        sequences[i] = sequence;
+    }
+
+    int[] getRoutingOrder() {
+        return routingOrder;
+    }
+
+    private void add(
+            CommandType type, int customerId, int bookId, int price, int quantity,
+            Long expireAfterSeconds, Order order
+    ) {
+        if (size == types.length) {
+            grow(size * 2);
+        }
+        this.types[size] = type;
+        this.customerIds[size] = customerId;
+        this.bookIds[size] = bookId;
+        this.prices[size] = price;
+        this.quantities[size] = quantity;
+        this.expireAfterSeconds[size] = expireAfterSeconds;
+        this.orders[size] = order;
+        size += 1;
+    }
+
+    private void grow(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        expireAfterSeconds = Arrays.copyOf(expireAfterSeconds, capacity);
+        orders = Arrays.copyOf(orders, capacity);
+        partitionIds = Arrays.copyOf(partitionIds, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        routingOrder = Arrays.copyOf(routingOrder, capacity);
+    }
+}
@@ -1,14 +1,87 @@
 package org.example.orderbook;
 
+import org.example.entities.DepthSnapshot;
 import org.example.entities.Order;
+import org.example.metrics.PartitionMetricsSnapshot;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This interface provide functionality for buy, sell books, cancel pending orders
  */
-public interface OrderBook {
-    void buy(int customerId, int bookId, int price, Long expireAfterSeconds);
+public interface OrderBook extends AutoCloseable {
+    /**
+     * Place a buy order for a single unit
+     */
+    default void buy(int customerId, int bookId, int price, Long expireAfterSeconds) {
+        buy(customerId, bookId, price, 1, expireAfterSeconds);
+    }
+
+    /**
+     * Place a sell order for a single unit
+     */
+    default void sell(int customerId, int bookId, int price, Long expireAfterSeconds) {
+        sell(customerId, bookId, price, 1, expireAfterSeconds);
+    }
 
-    void sell(int customerId, int bookId, int price, Long expireAfterSeconds);
+    void buy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds);
+
+    void sell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds);
 
     void cancel(Order order);
+
+    /**
+     * Place every command of the batch, in order, and record their acknowledgements in the batch.
+     * Implementations that queue requests for other threads enqueue the commands of a partition together.
+     */
+    default void submit(OrderBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            switch (batch.getType(i)) {
+                case BUY:
+                    buy(batch.getCustomerId(i), batch.getBookId(i), batch.getPrice(i), batch.getQuantity(i),
+                            batch.getExpireAfterSeconds(i));
+                    break;
+                case SELL:
+                    sell(batch.getCustomerId(i), batch.getBookId(i), batch.getPrice(i), batch.getQuantity(i),
+                            batch.getExpireAfterSeconds(i));
+                    break;
+                case CANCEL:
+                    cancel(batch.getOrder(i));
+                    break;
+            }
+            batch.acknowledge(i, -1, -1);
+        }
+    }
+
+    /**
+     * Read the given number of best price levels of both sides of a book. Implementations matching on other threads
+     * read them in order with the requests of the book, so the depth updates published after the ones of the
+     * request that came before bring the snapshot up to date.
+     */
+    CompletableFuture<DepthSnapshot> requestDepth(int bookId, int levels);
+
+    /**
+     * Return copies of the resting orders the order book recovered when it started, such as the orders
+     * rebuilt from a journal. The copies are handed over to the first caller, later calls return an empty list.
+     */
+    default List<Order> takeRecoveredOrders() {
+        return List.of();
+    }
+
+    /**
+     * Return a snapshot of the metrics of every partition of the order book,
+     * or an empty list if metrics are disabled
+     */
+    default List<PartitionMetricsSnapshot> snapshotMetrics() {
+        return List.of();
+    }
+
+    /**
+     * Release the resources held by the order book, such as event loop threads.
+     * Requests must not be submitted after the order book is closed.
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -0,0 +1,130 @@
+package org.example.orderbook;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.example.clock.EngineClock;
+import org.example.clock.SystemClock;
+import org.example.order.OrderIdSequencer;
+import org.example.store.StorageMode;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of a {@link FIFOOrderBook}.
+ * Every setting has a default, so only the ones that differ need to be given to the builder.
+ */
+@Builder(toBuilder = true)
+@Getter
+public class OrderBookConfig {
+    /**
+     * Type of price ladder used by the resting queues of every book
+     */
+    @Builder.Default
+    private final LadderType ladderType = LadderType.TREE;
+
+    /**
+     * Price increment of the books, only used by {@link LadderType#ARRAY}
+     */
+    @Builder.Default
+    private final int ladderTickSize = ArrayPriceLadder.DEFAULT_TICK_SIZE;
+
+    /**
+     * Number of ticks of the dense window of every ladder, centred on the first price of the ladder,
+     * only used by {@link LadderType#ARRAY}
+     */
+    @Builder.Default
+    private final int ladderWindowSize = ArrayPriceLadder.DEFAULT_WINDOW_SIZE;
+
+    @Builder.Default
+    private final DispatchMode dispatchMode = DispatchMode.IMMEDIATE;
+
+    /**
+     * What happens when an incoming order meets resting orders of its own customer
+     */
+    @Builder.Default
+    private final SelfTradePolicy selfTradePolicy = SelfTradePolicy.SKIP;
+
+    /**
+     * Maximum number of empty price levels kept for reuse, see {@link PriceLevelPool}
+     */
+    @Builder.Default
+    private final int priceLevelPoolCapacity = PriceLevelPool.DEFAULT_CAPACITY;
+
+    /**
+     * Where the order records are kept
+     */
+    @Builder.Default
+    private final StorageMode storageMode = StorageMode.HEAP;
+
+    /**
+     * Partition the order ids are assigned for, see {@link OrderIdSequencer}
+     */
+    @Builder.Default
+    private final int partitionId = 0;
+
+    /**
+     * Whether partition and book metrics are recorded
+     */
+    @Builder.Default
+    private final boolean metricsEnabled = true;
+
+    /**
+     * Whether the changes of the price levels of every book are published as depth updates, see
+     * {@link org.example.dispatchers.DepthUpdateDispatcher}. The updates are only built while some listener is registered.
+     */
+    @Builder.Default
+    private final boolean depthUpdatesEnabled = true;
+
+    /**
+     * Cache the best bid and best ask of every book are published to, shared by the partitions of a
+     * {@link PartitionedOrderBook}. They are not published when null.
+     */
+    @Builder.Default
+    private final BestBidOfferCache bestBidOfferCache = null;
+
+    /**
+     * Name the partition metrics are exposed under as JMX MBeans, not exposed when null
+     */
+    @Builder.Default
+    private final String jmxEngineName = null;
+
+    /**
+     * Time source of order expiry. A {@link QueueBasedOrderBook} reads it once per batch.
+     */
+    @Builder.Default
+    private final EngineClock clock = SystemClock.getInstance();
+
+    /**
+     * Directory of the command journal of every partition, no journal is written when null.
+     * Only used by {@link QueueBasedOrderBook}, which replays the journal found there when it starts.
+     */
+    @Builder.Default
+    private final Path journalDirectory = null;
+
+    @Builder.Default
+    private final JournalSyncPolicy journalSyncPolicy = JournalSyncPolicy.BATCH;
+
+    /**
+     * Longest time between 2 forces of the journal with {@link JournalSyncPolicy#INTERVAL}
+     */
+    @Builder.Default
+    private final long journalSyncIntervalMillis = 10;
+
+    /**
+     * Size of the journal files, which are allocated in full when created
+     */
+    @Builder.Default
+    private final int journalSegmentSize = CommandJournal.DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Time between 2 snapshots of the resting orders of a partition, written next to its journal,
+     * 0 to only take the snapshots requested by {@link QueueBasedOrderBook#snapshot()}.
+     * A restart loads the latest snapshot and only replays the commands journaled after it.
+     */
+    @Builder.Default
+    private final long snapshotIntervalMillis = 60_000;
+
+    public static OrderBookConfig defaults() {
+        return builder().build();
+    }
+}
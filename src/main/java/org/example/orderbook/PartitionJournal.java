@@ -0,0 +1,347 @@
+package org.example.orderbook;
+
+import org.example.clock.CachedClock;
+import org.example.entities.Order;
+import org.example.utilities.IntObjectHashMap;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Durability of a {@link QueueBasedOrderBook} partition: the {@link CommandJournal} of its commands and moves,
+ * the snapshots of its resting orders, and the recovery of its books from both on restart.
+ *
+ * <p>The event loop of the partition appends every command before processing it and commits the journal
+ * after every batch, before the events of the batch are dispatched. Events are not dispatched again by the
+ * recovery, and requests still waiting in the ring when the process stopped are lost.
+ *
+ * <p>So that a restart does not replay every command since the journal was created, a snapshot of the resting
+ * orders is written between 2 batches, every {@link OrderBookConfig#getSnapshotIntervalMillis()} or when asked
+ * by {@link QueueBasedOrderBook#snapshot()}, then the journal segments it covers are deleted. Matching stops
+ * while the snapshot is written, which takes about a second per 10M resting orders. A restart loads the orders
+ * of the latest snapshot straight into their books and only replays the commands journaled after it.
+ *
+ * <p>Not thread-safe, only used by the event loop of the partition once it started.
+ */
+class PartitionJournal implements AutoCloseable {
+    private final CommandJournal journal;
+
+    /**
+     * Order book of the partition, rebuilt by the recovery and written to the snapshots
+     */
+    private final FIFOOrderBook orderBook;
+
+    /**
+     * Clock of the order book, set to the time of every replayed batch
+     */
+    private final CachedClock clock;
+
+    private final int partitionId;
+
+    /**
+     * Map from the id of the books moved in or out of the partition to their last move, recovered on restart
+     * then kept up to date by the event loop, to be written to the snapshots
+     */
+    private final IntObjectHashMap<JournaledMove> journaledMoves;
+
+    /**
+     * Handoffs of the books exported since the last snapshot, whose orders are kept in
+     * {@link #journaledMoves} until the target partition has taken them over
+     */
+    private final List<BookHandoff> pendingExports;
+
+    private final Path journalDirectory;
+
+    private final long snapshotIntervalMillis;
+
+    /**
+     * Time of the batch that took or skipped the last snapshot
+     */
+    private long lastSnapshotMillis;
+
+    /**
+     * Journal position of the last snapshot, -1 if the partition has no snapshot yet
+     */
+    private long lastSnapshotPosition;
+
+    private boolean snapshotRequested;
+
+    /**
+     * Open the journal of the partition in the journal directory of the config, which must be set
+     */
+    PartitionJournal(OrderBookConfig config, FIFOOrderBook orderBook, CachedClock clock) {
+        this.journalDirectory = config.getJournalDirectory();
+        this.partitionId = config.getPartitionId();
+        this.journal = new CommandJournal(
+                journalDirectory, partitionId, config.getJournalSyncPolicy(),
+                config.getJournalSyncIntervalMillis(), config.getJournalSegmentSize()
+        );
+        this.orderBook = orderBook;
+        this.clock = clock;
+        this.journaledMoves = new IntObjectHashMap<>();
+        this.pendingExports = new ArrayList<>();
+        this.snapshotIntervalMillis = config.getSnapshotIntervalMillis();
+        this.lastSnapshotPosition = -1;
+    }
+
+    void beginBatch(long now) {
+        journal.beginBatch(now);
+    }
+
+    /**
+     * Record that orders expired at the time of the batch, so the replay expires them at the same time
+     * even if no command comes in the batch
+     */
+    void appendClock() {
+        journal.appendClock();
+    }
+
+    void appendBuy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        journal.appendBuy(customerId, bookId, price, quantity, expireAfterSeconds);
+    }
+
+    void appendSell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        journal.appendSell(customerId, bookId, price, quantity, expireAfterSeconds);
+    }
+
+    void appendCancel(Order order) {
+        journal.appendCancel(order);
+    }
+
+    /**
+     * Journal a book handed over to another partition, its orders are kept for the snapshots
+     * until the target has taken the book over
+     */
+    void appendExport(BookHandoff handoff) {
+        int targetPartitionId = handoff.getTarget().getPartitionId();
+        journal.appendExport(handoff.getMoveId(), targetPartitionId, handoff.getSnapshot());
+        journaledMoves.put(
+                handoff.getBookId(),
+                new JournaledMove(handoff.getMoveId(), true, targetPartitionId, handoff.getSnapshot())
+        );
+        pendingExports.add(handoff);
+    }
+
+    /**
+     * Journal a book taken over from another partition
+     */
+    void appendImport(BookHandoff handoff) {
+        journal.appendImport(handoff.getMoveId(), handoff.getSnapshot());
+        journaledMoves.put(handoff.getBookId(), new JournaledMove(handoff.getMoveId(), false, partitionId, null));
+    }
+
+    /**
+     * Force the records of the batch to disk according to the sync policy
+     */
+    void commit() {
+        long start = System.nanoTime();
+        if (journal.commit() && orderBook.getMetrics() != null) {
+            orderBook.getMetrics().onJournalSync(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Make the next {@link #snapshotIfDue} write a snapshot, whatever the time of the last one
+     */
+    void requestSnapshot() {
+        snapshotRequested = true;
+    }
+
+    /**
+     * Write a snapshot at the end of a batch if one was requested or the interval elapsed.
+     * Must be called once the events of the batch have been flushed.
+     */
+    void snapshotIfDue(long now) {
+        if (snapshotRequested || (snapshotIntervalMillis > 0 && now - lastSnapshotMillis >= snapshotIntervalMillis)) {
+            takeSnapshot(now);
+        }
+    }
+
+    /**
+     * Write a snapshot of the partition if something has been journaled since the last one,
+     * then delete the journal segments it covers
+     */
+    private void takeSnapshot(long now) {
+        snapshotRequested = false;
+        lastSnapshotMillis = now;
+        if (journal.position() == lastSnapshotPosition) return;
+
+        long start = System.nanoTime();
+        try {
+            long position = journal.checkpoint();
+            try (SnapshotWriter out = new SnapshotWriter(journalDirectory, partitionId, position)) {
+                out.putLong(clock.currentTimeMillis());
+                writeJournaledMoves(out);
+                orderBook.writeSnapshot(out);
+                out.commit();
+            }
+            lastSnapshotPosition = position;
+            journal.deleteSegmentsBefore(position);
+        } catch (RuntimeException e) {
+            // the journal still holds every command, the next snapshot tries again
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+        if (orderBook.getMetrics() != null) {
+            orderBook.getMetrics().onSnapshot(System.nanoTime() - start);
+        }
+    }
+
+    private void writeJournaledMoves(SnapshotWriter out) {
+        // the orders of a book taken over by its target are in the snapshots of the target
+        for (Iterator<BookHandoff> iterator = pendingExports.iterator(); iterator.hasNext(); ) {
+            BookHandoff handoff = iterator.next();
+            if (!handoff.isDone()) continue;
+
+            iterator.remove();
+            JournaledMove move = journaledMoves.get(handoff.getBookId());
+            if (move != null && move.getMoveId() == handoff.getMoveId()) {
+                journaledMoves.put(
+                        handoff.getBookId(),
+                        new JournaledMove(move.getMoveId(), true, move.getTargetPartitionId(), null)
+                );
+            }
+        }
+
+        out.putInt(journaledMoves.size());
+        journaledMoves.forEach((bookId, move) -> {
+            out.putInt(bookId);
+            move.writeTo(out);
+        });
+    }
+
+    private void readJournaledMoves(SnapshotReader in) {
+        int moveCount = in.getInt();
+        for (int i = 0; i < moveCount; i++) {
+            int bookId = in.getInt();
+            journaledMoves.put(bookId, JournaledMove.readFrom(in));
+        }
+    }
+
+    /**
+     * Rebuild the books of the partition from its latest snapshot, if any, then from the commands journaled
+     * after it. Commands are processed again at the time of their batch, so they give the same orders with
+     * the same ids, handles and expiry times, and orders expire at the same point of the sequence of commands.
+     * Their events are dropped, since they have been dispatched before the restart.
+     */
+    void recover() {
+        boolean[] started = {false};
+        long fromPosition = CommandJournal.START;
+        try (SnapshotReader in = SnapshotReader.openLatest(journalDirectory, partitionId)) {
+            if (in != null) {
+                fromPosition = in.getJournalPosition();
+                clock.set(in.getLong());
+                readJournaledMoves(in);
+                orderBook.readSnapshot(in);
+                in.verify();
+                // the restored levels are not published as changes
+                orderBook.discardEvents();
+                // the wheel of the snapshot is already at the time of the journal
+                started[0] = true;
+                lastSnapshotPosition = fromPosition;
+            }
+        }
+        journal.replay(fromPosition, new CommandJournal.Handler() {
+            @Override
+            public void onClock(long timeMillis) {
+                if (!started[0]) {
+                    // the wheel starts at the current time, replayed orders expire from the time of the journal
+                    orderBook.rewindExpiry(timeMillis);
+                    started[0] = true;
+                }
+                clock.set(timeMillis);
+                orderBook.expireOrders();
+                orderBook.discardEvents();
+            }
+
+            @Override
+            public void onBuy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+                replay(() -> orderBook.buy(customerId, bookId, price, quantity, expireAfterSeconds));
+            }
+
+            @Override
+            public void onSell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+                replay(() -> orderBook.sell(customerId, bookId, price, quantity, expireAfterSeconds));
+            }
+
+            @Override
+            public void onCancel(Order order) {
+                replay(() -> orderBook.cancel(order));
+            }
+
+            @Override
+            public void onExport(long moveId, int targetPartitionId, BookSnapshot snapshot) {
+                orderBook.exportBook(snapshot.getBookId());
+                journaledMoves.put(snapshot.getBookId(), new JournaledMove(moveId, true, targetPartitionId, snapshot));
+            }
+
+            @Override
+            public void onImport(long moveId, BookSnapshot snapshot) {
+                orderBook.importBook(snapshot);
+                journaledMoves.put(snapshot.getBookId(), new JournaledMove(moveId, false, partitionId, null));
+            }
+        });
+        clock.update();
+        lastSnapshotMillis = clock.currentTimeMillis();
+    }
+
+    /**
+     * Process a replayed command, a command that failed before the restart fails the same way
+     * and has already been reported
+     */
+    private void replay(Runnable command) {
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            // reported when the command was first processed
+        }
+        orderBook.discardEvents();
+    }
+
+    /**
+     * Return the last move of every book moved in or out of the partition, as found in the journal
+     * on restart. Must be called before the event loop starts.
+     */
+    IntObjectHashMap<JournaledMove> getJournaledMoves() {
+        return journaledMoves;
+    }
+
+    /**
+     * Import a book whose export has been journaled by another partition but not its import,
+     * because the engine stopped in the middle of the move. Must be called before the event loop starts.
+     */
+    void recoverBook(int bookId, JournaledMove move) {
+        // the orders of the export are only dropped once imported, so a missing snapshot means an empty book
+        BookSnapshot snapshot = move.getSnapshot() != null ? move.getSnapshot() : new BookSnapshot(bookId, null);
+        journal.beginBatch(clock.currentTimeMillis());
+        journal.appendImport(move.getMoveId(), snapshot);
+        orderBook.importBook(snapshot);
+        orderBook.discardEvents();
+        journal.commit();
+        journaledMoves.put(bookId, new JournaledMove(move.getMoveId(), false, partitionId, null));
+    }
+
+    /**
+     * Forget the orders of the books exported by the partition, once every move cut by the restart
+     * has been finished by {@link #recoverBook}. Must be called before the event loop starts.
+     */
+    void dropExportedOrders() {
+        List<Integer> exportedBookIds = new ArrayList<>();
+        journaledMoves.forEach((bookId, move) -> {
+            if (move.getSnapshot() != null) {
+                exportedBookIds.add(bookId);
+            }
+        });
+        for (int bookId : exportedBookIds) {
+            JournaledMove move = journaledMoves.get(bookId);
+            journaledMoves.put(bookId, new JournaledMove(move.getMoveId(), true, move.getTargetPartitionId(), null));
+        }
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+}
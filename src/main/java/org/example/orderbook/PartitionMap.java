@@ -0,0 +1,74 @@
+package org.example.orderbook;
+
+import org.example.utilities.IntObjectHashMap;
+
+import java.util.Map;
+
+/**
+ * Immutable routing table of a {@link PartitionedOrderBook}, from book id to partition index.
+ *
+ * <p>A book goes to the partition {@code bookId % partitions} unless it has been moved, in which
+ * case its partition is kept in a map of moved books. Moving a book builds a new table, which is
+ * published to the producers through a volatile field, so reading a route never takes a lock and
+ * a producer can tell that routes changed by comparing the table it used with the current one.
+ */
+class PartitionMap {
+    private final int partitionCount;
+
+    /**
+     * Map from the id of the moved books to their partition, never modified once the table is published
+     */
+    private final IntObjectHashMap<Integer> movedBooks;
+
+    PartitionMap(int partitionCount) {
+        this(partitionCount, new IntObjectHashMap<>());
+    }
+
+    private PartitionMap(int partitionCount, IntObjectHashMap<Integer> movedBooks) {
+        this.partitionCount = partitionCount;
+        this.movedBooks = movedBooks;
+    }
+
+    int partitionOf(int bookId) {
+        if (!movedBooks.isEmpty()) {
+            Integer partition = movedBooks.get(bookId);
+            if (partition != null) return partition;
+        }
+        return hashSlot(bookId);
+    }
+
+    /**
+     * Return a copy of this table routing the given book to the given partition
+     */
+    PartitionMap withPartition(int bookId, int partition) {
+        IntObjectHashMap<Integer> copy = new IntObjectHashMap<>(movedBooks.size() + 1);
+        movedBooks.forEach(copy::put);
+        if (partition == hashSlot(bookId)) {
+            // back to its default partition, the book does not need an entry anymore
+            copy.remove(bookId);
+        } else {
+            copy.put(bookId, partition);
+        }
+        return new PartitionMap(partitionCount, copy);
+    }
+
+    /**
+     * Return a copy of this table routing each of the given books to its partition
+     */
+    PartitionMap withPartitions(Map<Integer, Integer> bookPartitions) {
+        IntObjectHashMap<Integer> copy = new IntObjectHashMap<>(movedBooks.size() + bookPartitions.size());
+        movedBooks.forEach(copy::put);
+        bookPartitions.forEach((bookId, partition) -> {
+            if (partition == hashSlot(bookId)) {
+                copy.remove(bookId);
+            } else {
+                copy.put(bookId, partition);
+            }
+        });
+        return new PartitionMap(partitionCount, copy);
+    }
+
+    private int hashSlot(int bookId) {
+        return bookId % partitionCount;
+    }
+}
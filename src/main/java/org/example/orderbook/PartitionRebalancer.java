@@ -0,0 +1,191 @@
+package org.example.orderbook;
+
+import org.example.metrics.BookMetricsSnapshot;
+import org.example.metrics.PartitionMetricsSnapshot;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move books between the partitions of a {@link PartitionedOrderBook} according to their load.
+ *
+ * <p>The load of a partition, or of a book, is the number of requests it processed since the previous
+ * {@link #rebalance()}, read from the partition metrics, so metrics must be enabled. Every call moves
+ * at most one book:
+ * <ul>
+ *     <li>a book that is not pinned but sits on a dedicated partition, see {@link PartitionedOrderBook#pinBook},
+ *     is moved to the least loaded partition that is not dedicated</li>
+ *     <li>otherwise, when the most loaded partition handles at least {@code minRequests} requests and
+ *     {@code imbalanceRatio} times the requests of the least loaded one, its busiest book that is not pinned
+ *     and carries at most half of the difference is moved to the least loaded one, so the move never makes
+ *     the target busier than the source was</li>
+ * </ul>
+ *
+ * <p>{@link #start(Duration)} calls {@link #rebalance()} periodically on a daemon thread.
+ * A single hot book cannot be split, it is only moved away from the other hot books.
+ */
+public class PartitionRebalancer implements AutoCloseable {
+    public static final double DEFAULT_IMBALANCE_RATIO = 1.5;
+
+    public static final long DEFAULT_MIN_REQUESTS = 10_000;
+
+    private final PartitionedOrderBook orderBook;
+
+    private final double imbalanceRatio;
+
+    private final long minRequests;
+
+    /**
+     * Request counters of every partition at the previous rebalance
+     */
+    private final long[] previousPartitionRequests;
+
+    /**
+     * Request counters of every book at the previous rebalance
+     */
+    private final Map<Integer, Long> previousBookRequests;
+
+    private ScheduledExecutorService scheduler;
+
+    public PartitionRebalancer(PartitionedOrderBook orderBook) {
+        this(orderBook, DEFAULT_IMBALANCE_RATIO, DEFAULT_MIN_REQUESTS);
+    }
+
+    public PartitionRebalancer(PartitionedOrderBook orderBook, double imbalanceRatio, long minRequests) {
+        if (imbalanceRatio < 1) throw new IllegalArgumentException("imbalanceRatio must be at least 1");
+
+        this.orderBook = orderBook;
+        this.imbalanceRatio = imbalanceRatio;
+        this.minRequests = minRequests;
+        this.previousPartitionRequests = new long[orderBook.getPartitionCount()];
+        this.previousBookRequests = new HashMap<>();
+    }
+
+    /**
+     * Compare the load of the partitions since the previous call, and move at most one book
+     *
+     * @return true if a book has been moved
+     */
+    public synchronized boolean rebalance() {
+        List<PartitionMetricsSnapshot> snapshots = orderBook.snapshotMetrics();
+        if (snapshots.isEmpty()) return false;
+
+        long[] partitionLoads = new long[previousPartitionRequests.length];
+        for (PartitionMetricsSnapshot snapshot : snapshots) {
+            int partitionId = snapshot.getPartitionId();
+            partitionLoads[partitionId] = snapshot.getRequests() - previousPartitionRequests[partitionId];
+            previousPartitionRequests[partitionId] = snapshot.getRequests();
+        }
+        Map<Integer, Long> bookLoads = readBookLoads(snapshots);
+
+        int coldest = -1;
+        for (int partitionId = 0; partitionId < partitionLoads.length; partitionId++) {
+            if (!orderBook.isDedicated(partitionId)
+                    && (coldest < 0 || partitionLoads[partitionId] < partitionLoads[coldest])) {
+                coldest = partitionId;
+            }
+        }
+        if (coldest < 0) return false;
+
+        // dedicated partitions are cleared first, whatever their load
+        int book = busiestBook(bookLoads, -1, Long.MAX_VALUE, true);
+        if (book < 0) {
+            int hottest = 0;
+            for (int partitionId = 1; partitionId < partitionLoads.length; partitionId++) {
+                if (partitionLoads[partitionId] > partitionLoads[hottest]) {
+                    hottest = partitionId;
+                }
+            }
+            long hot = partitionLoads[hottest];
+            long cold = partitionLoads[coldest];
+            if (hottest == coldest || hot < minRequests || hot < cold * imbalanceRatio) return false;
+
+            book = busiestBook(bookLoads, hottest, (hot - cold) / 2, false);
+        }
+        if (book < 0) return false;
+
+        orderBook.moveBook(book, coldest);
+        return true;
+    }
+
+    /**
+     * Call {@link #rebalance()} at the given period until the rebalancer is closed
+     */
+    public synchronized void start(Duration period) {
+        if (scheduler != null) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-book-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMillis = period.toMillis();
+        scheduler.scheduleAtFixedRate(this::rebalanceSafely, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void rebalanceSafely() {
+        try {
+            rebalance();
+        } catch (Throwable e) {
+            // a failing move must not stop the next rebalances
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    /**
+     * Return the requests of every book since the previous rebalance. A book that is moving
+     * may show up in 2 partitions, its counters continue from one to the other, so the highest wins.
+     */
+    private Map<Integer, Long> readBookLoads(List<PartitionMetricsSnapshot> snapshots) {
+        Map<Integer, Long> bookRequests = new HashMap<>();
+        for (PartitionMetricsSnapshot snapshot : snapshots) {
+            for (BookMetricsSnapshot book : snapshot.getBooks()) {
+                bookRequests.merge(book.getBookId(), book.getRequests(), Math::max);
+            }
+        }
+
+        Map<Integer, Long> bookLoads = new HashMap<>(bookRequests.size());
+        for (Map.Entry<Integer, Long> entry : bookRequests.entrySet()) {
+            Long previous = previousBookRequests.put(entry.getKey(), entry.getValue());
+            bookLoads.put(entry.getKey(), entry.getValue() - (previous != null ? previous : 0));
+        }
+        return bookLoads;
+    }
+
+    /**
+     * Return the busiest book that is not pinned and whose load is at most maxLoad, either among the books
+     * of the given partition, or among the books of the dedicated partitions. Return -1 if there is none.
+     */
+    private int busiestBook(Map<Integer, Long> bookLoads, int partitionId, long maxLoad, boolean onDedicatedPartitions) {
+        int busiest = -1;
+        // idle books are only worth moving out of dedicated partitions
+        long busiestLoad = onDedicatedPartitions ? -1 : 0;
+        for (Map.Entry<Integer, Long> entry : bookLoads.entrySet()) {
+            int bookId = entry.getKey();
+            long load = entry.getValue();
+            if (load > maxLoad || load <= busiestLoad || orderBook.isPinned(bookId)) continue;
+
+            int bookPartition = orderBook.getPartitionId(bookId);
+            boolean candidate = onDedicatedPartitions ? orderBook.isDedicated(bookPartition) : bookPartition == partitionId;
+            if (candidate) {
+                busiest = bookId;
+                busiestLoad = load;
+            }
+        }
+        return busiest;
+    }
+}
@@ -1,6 +1,19 @@
 package org.example.orderbook;
 
+import org.example.entities.DepthSnapshot;
 import org.example.entities.Order;
+import org.example.metrics.PartitionMetricsSnapshot;
+import org.example.sequencer.BusySpinWaitStrategy;
+import org.example.sequencer.WaitStrategy;
+import org.example.utilities.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * A wrapper of {@link FIFOOrderBook} that support parallel matching
@@ -10,7 +23,7 @@ import org.example.entities.Order;
  * as long as we can guaranty that request of a same book go to a same thread.
  *
  * <p>{@link PartitionedOrderBook} achieved that by maintaining a list of
- * {@link QueueBasedOrderBook} instances, each run on its own thread.
+ * {@link QueueBasedOrderBook} instances, each run on its own thread by default.
  * Each {@link QueueBasedOrderBook} instance is considered a partition.
  * To determine which partition a request belong to, the bookId
  * is hashed by taking modulus with number of partitions.
@@ -18,41 +31,405 @@ import org.example.entities.Order;
  * Then the hashValue is used as index in the partition list to get
  * the partition.
  * partition = partitionList.get(hashValue)
+ *
+ * <p>A book can be moved to another partition while the engine runs, with {@link #moveBook(int, int)},
+ * to spread hot books that hash to a same partition. The {@link PartitionMap} then routes it to its new
+ * partition, and its resting orders are handed over between the event loops of the 2 partitions without
+ * reordering its requests, see {@link BookHandoff}. Books can be pinned to a partition with
+ * {@link #pinBook(int, int)}, which makes the partition dedicated to its pinned books: the
+ * {@link PartitionRebalancer} moves the other books out of it, and never moves a book into it.
+ *
+ * <p>The threads running the partitions are set up by an {@link EventLoopConfig}: their name, priority,
+ * wait strategy and CPU, and how many consecutive partitions each of them runs. Partitions sharing a thread
+ * still have their own ring and books, so they keep their order ids and can still be moved independently.
+ *
+ * <p>Every partition assigns order ids on its own, with its index as partition id,
+ * so ids are unique across partitions. A book keeps the ids of its orders when it moves.
+ *
+ * <p>With a journal directory in the {@link OrderBookConfig}, every partition journals its commands and
+ * replays them on restart, see {@link QueueBasedOrderBook}. Moves are journaled too, so a restarted engine
+ * routes every book to the partition it was in, and finishes a move that was cut in the middle by importing
+ * the book from its journaled export. Pins are not journaled, books must be pinned again after a restart.
+ * Partitions also write snapshots of their resting orders, so a restart only replays the end of their journal.
  */
 public class PartitionedOrderBook implements OrderBook {
     /**
      * Partition list
      */
-    private final OrderBook[] partitions;
+    private final QueueBasedOrderBook[] partitions;
+
+    /**
+     * Threads running the partitions
+     */
+    private final EventLoop[] eventLoops;
+
+    /**
+     * Current routes of the books, replaced by every move
+     */
+    private volatile PartitionMap routes;
+
+    /**
+     * Map from the id of the pinned books to their partition
+     */
+    private final Map<Integer, Integer> pinnedBooks;
+
+    /**
+     * Number of the next move, see {@link BookHandoff#getMoveId()}
+     */
+    private long nextMoveId;
 
     public PartitionedOrderBook(int size) {
-        this.partitions = new OrderBook[size];
+        this(size, BusySpinWaitStrategy::new);
+    }
+
+    /**
+     * @param waitStrategyFactory create the wait strategy of each partition's event loop
+     */
+    public PartitionedOrderBook(int size, Supplier<WaitStrategy> waitStrategyFactory) {
+        this(size, waitStrategyFactory, OrderBookConfig.defaults());
+    }
+
+    /**
+     * @param config settings shared by the partitions, the partition id is set for each of them
+     */
+    public PartitionedOrderBook(int size, Supplier<WaitStrategy> waitStrategyFactory, OrderBookConfig config) {
+        this(size, config, EventLoopConfig.builder().waitStrategyFactory(waitStrategyFactory).build());
+    }
+
+    /**
+     * @param config          settings shared by the partitions, the partition id is set for each of them
+     * @param eventLoopConfig settings of the threads running the partitions
+     */
+    public PartitionedOrderBook(int size, OrderBookConfig config, EventLoopConfig eventLoopConfig) {
+        int partitionsPerThread = eventLoopConfig.getPartitionsPerThread();
+        if (partitionsPerThread <= 0) throw new IllegalArgumentException("partitionsPerThread must be positive");
+
+        this.partitions = new QueueBasedOrderBook[size];
+        this.eventLoops = new EventLoop[(size + partitionsPerThread - 1) / partitionsPerThread];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop(
+                    eventLoopConfig.getThreadNamePrefix() + "-" + i,
+                    eventLoopConfig.getWaitStrategyFactory().get(),
+                    eventLoopConfig.isDaemon(),
+                    eventLoopConfig.getPriority(),
+                    eventLoopConfig.cpuOf(i)
+            );
+        }
         for (int i = 0; i < size; i++) {
-            this.partitions[i] = new QueueBasedOrderBook();
+            OrderBookConfig partitionConfig = config.toBuilder().partitionId(i).build();
+            this.partitions[i] = new QueueBasedOrderBook(
+                    partitionConfig, QueueBasedOrderBook.DEFAULT_RING_SIZE, eventLoops[i / partitionsPerThread]
+            );
+        }
+        this.routes = new PartitionMap(size);
+        this.pinnedBooks = new ConcurrentHashMap<>();
+        if (config.getJournalDirectory() != null) {
+            recoverMoves();
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.start();
         }
     }
 
+    // A request is routed with the current routes, and the routes are read again once its slot is claimed.
+    // If they changed in between, the book may have moved and its source partition may have been told
+    // to export it before the slot, so the slot is skipped and the request is routed again.
+    // See moveBook for why a request sent with unchanged routes is always ordered with the move.
+
     @Override
-    public void buy(int customerId, int bookId, int price, Long expireAfterSeconds) {
-        getPartition(bookId).buy(customerId, bookId, price, expireAfterSeconds);
+    public void buy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        while (true) {
+            PartitionMap currentRoutes = routes;
+            QueueBasedOrderBook partition = partitions[currentRoutes.partitionOf(bookId)];
+            long sequence = partition.claim();
+            if (currentRoutes == routes) {
+                partition.publishBuy(sequence, customerId, bookId, price, quantity, expireAfterSeconds);
+                return;
+            }
+            partition.publishSkip(sequence);
+        }
     }
 
     @Override
-    public void sell(int customerId, int bookId, int price, Long expireAfterSeconds) {
-        getPartition(bookId).sell(customerId, bookId, price, expireAfterSeconds);
+    public void sell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        while (true) {
+            PartitionMap currentRoutes = routes;
+            QueueBasedOrderBook partition = partitions[currentRoutes.partitionOf(bookId)];
+            long sequence = partition.claim();
+            if (currentRoutes == routes) {
+                partition.publishSell(sequence, customerId, bookId, price, quantity, expireAfterSeconds);
+                return;
+            }
+            partition.publishSkip(sequence);
+        }
     }
 
     @Override
     public void cancel(Order order) {
-        getPartition(order.getBookId()).cancel(order);
+        while (true) {
+            PartitionMap currentRoutes = routes;
+            QueueBasedOrderBook partition = partitions[currentRoutes.partitionOf(order.getBookId())];
+            long sequence = partition.claim();
+            if (currentRoutes == routes) {
+                partition.publishCancel(sequence, order);
+                return;
+            }
+            partition.publishSkip(sequence);
+        }
+    }
+
+    /**
+     * Read the depth of the book on its partition, in order with the requests of the book, like {@link #buy}
+     */
+    @Override
+    public CompletableFuture<DepthSnapshot> requestDepth(int bookId, int levels) {
+        CompletableFuture<DepthSnapshot> future = new CompletableFuture<>();
+        while (true) {
+            PartitionMap currentRoutes = routes;
+            QueueBasedOrderBook partition = partitions[currentRoutes.partitionOf(bookId)];
+            long sequence = partition.claim();
+            if (currentRoutes == routes) {
+                partition.publishDepthRequest(sequence, bookId, levels, future);
+                return future;
+            }
+            partition.publishSkip(sequence);
+        }
     }
 
-    private OrderBook getPartition(int bookId) {
-        int partitionId = hashSlot(bookId);
-        return partitions[partitionId];
+    /**
+     * Route the commands of the batch in one pass, then enqueue the commands of every partition with
+     * a single claim and a single publish. The commands of a book go to a same partition, in the order
+     * they were added, so they are processed in that order.
+     *
+     * <p>If a book moves while the batch is enqueued, the slots claimed with the previous routes are skipped
+     * and the commands not enqueued yet are routed again one at a time, like {@link #buy}.
+     */
+    @Override
+    public void submit(OrderBatch batch) {
+        int size = batch.size();
+        if (size == 0) return;
+
+        // group the commands by partition with a counting sort, which keeps their order within a partition
+        PartitionMap currentRoutes = routes;
+        int[] partitionEnds = new int[partitions.length];
+        for (int i = 0; i < size; i++) {
+            int partitionId = currentRoutes.partitionOf(batch.getBookId(i));
+            batch.acknowledge(i, partitionId, -1);
+            partitionEnds[partitionId] += 1;
+        }
+        int[] cursors = new int[partitions.length];
+        for (int partitionId = 1; partitionId < partitions.length; partitionId++) {
+            partitionEnds[partitionId] += partitionEnds[partitionId - 1];
+            cursors[partitionId] = partitionEnds[partitionId - 1];
+        }
+        int[] routingOrder = batch.getRoutingOrder();
+        for (int i = 0; i < size; i++) {
+            routingOrder[cursors[batch.getPartitionId(i)]++] = i;
+        }
+
+        boolean rerouted = false;
+        int from = 0;
+        for (int partitionId = 0; partitionId < partitions.length; partitionId++) {
+            QueueBasedOrderBook partition = partitions[partitionId];
+            int end = partitionEnds[partitionId];
+            while (from < end) {
+                if (rerouted) {
+                    submitOne(batch, routingOrder[from++]);
+                    continue;
+                }
+
+                int count = Math.min(end - from, partition.capacity());
+                long high = partition.claim(count);
+                long low = high - count + 1;
+                if (currentRoutes != routes) {
+                    partition.publishSkips(low, high);
+                    rerouted = true;
+                    continue;
+                }
+                for (int i = 0; i < count; i++) {
+                    int command = routingOrder[from + i];
+                    partition.fill(low + i, batch, command);
+                    batch.acknowledge(command, partitionId, low + i);
+                }
+                partition.publish(low, high);
+                from += count;
+            }
+        }
     }
 
-    private int hashSlot(int bookId) {
-        return bookId % partitions.length;
+    /**
+     * Move a book to another partition and wait until its resting orders have been handed over.
+     * Requests of the book can keep coming in during the move, they are processed in order:
+     * the ones routed to the source partition before the move are processed there before the
+     * book is exported, the others are parked by the target partition until the book is imported.
+     *
+     * <p>The target is told to expect the book before the routes are switched, so every request routed
+     * to the target comes after that in its ring. The source is told to export the book after the switch,
+     * so every request published to the source with the routes before the switch, whose slot was claimed
+     * before the routes were read again, comes before the export in its ring.
+     *
+     * @throws IllegalArgumentException if the partition does not exist
+     * @throws IllegalStateException    if the book is pinned to another partition, or the handoff failed
+     */
+    public synchronized void moveBook(int bookId, int partitionId) {
+        checkPartitionId(partitionId);
+        Integer pinnedPartition = pinnedBooks.get(bookId);
+        if (pinnedPartition != null && pinnedPartition != partitionId) {
+            throw new IllegalStateException("Book " + bookId + " is pinned to partition " + pinnedPartition);
+        }
+
+        int source = routes.partitionOf(bookId);
+        if (source == partitionId) return;
+
+        BookHandoff handoff = new BookHandoff(nextMoveId++, bookId, partitions[partitionId]);
+        partitions[partitionId].expectBook(handoff);
+        routes = routes.withPartition(bookId, partitionId);
+        partitions[source].exportBook(handoff);
+        handoff.await();
+    }
+
+    /**
+     * Move a book to the given partition and keep it there: the book cannot be moved anymore
+     * until it is unpinned, and the partition is dedicated to the books pinned to it
+     *
+     * @throws IllegalArgumentException if the partition does not exist
+     * @throws IllegalStateException    if the handoff failed
+     */
+    public synchronized void pinBook(int bookId, int partitionId) {
+        checkPartitionId(partitionId);
+        pinnedBooks.remove(bookId);
+        moveBook(bookId, partitionId);
+        pinnedBooks.put(bookId, partitionId);
+    }
+
+    /**
+     * Let a pinned book be moved again, the book stays in its partition for now
+     */
+    public synchronized void unpinBook(int bookId) {
+        pinnedBooks.remove(bookId);
+    }
+
+    public boolean isPinned(int bookId) {
+        return pinnedBooks.containsKey(bookId);
+    }
+
+    /**
+     * Return true if some books are pinned to the partition
+     */
+    public boolean isDedicated(int partitionId) {
+        return pinnedBooks.containsValue(partitionId);
+    }
+
+    /**
+     * Make every partition write a snapshot once it has processed the requests queued before,
+     * see {@link QueueBasedOrderBook#snapshot()}
+     */
+    public void snapshot() {
+        for (QueueBasedOrderBook partition : partitions) {
+            partition.snapshot();
+        }
+    }
+
+    @Override
+    public List<Order> takeRecoveredOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (QueueBasedOrderBook partition : partitions) {
+            orders.addAll(partition.takeRecoveredOrders());
+        }
+        return orders;
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    @Override
+    public List<PartitionMetricsSnapshot> snapshotMetrics() {
+        List<PartitionMetricsSnapshot> snapshots = new ArrayList<>(partitions.length);
+        for (OrderBook partition : partitions) {
+            snapshots.addAll(partition.snapshotMetrics());
+        }
+        return snapshots;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.close();
+        }
+    }
+
+    /**
+     * Return the index of the partition currently handling the given book, which is also
+     * the partition id of the order ids assigned for the book from now on
+     */
+    public int getPartitionId(int bookId) {
+        return routes.partitionOf(bookId);
+    }
+
+    /**
+     * Enqueue the i-th command of the batch on its own, with the current routes
+     */
+    private void submitOne(OrderBatch batch, int i) {
+        while (true) {
+            PartitionMap currentRoutes = routes;
+            int partitionId = currentRoutes.partitionOf(batch.getBookId(i));
+            QueueBasedOrderBook partition = partitions[partitionId];
+            long sequence = partition.claim();
+            if (currentRoutes == routes) {
+                partition.fill(sequence, batch, i);
+                partition.publish(sequence, sequence);
+                batch.acknowledge(i, partitionId, sequence);
+                return;
+            }
+            partition.publishSkip(sequence);
+        }
+    }
+
+    /**
+     * Finish the moves cut by the restart, then route every book to the partition that recovered it.
+     * The last move of a book is the one with the highest number: if only its export has been journaled,
+     * the target imports the book from the snapshot of the export.
+     */
+    private void recoverMoves() {
+        IntObjectHashMap<JournaledMove> lastMoves = new IntObjectHashMap<>();
+        for (QueueBasedOrderBook partition : partitions) {
+            partition.getJournaledMoves().forEach((bookId, move) -> {
+                JournaledMove last = lastMoves.get(bookId);
+                // the import of a move comes after its export
+                if (last == null || move.getMoveId() > last.getMoveId()
+                        || (move.getMoveId() == last.getMoveId() && !move.isExported())) {
+                    lastMoves.put(bookId, move);
+                }
+                nextMoveId = Math.max(nextMoveId, move.getMoveId() + 1);
+            });
+        }
+        lastMoves.forEach((bookId, move) -> {
+            if (move.isExported()) {
+                partitions[move.getTargetPartitionId()].recoverBook(bookId, move);
+            }
+        });
+        for (QueueBasedOrderBook partition : partitions) {
+            partition.dropExportedOrders();
+        }
+
+        Map<Integer, Integer> bookPartitions = new HashMap<>();
+        for (int partitionId = 0; partitionId < partitions.length; partitionId++) {
+            for (int bookId : partitions[partitionId].getBookIds()) {
+                Integer previous = bookPartitions.put(bookId, partitionId);
+                if (previous != null) {
+                    throw new IllegalStateException(
+                            "Book " + bookId + " was recovered by partitions " + previous + " and " + partitionId
+                    );
+                }
+            }
+        }
+        routes = routes.withPartitions(bookPartitions);
+    }
+
+    private void checkPartitionId(int partitionId) {
+        if (partitionId < 0 || partitionId >= partitions.length) {
+            throw new IllegalArgumentException("Partition id must be between 0 and " + (partitions.length - 1) + ": " + partitionId);
+        }
     }
 }
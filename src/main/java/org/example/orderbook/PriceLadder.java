@@ -0,0 +1,49 @@
+package org.example.orderbook;
+
+/**
+ * A price ladder store the price levels of one side of a book
+ * and allow navigating between them in price order.
+ *
+ * <p>Prices are returned as primitive ints. {@link #NO_PRICE} is returned
+ * when there is no level matching the request, so callers never need to
+ * box prices while walking the ladder.
+ *
+ * @param <L> type of price level
+ */
+public interface PriceLadder<L> {
+    /**
+     * Returned by navigation methods when no price level is found
+     */
+    int NO_PRICE = Integer.MIN_VALUE;
+
+    /**
+     * Return the level of the given price, or null if there is no such level
+     */
+    L get(int price);
+
+    /**
+     * Return the level of the given price, creating it if there is no such level
+     */
+    L getOrCreate(int price);
+
+    /**
+     * Remove the level of the given price, return the removed level or null
+     */
+    L remove(int price);
+
+    boolean isEmpty();
+
+    int lowestPrice();
+
+    int highestPrice();
+
+    /**
+     * Return the smallest price that is greater than the given price
+     */
+    int higherPrice(int price);
+
+    /**
+     * Return the greatest price that is smaller than the given price
+     */
+    int lowerPrice(int price);
+}
@@ -0,0 +1,151 @@
+package org.example.orderbook;
+
+import org.example.store.OrderStore;
+
+/**
+ * Orders resting at one price, in ascending order of creation time.
+ *
+ * <p>The level is a 2-way linked list of order handles whose links are kept in the
+ * {@link OrderStore} records, so a level is only a few fields on the heap whatever its depth.
+ * Appending and removing an order are done in O(1) time without allocating or hashing.
+ *
+ * <p>The level also keeps the remaining quantity of its orders, updated as orders join, trade and leave,
+ * so the depth of a book is read from its levels without walking the orders, see {@link DepthTracker}.
+ *
+ * <p>Consecutive orders of a same customer form a run, and the first and last orders of every run
+ * point at each other through their run peer link. Runs are kept maximal: 2 neighbour runs always
+ * belong to different customers. So the earliest order of a level that is not owned by a given
+ * customer is either the head, or the order following the run of the head, and matching can
+ * jump over all the orders of the incoming customer in O(1) with {@link #nextRun}, without
+ * changing the time priority of the other orders.
+ */
+class PriceLevel {
+    private int head = OrderStore.NULL;
+
+    private int tail = OrderStore.NULL;
+
+    private int size;
+
+    /**
+     * Sum of the remaining quantities of the orders of the level
+     */
+    private long quantity;
+
+    /**
+     * Last publication of the {@link DepthTracker} in which the level changed, and in which it was published
+     */
+    long changedEpoch;
+
+    long publishedEpoch;
+
+    /**
+     * Oldest order of the level or {@link OrderStore#NULL}
+     */
+    int head() {
+        return head;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long quantity() {
+        return quantity;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Link the order at the tail of the level. The order must not be linked to any level.
+     */
+    void append(OrderStore store, int order) {
+        store.setPrev(order, tail);
+        store.setNext(order, OrderStore.NULL);
+        if (tail == OrderStore.NULL) {
+            head = order;
+            store.setRunPeer(order, order);
+        } else {
+            store.setNext(tail, order);
+            if (store.getCustomerId(tail) == store.getCustomerId(order)) {
+                // extend the run of the tail
+                int first = store.getRunPeer(tail);
+                store.setRunPeer(first, order);
+                store.setRunPeer(order, first);
+            } else {
+                store.setRunPeer(order, order);
+            }
+        }
+
+        tail = order;
+        size += 1;
+        quantity += store.getRemainingQuantity(order);
+    }
+
+    /**
+     * Take the traded quantity of one of its orders out of the level, before the order is removed if it is filled
+     */
+    void trade(int tradedQuantity) {
+        quantity -= tradedQuantity;
+    }
+
+    /**
+     * Unlink an order of this level
+     */
+    void remove(OrderStore store, int order) {
+        int prev = store.getPrev(order);
+        int next = store.getNext(order);
+        unlinkFromRun(store, order, prev, next);
+        if (prev == OrderStore.NULL) {
+            head = next;
+        } else {
+            store.setNext(prev, next);
+        }
+        if (next == OrderStore.NULL) {
+            tail = prev;
+        } else {
+            store.setPrev(next, prev);
+        }
+
+        store.setPrev(order, OrderStore.NULL);
+        store.setNext(order, OrderStore.NULL);
+        size -= 1;
+        quantity -= store.getRemainingQuantity(order);
+    }
+
+    /**
+     * Return the first order after the run of the given order, or {@link OrderStore#NULL}.
+     * The order must be the first of its run, which the head of the level always is.
+     */
+    int nextRun(OrderStore store, int runFirst) {
+        return store.getNext(store.getRunPeer(runFirst));
+    }
+
+    /**
+     * Keep the run links valid and the runs maximal when an order leaves the level
+     */
+    private void unlinkFromRun(OrderStore store, int order, int prev, int next) {
+        int customerId = store.getCustomerId(order);
+        boolean isFirst = prev == OrderStore.NULL || store.getCustomerId(prev) != customerId;
+        boolean isLast = next == OrderStore.NULL || store.getCustomerId(next) != customerId;
+        if (isFirst && isLast) {
+            // the run disappears, the runs around it are merged if they belong to a same customer
+            if (prev != OrderStore.NULL && next != OrderStore.NULL
+                    && store.getCustomerId(prev) == store.getCustomerId(next)) {
+                int first = store.getRunPeer(prev);
+                int last = store.getRunPeer(next);
+                store.setRunPeer(first, last);
+                store.setRunPeer(last, first);
+            }
+        } else if (isFirst) {
+            int last = store.getRunPeer(order);
+            store.setRunPeer(next, last);
+            store.setRunPeer(last, next);
+        } else if (isLast) {
+            int first = store.getRunPeer(order);
+            store.setRunPeer(prev, first);
+            store.setRunPeer(first, prev);
+        }
+    }
+}
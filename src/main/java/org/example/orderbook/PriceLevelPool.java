@@ -0,0 +1,75 @@
+package org.example.orderbook;
+
+/**
+ * Bounded stack of empty {@link PriceLevel} objects shared by the resting queues of a {@link FIFOOrderBook}.
+ *
+ * <p>A price level is dropped from its ladder as soon as its last order leaves, so a book quoting
+ * a moving price creates and drops levels all day long. The dropped levels are pushed here and
+ * handed out again to the next new price, so the number of level objects ever created stays close
+ * to the peak live depth of the books instead of growing with every distinct price.
+ * Levels released while the pool is full are left to the garbage collector.
+ *
+ * <p>Not synchronized, the pool belongs to the thread of its order book.
+ */
+public class PriceLevelPool {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final PriceLevel[] levels;
+
+    private int size;
+
+    /**
+     * Number of levels ever created by the pool
+     */
+    private long createdLevels;
+
+    public PriceLevelPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PriceLevelPool(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+
+        this.levels = new PriceLevel[capacity];
+    }
+
+    /**
+     * Number of empty levels waiting to be reused
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getCreatedLevels() {
+        return createdLevels;
+    }
+
+    /**
+     * Return an empty level, reusing a released one when there is any
+     */
+    PriceLevel acquire() {
+        if (size == 0) {
+            createdLevels += 1;
+            return new PriceLevel();
+        }
+
+        size -= 1;
+        PriceLevel level = levels[size];
+        levels[size] = null;
+        // the level may have changed at another price in the current publication of the depth
+        level.changedEpoch = 0;
+        level.publishedEpoch = 0;
+        return level;
+    }
+
+    /**
+     * Give back a level removed from its ladder. The level must be empty,
+     * its head and tail are already unlinked by the removal of its last order.
+     */
+    void release(PriceLevel level) {
+        if (size < levels.length) {
+            levels[size] = level;
+            size += 1;
+        }
+    }
+}
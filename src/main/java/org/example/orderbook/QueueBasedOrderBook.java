@@ -1,12 +1,20 @@
 package org.example.orderbook;
 
-import lombok.Builder;
-import lombok.Getter;
+import org.example.clock.CachedClock;
+import org.example.entities.DepthSnapshot;
 import org.example.entities.Order;
+import org.example.metrics.PartitionMetricsSnapshot;
+import org.example.sequencer.BusySpinWaitStrategy;
+import org.example.sequencer.RingBuffer;
+import org.example.sequencer.WaitStrategy;
+import org.example.utilities.IntObjectHashMap;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
-
-import static java.lang.Thread.onSpinWait;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * A wrapper of {@link FIFOOrderBook} that support calling buy/sell/cancel
@@ -16,101 +24,646 @@ import static java.lang.Thread.onSpinWait;
  *
  * <p>In this implementation, tha actual matching process is still running in a single thread.
  * Only part that can run in parallel is the order producing process.
+ *
+ * <p>Requests are passed to the event loop through a {@link RingBuffer} of preallocated
+ * {@link Request} slots, so submitting a request does not allocate. The event loop drains
+ * all the requests available in one batch, and use the given {@link WaitStrategy}
+ * while there is nothing to process. The events produced while processing a batch
+ * are dispatched together once the batch is done, see {@link DispatchMode#BATCH}.
+ *
+ * <p>A batch of commands, see {@link #submit(OrderBatch)}, is enqueued with a single claim of as many slots
+ * as it has commands, and a single publish, so producers pay the synchronization of the ring once per batch.
+ *
+ * <p>The event loop reads the clock of the {@link OrderBookConfig} once per batch into a
+ * {@link CachedClock}, which is the clock of the underlying {@link FIFOOrderBook}, so the
+ * requests of a batch share one timestamp. It also expires resting orders, before every batch
+ * and while idle, see {@link FIFOOrderBook#expireOrders()}. While some orders are waiting for their expiry
+ * time, the wait strategy is asked to return every {@link #EXPIRY_CHECK_INTERVAL_NANOS},
+ * so orders expire on time even when no request comes in.
+ *
+ * <p>A {@link PartitionedOrderBook} moves books between its partitions through their rings, see
+ * {@link BookHandoff}. The target partition is told to expect the book first, then parks the requests
+ * of the book until the source partition has processed every request it received for the book and
+ * handed the resting orders over. Parked requests are processed right after the handover, in the
+ * order they were received, so the requests of a book are never reordered by a move.
+ *
+ * <p>The event loop runs on an {@link EventLoop} thread, which a {@link PartitionedOrderBook} may share
+ * between several partitions, see {@link EventLoopConfig#getPartitionsPerThread()}. A book moved between
+ * partitions of the same thread is handed over directly instead of through the ring of the target,
+ * since the thread would wait forever for room in a full ring that only it can drain.
+ *
+ * <p>If {@link OrderBookConfig#getJournalDirectory()} is set, the event loop journals every command before
+ * processing it, and writes snapshots of the resting orders between 2 batches, see {@link PartitionJournal}.
+ * A new instance recovers the journal of its partition before it accepts requests, so it gets back the resting
+ * orders, ids and expiry times it had when it stopped.
  */
 public class QueueBasedOrderBook implements OrderBook {
+    public static final int DEFAULT_RING_SIZE = 1 << 14;
+
     /**
-     * Request queue that the event loop will read from
+     * Longest time the event loop stays idle while some orders are waiting for their expiry time,
+     * which is the resolution of the {@link ExpiryWheel}
      */
-    private final ConcurrentLinkedQueue<Request> requestQueue;
+    public static final long EXPIRY_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Request ring buffer that the event loop will read from
+     */
+    private final RingBuffer<Request> requestQueue;
 
     /**
      * OrderBook instance that handle the actual matching logic
      */
-    private final OrderBook orderBook;
+    private final FIFOOrderBook orderBook;
+
+    private final Consumer<Request> requestHandler;
+
+    /**
+     * Time of the underlying order book, updated before every batch
+     */
+    private final CachedClock clock;
+
+    private final EventLoop eventLoop;
+
+    /**
+     * Partition id of the underlying order book, acknowledged with the commands of a batch
+     */
+    private final int partitionId;
+
+    /**
+     * Map from the id of the books expected from another partition to the requests
+     * received for them before their orders are handed over. Only used by the event loop.
+     */
+    private final IntObjectHashMap<List<Request>> incomingBooks;
+
+    /**
+     * Map from the id of the books exported by a partition of the same thread to their handoff,
+     * when they were exported before this partition got told to expect them. Only used by the event loop.
+     */
+    private final IntObjectHashMap<BookHandoff> exportedBooks;
+
+    /**
+     * Journal and snapshots of the partition, null if journaling is disabled
+     */
+    private final PartitionJournal journal;
+
+    /**
+     * Copies of the resting orders recovered on restart, until they are taken by {@link #takeRecoveredOrders()}
+     */
+    private List<Order> recoveredOrders;
 
     public QueueBasedOrderBook() {
-        this.requestQueue = new ConcurrentLinkedQueue<>();
-        this.orderBook = new FIFOOrderBook();
-
-        // Create an event loop that constantly polling
-        // new matching request from the request queue
-        new Thread(() -> {
-            while (true) {
-                if (requestQueue.isEmpty()) {
-                    onSpinWait();
-                }
-                processRequest(requestQueue.poll());
-            }
-        }).start();
+        this(DEFAULT_RING_SIZE, new BusySpinWaitStrategy());
+    }
+
+    public QueueBasedOrderBook(int ringSize, WaitStrategy waitStrategy) {
+        this(OrderBookConfig.defaults(), ringSize, waitStrategy);
+    }
+
+    /**
+     * @param config settings of the underlying {@link FIFOOrderBook}, its dispatch mode
+     *               is always {@link DispatchMode#BATCH} and its clock is cached per batch
+     */
+    public QueueBasedOrderBook(OrderBookConfig config, int ringSize, WaitStrategy waitStrategy) {
+        this(config, ringSize, new EventLoop(
+                "order-book-event-loop-" + THREAD_COUNTER.incrementAndGet(), waitStrategy, true, Thread.NORM_PRIORITY, -1
+        ));
+        eventLoop.start();
+    }
+
+    /**
+     * Create a partition run by the given event loop, which is started by the caller
+     */
+    QueueBasedOrderBook(OrderBookConfig config, int ringSize, EventLoop eventLoop) {
+        this.requestQueue = new RingBuffer<>(ringSize, Request::new, eventLoop.getWaitStrategy());
+        this.clock = new CachedClock(config.getClock());
+        this.orderBook = new FIFOOrderBook(
+                config.toBuilder().dispatchMode(DispatchMode.BATCH).clock(clock).build()
+        );
+        this.partitionId = config.getPartitionId();
+        this.requestHandler = this::processRequest;
+        this.incomingBooks = new IntObjectHashMap<>();
+        this.exportedBooks = new IntObjectHashMap<>();
+        if (orderBook.getMetrics() != null) {
+            orderBook.getMetrics().setQueueDepth(requestQueue::size);
+        }
+        this.recoveredOrders = List.of();
+        if (config.getJournalDirectory() != null) {
+            this.journal = new PartitionJournal(config, orderBook, clock);
+            journal.recover();
+            this.recoveredOrders = orderBook.copyRestingOrders();
+        } else {
+            this.journal = null;
+        }
+        this.eventLoop = eventLoop;
+        eventLoop.add(this);
     }
 
     @Override
-    public void buy(int customerId, int bookId, int price, Long expireAfterSeconds) {
-        Request request = Request.builder()
-                .customerId(customerId)
-                .bookId(bookId)
-                .price(price)
-                .expireAfterSeconds(expireAfterSeconds)
-                .type(RequestType.BUY)
-                .build();
-        requestQueue.offer(request);
+    public void buy(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        publishBuy(claim(), customerId, bookId, price, quantity, expireAfterSeconds);
     }
 
     @Override
-    public void sell(int customerId, int bookId, int price, Long expireAfterSeconds) {
-        Request request = Request.builder()
-                .customerId(customerId)
-                .bookId(bookId)
-                .price(price)
-                .expireAfterSeconds(expireAfterSeconds)
-                .type(RequestType.SELL)
-                .build();
-        requestQueue.offer(request);
+    public void sell(int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        publishSell(claim(), customerId, bookId, price, quantity, expireAfterSeconds);
     }
 
     @Override
     public void cancel(Order order) {
-        Request request = Request.builder()
-                .order(order)
-                .type(RequestType.CANCEL)
-                .build();
-        requestQueue.offer(request);
+        publishCancel(claim(), order);
     }
 
-    private void processRequest(Request request) {
-        if (request == null) return;
+    /**
+     * Enqueue the commands of the batch in order, claiming slots for as many commands as the ring can hold at once
+     */
+    @Override
+    public void submit(OrderBatch batch) {
+        int size = batch.size();
+        for (int start = 0; start < size; ) {
+            int count = Math.min(size - start, requestQueue.capacity());
+            long high = claim(count);
+            long low = high - count + 1;
+            for (int i = 0; i < count; i++) {
+                fill(low + i, batch, start + i);
+                batch.acknowledge(start + i, partitionId, low + i);
+            }
+            publish(low, high);
+            start += count;
+        }
+    }
 
-        switch (request.getType()) {
+    /**
+     * Claim a request slot, which must then be published by one of the publish methods.
+     * Claiming and publishing separately let a {@link PartitionedOrderBook} check the route
+     * of the book in between, see {@link PartitionedOrderBook#moveBook(int, int)}.
+     */
+    long claim() {
+        return requestQueue.claim();
+    }
+
+    /**
+     * Claim {@code count} request slots at once, return the highest one
+     */
+    long claim(int count) {
+        return requestQueue.claim(count);
+    }
+
+    int capacity() {
+        return requestQueue.capacity();
+    }
+
+    int getPartitionId() {
+        return partitionId;
+    }
+
+    /**
+     * Fill a claimed slot with the i-th command of the batch, the slot must then be published
+     */
+    void fill(long sequence, OrderBatch batch, int i) {
+        RequestType type;
+        switch (batch.getType(i)) {
             case BUY:
-                orderBook.buy(
-                        request.getCustomerId(), request.getBookId(), request.getPrice(),
-                        request.getExpireAfterSeconds()
-                );
+                type = RequestType.BUY;
                 break;
             case SELL:
-                orderBook.sell(
-                        request.getCustomerId(), request.getBookId(), request.getPrice(),
-                        request.getExpireAfterSeconds()
-                );
+                type = RequestType.SELL;
                 break;
-            case CANCEL:
-                orderBook.cancel(request.getOrder());
+            default:
+                type = RequestType.CANCEL;
                 break;
         }
+        requestQueue.get(sequence).set(
+                type, batch.getCustomerId(i), batch.getBookId(i), batch.getPrice(i), batch.getQuantity(i),
+                batch.getExpireAfterSeconds(i), batch.getOrder(i)
+        );
     }
 
-    @Getter
-    @Builder
+    /**
+     * Publish the claimed slots from low to high included, which have all been filled
+     */
+    void publish(long low, long high) {
+        requestQueue.publish(low, high);
+    }
+
+    void publishBuy(long sequence, int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        requestQueue.get(sequence).set(RequestType.BUY, customerId, bookId, price, quantity, expireAfterSeconds, null);
+        requestQueue.publish(sequence);
+    }
+
+    void publishSell(long sequence, int customerId, int bookId, int price, int quantity, Long expireAfterSeconds) {
+        requestQueue.get(sequence).set(RequestType.SELL, customerId, bookId, price, quantity, expireAfterSeconds, null);
+        requestQueue.publish(sequence);
+    }
+
+    void publishCancel(long sequence, Order order) {
+        requestQueue.get(sequence).set(RequestType.CANCEL, 0, order.getBookId(), 0, 0, null, order);
+        requestQueue.publish(sequence);
+    }
+
+    /**
+     * Publish a slot that is ignored by the event loop, for a request that has been routed elsewhere
+     */
+    void publishSkip(long sequence) {
+        publishSkips(sequence, sequence);
+    }
+
+    /**
+     * Publish claimed slots that are ignored by the event loop, from low to high included
+     */
+    void publishSkips(long low, long high) {
+        for (long sequence = low; sequence <= high; sequence++) {
+            requestQueue.get(sequence).set(RequestType.SKIP, 0, 0, 0, 0, null, null);
+        }
+        requestQueue.publish(low, high);
+    }
+
+    /**
+     * Make the event loop park the requests of the book of the handoff from now on,
+     * until the book is handed over by {@link #exportBook}
+     */
+    void expectBook(BookHandoff handoff) {
+        publishHandoff(RequestType.EXPECT_BOOK, handoff);
+    }
+
+    /**
+     * Make the event loop hand the book of the handoff over to the target partition, once it has
+     * processed the requests queued before. The handoff completes when the target has taken it.
+     */
+    void exportBook(BookHandoff handoff) {
+        publishHandoff(RequestType.EXPORT_BOOK, handoff);
+    }
+
+    /**
+     * Make the event loop read the depth of the book in order with the other requests of the book,
+     * see {@link FIFOOrderBook#getDepth(int, int)}
+     */
+    @Override
+    public CompletableFuture<DepthSnapshot> requestDepth(int bookId, int levels) {
+        CompletableFuture<DepthSnapshot> future = new CompletableFuture<>();
+        publishDepthRequest(claim(), bookId, levels, future);
+        return future;
+    }
+
+    void publishDepthRequest(long sequence, int bookId, int levels, CompletableFuture<DepthSnapshot> future) {
+        Request request = requestQueue.get(sequence);
+        request.set(RequestType.DEPTH, 0, bookId, 0, levels, null, null);
+        request.depth = future;
+        requestQueue.publish(sequence);
+    }
+
+    /**
+     * Make the event loop write a snapshot of the partition at the end of the batch of this request,
+     * do nothing if the partition has no journal
+     */
+    public void snapshot() {
+        long sequence = requestQueue.claim();
+        requestQueue.get(sequence).set(RequestType.SNAPSHOT, 0, 0, 0, 0, null, null);
+        requestQueue.publish(sequence);
+    }
+
+    /**
+     * Return copies of the resting orders recovered from the journal when the partition started.
+     * The copies are handed over to the first caller, the next calls return an empty list.
+     */
+    @Override
+    public synchronized List<Order> takeRecoveredOrders() {
+        List<Order> orders = recoveredOrders;
+        recoveredOrders = List.of();
+        return orders;
+    }
+
+    @Override
+    public List<PartitionMetricsSnapshot> snapshotMetrics() {
+        return orderBook.snapshotMetrics();
+    }
+
+    /**
+     * Stop accepting requests, process the requests that are already queued
+     * then stop the event loop, along with the other partitions it runs
+     */
+    @Override
+    public void close() {
+        eventLoop.close();
+    }
+
+    /**
+     * Stop accepting requests, called by the event loop before it drains the ring
+     */
+    void closeQueue() {
+        requestQueue.close();
+    }
+
+    /**
+     * Release the resources of the underlying order book, called by the event loop once it stopped
+     */
+    void closeBook() {
+        if (journal != null) {
+            journal.close();
+        }
+        orderBook.close();
+    }
+
+    /**
+     * Whether every request claimed in the ring has been published and processed
+     */
+    boolean isDrained() {
+        return requestQueue.isDrained();
+    }
+
+    boolean hasExpiringOrders() {
+        return orderBook.hasExpiringOrders();
+    }
+
+    /**
+     * Read the clock, expire the orders that are due, process all the available requests,
+     * then dispatch the events they produced. Only called by the event loop.
+     */
+    int processBatch() {
+        long now = clock.update();
+        if (journal != null) {
+            journal.beginBatch(now);
+        }
+        // orders are expired before the batch, so the requests of the batch never meet them
+        if (orderBook.hasExpiringOrders()) {
+            orderBook.expireOrders();
+            // the replay must expire them at the same time, even if no command comes in the batch
+            if (journal != null && orderBook.hasExpiredOrders()) {
+                journal.appendClock();
+            }
+        }
+        int count = requestQueue.drain(requestHandler, requestQueue.capacity());
+        if (journal != null) {
+            journal.commit();
+        }
+        orderBook.flush();
+        if (journal != null) {
+            journal.snapshotIfDue(now);
+        }
+        return count;
+    }
+
+    private void processRequest(Request request) {
+        try {
+            if (!incomingBooks.isEmpty() && park(request)) {
+                return;
+            }
+            switch (request.type) {
+                case BUY:
+                    if (journal != null) {
+                        journal.appendBuy(
+                                request.customerId, request.bookId, request.price, request.quantity,
+                                request.expireAfterSeconds
+                        );
+                    }
+                    orderBook.buy(
+                            request.customerId, request.bookId, request.price, request.quantity,
+                            request.expireAfterSeconds
+                    );
+                    break;
+                case SELL:
+                    if (journal != null) {
+                        journal.appendSell(
+                                request.customerId, request.bookId, request.price, request.quantity,
+                                request.expireAfterSeconds
+                        );
+                    }
+                    orderBook.sell(
+                            request.customerId, request.bookId, request.price, request.quantity,
+                            request.expireAfterSeconds
+                    );
+                    break;
+                case CANCEL:
+                    if (journal != null) {
+                        journal.appendCancel(request.order);
+                    }
+                    orderBook.cancel(request.order);
+                    break;
+                case DEPTH:
+                    request.depth.complete(orderBook.getDepth(request.bookId, request.quantity));
+                    break;
+                case SKIP:
+                    break;
+                case SNAPSHOT:
+                    if (journal != null) {
+                        journal.requestSnapshot();
+                    }
+                    break;
+                case EXPECT_BOOK:
+                    expect(request.handoff);
+                    break;
+                case EXPORT_BOOK:
+                    handOver(request.handoff);
+                    break;
+                case IMPORT_BOOK:
+                    takeOver(request.handoff);
+                    break;
+            }
+        } catch (Throwable e) {
+            // a failing request must not stop the event loop,
+            // otherwise producers would block forever once the ring buffer is full
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        } finally {
+            // do not keep the order reachable from the slot
+            request.clear();
+        }
+    }
+
+    /**
+     * Keep a copy of a request of a book that is not handed over yet, return false if the request
+     * does not belong to such a book
+     */
+    private boolean park(Request request) {
+        if (request.type != RequestType.BUY && request.type != RequestType.SELL && request.type != RequestType.CANCEL
+                && request.type != RequestType.DEPTH) {
+            return false;
+        }
+
+        List<Request> parkedRequests = incomingBooks.get(request.bookId);
+        if (parkedRequests == null) return false;
+
+        Request copy = new Request();
+        copy.set(
+                request.type, request.customerId, request.bookId, request.price, request.quantity,
+                request.expireAfterSeconds, request.order
+        );
+        copy.depth = request.depth;
+        parkedRequests.add(copy);
+        return true;
+    }
+
+    /**
+     * Start parking the requests of the book of the handoff, or take the book over right away
+     * if a partition of the same thread already exported it
+     */
+    private void expect(BookHandoff handoff) {
+        BookHandoff exported = exportedBooks.remove(handoff.getBookId());
+        if (exported != null) {
+            takeOver(exported);
+        } else {
+            incomingBooks.put(handoff.getBookId(), new ArrayList<>());
+        }
+    }
+
+    /**
+     * Take the book out of the underlying order book and pass it to the target partition. The target is
+     * always given the handoff, even if the export failed, so it stops parking the requests of the book.
+     * The journal is committed and the events of the batch are flushed first.
+     */
+    private void handOver(BookHandoff handoff) {
+        try {
+            handoff.setSnapshot(orderBook.exportBook(handoff.getBookId()));
+            if (journal != null) {
+                journal.appendExport(handoff);
+            }
+        } catch (Throwable e) {
+            handoff.fail(e);
+            throw e;
+        } finally {
+            // the records and events of the book so far, the export included, must go out before the target
+            // imports the book and journals and dispatches its own, or listeners would see them out of order
+            if (journal != null) {
+                journal.commit();
+            }
+            orderBook.flush();
+            QueueBasedOrderBook target = handoff.getTarget();
+            if (target.eventLoop == eventLoop) {
+                target.receive(handoff);
+            } else {
+                target.publishHandoff(RequestType.IMPORT_BOOK, handoff);
+            }
+        }
+    }
+
+    /**
+     * Take over a book exported by a partition of the same thread. The requests of the book that come
+     * after the expect request in the ring of this partition must see the book, so it is only imported
+     * once the expect request has been processed.
+     */
+    private void receive(BookHandoff handoff) {
+        if (incomingBooks.containsKey(handoff.getBookId())) {
+            if (journal != null) {
+                // called in the batch of the source partition, the clock of this partition is the one of its last batch
+                journal.beginBatch(clock.currentTimeMillis());
+            }
+            takeOver(handoff);
+        } else {
+            exportedBooks.put(handoff.getBookId(), handoff);
+        }
+    }
+
+    /**
+     * Rest the orders handed over by the source partition, then process the requests parked in the meantime
+     */
+    private void takeOver(BookHandoff handoff) {
+        List<Request> parkedRequests = incomingBooks.remove(handoff.getBookId());
+        try {
+            if (handoff.getSnapshot() != null) {
+                if (journal != null) {
+                    journal.appendImport(handoff);
+                }
+                orderBook.importBook(handoff.getSnapshot());
+            }
+        } catch (Throwable e) {
+            handoff.fail(e);
+            throw e;
+        } finally {
+            if (parkedRequests != null) {
+                for (Request parkedRequest : parkedRequests) {
+                    processRequest(parkedRequest);
+                }
+            }
+            handoff.complete();
+        }
+    }
+
+    /**
+     * Return the last move of every book moved in or out of the partition, as found in the journal
+     * on restart. Must be called before the event loop starts.
+     */
+    IntObjectHashMap<JournaledMove> getJournaledMoves() {
+        return journal.getJournaledMoves();
+    }
+
+    /**
+     * Import a book whose export has been journaled by another partition but not its import,
+     * because the engine stopped in the middle of the move. Must be called before the event loop starts.
+     */
+    void recoverBook(int bookId, JournaledMove move) {
+        journal.recoverBook(bookId, move);
+        recoveredOrders = orderBook.copyRestingOrders();
+    }
+
+    /**
+     * Forget the orders of the books exported by the partition, once every move cut by the restart
+     * has been finished by {@link #recoverBook}. Must be called before the event loop starts.
+     */
+    void dropExportedOrders() {
+        journal.dropExportedOrders();
+    }
+
+    /**
+     * Return the id of every book of the partition. Must be called before the event loop starts.
+     */
+    int[] getBookIds() {
+        return orderBook.getBookIds();
+    }
+
+    private void publishHandoff(RequestType type, BookHandoff handoff) {
+        long sequence = requestQueue.claim();
+        Request request = requestQueue.get(sequence);
+        request.set(type, 0, handoff.getBookId(), 0, 0, null, null);
+        request.handoff = handoff;
+        requestQueue.publish(sequence);
+    }
+
+    /**
+     * Mutable request slot of the ring buffer
+     */
     private static class Request {
+        private RequestType type;
         private int customerId;
         private int bookId;
         private int price;
+        private int quantity;
         private Long expireAfterSeconds;
         private Order order;
-        private RequestType type;
+
+        /**
+         * Move of a book between partitions, only set for the book handoff requests
+         */
+        private BookHandoff handoff;
+
+        /**
+         * Result of a depth request, only set for {@link RequestType#DEPTH}
+         */
+        private CompletableFuture<DepthSnapshot> depth;
+
+        private void set(
+                RequestType type, int customerId, int bookId, int price, int quantity,
+                Long expireAfterSeconds, Order order
+        ) {
+            this.type = type;
+            this.customerId = customerId;
+            this.bookId = bookId;
+            this.price = price;
+            this.quantity = quantity;
+            this.expireAfterSeconds = expireAfterSeconds;
+            this.order = order;
+        }
+
+        private void clear() {
+            this.expireAfterSeconds = null;
+            this.order = null;
+            this.handoff = null;
+            this.depth = null;
+        }
     }
 
     private enum RequestType {
-        BUY, SELL, CANCEL
+        BUY, SELL, CANCEL, SKIP, EXPECT_BOOK, EXPORT_BOOK, IMPORT_BOOK, SNAPSHOT, DEPTH
     }
 }
@@ -0,0 +1,39 @@
+package org.example.orderbook;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of a {@link JournalReplayer}.
+ * Every setting but the journal directory has a default, so only the ones that differ need to be given to the builder.
+ */
+@Builder(toBuilder = true)
+@Getter
+public class ReplayConfig {
+    /**
+     * Directory of the journals to replay, as given to {@link OrderBookConfig#getJournalDirectory()} when they were recorded
+     */
+    private final Path journalDirectory;
+
+    /**
+     * Settings of the order book of every partition, the ones to backtest. The partition id, clock, dispatch mode,
+     * depth updates, best bid and offer cache and journal settings are set by the replayer. Metrics are disabled by default, since they slow the replay down.
+     */
+    @Builder.Default
+    private final OrderBookConfig orderBookConfig = OrderBookConfig.builder().metricsEnabled(false).build();
+
+    /**
+     * Number of partitions replayed at the same time, by the threads of a fork-join pool.
+     * With 1, every partition is replayed by the calling thread, one after the other.
+     */
+    @Builder.Default
+    private final int parallelism = 1;
+
+    /**
+     * Directory the fills of every partition are written to, see {@link JournalReplayer}, no fill is written when null
+     */
+    @Builder.Default
+    private final Path fillsDirectory = null;
+}
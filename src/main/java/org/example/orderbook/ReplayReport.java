@@ -0,0 +1,34 @@
+package org.example.orderbook;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Outcome of a {@link JournalReplayer#replay()}, summed up over every partition
+ */
+@Builder
+@Getter
+public class ReplayReport {
+    private final int partitions;
+
+    /**
+     * Number of buy, sell and cancel commands replayed
+     */
+    private final long commands;
+
+    /**
+     * Number of commands rejected by the order book, such as orders with an invalid quantity
+     */
+    private final long rejectedCommands;
+
+    /**
+     * Number of trades, each one filling some quantity of a buy order and a sell order
+     */
+    private final long fills;
+
+    private final long elapsedNanos;
+
+    public double getCommandsPerSecond() {
+        return elapsedNanos > 0 ? commands * 1e9 / elapsedNanos : 0;
+    }
+}
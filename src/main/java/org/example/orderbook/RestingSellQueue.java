@@ -1,107 +1,353 @@
 package org.example.orderbook;
 
-import org.example.entities.BuyOrder;
-import org.example.entities.SellOrder;
-import org.example.utilities.DoublyLinkedList;
+import org.example.entities.DepthLevel;
+import org.example.metrics.BookMetrics;
+import org.example.store.OrderStore;
 
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
 
 /**
  * {@link RestingSellQueue} store pending sell orders and match a buy order
  * with the lowest price sell order.
  *
  * <p>In order to find a matching order, first we need to find the lowest possible price
- * among pending orders. To do that, we maintain a TreeMap that map from sell prices to
- * corresponding orders. A {@link TreeMap} is a Map that maintain the order of its keys using
- * Red-Black tree, so it allow to do range searching, random insertion and removal in O(log(N)).
+ * among pending orders. To do that, we maintain a {@link PriceLadder} that map from prices to
+ * corresponding orders. The ladder implementation is chosen by {@link LadderType}:
+ * {@link TreePriceLadder} allow to do range searching, random insertion and removal in O(log(N)),
+ * {@link ArrayPriceLadder} do the same in O(1) for prices that are close to the best price.
  *
- * <p>After the lowest price is found, we get all the orders that offer the price from the order Map.
+ * <p>After the lowest price is found, we get all the orders that offer the price from the ladder.
  * Then we iterate through the orders in ascending order of creation time to find the matching one.
- * We use {@link DoublyLinkedList} to store the orders because it supports random insert,
- * delete in O(1) time complexity. See {@link DoublyLinkedList} implementation for more detail.
+ * Orders are handles into the {@link OrderStore} of the partition, and each price level is a
+ * {@link PriceLevel} linking the handles through the store records. It supports random insert,
+ * delete in O(1) time complexity without allocating a node or hashing the order.
  *
- * <p>Note that {@link TreeMap} is implemented using Red-Black tree, which provide faster insertion and
- * removal, but slower in search operations compare to AVL tree. Because read is more
- * frequent, we could consider using AVL tree instead.
+ * <p>Orders of the customer of the incoming order are handled by the {@link SelfTradePolicy},
+ * one run of consecutive orders at a time, see {@link PriceLevel}.
+ *
+ * <p>A price level leaves the ladder as soon as its last order is traded, cancelled or expired,
+ * and goes back to the {@link PriceLevelPool} of the order book to be reused by the next new price.
+ * So the ladder only holds live prices, and no level is allocated while the book moves within its peak depth.
+ *
+ * <p>Every level keeps the remaining quantity and the number of its orders. When the depth of the book is
+ * published, the queue tells the {@link DepthTracker} of the order book about every level it is about to change.
+ *
+ * <p>When metrics are enabled, the queue records trades, cancelled and expired orders,
+ * same-customer skips and the number of levels walked by every match in the {@link BookMetrics} of its book.
  */
 public class RestingSellQueue {
-    private final NavigableMap<Integer, DoublyLinkedList<SellOrder>> priceToOrdersMap;
+    private final OrderStore store;
+
+    private final PriceLadder<PriceLevel> priceLadder;
+
+    private final SelfTradePolicy selfTradePolicy;
+
+    private final PriceLevelPool levelPool;
 
-    public RestingSellQueue() {
-        priceToOrdersMap = new TreeMap<>();
+    /**
+     * Counters of the book, null if metrics are disabled
+     */
+    private final BookMetrics metrics;
+
+    /**
+     * Changed levels of the queue, null if the depth is not published
+     */
+    private final DepthTracker.BookSide depth;
+
+    public RestingSellQueue(OrderStore store) {
+        this(store, LadderType.TREE, SelfTradePolicy.SKIP, new PriceLevelPool(), null);
+    }
+
+    public RestingSellQueue(
+            OrderStore store, LadderType ladderType, SelfTradePolicy selfTradePolicy,
+            PriceLevelPool levelPool, BookMetrics metrics
+    ) {
+        this(store, ladderType.create(levelPool::acquire), selfTradePolicy, levelPool, metrics, null);
+    }
+
+    RestingSellQueue(
+            OrderStore store, PriceLadder<PriceLevel> priceLadder, SelfTradePolicy selfTradePolicy,
+            PriceLevelPool levelPool, BookMetrics metrics, DepthTracker.BookSide depth
+    ) {
+        this.store = store;
+        this.priceLadder = priceLadder;
+        this.selfTradePolicy = selfTradePolicy;
+        this.levelPool = levelPool;
+        this.metrics = metrics;
+        this.depth = depth;
+        if (depth != null) {
+            depth.attach(priceLadder);
+        }
     }
 
-    public void add(SellOrder sellOrder) {
-        priceToOrdersMap.computeIfAbsent(sellOrder.getExpectedPrice(), price -> new DoublyLinkedList<>())
-                .add(sellOrder);
+    public void add(int sellOrder) {
+        append(sellOrder);
+        if (metrics != null) {
+            metrics.onRested();
+        }
     }
 
     /**
-     * Find a matching sell order that match the given buy request
-     * We need to iterate though all the possible prices and orders of those prices
-     * Because earliest order is always at the head of the linkedList, in most case,
-     * time complexity of matching operation is O(log(N)) where N is number of orders
-     * that offer the lowest price.
+     * Match the given buy request with resting sell orders until the buy order is
+     * completely filled or no more resting order offer an acceptable price.
+     * The buy order sweeps the price levels from the best one, and the orders of each level
+     * in ascending order of creation time. Every resting order it trades with is passed to
+     * the matchHandler with the traded quantity. Resting orders that are completely filled
+     * are removed from the queue and freed from the store, and the price levels that
+     * become empty are removed too.
+     *
+     * <p>Because earliest order is always at the head of the level, in most case,
+     * every traded order is found in O(1) once its price level is found.
      *
-     * <p>Problem arise when there are expired orders or order from the same customer.
-     * In that case, the order will be removed or ignored depend on specific case.
-     * So in worst case, time complexity is O(M*log(N)^2) where M is number of offered prices,
-     * N is number of orders of each price.
+     * <p>Orders of the same customer are handled by the {@link SelfTradePolicy}. Consecutive orders
+     * of the customer are jumped over, or cancelled, as a whole, so a level costs O(T + 1) where T is
+     * the number of trades, whatever the number of orders of the customer it holds.
+     * Expired orders are never met, they are removed when they expire by the {@link ExpiryWheel}
+     * of the order book, so matching does not need to read the clock.
+     *
+     * @return false if the buy order has been cancelled by {@link SelfTradePolicy#CANCEL_INCOMING},
+     * in which case it must not rest
      */
-    public SellOrder match(BuyOrder buyOrder) {
-        if (priceToOrdersMap.isEmpty()) return null;
-
-        Integer lowestPrice = priceToOrdersMap.firstKey();
+    public boolean match(int buyOrder, MatchHandler matchHandler) {
+        int lowestPrice = priceLadder.lowestPrice();
+        int levels = 0;
+        boolean canRest = true;
 
         // Iterate through all possible price, from lowest to highest
-        // util a matching order is found
-        while (lowestPrice != null && lowestPrice <= buyOrder.getExpectedPrice()) {
+        // util the buy order is filled
+        while (canRest && lowestPrice != PriceLadder.NO_PRICE && lowestPrice <= store.getPrice(buyOrder)
+                && store.getRemainingQuantity(buyOrder) > 0) {
             // Get all sell orders that offer the lowestPrice
-            DoublyLinkedList<SellOrder> matchedOrderList = priceToOrdersMap.get(lowestPrice);
-            // Find the matching order inside the order list that we got above
-            SellOrder matchedOrder  = findMatchedOrderInList(buyOrder, matchedOrderList);
-            if (matchedOrder != null)
-                return matchedOrder;
-
-            // Matching order not found
-            // Update the lowestPrice to the smallest price that higher than the current lowestPrice
-            lowestPrice = priceToOrdersMap.higherKey(lowestPrice);
+            PriceLevel level = priceLadder.get(lowestPrice);
+            if (depth != null) {
+                depth.change(lowestPrice, level);
+            }
+            levels += 1;
+            // Trade with the orders inside the level that we got above
+            canRest = matchOrdersInLevel(buyOrder, level, matchHandler);
+
+            // Move lowestPrice to the smallest price that higher than the current lowestPrice
+            // The current level is dropped if it has been emptied
+            int nextPrice = priceLadder.higherPrice(lowestPrice);
+            if (level.isEmpty()) {
+                levelPool.release(priceLadder.remove(lowestPrice));
+            }
+            lowestPrice = nextPrice;
+        }
+
+        if (metrics != null) {
+            metrics.onMatchCompleted(levels);
         }
+        return canRest;
+    }
 
-        return null;
+    /**
+     * Rest again a sell order taken out of another order book, see {@link #transferTo}.
+     * Unlike {@link #add}, the order is not counted as a new resting order.
+     */
+    void restore(int sellOrder) {
+        append(sellOrder);
     }
 
-    public boolean remove(SellOrder order) {
-        DoublyLinkedList<SellOrder> orderList = priceToOrdersMap.get(order.getExpectedPrice());
-        if (orderList != null && orderList.isNotEmpty()) {
-            return orderList.remove(order);
+    /**
+     * Pass every order of this queue to the consumer, level by level from the best price
+     * and in time priority inside a level, which is the order {@link #restore} must get them back
+     */
+    void forEach(IntConsumer consumer) {
+        int price = priceLadder.lowestPrice();
+        while (price != PriceLadder.NO_PRICE) {
+            int order = priceLadder.get(price).head();
+            while (order != OrderStore.NULL) {
+                consumer.accept(order);
+                order = store.getNext(order);
+            }
+            price = priceLadder.higherPrice(price);
         }
+    }
+
+    /**
+     * Unlink every order of this queue, level by level from the best price and in time priority
+     * inside a level, and pass them to the consumer, which must free them from the store
+     */
+    void transferTo(IntConsumer consumer) {
+        int price = priceLadder.lowestPrice();
+        while (price != PriceLadder.NO_PRICE) {
+            PriceLevel level = priceLadder.get(price);
+            if (depth != null) {
+                depth.change(price, level);
+            }
+            int order = level.head();
+            while (order != OrderStore.NULL) {
+                int next = store.getNext(order);
+                level.remove(store, order);
+                consumer.accept(order);
+                order = next;
+            }
 
-        return false;
+            int nextPrice = priceLadder.higherPrice(price);
+            levelPool.release(priceLadder.remove(price));
+            price = nextPrice;
+        }
     }
 
     /**
-     * Match a buy order with a list of sell orders
+     * Return the best price of the queue, {@link PriceLadder#NO_PRICE} if the queue is empty
      */
-    private SellOrder findMatchedOrderInList(BuyOrder buyOrder, DoublyLinkedList<SellOrder> sellOrders) {
-        DoublyLinkedList.Iterator<SellOrder> iterator = sellOrders.iterator();
-        // Iterate through to sell orders
-        // if current sell order have same customer id with buy order, ignore the order
-        // if current sell order is expired, remove the order and move to the next one
-        // otherwise, return the current sell order as it is the matching order
-        while (iterator.hasNext()) {
-            SellOrder order = iterator.next();
-
-            if (order.getCustomerId() != buyOrder.getCustomerId() && !order.isExpired()) {
-                return order;
+    int bestPrice() {
+        return priceLadder.lowestPrice();
+    }
+
+    /**
+     * Return the remaining quantity of the orders resting at the best price, 0 if the queue is empty
+     */
+    long bestQuantity() {
+        int price = priceLadder.lowestPrice();
+        return price != PriceLadder.NO_PRICE ? priceLadder.get(price).quantity() : 0;
+    }
+
+    /**
+     * Return the given number of best levels of the queue, best price first
+     */
+    List<DepthLevel> topLevels(int count) {
+        List<DepthLevel> levels = new ArrayList<>();
+        int price = priceLadder.lowestPrice();
+        while (price != PriceLadder.NO_PRICE && levels.size() < count) {
+            PriceLevel level = priceLadder.get(price);
+            levels.add(DepthLevel.builder().price(price).quantity(level.quantity()).orderCount(level.size()).build());
+            price = priceLadder.higherPrice(price);
+        }
+        return levels;
+    }
+
+    /**
+     * Return true if no sell order rests in the queue
+     */
+    public boolean isEmpty() {
+        return priceLadder.isEmpty();
+    }
+
+    /**
+     * Remove a cancelled sell order of this queue and free it from the store
+     */
+    public void remove(int sellOrder) {
+        unlink(sellOrder);
+        if (metrics != null) {
+            metrics.onCancelled();
+        }
+    }
+
+    /**
+     * Remove an expired sell order of this queue and free it from the store
+     */
+    public void expire(int sellOrder) {
+        unlink(sellOrder);
+        if (metrics != null) {
+            metrics.onExpired();
+        }
+    }
+
+    /**
+     * Match a buy order with the sell orders of a price level.
+     * Return false if the buy order has been cancelled by the self-trade policy.
+     */
+    private boolean matchOrdersInLevel(int buyOrder, PriceLevel level, MatchHandler matchHandler) {
+        int customerId = store.getCustomerId(buyOrder);
+        int order = level.head();
+        // first order of the last skipped run of the customer
+        int skippedRun = OrderStore.NULL;
+        // Iterate through to sell orders, expired orders are not there anymore, see ExpiryWheel
+        // if current sell order have same customer id with buy order, apply the self-trade policy
+        // to its whole run, the order after the run belongs to another customer
+        // otherwise, trade as much as possible with the current sell order
+        while (order != OrderStore.NULL && store.getRemainingQuantity(buyOrder) > 0) {
+            if (store.getCustomerId(order) == customerId) {
+                switch (selfTradePolicy) {
+                    case SKIP: {
+                        // trading away the only order between 2 runs of the customer merges them,
+                        // the merged run then starts with the run skipped before
+                        int prev = store.getPrev(order);
+                        if (prev == OrderStore.NULL || store.getCustomerId(prev) != customerId) {
+                            skippedRun = order;
+                        }
+                        if (metrics != null) {
+                            metrics.onSameCustomerSkip();
+                        }
+                        order = level.nextRun(store, skippedRun);
+                        continue;
+                    }
+                    case CANCEL_RESTING:
+                        order = cancelRun(order, level, matchHandler);
+                        continue;
+                    default:
+                        // CANCEL_INCOMING, the caller cancels what is left of the incoming order
+                        return false;
+                }
+            }
+
+            int next = store.getNext(order);
+            int quantity = Math.min(store.getRemainingQuantity(order), store.getRemainingQuantity(buyOrder));
+            store.setRemainingQuantity(order, store.getRemainingQuantity(order) - quantity);
+            level.trade(quantity);
+            if (metrics != null) {
+                metrics.onMatch(quantity);
+            }
+            store.setRemainingQuantity(buyOrder, store.getRemainingQuantity(buyOrder) - quantity);
+
+            // trades are always executed at the price of the resting order
+            matchHandler.onMatch(buyOrder, order, quantity, store.getPrice(order));
+
+            // the handler has seen the order, it can be freed once filled
+            if (store.getRemainingQuantity(order) == 0) {
+                level.remove(store, order);
+                store.free(order);
             }
+            order = next;
+        }
+        return true;
+    }
 
-            if (order.isExpired()) {
-                sellOrders.remove(order);
+    /**
+     * Cancel the run of orders starting with the given one, and return the order following the run
+     */
+    private int cancelRun(int runFirst, PriceLevel level, MatchHandler matchHandler) {
+        int end = level.nextRun(store, runFirst);
+        int order = runFirst;
+        while (order != end) {
+            int next = store.getNext(order);
+            matchHandler.onSelfTradeCancel(order);
+            level.remove(store, order);
+            store.free(order);
+            if (metrics != null) {
+                metrics.onCancelled();
             }
+            order = next;
+        }
+        return end;
+    }
+
+    private void append(int sellOrder) {
+        int price = store.getPrice(sellOrder);
+        PriceLevel level = priceLadder.getOrCreate(price);
+        if (depth != null) {
+            depth.change(price, level);
         }
+        level.append(store, sellOrder);
+    }
 
-        return null;
+    private void unlink(int sellOrder) {
+        int price = store.getPrice(sellOrder);
+        PriceLevel level = priceLadder.get(price);
+        if (depth != null) {
+            depth.change(price, level);
+        }
+        level.remove(store, sellOrder);
+        store.free(sellOrder);
+        // drop the price level once its last order is gone
+        // so the ladder only keeps live prices
+        if (level.isEmpty()) {
+            levelPool.release(priceLadder.remove(price));
+        }
     }
 }
@@ -0,0 +1,26 @@
+package org.example.orderbook;
+
+/**
+ * What a {@link FIFOOrderBook} does when an incoming order meets resting orders of its own customer.
+ * The orders of the customer are found through the runs of {@link PriceLevel}, so every policy
+ * handles all the consecutive orders of the customer at once.
+ */
+public enum SelfTradePolicy {
+    /**
+     * The resting orders of the customer stay in the book,
+     * the incoming order trades with the orders behind them
+     */
+    SKIP,
+
+    /**
+     * The resting orders of the customer met by the incoming order are cancelled,
+     * then the incoming order keeps matching
+     */
+    CANCEL_RESTING,
+
+    /**
+     * What is left of the incoming order is cancelled, it does not trade further nor rest.
+     * Trades made before meeting the orders of the customer are kept.
+     */
+    CANCEL_INCOMING
+}
@@ -0,0 +1,168 @@
+package org.example.orderbook;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Read a snapshot file written by {@link SnapshotWriter}, in the order it was written.
+ * The checksum covers the whole content, it is checked by {@link #verify()} once everything has been read.
+ */
+class SnapshotReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final CRC32C checksum;
+
+    /**
+     * Size of the content, without the checksum at the end of the file
+     */
+    private final long contentSize;
+
+    private final long journalPosition;
+
+    private SnapshotReader(Path path, int partitionId) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.contentSize = channel.size() - Integer.BYTES;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.limit(0);
+        this.checksum = new CRC32C();
+        if (contentSize < Integer.BYTES * 2 + Long.BYTES || getInt() != SnapshotWriter.MAGIC || getInt() != partitionId) {
+            channel.close();
+            throw new IllegalStateException("Not a snapshot of partition " + partitionId + ": " + path);
+        }
+        this.journalPosition = getLong();
+    }
+
+    /**
+     * Open the latest snapshot of the partition, or return null if there is none
+     */
+    static SnapshotReader openLatest(Path directory, int partitionId) {
+        try {
+            List<Path> snapshots = listSnapshots(directory, partitionId);
+            return snapshots.isEmpty() ? null : new SnapshotReader(snapshots.get(snapshots.size() - 1), partitionId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the snapshot of partition " + partitionId, e);
+        }
+    }
+
+    /**
+     * Return the complete snapshots of the partition, from the oldest to the latest
+     */
+    static List<Path> listSnapshots(Path directory, int partitionId) throws IOException {
+        Pattern name = Pattern.compile("partition-" + partitionId + "-\\d+-\\d+\\.snapshot");
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return snapshots;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> name.matcher(file.getFileName().toString()).matches()).forEach(snapshots::add);
+        }
+        // the positions are zero-padded, so the names sort like the positions
+        snapshots.sort(null);
+        return snapshots;
+    }
+
+    /**
+     * Position of the journal when the snapshot was taken, the replay of the journal starts there
+     */
+    long getJournalPosition() {
+        return journalPosition;
+    }
+
+    byte getByte() {
+        ensureAvailable(1);
+        return buffer.get();
+    }
+
+    int getInt() {
+        ensureAvailable(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long getLong() {
+        ensureAvailable(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    /**
+     * Read a book snapshot written by {@link SnapshotWriter#putBookSnapshot(BookSnapshot)}
+     */
+    BookSnapshot getBookSnapshot() {
+        int size = getInt();
+        ByteBuffer encoded = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (encoded.hasRemaining()) {
+            ensureAvailable(1);
+            int length = Math.min(encoded.remaining(), buffer.remaining());
+            encoded.put(buffer.slice().limit(length));
+            buffer.position(buffer.position() + length);
+        }
+        return BookSnapshot.decode(encoded, 0);
+    }
+
+    /**
+     * Check that the whole content has been read and matches the checksum
+     *
+     * @throws IllegalStateException if the snapshot is corrupted
+     */
+    void verify() {
+        try {
+            ByteBuffer expected = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (expected.hasRemaining()) {
+                if (channel.read(expected, contentSize + expected.position()) < 0) break;
+            }
+            if (buffer.hasRemaining() || channel.position() != contentSize
+                    || expected.getInt(0) != (int) checksum.getValue()) {
+                throw new IllegalStateException("Snapshot is corrupted: " + path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the snapshot " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close the snapshot " + path, e);
+        }
+    }
+
+    private void ensureAvailable(int size) {
+        if (buffer.remaining() >= size) return;
+
+        try {
+            buffer.compact();
+            long left = contentSize - channel.position();
+            if (buffer.position() + left < size) {
+                throw new IllegalStateException("Snapshot is truncated: " + path);
+            }
+            // never read the checksum as content
+            buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + left));
+            int start = buffer.position();
+            while (buffer.position() < buffer.limit()) {
+                if (channel.read(buffer) < 0) throw new IllegalStateException("Snapshot is truncated: " + path);
+            }
+            checksum.update(buffer.duplicate().flip().position(start));
+            buffer.flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the snapshot " + path, e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.orderbook;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Write the resting state of a partition into a snapshot file, read back by {@link SnapshotReader}.
+ *
+ * <p>A snapshot is taken by the event loop between 2 batches, right after the journal has been committed,
+ * so it holds the effect of every command journaled before {@link CommandJournal#checkpoint()} and none of
+ * the following ones. The file is named after that journal position, which is where the replay starts on
+ * restart. It is written sequentially through a direct buffer, little endian like the journal, and ends
+ * with a checksum of its content.
+ *
+ * <p>The file is written under a temporary name and only renamed once it is complete and forced, so a
+ * crash while writing leaves the previous snapshot in place. Once renamed, the older snapshots of the
+ * partition are deleted.
+ */
+class SnapshotWriter implements AutoCloseable {
+    static final int MAGIC = 0x534e4131;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    private final int partitionId;
+
+    private final Path path;
+
+    private final Path temporaryPath;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final CRC32C checksum;
+
+    private boolean committed;
+
+    SnapshotWriter(Path directory, int partitionId, long journalPosition) {
+        this.directory = directory;
+        this.partitionId = partitionId;
+        this.path = directory.resolve(fileName(partitionId, journalPosition));
+        this.temporaryPath = directory.resolve(path.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            this.channel = FileChannel.open(
+                    temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+            );
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create a snapshot of partition " + partitionId, e);
+        }
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.checksum = new CRC32C();
+        putInt(MAGIC);
+        putInt(partitionId);
+        putLong(journalPosition);
+    }
+
+    /**
+     * Name of the snapshot of a partition taken at the given journal position, ordered like the positions
+     */
+    static String fileName(int partitionId, long journalPosition) {
+        return String.format(
+                "partition-%d-%06d-%010d.snapshot", partitionId,
+                CommandJournal.segmentOf(journalPosition), CommandJournal.offsetOf(journalPosition)
+        );
+    }
+
+    void putByte(byte value) {
+        ensureRemaining(1);
+        buffer.put(value);
+    }
+
+    void putInt(int value) {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Write a book snapshot with its size, without its metrics
+     */
+    void putBookSnapshot(BookSnapshot snapshot) {
+        ByteBuffer encoded = ByteBuffer.allocate(snapshot.encodedSize()).order(ByteOrder.LITTLE_ENDIAN);
+        snapshot.encode(encoded, 0);
+        putInt(encoded.capacity());
+        while (encoded.hasRemaining()) {
+            ensureRemaining(1);
+            int length = Math.min(encoded.remaining(), buffer.remaining());
+            buffer.put(encoded.slice().limit(length));
+            encoded.position(encoded.position() + length);
+        }
+    }
+
+    /**
+     * Write the checksum, force the file and give it its final name, then delete the older snapshots
+     */
+    void commit() {
+        try {
+            flush();
+            buffer.putInt((int) checksum.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+
+            List<Path> snapshots = SnapshotReader.listSnapshots(directory, partitionId);
+            for (Path snapshot : snapshots) {
+                if (!snapshot.equals(path)) {
+                    Files.deleteIfExists(snapshot);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write a snapshot of partition " + partitionId, e);
+        }
+    }
+
+    /**
+     * Delete the file if the snapshot has not been committed
+     */
+    @Override
+    public void close() {
+        if (committed) return;
+
+        try {
+            channel.close();
+            Files.deleteIfExists(temporaryPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete an incomplete snapshot of partition " + partitionId, e);
+        }
+    }
+
+    private void ensureRemaining(int size) {
+        if (buffer.remaining() < size) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write a snapshot of partition " + partitionId, e);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
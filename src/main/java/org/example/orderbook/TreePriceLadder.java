@@ -0,0 +1,68 @@
+package org.example.orderbook;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * {@link PriceLadder} implementation backed by a {@link TreeMap}.
+ * A {@link TreeMap} is a Map that maintain the order of its keys using
+ * Red-Black tree, so it allow to do range searching, random insertion and removal in O(log(N)).
+ *
+ * <p>It works for any price distribution, but prices are boxed as map keys
+ * and every navigation step is a tree search.
+ */
+public class TreePriceLadder<L> implements PriceLadder<L> {
+    private final NavigableMap<Integer, L> priceToLevelMap;
+
+    private final Supplier<L> levelFactory;
+
+    public TreePriceLadder(Supplier<L> levelFactory) {
+        this.priceToLevelMap = new TreeMap<>();
+        this.levelFactory = levelFactory;
+    }
+
+    @Override
+    public L get(int price) {
+        return priceToLevelMap.get(price);
+    }
+
+    @Override
+    public L getOrCreate(int price) {
+        return priceToLevelMap.computeIfAbsent(price, p -> levelFactory.get());
+    }
+
+    @Override
+    public L remove(int price) {
+        return priceToLevelMap.remove(price);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return priceToLevelMap.isEmpty();
+    }
+
+    @Override
+    public int lowestPrice() {
+        return priceToLevelMap.isEmpty() ? NO_PRICE : priceToLevelMap.firstKey();
+    }
+
+    @Override
+    public int highestPrice() {
+        return priceToLevelMap.isEmpty() ? NO_PRICE : priceToLevelMap.lastKey();
+    }
+
+    @Override
+    public int higherPrice(int price) {
+        return orNoPrice(priceToLevelMap.higherKey(price));
+    }
+
+    @Override
+    public int lowerPrice(int price) {
+        return orNoPrice(priceToLevelMap.lowerKey(price));
+    }
+
+    private static int orNoPrice(Integer price) {
+        return price != null ? price : NO_PRICE;
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.sequencer;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Block the consumer on a condition while idle, until a producer signal
+ * that something has been published. Use no CPU when idle,
+ * but every publish has to take a lock to signal the consumer.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition published = lock.newCondition();
+
+    /**
+     * Set by producers, so a signal sent before the consumer start waiting is not lost
+     */
+    private boolean signalled;
+
+    @Override
+    public void idle(int idleCount) {
+        lock.lock();
+        try {
+            while (!signalled) {
+                published.awaitUninterruptibly();
+            }
+            signalled = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void idle(int idleCount, long maxWaitNanos) {
+        lock.lock();
+        try {
+            long remainingNanos = maxWaitNanos;
+            while (!signalled && remainingNanos > 0) {
+                remainingNanos = published.awaitNanos(remainingNanos);
+            }
+            signalled = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signal() {
+        lock.lock();
+        try {
+            signalled = true;
+            published.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.sequencer;
+
+/**
+ * Spin on the CPU while idle. Lowest latency, but keep a core busy all the time.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+    @Override
+    public void idle(int idleCount) {
+        Thread.onSpinWait();
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.sequencer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Park the consumer for a fixed amount of time while idle.
+ * Use almost no CPU when idle, at the cost of up to {@code parkNanos}
+ * of extra latency for the first request after an idle period.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+    public static final long DEFAULT_PARK_NANOS = 50_000;
+
+    private final long parkNanos;
+
+    public ParkingWaitStrategy() {
+        this(DEFAULT_PARK_NANOS);
+    }
+
+    public ParkingWaitStrategy(long parkNanos) {
+        this.parkNanos = parkNanos;
+    }
+
+    @Override
+    public void idle(int idleCount) {
+        LockSupport.parkNanos(parkNanos);
+    }
+
+    @Override
+    public void idle(int idleCount, long maxWaitNanos) {
+        LockSupport.parkNanos(Math.min(parkNanos, maxWaitNanos));
+    }
+}
@@ -0,0 +1,232 @@
+package org.example.sequencer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded multi-producer/single-consumer ring buffer of preallocated, mutable entries.
+ *
+ * <p>Entries are created once when the buffer is built and reused forever,
+ * so publishing does not allocate. Producers publish in 3 steps:
+ * <ol>
+ *     <li>{@link #claim()} a sequence number, which is a single atomic increment</li>
+ *     <li>fill the entry returned by {@link #get(long)} for that sequence</li>
+ *     <li>{@link #publish(long)} the sequence to make the entry visible to the consumer</li>
+ * </ol>
+ *
+ * <p>Each slot has an availability flag holding the "round" of the sequence that was last
+ * published into it (sequence / capacity). Since producers may publish out of order,
+ * the consumer only consumes entries whose flag match the expected round,
+ * and stop at the first gap. The consumer {@link #drain(Consumer, int) drains} all the
+ * contiguous published entries in one batch before moving its sequence forward,
+ * which frees the slots for producers.
+ *
+ * <p>A producer with several entries to publish can {@link #claim(int) claim} a range of sequences with
+ * a single atomic add and {@link #publish(long, long) publish} the range with a single signal.
+ *
+ * <p>When the buffer is full, producers spin until the consumer frees a slot.
+ *
+ * <p>Once the buffer is {@link #close() closed}, claims fail. A producer that reserved sequences right as the
+ * buffer closed publishes them as skipped entries before failing, which the consumer passes over, so the
+ * consumer never stops at a gap and can tell with {@link #isDrained()} that every claimed sequence
+ * has been published and consumed.
+ */
+public class RingBuffer<E> {
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Object[] entries;
+
+    private final int[] availableRounds;
+
+    /**
+     * Whether the entry published in each slot must be passed over, written by the producer before publishing
+     * and cleared by the consumer before releasing the slot
+     */
+    private final boolean[] skipped;
+
+    private final int mask;
+
+    private final int shift;
+
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Highest sequence claimed by producers
+     */
+    private final AtomicLong claimSequence;
+
+    /**
+     * Highest sequence consumed by the consumer
+     */
+    private volatile long consumerSequence;
+
+    private volatile boolean closed;
+
+    public RingBuffer(int capacity, Supplier<E> entryFactory, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        }
+
+        this.entries = new Object[capacity];
+        this.availableRounds = new int[capacity];
+        this.skipped = new boolean[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = entryFactory.get();
+            availableRounds[i] = -1;
+        }
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        this.waitStrategy = waitStrategy;
+        this.claimSequence = new AtomicLong(-1);
+        this.consumerSequence = -1;
+    }
+
+    /**
+     * Claim the next sequence, waiting for the consumer if the buffer is full.
+     * The claimed sequence must be published, even if filling the entry failed.
+     *
+     * @throws IllegalStateException if the buffer has been closed
+     */
+    public long claim() {
+        return claim(1);
+    }
+
+    /**
+     * Claim the next {@code count} sequences, waiting for the consumer until they all fit in the buffer.
+     * The claimed sequences must all be published, even if filling some entries failed.
+     *
+     * @return the highest claimed sequence, the lowest one is {@code count - 1} below
+     * @throws IllegalArgumentException if count is not between 1 and the capacity
+     * @throws IllegalStateException    if the buffer has been closed
+     */
+    public long claim(int count) {
+        if (count < 1 || count > entries.length) {
+            throw new IllegalArgumentException("count must be between 1 and " + entries.length + ": " + count);
+        }
+        if (closed) throw new IllegalStateException("Ring buffer is closed");
+
+        long sequence = claimSequence.addAndGet(count);
+        long wrapPoint = sequence - entries.length;
+        // the consumer keeps draining once the buffer is closed, until every claimed sequence is consumed
+        while (wrapPoint > consumerSequence) {
+            Thread.onSpinWait();
+        }
+        if (closed) {
+            // the buffer closed while the sequences were reserved, the consumer must not stop at them
+            skip(sequence - count + 1, sequence);
+            throw new IllegalStateException("Ring buffer is closed");
+        }
+        return sequence;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    /**
+     * Make the entry of a claimed sequence visible to the consumer
+     */
+    public void publish(long sequence) {
+        AVAILABLE.setRelease(availableRounds, (int) sequence & mask, (int) (sequence >>> shift));
+        waitStrategy.signal();
+    }
+
+    /**
+     * Make the entries of a claimed range visible to the consumer, from {@code low} to {@code high} included
+     */
+    public void publish(long low, long high) {
+        for (long sequence = low; sequence <= high; sequence++) {
+            AVAILABLE.setRelease(availableRounds, (int) sequence & mask, (int) (sequence >>> shift));
+        }
+        waitStrategy.signal();
+    }
+
+    /**
+     * Pass every contiguous published entry, up to {@code maxBatchSize} entries,
+     * to the handler, then release their slots to producers.
+     * Must only be called from the consumer thread.
+     *
+     * @return number of consumed entries
+     */
+    public int drain(Consumer<E> handler, int maxBatchSize) {
+        long current = consumerSequence;
+        long next = current + 1;
+        int count = 0;
+        while (count < maxBatchSize && isPublished(next)) {
+            int index = (int) next & mask;
+            if (skipped[index]) {
+                skipped[index] = false;
+            } else {
+                handler.accept(get(next));
+            }
+            next++;
+            count++;
+        }
+
+        if (count > 0) {
+            consumerSequence = current + count;
+        }
+        return count;
+    }
+
+    /**
+     * Return true if there are entries waiting to be consumed
+     */
+    public boolean hasBacklog() {
+        return isPublished(consumerSequence + 1);
+    }
+
+    /**
+     * Number of claimed entries that have not been consumed yet
+     */
+    public long size() {
+        return Math.max(0, claimSequence.get() - consumerSequence);
+    }
+
+    /**
+     * Return true if every claimed sequence has been published and consumed.
+     * Once the buffer is closed, a consumer drains until this is true.
+     */
+    public boolean isDrained() {
+        return consumerSequence >= claimSequence.get();
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Stop accepting new claims and wake up a waiting consumer. The sequences claimed before are still
+     * published and must be drained, see {@link #isDrained()}.
+     */
+    public void close() {
+        closed = true;
+        waitStrategy.signal();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Publish a claimed range as entries the consumer passes over
+     */
+    private void skip(long low, long high) {
+        for (long sequence = low; sequence <= high; sequence++) {
+            skipped[(int) sequence & mask] = true;
+        }
+        publish(low, high);
+    }
+
+    private boolean isPublished(long sequence) {
+        return (int) AVAILABLE.getAcquire(availableRounds, (int) sequence & mask) == (int) (sequence >>> shift);
+    }
+}
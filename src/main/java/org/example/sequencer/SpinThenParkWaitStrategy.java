@@ -0,0 +1,96 @@
+package org.example.sequencer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spin, then yield, then park the consumer with an exponential backoff while idle.
+ *
+ * <p>The first idle calls spin and the next ones yield, so requests that come in bursts are
+ * picked up as fast as with a busy-spinning consumer. After that the consumer parks, starting
+ * with {@code minParkNanos} and doubling the time on every idle call up to {@code maxParkNanos},
+ * so an idle consumer uses almost no CPU. Producers unpark a parked consumer when they publish,
+ * which is a single volatile read when the consumer is not parked. A request published right as
+ * the consumer goes to park may still wait up to {@code maxParkNanos}.
+ */
+public class SpinThenParkWaitStrategy implements WaitStrategy {
+    public static final int DEFAULT_SPIN_TRIES = 100;
+
+    public static final int DEFAULT_YIELD_TRIES = 100;
+
+    public static final long DEFAULT_MIN_PARK_NANOS = 1_000;
+
+    public static final long DEFAULT_MAX_PARK_NANOS = 1_000_000;
+
+    private final int spinTries;
+
+    private final int yieldTries;
+
+    private final long minParkNanos;
+
+    private final long maxParkNanos;
+
+    /**
+     * Thread parked by the strategy, null while the consumer is running
+     */
+    private volatile Thread parkedThread;
+
+    public SpinThenParkWaitStrategy() {
+        this(DEFAULT_SPIN_TRIES, DEFAULT_YIELD_TRIES, DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    /**
+     * @param spinTries    number of consecutive idle calls that spin
+     * @param yieldTries   number of consecutive idle calls that yield, once the spin tries are over
+     * @param minParkNanos time of the first park
+     * @param maxParkNanos longest time of a park
+     */
+    public SpinThenParkWaitStrategy(int spinTries, int yieldTries, long minParkNanos, long maxParkNanos) {
+        if (minParkNanos <= 0 || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("minParkNanos must be positive and at most maxParkNanos");
+        }
+
+        this.spinTries = spinTries;
+        this.yieldTries = yieldTries;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void idle(int idleCount) {
+        idle(idleCount, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void idle(int idleCount, long maxWaitNanos) {
+        if (idleCount < spinTries) {
+            Thread.onSpinWait();
+        } else if (idleCount < spinTries + yieldTries) {
+            Thread.yield();
+        } else {
+            park(Math.min(parkNanos(idleCount - spinTries - yieldTries), maxWaitNanos));
+        }
+    }
+
+    @Override
+    public void signal() {
+        Thread thread = parkedThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void park(long nanos) {
+        parkedThread = Thread.currentThread();
+        LockSupport.parkNanos(nanos);
+        parkedThread = null;
+    }
+
+    /**
+     * Return the park time of the given number of consecutive parks
+     */
+    private long parkNanos(int parkCount) {
+        // shifting further would overflow, the time is far above any sensible maximum anyway
+        if (parkCount >= Long.numberOfLeadingZeros(minParkNanos) - 1) return maxParkNanos;
+        return Math.min(minParkNanos << parkCount, maxParkNanos);
+    }
+}
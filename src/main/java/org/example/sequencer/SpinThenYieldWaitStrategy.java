@@ -0,0 +1,32 @@
+package org.example.sequencer;
+
+/**
+ * Spin on the CPU for the first idle calls, then yield the CPU to other threads.
+ * Keep the latency of a busy-spinning consumer for requests that come in bursts,
+ * and behave like {@link YieldingWaitStrategy} once the consumer has been idle for a while.
+ */
+public class SpinThenYieldWaitStrategy implements WaitStrategy {
+    public static final int DEFAULT_SPIN_TRIES = 100;
+
+    private final int spinTries;
+
+    public SpinThenYieldWaitStrategy() {
+        this(DEFAULT_SPIN_TRIES);
+    }
+
+    /**
+     * @param spinTries number of consecutive idle calls that spin before the consumer starts yielding
+     */
+    public SpinThenYieldWaitStrategy(int spinTries) {
+        this.spinTries = spinTries;
+    }
+
+    @Override
+    public void idle(int idleCount) {
+        if (idleCount < spinTries) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.sequencer;
+
+/**
+ * Decide what the consumer of a {@link RingBuffer} does while there is nothing to consume.
+ *
+ * <p>Strategies trade latency against CPU usage: a busy-spinning consumer
+ * reacts the fastest but keeps a core busy even when idle, while a blocking
+ * consumer does not use any CPU when idle but need to be woken up by producers.
+ */
+public interface WaitStrategy {
+    /**
+     * Called by the consumer every time it found nothing to consume.
+     *
+     * @param idleCount number of consecutive calls since the consumer last found work,
+     *                  starting at 0
+     */
+    void idle(int idleCount);
+
+    /**
+     * Same as {@link #idle(int)}, but return within about {@code maxWaitNanos}, so the consumer
+     * can run timed work such as expiring orders. Strategies that may wait longer must override it.
+     */
+    default void idle(int idleCount, long maxWaitNanos) {
+        idle(idleCount);
+    }
+
+    /**
+     * Called by producers after publishing, and when the consumer is being stopped,
+     * to wake up a consumer that might be waiting
+     */
+    default void signal() {
+    }
+}
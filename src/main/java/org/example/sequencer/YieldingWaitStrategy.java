@@ -0,0 +1,12 @@
+package org.example.sequencer;
+
+/**
+ * Yield the CPU to other threads while idle. Still keep a core busy
+ * if no other thread want to run, but behave better on shared hosts.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    @Override
+    public void idle(int idleCount) {
+        Thread.yield();
+    }
+}
@@ -0,0 +1,264 @@
+package org.example.store;
+
+import org.example.entities.OrderType;
+
+import java.util.Arrays;
+
+/**
+ * {@link OrderStore} keeping every field in its own primitive array, indexed by the order handle.
+ *
+ * <p>A resting order costs about 49 bytes spread over the arrays, without object header,
+ * UUID or boxed expiry time, and primitive arrays are never traced by the garbage collector.
+ * Freed handles are chained through the next array and reused before the arrays grow.
+ */
+public class HeapOrderStore implements OrderStore {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+
+    private long[] ids;
+
+    private long[] expiryTimes;
+
+    private byte[] types;
+
+    private int[] customerIds;
+
+    private int[] bookIds;
+
+    private int[] prices;
+
+    private int[] quantities;
+
+    private int[] remainingQuantities;
+
+    private int[] prevs;
+
+    private int[] nexts;
+
+    private int[] runPeers;
+
+    /**
+     * Number of handles ever handed out, handles above are unused
+     */
+    private int highWaterMark;
+
+    /**
+     * Head of the chain of freed handles
+     */
+    private int freeHead;
+
+    private int size;
+
+    public HeapOrderStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HeapOrderStore(int initialCapacity) {
+        this.freeHead = NULL;
+        resize(Math.max(1, initialCapacity));
+    }
+
+    @Override
+    public int allocate(long id, OrderType type, int customerId, int bookId, int price, int quantity, long expiryTimeMillis) {
+        int order;
+        if (freeHead != NULL) {
+            order = freeHead;
+            freeHead = nexts[order];
+        } else {
+            if (highWaterMark == ids.length) {
+                resize(ids.length << 1);
+            }
+            order = highWaterMark++;
+        }
+
+        ids[order] = id;
+        types[order] = (byte) type.ordinal();
+        customerIds[order] = customerId;
+        bookIds[order] = bookId;
+        prices[order] = price;
+        quantities[order] = quantity;
+        remainingQuantities[order] = quantity;
+        expiryTimes[order] = expiryTimeMillis;
+        prevs[order] = NULL;
+        nexts[order] = NULL;
+        runPeers[order] = NULL;
+        size += 1;
+        return order;
+    }
+
+    @Override
+    public void free(int order) {
+        // order ids are never 0, so a freed handle does not contain any order
+        ids[order] = 0;
+        prevs[order] = NULL;
+        nexts[order] = freeHead;
+        freeHead = order;
+        size -= 1;
+    }
+
+    @Override
+    public boolean contains(int order, long id) {
+        return order >= 0 && order < highWaterMark && ids[order] == id;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getHandleCount() {
+        return highWaterMark;
+    }
+
+    @Override
+    public int getFreeHead() {
+        return freeHead;
+    }
+
+    @Override
+    public void restore(
+            int order, long id, OrderType type, int customerId, int bookId, int price, int quantity,
+            int remainingQuantity, long expiryTimeMillis
+    ) {
+        ensureCapacity(order + 1);
+        highWaterMark = Math.max(highWaterMark, order + 1);
+        ids[order] = id;
+        types[order] = (byte) type.ordinal();
+        customerIds[order] = customerId;
+        bookIds[order] = bookId;
+        prices[order] = price;
+        quantities[order] = quantity;
+        remainingQuantities[order] = remainingQuantity;
+        expiryTimes[order] = expiryTimeMillis;
+        prevs[order] = NULL;
+        nexts[order] = NULL;
+        runPeers[order] = NULL;
+        size += 1;
+    }
+
+    @Override
+    public void restoreFreeHandles(int handleCount, int[] freeHandles) {
+        ensureCapacity(handleCount);
+        highWaterMark = handleCount;
+        freeHead = NULL;
+        for (int i = freeHandles.length - 1; i >= 0; i--) {
+            int order = freeHandles[i];
+            ids[order] = 0;
+            prevs[order] = NULL;
+            nexts[order] = freeHead;
+            freeHead = order;
+        }
+    }
+
+    @Override
+    public long getId(int order) {
+        return ids[order];
+    }
+
+    @Override
+    public OrderType getType(int order) {
+        return ORDER_TYPES[types[order]];
+    }
+
+    @Override
+    public int getCustomerId(int order) {
+        return customerIds[order];
+    }
+
+    @Override
+    public int getBookId(int order) {
+        return bookIds[order];
+    }
+
+    @Override
+    public int getPrice(int order) {
+        return prices[order];
+    }
+
+    @Override
+    public int getQuantity(int order) {
+        return quantities[order];
+    }
+
+    @Override
+    public int getRemainingQuantity(int order) {
+        return remainingQuantities[order];
+    }
+
+    @Override
+    public void setRemainingQuantity(int order, int remainingQuantity) {
+        remainingQuantities[order] = remainingQuantity;
+    }
+
+    @Override
+    public long getExpiryTimeMillis(int order) {
+        return expiryTimes[order];
+    }
+
+    @Override
+    public int getPrev(int order) {
+        return prevs[order];
+    }
+
+    @Override
+    public void setPrev(int order, int prev) {
+        prevs[order] = prev;
+    }
+
+    @Override
+    public int getNext(int order) {
+        return nexts[order];
+    }
+
+    @Override
+    public void setNext(int order, int next) {
+        nexts[order] = next;
+    }
+
+    @Override
+    public int getRunPeer(int order) {
+        return runPeers[order];
+    }
+
+    @Override
+    public void setRunPeer(int order, int runPeer) {
+        runPeers[order] = runPeer;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            resize(Math.max(capacity, ids.length << 1));
+        }
+    }
+
+    private void resize(int capacity) {
+        if (ids == null) {
+            ids = new long[capacity];
+            expiryTimes = new long[capacity];
+            types = new byte[capacity];
+            customerIds = new int[capacity];
+            bookIds = new int[capacity];
+            prices = new int[capacity];
+            quantities = new int[capacity];
+            remainingQuantities = new int[capacity];
+            prevs = new int[capacity];
+            nexts = new int[capacity];
+            runPeers = new int[capacity];
+            return;
+        }
+
+        ids = Arrays.copyOf(ids, capacity);
+        expiryTimes = Arrays.copyOf(expiryTimes, capacity);
+        types = Arrays.copyOf(types, capacity);
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        remainingQuantities = Arrays.copyOf(remainingQuantities, capacity);
+        prevs = Arrays.copyOf(prevs, capacity);
+        nexts = Arrays.copyOf(nexts, capacity);
+        runPeers = Arrays.copyOf(runPeers, capacity);
+    }
+}
@@ -0,0 +1,262 @@
+package org.example.store;
+
+import org.example.entities.OrderType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * {@link OrderStore} keeping order records outside of the java heap.
+ *
+ * <p>Records are fixed-size slots of {@value #SLOT_SIZE} bytes in direct {@link ByteBuffer} chunks of
+ * {@value #SLOTS_PER_CHUNK} slots. The handle of an order is its slot number: the upper bits select
+ * the chunk, the lower bits the slot inside the chunk. Freed slots are chained through their next
+ * field and reused before a new chunk is allocated.
+ *
+ * <p>The only heap objects are the chunk buffers themselves, one per {@value #SLOTS_PER_CHUNK} orders,
+ * so the heap usage and the work of the garbage collector do not depend on the depth of the books.
+ * The native memory of the chunks is released when the store is garbage collected.
+ */
+public class OffHeapOrderStore implements OrderStore {
+    public static final int SLOT_SIZE = 56;
+
+    public static final int SLOTS_PER_CHUNK = 1 << 16;
+
+    private static final int CHUNK_SHIFT = 16;
+
+    private static final int SLOT_MASK = SLOTS_PER_CHUNK - 1;
+
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+
+    // Layout of a slot
+    private static final int ID_OFFSET = 0;
+    private static final int EXPIRY_TIME_OFFSET = 8;
+    private static final int CUSTOMER_ID_OFFSET = 16;
+    private static final int BOOK_ID_OFFSET = 20;
+    private static final int PRICE_OFFSET = 24;
+    private static final int QUANTITY_OFFSET = 28;
+    private static final int REMAINING_QUANTITY_OFFSET = 32;
+    private static final int PREV_OFFSET = 36;
+    private static final int NEXT_OFFSET = 40;
+    private static final int TYPE_OFFSET = 44;
+    private static final int RUN_PEER_OFFSET = 48;
+
+    private ByteBuffer[] chunks;
+
+    private int chunkCount;
+
+    /**
+     * Number of handles ever handed out, handles above are unused
+     */
+    private int highWaterMark;
+
+    /**
+     * Head of the chain of freed handles
+     */
+    private int freeHead;
+
+    private int size;
+
+    public OffHeapOrderStore() {
+        this.chunks = new ByteBuffer[4];
+        this.freeHead = NULL;
+    }
+
+    @Override
+    public int allocate(long id, OrderType type, int customerId, int bookId, int price, int quantity, long expiryTimeMillis) {
+        int order;
+        if (freeHead != NULL) {
+            order = freeHead;
+            freeHead = getNext(order);
+        } else {
+            if (highWaterMark == chunkCount << CHUNK_SHIFT) {
+                addChunk();
+            }
+            order = highWaterMark++;
+        }
+
+        ByteBuffer chunk = chunk(order);
+        int offset = offset(order);
+        chunk.putLong(offset + ID_OFFSET, id);
+        chunk.putLong(offset + EXPIRY_TIME_OFFSET, expiryTimeMillis);
+        chunk.putInt(offset + CUSTOMER_ID_OFFSET, customerId);
+        chunk.putInt(offset + BOOK_ID_OFFSET, bookId);
+        chunk.putInt(offset + PRICE_OFFSET, price);
+        chunk.putInt(offset + QUANTITY_OFFSET, quantity);
+        chunk.putInt(offset + REMAINING_QUANTITY_OFFSET, quantity);
+        chunk.putInt(offset + PREV_OFFSET, NULL);
+        chunk.putInt(offset + NEXT_OFFSET, NULL);
+        chunk.putInt(offset + RUN_PEER_OFFSET, NULL);
+        chunk.put(offset + TYPE_OFFSET, (byte) type.ordinal());
+        size += 1;
+        return order;
+    }
+
+    @Override
+    public void free(int order) {
+        ByteBuffer chunk = chunk(order);
+        int offset = offset(order);
+        // order ids are never 0, so a freed handle does not contain any order
+        chunk.putLong(offset + ID_OFFSET, 0);
+        chunk.putInt(offset + PREV_OFFSET, NULL);
+        chunk.putInt(offset + NEXT_OFFSET, freeHead);
+        freeHead = order;
+        size -= 1;
+    }
+
+    @Override
+    public boolean contains(int order, long id) {
+        return order >= 0 && order < highWaterMark && getId(order) == id;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getHandleCount() {
+        return highWaterMark;
+    }
+
+    @Override
+    public int getFreeHead() {
+        return freeHead;
+    }
+
+    @Override
+    public void restore(
+            int order, long id, OrderType type, int customerId, int bookId, int price, int quantity,
+            int remainingQuantity, long expiryTimeMillis
+    ) {
+        ensureCapacity(order + 1);
+        highWaterMark = Math.max(highWaterMark, order + 1);
+        ByteBuffer chunk = chunk(order);
+        int offset = offset(order);
+        chunk.putLong(offset + ID_OFFSET, id);
+        chunk.putLong(offset + EXPIRY_TIME_OFFSET, expiryTimeMillis);
+        chunk.putInt(offset + CUSTOMER_ID_OFFSET, customerId);
+        chunk.putInt(offset + BOOK_ID_OFFSET, bookId);
+        chunk.putInt(offset + PRICE_OFFSET, price);
+        chunk.putInt(offset + QUANTITY_OFFSET, quantity);
+        chunk.putInt(offset + REMAINING_QUANTITY_OFFSET, remainingQuantity);
+        chunk.putInt(offset + PREV_OFFSET, NULL);
+        chunk.putInt(offset + NEXT_OFFSET, NULL);
+        chunk.putInt(offset + RUN_PEER_OFFSET, NULL);
+        chunk.put(offset + TYPE_OFFSET, (byte) type.ordinal());
+        size += 1;
+    }
+
+    @Override
+    public void restoreFreeHandles(int handleCount, int[] freeHandles) {
+        ensureCapacity(handleCount);
+        highWaterMark = handleCount;
+        freeHead = NULL;
+        for (int i = freeHandles.length - 1; i >= 0; i--) {
+            int order = freeHandles[i];
+            ByteBuffer chunk = chunk(order);
+            int offset = offset(order);
+            chunk.putLong(offset + ID_OFFSET, 0);
+            chunk.putInt(offset + PREV_OFFSET, NULL);
+            chunk.putInt(offset + NEXT_OFFSET, freeHead);
+            freeHead = order;
+        }
+    }
+
+    @Override
+    public long getId(int order) {
+        return chunk(order).getLong(offset(order) + ID_OFFSET);
+    }
+
+    @Override
+    public OrderType getType(int order) {
+        return ORDER_TYPES[chunk(order).get(offset(order) + TYPE_OFFSET)];
+    }
+
+    @Override
+    public int getCustomerId(int order) {
+        return chunk(order).getInt(offset(order) + CUSTOMER_ID_OFFSET);
+    }
+
+    @Override
+    public int getBookId(int order) {
+        return chunk(order).getInt(offset(order) + BOOK_ID_OFFSET);
+    }
+
+    @Override
+    public int getPrice(int order) {
+        return chunk(order).getInt(offset(order) + PRICE_OFFSET);
+    }
+
+    @Override
+    public int getQuantity(int order) {
+        return chunk(order).getInt(offset(order) + QUANTITY_OFFSET);
+    }
+
+    @Override
+    public int getRemainingQuantity(int order) {
+        return chunk(order).getInt(offset(order) + REMAINING_QUANTITY_OFFSET);
+    }
+
+    @Override
+    public void setRemainingQuantity(int order, int remainingQuantity) {
+        chunk(order).putInt(offset(order) + REMAINING_QUANTITY_OFFSET, remainingQuantity);
+    }
+
+    @Override
+    public long getExpiryTimeMillis(int order) {
+        return chunk(order).getLong(offset(order) + EXPIRY_TIME_OFFSET);
+    }
+
+    @Override
+    public int getPrev(int order) {
+        return chunk(order).getInt(offset(order) + PREV_OFFSET);
+    }
+
+    @Override
+    public void setPrev(int order, int prev) {
+        chunk(order).putInt(offset(order) + PREV_OFFSET, prev);
+    }
+
+    @Override
+    public int getNext(int order) {
+        return chunk(order).getInt(offset(order) + NEXT_OFFSET);
+    }
+
+    @Override
+    public void setNext(int order, int next) {
+        chunk(order).putInt(offset(order) + NEXT_OFFSET, next);
+    }
+
+    @Override
+    public int getRunPeer(int order) {
+        return chunk(order).getInt(offset(order) + RUN_PEER_OFFSET);
+    }
+
+    @Override
+    public void setRunPeer(int order, int runPeer) {
+        chunk(order).putInt(offset(order) + RUN_PEER_OFFSET, runPeer);
+    }
+
+    private ByteBuffer chunk(int order) {
+        return chunks[order >>> CHUNK_SHIFT];
+    }
+
+    private static int offset(int order) {
+        return (order & SLOT_MASK) * SLOT_SIZE;
+    }
+
+    private void ensureCapacity(int capacity) {
+        while (capacity > chunkCount << CHUNK_SHIFT) {
+            addChunk();
+        }
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length << 1);
+        }
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * SLOT_SIZE).order(ByteOrder.nativeOrder());
+    }
+}
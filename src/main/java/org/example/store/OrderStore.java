@@ -0,0 +1,106 @@
+package org.example.store;
+
+import org.example.entities.OrderType;
+
+/**
+ * Storage of the orders handled by a matching engine.
+ *
+ * <p>Orders are not objects: every order is a record of primitive fields identified by an
+ * {@code int} handle. Handles are reused once the order is {@link #free(int) freed}, so they are
+ * only meaningful to the matching thread that owns the store. Anything that outlives the
+ * order, like the events passed to listeners, must copy the fields it needs.
+ *
+ * <p>Besides the order fields, every record holds the previous/next links of the price level
+ * the order rests in, so resting an order does not allocate any list node, and the run peer
+ * link the price level uses to skip the orders of a customer.
+ *
+ * <p>Implementations are not synchronized.
+ */
+public interface OrderStore {
+    /**
+     * Handle that never refer to an order, used as the end of a price level
+     */
+    int NULL = -1;
+
+    /**
+     * Create an order record and return its handle.
+     * The remaining quantity is set to the quantity and the record is not linked to any price level.
+     */
+    int allocate(long id, OrderType type, int customerId, int bookId, int price, int quantity, long expiryTimeMillis);
+
+    /**
+     * Release the record of an order, its handle may be returned again by {@link #allocate}
+     */
+    void free(int order);
+
+    /**
+     * Return true if the handle currently refer to the order with the given id,
+     * false if that order has been freed or the handle is out of range
+     */
+    boolean contains(int order, long id);
+
+    /**
+     * Number of orders currently stored
+     */
+    int size();
+
+    /**
+     * Number of handles handed out so far, every stored or freed handle is below
+     */
+    int getHandleCount();
+
+    /**
+     * First freed handle that {@link #allocate} will reuse, or {@link #NULL} if it will hand out a new one.
+     * The other freed handles are chained by their {@link #getNext(int) next} link, in the order they will be reused.
+     */
+    int getFreeHead();
+
+    /**
+     * Create an order record at the given handle of a store being loaded from a snapshot,
+     * growing the store as needed. The record is not linked to any price level.
+     */
+    void restore(
+            int order, long id, OrderType type, int customerId, int bookId, int price, int quantity,
+            int remainingQuantity, long expiryTimeMillis
+    );
+
+    /**
+     * End the loading of a snapshot: set the number of handles handed out, and chain the given
+     * handles, which do not hold any order, as freed handles to reuse in the given order
+     */
+    void restoreFreeHandles(int handleCount, int[] freeHandles);
+
+    long getId(int order);
+
+    OrderType getType(int order);
+
+    int getCustomerId(int order);
+
+    int getBookId(int order);
+
+    int getPrice(int order);
+
+    int getQuantity(int order);
+
+    int getRemainingQuantity(int order);
+
+    void setRemainingQuantity(int order, int remainingQuantity);
+
+    long getExpiryTimeMillis(int order);
+
+    int getPrev(int order);
+
+    void setPrev(int order, int prev);
+
+    int getNext(int order);
+
+    void setNext(int order, int next);
+
+    /**
+     * Other end of the run of consecutive orders of a same customer that the order starts or ends
+     * in its price level. Only meaningful for the first and last orders of a run.
+     */
+    int getRunPeer(int order);
+
+    void setRunPeer(int order, int runPeer);
+}
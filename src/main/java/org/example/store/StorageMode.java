@@ -0,0 +1,30 @@
+package org.example.store;
+
+/**
+ * Where a {@link OrderStore} keeps the order records.
+ */
+public enum StorageMode {
+    /**
+     * Records are kept in primitive arrays on the java heap, see {@link HeapOrderStore}.
+     * Fastest access, suitable for most books.
+     */
+    HEAP {
+        @Override
+        public OrderStore create() {
+            return new HeapOrderStore();
+        }
+    },
+
+    /**
+     * Records are kept in direct memory, see {@link OffHeapOrderStore}.
+     * Suitable for very deep books, as the heap usage does not grow with the number of resting orders.
+     */
+    OFF_HEAP {
+        @Override
+        public OrderStore create() {
+            return new OffHeapOrderStore();
+        }
+    };
+
+    public abstract OrderStore create();
+}
@@ -0,0 +1,60 @@
+package org.example.utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pin the calling thread to a CPU, on Linux only.
+ *
+ * <p>Java threads are native threads on Linux, but the JDK has no API to set their affinity.
+ * Instead of a native library, the id of the native thread is read from {@code /proc/thread-self},
+ * and the affinity is set with the {@code taskset} command of util-linux, which calls
+ * {@code sched_setaffinity} for that thread only. It starts a process, so it is meant to be called
+ * once, when a long-running thread starts.
+ */
+public final class CpuAffinity {
+    private static final Path THREAD_SELF = Path.of("/proc/thread-self");
+
+    private CpuAffinity() {
+    }
+
+    /**
+     * Return true if threads can be pinned on this host
+     */
+    public static boolean isSupported() {
+        return Files.isSymbolicLink(THREAD_SELF);
+    }
+
+    /**
+     * Restrict the calling thread to the given CPU
+     *
+     * @throws IllegalStateException if the affinity could not be set
+     */
+    public static void pinCurrentThread(int cpu) {
+        if (cpu < 0) throw new IllegalArgumentException("cpu must not be negative: " + cpu);
+        if (!isSupported()) throw new IllegalStateException("CPU affinity is only supported on Linux");
+
+        try {
+            // the link points to <pid>/task/<tid>
+            String threadId = Files.readSymbolicLink(THREAD_SELF).getFileName().toString();
+            Process process = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(cpu), threadId)
+                    .redirectErrorStream(true)
+                    .start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            }
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("Could not pin thread " + threadId + " to CPU " + cpu + ": " + output);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not pin the thread to CPU " + cpu + ", is taskset installed?", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while pinning the thread to CPU " + cpu, e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.example.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to primitive int values, such as from order ids to array indexes.
+ * Keys and values are never boxed and no entry object is allocated per mapping.
+ *
+ * <p>Like {@link IntObjectHashMap}, the map uses open addressing with linear probing and backward
+ * shift deletion. {@link #NO_VALUE} marks a free slot, so it cannot be stored as a value.
+ *
+ * <p>This map is not synchronized.
+ */
+public class LongIntHashMap {
+    /**
+     * Value returned for a missing key
+     */
+    public static final int NO_VALUE = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    private int mask;
+
+    private int resizeThreshold;
+
+    public LongIntHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Return the value mapped to the key, or {@link #NO_VALUE} if the key is not present
+     */
+    public int get(long key) {
+        int index = indexOf(key);
+        return index < 0 ? NO_VALUE : values[index];
+    }
+
+    /**
+     * Map the key to the value, and return the previous value, or {@link #NO_VALUE} if the key was not present
+     */
+    public int put(long key, int value) {
+        if (value == NO_VALUE) throw new IllegalArgumentException("NO_VALUE cannot be stored");
+
+        int index = hash(key) & mask;
+        while (values[index] != NO_VALUE) {
+            if (keys[index] == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Remove the key, and return its value, or {@link #NO_VALUE} if the key was not present
+     */
+    public int remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) return NO_VALUE;
+
+        int previous = values[index];
+        values[index] = NO_VALUE;
+        size -= 1;
+        shiftBack(index);
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visit every mapping of the map. The map must not be modified while iterating.
+     */
+    public void forEach(LongIntConsumer consumer) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != NO_VALUE) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int indexOf(long key) {
+        int index = hash(key) & mask;
+        while (values[index] != NO_VALUE) {
+            if (keys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Close the gap left at the given index by moving back any following entry
+     * whose probe chain passes through the gap.
+     */
+    private void shiftBack(int gap) {
+        int index = (gap + 1) & mask;
+        while (values[index] != NO_VALUE) {
+            int home = hash(keys[index]) & mask;
+            // the entry can fill the gap if its home slot is not inside (gap, index]
+            boolean canMove = gap <= index
+                    ? home <= gap || home > index
+                    : home <= gap && home > index;
+            if (canMove) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                values[index] = NO_VALUE;
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        size = 0;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != NO_VALUE) {
+                int index = hash(oldKeys[i]) & mask;
+                while (values[index] != NO_VALUE) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+                size += 1;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(long key) {
+        // Spread the bits of both halves, order ids differ in their low bits and carry the partition in their high bits
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+}
@@ -2,11 +2,57 @@ package com.example;
 
 import lombok.SneakyThrows;
 import org.example.OrderManager;
+import org.example.dispatchers.DepthUpdateDispatcher;
+import org.example.dispatchers.DepthUpdateListener;
 import org.example.dispatchers.MatchingResultDispatcher;
+import org.example.dispatchers.MatchingResultListener;
+import org.example.dispatchers.OrderExpiredEventDispatcher;
+import org.example.dispatchers.OrderExpiredListener;
+import org.example.entities.BestBidOffer;
+import org.example.entities.BuyOrder;
+import org.example.entities.DepthLevel;
+import org.example.entities.DepthSnapshot;
+import org.example.entities.DepthUpdate;
+import org.example.entities.DepthUpdateAction;
+import org.example.entities.MatchingResult;
+import org.example.entities.Order;
+import org.example.index.OrderIndex;
+import org.example.orderbook.BestBidOfferCache;
+import org.example.orderbook.DispatchMode;
+import org.example.orderbook.EventLoopConfig;
+import org.example.orderbook.FIFOOrderBook;
+import org.example.orderbook.JournalReplayer;
+import org.example.orderbook.JournalSyncPolicy;
+import org.example.orderbook.LadderType;
+import org.example.orderbook.OrderBatch;
+import org.example.orderbook.OrderBookConfig;
+import org.example.orderbook.PartitionRebalancer;
 import org.example.orderbook.PartitionedOrderBook;
+import org.example.orderbook.ReplayConfig;
+import org.example.orderbook.ReplayReport;
+import org.example.sequencer.BusySpinWaitStrategy;
+import org.example.sequencer.RingBuffer;
+import org.example.sequencer.SpinThenParkWaitStrategy;
 import org.junit.jupiter.api.Test;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,167 +60,165 @@ public class OrderManagerTest {
 
     @Test
     public void givenABuyThenASellRequestWithASamePriceAndASameBook_then2OrdersAreMatched() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int buyerId = 1;
         int sellerId = 2;
         int bookId = 1;
         int price = 10;
 
-        AtomicBoolean success = new AtomicBoolean(false);
-
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            assertEquals(result.getBuyOrder().getCustomerId(), buyerId);
-            assertEquals(result.getSellOrder().getCustomerId(), sellerId);
-            assertEquals(result.getSellOrder().getBookId(), bookId);
-            assertEquals(result.getBuyOrder().getBookId(), bookId);
-            assertEquals(result.getSellOrder().getExpectedPrice(), price);
-            assertEquals(result.getBuyOrder().getExpectedPrice(), price);
-            success.set(true);
-        });
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.buy(1, 1, 10, null);
+            orderManager.sell(2, 1, 10, null);
 
-        orderManager.buy(1, 1, 10, null);
-        orderManager.sell(2, 1, 10, null);
-
-        try {
-            Thread.sleep(1000);
-        } catch (Exception ignore) {}
-
-        assertTrue(success.get());
+            assertEquals(1, matches.await(1).size());
+            assertMatched(matches.get().get(0), buyerId, sellerId, bookId, price, price);
+        }
     }
 
     @Test
     public void givenASellThenABuyRequestWithASamePriceAndASameBook_then2OrdersAreMatched() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int buyerId = 1;
         int sellerId = 2;
         int bookId = 1;
         int price = 10;
 
-        AtomicBoolean success = new AtomicBoolean(false);
-
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            assertEquals(result.getBuyOrder().getCustomerId(), buyerId);
-            assertEquals(result.getSellOrder().getCustomerId(), sellerId);
-            assertEquals(result.getSellOrder().getBookId(), bookId);
-            assertEquals(result.getBuyOrder().getBookId(), bookId);
-            assertEquals(result.getSellOrder().getExpectedPrice(), price);
-            assertEquals(result.getBuyOrder().getExpectedPrice(), price);
-            success.set(true);
-        });
-
-        orderManager.sell(sellerId, bookId, price, null);
-        orderManager.buy(buyerId, bookId, price, null);
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.sell(sellerId, bookId, price, null);
+            orderManager.buy(buyerId, bookId, price, null);
 
-        try {
-            Thread.sleep(1000);
-        } catch (Exception ignore) {}
-
-        assertTrue(success.get());
+            assertEquals(1, matches.await(1).size());
+            assertMatched(matches.get().get(0), buyerId, sellerId, bookId, price, price);
+        }
     }
 
     @Test
     public void givenMultipleSell_whenAMatchingBuyCome_thenMatchSuccessfullyWithLowestPrice() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int buyerId = 1;
         int sellerId = 2;
         int bookId = 1;
         int buyPrice = 10;
         int sellPrice = 9;
 
-        AtomicBoolean success = new AtomicBoolean(false);
-
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            assertEquals(result.getBuyOrder().getCustomerId(), buyerId);
-            assertEquals(result.getSellOrder().getCustomerId(), sellerId);
-            assertEquals(result.getSellOrder().getBookId(), bookId);
-            assertEquals(result.getBuyOrder().getBookId(), bookId);
-            assertEquals(result.getSellOrder().getExpectedPrice(), sellPrice);
-            assertEquals(result.getBuyOrder().getExpectedPrice(), buyPrice);
-            success.set(true);
-        });
-
-        orderManager.sell(sellerId + 3, bookId, sellPrice + 1, null);
-        orderManager.sell(sellerId + 1, bookId, sellPrice + 2, null);
-        orderManager.sell(sellerId + 2, bookId, sellPrice + 5, null);
-        orderManager.sell(sellerId, bookId, sellPrice, null);
-        orderManager.sell(sellerId + 4, bookId, sellPrice + 8, null);
-        orderManager.buy(buyerId, bookId, buyPrice, null);
-
-        try {
-            Thread.sleep(1000);
-        } catch (Exception ignore) {}
-
-        assertTrue(success.get());
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.sell(sellerId + 3, bookId, sellPrice + 1, null);
+            orderManager.sell(sellerId + 1, bookId, sellPrice + 2, null);
+            orderManager.sell(sellerId + 2, bookId, sellPrice + 5, null);
+            orderManager.sell(sellerId, bookId, sellPrice, null);
+            orderManager.sell(sellerId + 4, bookId, sellPrice + 8, null);
+            orderManager.buy(buyerId, bookId, buyPrice, null);
+
+            // closing processes every request sent, and dispatches their events
+            orderManager.close();
+            assertEquals(1, matches.get().size());
+            assertMatched(matches.get().get(0), buyerId, sellerId, bookId, buyPrice, sellPrice);
+        }
     }
 
     @Test
     public void givenMultipleBuy_whenAMatchingSellCome_thenMatchSuccessfullyWithHighestPrice() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int buyerId = 1;
         int sellerId = 10;
         int bookId = 1;
         int buyPrice = 10;
         int sellPrice = 9;
 
-        AtomicBoolean success = new AtomicBoolean(false);
-
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            assertEquals(result.getBuyOrder().getCustomerId(), buyerId);
-            assertEquals(result.getSellOrder().getCustomerId(), sellerId);
-            assertEquals(result.getSellOrder().getBookId(), bookId);
-            assertEquals(result.getBuyOrder().getBookId(), bookId);
-            assertEquals(result.getSellOrder().getExpectedPrice(), sellPrice);
-            assertEquals(result.getBuyOrder().getExpectedPrice(), buyPrice);
-            success.set(true);
-        });
-
-        orderManager.buy(buyerId + 1, bookId, buyPrice - 1, null);
-        orderManager.buy(buyerId + 2, bookId, buyPrice - 2, null);
-        orderManager.buy(buyerId, bookId, buyPrice, null);
-        orderManager.buy(buyerId + 3, bookId, buyPrice -  3, null);
-        orderManager.buy(buyerId + 4, bookId, buyPrice - 4, null);
-        orderManager.sell(sellerId, bookId, sellPrice, null);
-
-        try {
-            Thread.sleep(1000);
-        } catch (Exception ignore) {}
-
-        assertTrue(success.get());
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.buy(buyerId + 1, bookId, buyPrice - 1, null);
+            orderManager.buy(buyerId + 2, bookId, buyPrice - 2, null);
+            orderManager.buy(buyerId, bookId, buyPrice, null);
+            orderManager.buy(buyerId + 3, bookId, buyPrice -  3, null);
+            orderManager.buy(buyerId + 4, bookId, buyPrice - 4, null);
+            orderManager.sell(sellerId, bookId, sellPrice, null);
+
+            orderManager.close();
+            assertEquals(1, matches.get().size());
+            assertMatched(matches.get().get(0), buyerId, sellerId, bookId, buyPrice, sellPrice);
+        }
     }
 
     @Test
     public void givenMultipleBuy_whenANotMatchingSellCome_thenNoMatchHappened() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int buyerId = 1;
         int sellerId = 10;
         int bookId = 1;
         int buyPrice = 10;
         int sellPrice = 100;
 
-        AtomicBoolean success = new AtomicBoolean(false);
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.buy(buyerId, bookId, buyPrice, null);
+            orderManager.buy(buyerId + 1, bookId, buyPrice - 1, null);
+            orderManager.buy(buyerId + 2, bookId, buyPrice - 2, null);
+            orderManager.buy(buyerId + 3, bookId, buyPrice -  3, null);
+            orderManager.buy(buyerId + 4, bookId, buyPrice - 4, null);
+            orderManager.sell(sellerId, bookId, sellPrice, null);
+
+            orderManager.close();
+            assertTrue(matches.get().isEmpty());
+        }
+    }
 
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            success.set(true);
+    @Test
+    @SneakyThrows
+    public void givenARingBufferClosedDuringAClaim_whenDrained_thenNoClaimedSequenceIsLost() {
+        RingBuffer<long[]> ring = new RingBuffer<>(4, () -> new long[1], new BusySpinWaitStrategy());
+        List<Long> consumed = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            long sequence = ring.claim();
+            ring.get(sequence)[0] = sequence;
+            ring.publish(sequence);
+        }
+
+        // a producer waits for a free slot while the buffer closes
+        AtomicReference<Throwable> claimError = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                ring.claim(2);
+            } catch (Throwable e) {
+                claimError.set(e);
+            }
         });
-
-        orderManager.buy(buyerId, bookId, buyPrice, null);
-        orderManager.buy(buyerId + 1, bookId, buyPrice - 1, null);
-        orderManager.buy(buyerId + 2, bookId, buyPrice - 2, null);
-        orderManager.buy(buyerId + 3, bookId, buyPrice -  3, null);
-        orderManager.buy(buyerId + 4, bookId, buyPrice - 4, null);
-        orderManager.sell(sellerId, bookId, sellPrice, null);
-
-        try {
-            Thread.sleep(1000);
-        } catch (Exception ignore) {}
-
-        assertFalse(success.get());
+        producer.start();
+        while (ring.size() < 6) {
+            Thread.onSpinWait();
+        }
+        ring.close();
+        assertFalse(ring.isDrained());
+
+        // the consumer frees the slots, the producer publishes its sequences as skipped entries and fails
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!ring.isDrained() && System.nanoTime() < deadline) {
+            ring.drain(entry -> consumed.add(entry[0]), 4);
+        }
+        producer.join();
+        assertTrue(ring.isDrained());
+        assertEquals(List.of(0L, 1L, 2L, 3L), consumed);
+        assertTrue(claimError.get() instanceof IllegalStateException);
+        assertThrows(IllegalStateException.class, ring::claim);
     }
 
     @Test
     @SneakyThrows
+    public void givenARequestClaimedBeforeClose_whenPublishedAfter_thenItIsStillDrained() {
+        RingBuffer<long[]> ring = new RingBuffer<>(4, () -> new long[1], new BusySpinWaitStrategy());
+        long sequence = ring.claim();
+        ring.close();
+        assertFalse(ring.isDrained());
+        assertEquals(0, ring.drain(entry -> fail("nothing is published yet"), 4));
+
+        ring.get(sequence)[0] = 42;
+        ring.publish(sequence);
+        List<Long> consumed = new ArrayList<>();
+        ring.drain(entry -> consumed.add(entry[0]), 4);
+        assertEquals(List.of(42L), consumed);
+        assertTrue(ring.isDrained());
+    }
+
+    @Test
     public void givenExpiredBuy_thenActiveBuy_whenAMatchingSellCome_thenMatchSuccessfully() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int expiredBuyerId = 1;
         int activeBuyerId = 2;
         int sellerId = 10;
@@ -182,33 +226,22 @@ public class OrderManagerTest {
         int buyPrice = 10;
         int sellPrice = 9;
 
-        AtomicBoolean success = new AtomicBoolean(false);
-
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            assertEquals(result.getBuyOrder().getCustomerId(), activeBuyerId);
-            assertEquals(result.getSellOrder().getCustomerId(), sellerId);
-            assertEquals(result.getSellOrder().getBookId(), bookId);
-            assertEquals(result.getBuyOrder().getBookId(), bookId);
-            assertEquals(result.getSellOrder().getExpectedPrice(), sellPrice);
-            assertEquals(result.getBuyOrder().getExpectedPrice(), buyPrice);
-            success.set(true);
-        });
+        try (Events<Order> expiredOrders = listenToExpiredOrders(bookId);
+             Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.buy(expiredBuyerId, bookId, buyPrice, 1L);
+            assertEquals(1, expiredOrders.await(1).size());
 
-        orderManager.buy(expiredBuyerId, bookId, buyPrice, 1L);
-        Thread.sleep(1500);
+            orderManager.buy(activeBuyerId, bookId, buyPrice, null);
+            orderManager.sell(sellerId, bookId, sellPrice, null);
 
-        orderManager.buy(activeBuyerId, bookId, buyPrice, null);
-        orderManager.sell(sellerId, bookId, sellPrice, null);
-
-        Thread.sleep(1000);
-
-        assertTrue(success.get());
+            assertEquals(1, matches.await(1).size());
+            assertMatched(matches.get().get(0), activeBuyerId, sellerId, bookId, buyPrice, sellPrice);
+        }
     }
 
     @Test
-    @SneakyThrows
     public void givenExpiredSell_thenActiveSell_whenAMatchingBuyCome_thenMatchSuccessfully() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int buyerId = 1;
         int expiredSellerId = 10;
         int activeSellerId = 11;
@@ -216,33 +249,22 @@ public class OrderManagerTest {
         int buyPrice = 10;
         int sellPrice = 9;
 
-        AtomicBoolean success = new AtomicBoolean(false);
-
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            assertEquals(result.getBuyOrder().getCustomerId(), buyerId);
-            assertEquals(result.getSellOrder().getCustomerId(), activeSellerId);
-            assertEquals(result.getSellOrder().getBookId(), bookId);
-            assertEquals(result.getBuyOrder().getBookId(), bookId);
-            assertEquals(result.getSellOrder().getExpectedPrice(), sellPrice);
-            assertEquals(result.getBuyOrder().getExpectedPrice(), buyPrice);
-            success.set(true);
-        });
+        try (Events<Order> expiredOrders = listenToExpiredOrders(bookId);
+             Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.sell(expiredSellerId, bookId, sellPrice, 1L);
+            assertEquals(1, expiredOrders.await(1).size());
 
-        orderManager.sell(expiredSellerId, bookId, sellPrice, 1L);
-        Thread.sleep(1500);
+            orderManager.sell(activeSellerId, bookId, sellPrice, 1L);
+            orderManager.buy(buyerId, bookId, buyPrice, null);
 
-        orderManager.sell(activeSellerId, bookId, sellPrice, 1L);
-        orderManager.buy(buyerId, bookId, buyPrice, null);
-
-        Thread.sleep(1000);
-
-        assertTrue(success.get());
+            assertEquals(1, matches.await(1).size());
+            assertMatched(matches.get().get(0), buyerId, activeSellerId, bookId, buyPrice, sellPrice);
+        }
     }
 
     @Test
-    @SneakyThrows
     public void given2Sell_thenFirstSellIsCancelled_whenAMatchingBuyCome_thenMatchSuccessfully() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int buyerId = 1;
         int firstSellerId = 10;
         int secondSellerId = 11;
@@ -250,69 +272,902 @@ public class OrderManagerTest {
         int buyPrice = 10;
         int sellPrice = 9;
 
-        AtomicBoolean success = new AtomicBoolean(false);
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.sell(firstSellerId, bookId, sellPrice, 1L);
+            orderManager.sell(secondSellerId, bookId, sellPrice, 1L);
 
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            assertEquals(result.getBuyOrder().getCustomerId(), buyerId);
-            assertEquals(result.getSellOrder().getCustomerId(), secondSellerId);
-            assertEquals(result.getSellOrder().getBookId(), bookId);
-            assertEquals(result.getBuyOrder().getBookId(), bookId);
-            assertEquals(result.getSellOrder().getExpectedPrice(), sellPrice);
-            assertEquals(result.getBuyOrder().getExpectedPrice(), buyPrice);
-            success.set(true);
-        });
+            // the sells expire after a second, so the buy must come before
+            orderManager.cancel(awaitRestingOrder(orderManager, firstSellerId));
+            orderManager.buy(buyerId, bookId, buyPrice, null);
 
-        orderManager.sell(firstSellerId, bookId, sellPrice, 1L);
-        orderManager.sell(secondSellerId, bookId, sellPrice, 1L);
-
-        Thread.sleep(1000);
-        orderManager.cancel(orderManager.findUnMatchedOrdersByCustomer(firstSellerId).stream().findFirst().get());
-        orderManager.buy(buyerId, bookId, buyPrice, null);
-
-        Thread.sleep(1000);
-
-        assertTrue(success.get());
+            assertEquals(1, matches.await(1).size());
+            assertMatched(matches.get().get(0), buyerId, secondSellerId, bookId, buyPrice, sellPrice);
+        }
     }
 
     @Test
-    @SneakyThrows
     public void givenACustomer_whenCustomerPlaceMultipleOrder_thenGetCustomerOrders_returnCorrectOrderList() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int customerId = 1;
         int bookId1 = 1;
         int bookId2 = 2;
         int bookId3 = 3;
         int bookId4 = 4;
 
-        orderManager.buy(customerId, bookId1, 10, null);
-        orderManager.buy(customerId, bookId2, 20, null);
-        orderManager.sell(customerId, bookId3, 30, null);
-        orderManager.sell(customerId, bookId4, 40, null);
+        try (OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.buy(customerId, bookId1, 10, null);
+            orderManager.buy(customerId, bookId2, 20, null);
+            orderManager.sell(customerId, bookId3, 30, null);
+            orderManager.sell(customerId, bookId4, 40, null);
 
-        Thread.sleep(2000);
-
-        var orderList = orderManager.findUnMatchedOrdersByCustomer(customerId);
-        assertEquals(4, orderList.size());
+            var orderList = awaitOrders(orderManager, customerId, 4);
+            assertEquals(4, orderList.size());
+        }
     }
 
     @Test
-    @SneakyThrows
     public void givenACustomer_whenPlaceBuyAndSellOfASameBook_thenNoMatchHappened() {
-        OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2));
         int customerId = 1;
         int bookId = 1;
 
-        AtomicBoolean success = new AtomicBoolean(false);
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.buy(customerId, bookId, 10, null);
+            orderManager.buy(customerId, bookId, 10, null);
+
+            orderManager.close();
+            assertTrue(matches.get().isEmpty());
+        }
+    }
+
+    @Test
+    public void givenSellsOnSeveralPrices_whenALargeBuyCome_thenSweepLevelsAndRestRemainingQuantity() {
+        int buyerId = 1;
+        int bookId = 101;
+
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.sell(10, bookId, 9, 5, null);
+            orderManager.sell(11, bookId, 10, 5, null);
+            orderManager.sell(12, bookId, 12, 5, null);
+            orderManager.buy(buyerId, bookId, 10, 12, null);
+
+            // closing delivers the events to the order index too
+            orderManager.close();
+            List<MatchingResult> results = matches.get();
+            assertEquals(2, results.size());
+            assertEquals(10, results.get(0).getSellOrder().getCustomerId());
+            assertEquals(9, results.get(0).getPrice());
+            assertEquals(5, results.get(0).getQuantity());
+            assertEquals(11, results.get(1).getSellOrder().getCustomerId());
+            assertEquals(10, results.get(1).getPrice());
+            assertEquals(5, results.get(1).getQuantity());
+
+            var buyerOrders = orderManager.findUnMatchedOrdersByCustomer(buyerId);
+            assertEquals(1, buyerOrders.size());
+            Order restingBuy = buyerOrders.iterator().next();
+            assertEquals(12, restingBuy.getQuantity());
+            assertEquals(2, restingBuy.getRemainingQuantity());
+            assertTrue(orderManager.findUnMatchedOrdersByCustomer(10).isEmpty());
+            assertEquals(1, orderManager.findUnMatchedOrdersByCustomer(12).size());
+        }
+    }
+
+    @Test
+    public void givenAnArrayLadderWithATickAndAWindowSize_whenPricesFallOutsideTheWindow_thenTheyStillTradeInPriceOrder() {
+        int bookId = 170;
+        OrderBookConfig config = OrderBookConfig.builder()
+                .ladderType(LadderType.ARRAY)
+                .ladderTickSize(5)
+                .ladderWindowSize(4)
+                .build();
+        FIFOOrderBook orderBook = new FIFOOrderBook(config);
+
+        try (Events<MatchingResult> matches = listenToMatches(bookId)) {
+            // on and off the tick grid, inside and outside the window centred on the first price
+            for (int price : new int[]{100, 95, 130, 103, 60, 105}) {
+                orderBook.sell(20, bookId, price, null);
+            }
+            orderBook.buy(21, bookId, 200, 6, null);
+
+            List<Integer> prices = matches.get().stream().map(MatchingResult::getPrice).collect(Collectors.toList());
+            assertEquals(List.of(60, 95, 100, 103, 105, 130), prices);
+        }
+        FIFOOrderBook invalidOrderBook = new FIFOOrderBook(config.toBuilder().ladderTickSize(0).build());
+        assertThrows(IllegalArgumentException.class, () -> invalidOrderBook.sell(20, bookId, 100, null));
+    }
+
+    @Test
+    public void givenALargeRestingSell_whenSmallBuysCome_thenSellIsPartiallyFilledUntilDone() {
+        int sellerId = 10;
+        int bookId = 102;
+
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.sell(sellerId, bookId, 10, 3, null);
+            orderManager.buy(1, bookId, 10, 1, null);
+            orderManager.buy(2, bookId, 11, 1, null);
+
+            List<MatchingResult> results = matches.await(2);
+            assertEquals(2, results.size());
+            assertFalse(results.get(0).isSellOrderFilled());
+            assertTrue(results.get(0).isBuyOrderFilled());
+            assertEquals(1, awaitOrders(orderManager, sellerId, 1).size());
+
+            orderManager.buy(3, bookId, 12, 1, null);
+
+            orderManager.close();
+            assertEquals(3, results.size());
+            assertTrue(results.get(2).isSellOrderFilled());
+            assertEquals(10, results.get(2).getPrice());
+            assertTrue(orderManager.findUnMatchedOrdersByCustomer(sellerId).isEmpty());
+        }
+    }
+
+    @Test
+    public void givenARestingOrderWithExpiry_whenNoRequestCome_thenOrderExpiresAndLeavesCustomerOrders() {
+        int sellerId = 20;
+        int bookId = 103;
+
+        try (Events<Order> expiredOrders = listenToExpiredOrders(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.sell(sellerId, bookId, 10, 1L);
+            orderManager.sell(sellerId, bookId, 11, null);
+
+            assertEquals(2, awaitOrders(orderManager, sellerId, 2).size());
+
+            // nothing is sent to the book, the order expires in the background
+            assertEquals(1, expiredOrders.await(1).size());
+            assertEquals(10, expiredOrders.get().get(0).getExpectedPrice());
+            var sellerOrders = awaitOrders(orderManager, sellerId, 1);
+            assertEquals(1, sellerOrders.size());
+            assertEquals(11, sellerOrders.iterator().next().getExpectedPrice());
+        }
+    }
+
+    @Test
+    public void givenSellsOfTheBuyerAroundOtherSells_whenABuyCome_thenSkipOrdersOfTheBuyerInTimePriority() {
+        int buyerId = 30;
+        int bookId = 104;
+
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(new PartitionedOrderBook(2))) {
+            orderManager.sell(buyerId, bookId, 10, null);
+            orderManager.sell(buyerId, bookId, 10, null);
+            orderManager.sell(31, bookId, 10, null);
+            orderManager.sell(buyerId, bookId, 10, null);
+            orderManager.sell(32, bookId, 10, null);
+            orderManager.buy(buyerId, bookId, 10, 2, null);
+
+            orderManager.close();
+            List<MatchingResult> results = matches.get();
+            assertEquals(2, results.size());
+            assertEquals(31, results.get(0).getSellOrder().getCustomerId());
+            assertEquals(32, results.get(1).getSellOrder().getCustomerId());
+            assertEquals(3, orderManager.findUnMatchedOrdersByCustomer(buyerId).size());
+            assertTrue(orderManager.findUnMatchedOrdersByCustomer(31).isEmpty());
+            assertTrue(orderManager.findUnMatchedOrdersByCustomer(32).isEmpty());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void givenSellsComingWhileTheirBookMoves_whenABuySweepsThem_thenTheyTradeInArrivalOrder() {
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(3);
+        int bookId = 105;
+        int sellCount = 5_000;
+
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(orderBook)) {
+            // every seller is a different customer, so the trades tell the order the sells rested in
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < sellCount; i++) {
+                    orderManager.sell(1000 + i, bookId, 10, null);
+                    if (i % 25 == 0) {
+                        // spread the sells over time, so that the book moves while they come in
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                }
+            });
+            producer.start();
+            for (int i = 1; producer.isAlive() || i <= 3; i++) {
+                orderBook.moveBook(bookId, i % 3);
+            }
+            producer.join();
+            orderManager.buy(1, bookId, 10, sellCount, null);
+
+            orderManager.close();
+            List<MatchingResult> results = matches.get();
+            assertEquals(sellCount, results.size());
+            for (int i = 0; i < sellCount; i++) {
+                assertEquals(1000 + i, results.get(i).getSellOrder().getCustomerId());
+            }
+        }
+    }
+
+    @Test
+    public void givenARestingSell_whenItsBookIsPinnedToAnotherPartition_thenItCanStillBeCancelled() {
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(2);
+        int bookId = 106;
+
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             OrderManager orderManager = new OrderManager(orderBook)) {
+            orderManager.sell(40, bookId, 10, null);
+            orderManager.sell(41, bookId, 11, null);
+
+            Order cheapestSell = awaitRestingOrder(orderManager, 40);
+            int source = orderBook.getPartitionId(bookId);
+            orderBook.pinBook(bookId, 1 - source);
+
+            assertEquals(1 - source, orderBook.getPartitionId(bookId));
+            assertTrue(orderBook.isDedicated(1 - source));
+            assertThrows(IllegalStateException.class, () -> orderBook.moveBook(bookId, source));
+
+            // the copy of the order was handed out by the source partition
+            orderManager.cancel(cheapestSell);
+            orderManager.buy(42, bookId, 11, null);
+
+            orderManager.close();
+            assertTrue(orderManager.findUnMatchedOrdersByCustomer(40).isEmpty());
+            List<MatchingResult> results = matches.get();
+            assertEquals(1, results.size());
+            assertEquals(41, results.get(0).getSellOrder().getCustomerId());
+            assertEquals(11, results.get(0).getPrice());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void given2HotBooksOnASamePartition_whenRebalancing_thenOneOfThemMovesToTheIdlePartition() {
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(2);
+        PartitionRebalancer rebalancer = new PartitionRebalancer(orderBook, 1.5, 1000);
+        // both books hash to partition 0
+        int firstBookId = 108;
+        int secondBookId = 110;
+
+        try {
+            for (int i = 0; i < 2000; i++) {
+                orderBook.sell(50, firstBookId, 100 + i, null);
+                orderBook.sell(50, secondBookId, 100 + i, null);
+            }
+            // a depth request is processed after the requests of the book sent before it
+            orderBook.requestDepth(firstBookId, 1).get(5, TimeUnit.SECONDS);
+            orderBook.requestDepth(secondBookId, 1).get(5, TimeUnit.SECONDS);
+
+            assertTrue(rebalancer.rebalance());
+            assertEquals(1, orderBook.getPartitionId(firstBookId) + orderBook.getPartitionId(secondBookId));
+            // the partitions are balanced, nothing moves anymore
+            for (int i = 0; i < 2000; i++) {
+                orderBook.sell(50, firstBookId, 100 + i, null);
+                orderBook.sell(50, secondBookId, 100 + i, null);
+            }
+            orderBook.requestDepth(firstBookId, 1).get(5, TimeUnit.SECONDS);
+            orderBook.requestDepth(secondBookId, 1).get(5, TimeUnit.SECONDS);
+
+            assertFalse(rebalancer.rebalance());
+        } finally {
+            orderBook.close();
+        }
+    }
 
-        MatchingResultDispatcher.getInstance().registerListener(result -> {
-            success.set(true);
+    @Test
+    public void given4PartitionsOn2Threads_whenBooksOfEveryPartitionTrade_thenEveryTradeIsMatched() {
+        EventLoopConfig eventLoopConfig = EventLoopConfig.builder()
+                .threadNamePrefix("shared-event-loop")
+                .partitionsPerThread(2)
+                .waitStrategyFactory(SpinThenParkWaitStrategy::new)
+                .cpus(List.of(0))
+                .build();
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(4, OrderBookConfig.defaults(), eventLoopConfig);
+        int[] bookIds = {112, 113, 114, 115};
+
+        try (Events<MatchingResult> matches = listenToMatches(bookIds);
+             OrderManager orderManager = new OrderManager(orderBook)) {
+            for (int bookId : bookIds) {
+                orderManager.sell(50, bookId, 10, null);
+            }
+            // partitions 0 and 1 share a thread, so the book is handed over without going through a ring
+            orderBook.moveBook(112, 1);
+            for (int bookId : bookIds) {
+                orderManager.buy(51, bookId, 10, null);
+            }
+
+            assertEquals(4, matches.await(4).size());
+            assertEquals(1, orderBook.getPartitionId(112));
+            long threadCount = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("shared-event-loop-"))
+                    .count();
+            assertEquals(2, threadCount);
+
+            orderManager.close();
+            Set<Thread> threads = Thread.getAllStackTraces().keySet();
+            assertTrue(threads.stream().noneMatch(thread -> thread.getName().startsWith("shared-event-loop-")));
+        }
+    }
+
+    @Test
+    public void givenAListenerClosingTheOrderBook_whenItIsCalled_thenTheOrderBookStillCloses() {
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(1);
+        int bookId = 119;
+        AtomicBoolean listenerReturned = new AtomicBoolean();
+        MatchingResultListener closer = result -> {
+            if (result.getBuyOrder().getBookId() == bookId) {
+                // called by the thread of the event loop, which cannot wait for itself
+                orderBook.close();
+                listenerReturned.set(true);
+            }
+        };
+
+        MatchingResultDispatcher.getInstance().registerListener(closer);
+        try {
+            orderBook.sell(60, bookId, 10, null);
+            orderBook.buy(61, bookId, 10, null);
+
+            awaitCondition(listenerReturned::get);
+            assertTrue(listenerReturned.get());
+            orderBook.close();
+            assertThrows(IllegalStateException.class, () -> orderBook.sell(60, bookId, 10, null));
+        } finally {
+            MatchingResultDispatcher.getInstance().unregisterListener(closer);
+        }
+    }
+
+    @Test
+    public void givenABatchOfSellsAndBuys_whenSubmitted_thenEveryCommandIsAcknowledgedAndMatchedInOrder() {
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(2);
+        int[] bookIds = {116, 117, 118};
+
+        try (Events<MatchingResult> matches = listenToMatches(bookIds);
+             OrderManager orderManager = new OrderManager(orderBook)) {
+            OrderBatch batch = new OrderBatch(2);
+            for (int i = 0; i < 3; i++) {
+                for (int bookId : bookIds) {
+                    batch.sell(60 + i, bookId, 10, null);
+                }
+            }
+            for (int bookId : bookIds) {
+                batch.buy(70, bookId, 10, 3, null);
+            }
+            orderManager.submit(batch);
+
+            assertEquals(12, batch.size());
+            long[] lastSequences = {-1, -1};
+            for (int i = 0; i < batch.size(); i++) {
+                int partitionId = batch.getPartitionId(i);
+                assertEquals(orderBook.getPartitionId(batch.getBookId(i)), partitionId);
+                // the commands of a partition are queued in the order they were added
+                assertTrue(batch.getSequence(i) > lastSequences[partitionId]);
+                lastSequences[partitionId] = batch.getSequence(i);
+            }
+
+            orderManager.close();
+            List<MatchingResult> results = matches.get();
+            assertEquals(9, results.size());
+            for (int bookId : bookIds) {
+                List<Integer> sellers = results.stream()
+                        .filter(result -> result.getSellOrder().getBookId() == bookId)
+                        .map(result -> result.getSellOrder().getCustomerId())
+                        .collect(Collectors.toList());
+                assertEquals(List.of(60, 61, 62), sellers);
+            }
+
+            batch.clear();
+            assertEquals(0, batch.size());
+        }
+    }
+
+    @Test
+    public void givenAJournaledEngine_whenRestarted_thenRestingOrdersAndMovedBooksAreRecovered(@TempDir Path journalDirectory) {
+        OrderBookConfig config = OrderBookConfig.builder()
+                .journalDirectory(journalDirectory)
+                .journalSyncPolicy(JournalSyncPolicy.BATCH)
+                .journalSegmentSize(64 << 10)
+                .build();
+        int bookId = 120;
+        int otherBookId = 121;
+        int fillerBookId = 122;
+
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(2, config, EventLoopConfig.defaults());
+        try (Events<MatchingResult> matches = listenToMatches(bookId, otherBookId);
+             OrderManager orderManager = new OrderManager(orderBook)) {
+            for (int i = 0; i < 5; i++) {
+                orderManager.sell(80 + i, bookId, 10 + i, null);
+            }
+            orderManager.sell(90, otherBookId, 10, null);
+            orderManager.buy(85, bookId, 10, null);
+
+            orderManager.cancel(awaitOrders(orderManager, 81, 1).iterator().next());
+            orderBook.moveBook(bookId, 1);
+            // enough resting orders to fill the first segment of the journal of partition 0
+            for (int i = 0; i < 2000; i++) {
+                orderManager.sell(86, fillerBookId, 1000 + i, null);
+            }
+
+            orderManager.close();
+            assertEquals(1, matches.get().size());
+            matches.get().clear();
+
+            PartitionedOrderBook restartedOrderBook = new PartitionedOrderBook(2, config, EventLoopConfig.defaults());
+            try (OrderManager restartedOrderManager = new OrderManager(restartedOrderBook)) {
+                assertEquals(1, restartedOrderBook.getPartitionId(bookId));
+                restartedOrderManager.buy(87, bookId, 20, 3, null);
+                restartedOrderManager.buy(88, otherBookId, 10, null);
+
+                restartedOrderManager.close();
+                List<MatchingResult> results = matches.get();
+                List<Integer> sellers = results.stream()
+                        .filter(result -> result.getSellOrder().getBookId() == bookId)
+                        .map(result -> result.getSellOrder().getCustomerId())
+                        .collect(Collectors.toList());
+                assertEquals(List.of(82, 83, 84), sellers);
+                assertEquals(4, results.size());
+            }
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void givenASnapshotThenMoreCommands_whenRestarted_thenTheSnapshotAndTheJournalTailAreRecovered(@TempDir Path journalDirectory) {
+        OrderBookConfig config = OrderBookConfig.builder()
+                .journalDirectory(journalDirectory)
+                .snapshotIntervalMillis(0)
+                .build();
+        int bookId = 124;
+
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(2, config, EventLoopConfig.defaults());
+        try (Events<MatchingResult> matches = listenToMatches(bookId);
+             Events<Order> expiredOrders = listenToExpiredOrders(bookId);
+             OrderManager orderManager = new OrderManager(orderBook)) {
+            for (int i = 0; i < 5; i++) {
+                orderManager.sell(100 + i, bookId, 10 + i, null);
+            }
+            orderManager.sell(105, bookId, 9, 1L);
+
+            Order cancelledAfterSnapshot = awaitOrders(orderManager, 101, 1).iterator().next();
+            orderBook.snapshot();
+            // replayed after the snapshot: the cancels find their orders back from the handles of the copies
+            orderManager.cancel(cancelledAfterSnapshot);
+            orderManager.sell(106, bookId, 15, null);
+            orderManager.cancel(awaitOrders(orderManager, 106, 1).iterator().next());
+
+            orderManager.close();
+            try (var files = Files.list(journalDirectory)) {
+                assertTrue(files.anyMatch(file -> file.getFileName().toString().matches("partition-0-\\d+-\\d+\\.snapshot")));
+            }
+
+            PartitionedOrderBook restartedOrderBook = new PartitionedOrderBook(2, config, EventLoopConfig.defaults());
+            try (OrderManager restartedOrderManager = new OrderManager(restartedOrderBook)) {
+                // the index of the customers is rebuilt from the recovered orders
+                assertTrue(restartedOrderManager.findUnMatchedOrdersByCustomer(101).isEmpty());
+                restartedOrderManager.cancel(restartedOrderManager.findUnMatchedOrdersByCustomer(102).iterator().next());
+                // the sell of customer 105 expires before the buy comes, in either engine
+                assertEquals(1, expiredOrders.await(1).size());
+                restartedOrderManager.buy(107, bookId, 20, 3, null);
+
+                restartedOrderManager.close();
+                List<Integer> sellers = matches.get().stream()
+                        .map(result -> result.getSellOrder().getCustomerId())
+                        .collect(Collectors.toList());
+                assertEquals(List.of(100, 103, 104), sellers);
+            }
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void givenARecordedJournal_whenReplayed_thenTheSameFillsAreWritten(@TempDir Path directory) {
+        Path journalDirectory = directory.resolve("journal");
+        Path fillsDirectory = directory.resolve("fills");
+        OrderBookConfig config = OrderBookConfig.builder()
+                .journalDirectory(journalDirectory)
+                .snapshotIntervalMillis(0)
+                .build();
+        int bookId = 132;
+        int otherBookId = 133;
+
+        List<MatchingResult> results;
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(2, config, EventLoopConfig.defaults());
+        try (Events<MatchingResult> matches = listenToMatches(bookId, otherBookId);
+             OrderManager orderManager = new OrderManager(orderBook)) {
+            for (int i = 0; i < 5; i++) {
+                orderManager.sell(200 + i, bookId, 10 + i, 2, null);
+            }
+            orderManager.sell(210, otherBookId, 10, 1, null);
+            orderManager.buy(205, bookId, 11, 3, null);
+
+            orderManager.cancel(awaitOrders(orderManager, 202, 1).iterator().next());
+            orderBook.moveBook(bookId, 1 - orderBook.getPartitionId(bookId));
+            orderManager.buy(206, bookId, 20, 3, null);
+            orderManager.buy(211, otherBookId, 10, 1, null);
+
+            orderManager.close();
+            results = matches.get();
+        }
+        assertEquals(5, results.size());
+
+        ReplayReport report = new JournalReplayer(ReplayConfig.builder()
+                .journalDirectory(journalDirectory)
+                .fillsDirectory(fillsDirectory)
+                .parallelism(2)
+                .build()
+        ).replay();
+
+        assertEquals(2, report.getPartitions());
+        assertEquals(10, report.getCommands());
+        assertEquals(0, report.getRejectedCommands());
+        assertEquals(5, report.getFills());
+        Set<String> recordedFills = results.stream()
+                .map(result -> result.getBuyOrder().getBookId() + "," + result.getPrice() + "," + result.getQuantity()
+                        + "," + result.getBuyOrder().getId() + "," + result.getBuyOrder().getCustomerId()
+                        + "," + result.getSellOrder().getId() + "," + result.getSellOrder().getCustomerId())
+                .collect(Collectors.toSet());
+        Set<String> replayedFills = new HashSet<>();
+        for (int partitionId = 0; partitionId < 2; partitionId++) {
+            List<String> lines = Files.readAllLines(fillsDirectory.resolve("partition-" + partitionId + ".fills.csv"));
+            // drop the header, and the time of the batch of every fill
+            lines.stream().skip(1).map(line -> line.substring(line.indexOf(',') + 1)).forEach(replayedFills::add);
+        }
+        assertEquals(recordedFills, replayedFills);
+    }
+
+    @Test
+    @SneakyThrows
+    public void givenDepthUpdates_whenAppliedToADepthSnapshot_thenTheyGiveTheDepthOfTheBook() {
+        int bookId = 140;
+        int otherBookId = 141;
+
+        try (Events<DepthUpdate> updates = listenToDepthUpdates(bookId, otherBookId)) {
+            PartitionedOrderBook orderBook = new PartitionedOrderBook(2);
+            try (OrderManager orderManager = new OrderManager(orderBook)) {
+                orderManager.sell(300, bookId, 10, 2, null);
+                orderManager.sell(301, bookId, 10, 3, null);
+                orderManager.sell(302, bookId, 11, 1, null);
+                orderManager.buy(303, bookId, 9, 4, null);
+
+                // the updates of the book come in the order of its requests, the buy is the last one
+                awaitCondition(() -> levelsOf(updates.get()).containsKey(bookId + " BUY 9"));
+                Map<String, List<Long>> levels = levelsOf(updates.get());
+                assertEquals(List.of(5L, 2L), levels.get(bookId + " SELL 10"));
+                assertEquals(List.of(1L, 1L), levels.get(bookId + " SELL 11"));
+                assertEquals(List.of(4L, 1L), levels.get(bookId + " BUY 9"));
+
+                orderManager.buy(304, bookId, 10, 3, null);
+                orderManager.cancel(awaitOrders(orderManager, 302, 1).iterator().next());
+
+                DepthSnapshot depth = orderBook.requestDepth(bookId, 5).get(1, TimeUnit.SECONDS);
+                orderManager.close();
+                levels = levelsOf(updates.get());
+                assertEquals(List.of(2L, 1L), levels.get(bookId + " SELL 10"));
+                assertNull(levels.get(bookId + " SELL 11"));
+                assertEquals(List.of(9), depth.getBids().stream().map(DepthLevel::getPrice).collect(Collectors.toList()));
+                assertEquals(4, depth.getBids().get(0).getQuantity());
+                assertEquals(List.of(10), depth.getAsks().stream().map(DepthLevel::getPrice).collect(Collectors.toList()));
+                assertEquals(2, depth.getAsks().get(0).getQuantity());
+                assertEquals(1, depth.getAsks().get(0).getOrderCount());
+            }
+
+            // a level emptied then quoted again in the same batch gets a single update,
+            // a level added then emptied in the same batch gets none
+            FIFOOrderBook batchOrderBook = new FIFOOrderBook(OrderBookConfig.builder().dispatchMode(DispatchMode.BATCH).build());
+            batchOrderBook.sell(310, otherBookId, 10, 1, null);
+            batchOrderBook.flush();
+            updates.get().clear();
+            batchOrderBook.buy(311, otherBookId, 10, 1, null);
+            batchOrderBook.sell(313, otherBookId, 12, 1, null);
+            batchOrderBook.buy(314, otherBookId, 12, 1, null);
+            batchOrderBook.sell(312, otherBookId, 10, 2, null);
+            batchOrderBook.flush();
+
+            assertEquals(1, updates.get().size());
+            DepthUpdate update = updates.get().get(0);
+            assertEquals(DepthUpdateAction.CHANGED, update.getAction());
+            assertEquals(10, update.getPrice());
+            assertEquals(2, update.getQuantity());
+            assertEquals(1, update.getOrderCount());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    public void givenABestBidOfferCache_whenBooksTradeAndMove_thenReadersSeeConsistentQuotes() {
+        int bookId = 150;
+        BestBidOfferCache cache = new BestBidOfferCache();
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(
+                2, OrderBookConfig.builder().bestBidOfferCache(cache).build(), EventLoopConfig.builder().build()
+        );
+        OrderManager orderManager = new OrderManager(orderBook);
+        assertNull(cache.get(bookId));
+        assertEquals(0, cache.getVersion(bookId));
+
+        // a reader polls the book while it trades, and must never see a crossed or older quote
+        AtomicBoolean reading = new AtomicBoolean(true);
+        AtomicReference<String> readError = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            long lastVersion = 0;
+            while (reading.get()) {
+                BestBidOffer quote = cache.get(bookId);
+                if (quote == null) continue;
+                if (quote.getVersion() < lastVersion) {
+                    readError.set("version went back from " + lastVersion + " to " + quote.getVersion());
+                }
+                if (quote.hasBid() && quote.hasAsk() && quote.getBidPrice() >= quote.getAskPrice()) {
+                    readError.set("crossed quote " + quote.getBidPrice() + " / " + quote.getAskPrice());
+                }
+                lastVersion = quote.getVersion();
+            }
+        });
+        reader.start();
+
+        try {
+            orderManager.buy(400, bookId, 99, 3, null);
+            orderManager.sell(402, bookId, 103, 2, null);
+            for (int i = 0; i < 1000; i++) {
+                orderManager.sell(404, bookId, 101, 1, null);
+                orderManager.buy(405, bookId, 101, 1, null);
+            }
+            orderManager.buy(403, bookId, 100, 5, null);
+
+            // a depth request is processed after the requests of the book sent before it,
+            // which published their quotes as they were processed
+            orderBook.requestDepth(bookId, 1).get(5, TimeUnit.SECONDS);
+            BestBidOffer quote = cache.get(bookId);
+            assertEquals(100, quote.getBidPrice());
+            assertEquals(5, quote.getBidQuantity());
+            assertEquals(103, quote.getAskPrice());
+            assertEquals(2, quote.getAskQuantity());
+            assertEquals(quote.getVersion(), cache.getVersion(bookId));
+
+            // the partition the book moves to publishes into the same quote
+            orderBook.moveBook(bookId, 1);
+            orderManager.cancel(awaitRestingOrder(orderManager, 403));
+            orderManager.buy(406, bookId, 103, 2, null);
+
+            orderBook.requestDepth(bookId, 1).get(5, TimeUnit.SECONDS);
+            reading.set(false);
+            reader.join();
+            assertNull(readError.get());
+            BestBidOffer moved = cache.get(bookId);
+            assertEquals(99, moved.getBidPrice());
+            assertEquals(3, moved.getBidQuantity());
+            assertFalse(moved.hasAsk());
+            assertEquals(0, moved.getAskQuantity());
+            assertTrue(moved.getVersion() > quote.getVersion());
+        } finally {
+            reading.set(false);
+            reader.join();
+            orderManager.close();
+        }
+    }
+
+    /**
+     * Wait for the order index, which is updated asynchronously, to hold a resting order of the customer
+     */
+    private static Order awaitRestingOrder(OrderManager orderManager, int customerId) {
+        awaitCondition(() -> !orderManager.findUnMatchedOrdersByCustomer(customerId).isEmpty());
+        return orderManager.findUnMatchedOrdersByCustomer(customerId).iterator().next();
+    }
+
+    @Test
+    public void givenABookMovedToAnotherPartition_whenItsDepthIsFollowed_thenTheSourceUpdatesComeFirst() {
+        int bookId = 160;
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(2);
+        try (Events<DepthUpdate> updates = listenToDepthUpdates(bookId)) {
+            try {
+                orderBook.sell(500, bookId, 100, 2, null);
+                updates.await(1);
+
+                // the source removes the level when it exports the book, the target adds it back when it imports it
+                orderBook.moveBook(bookId, 1);
+                assertEquals(
+                        List.of(DepthUpdateAction.ADDED, DepthUpdateAction.REMOVED, DepthUpdateAction.ADDED),
+                        updates.await(3).stream().map(DepthUpdate::getAction).collect(Collectors.toList())
+                );
+                assertEquals(2, updates.get().get(2).getQuantity());
+            } finally {
+                orderBook.close();
+            }
+        }
+    }
+
+    private static void awaitUpdates(List<DepthUpdate> updates, int count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (updates.size() < count && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(count, updates.size());
+    }
+
+    @Test
+    @SneakyThrows
+    public void givenConcurrentWriters_whenTheOrderIndexIsRead_thenEveryQueryIsAStableSnapshot() {
+        OrderIndex orderIndex = new OrderIndex();
+        int writers = 4;
+        int customers = 8;
+        int ordersPerWriter = 2000;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> readError = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                for (int customerId = 0; customerId < customers; customerId++) {
+                    Collection<Order> orders = orderIndex.findRestingOrdersByCustomer(customerId);
+                    int size = orders.size();
+                    Set<Long> ids = new HashSet<>();
+                    for (Order order : orders) {
+                        if (order.getCustomerId() != customerId) readError.set("order of another customer");
+                        if (!ids.add(order.getId())) readError.set("order returned twice");
+                    }
+                    if (orders.size() != size || ids.size() != size) readError.set("a query changed while it was read");
+                }
+            }
         });
+        reader.start();
+
+        // every writer adds orders for every customer, trades some of them and removes the odd ones
+        List<Thread> threads = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            long firstId = writer * 1_000_000L;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < ordersPerWriter; i++) {
+                    orderIndex.add(new BuyOrder(firstId + i, i % customers, 1, 100, 10, 10, Order.NO_EXPIRY, i));
+                }
+                for (int i = 0; i < ordersPerWriter; i++) {
+                    Order order = new BuyOrder(firstId + i, i % customers, 1, 100, 10, 4, Order.NO_EXPIRY, i);
+                    if (i % 2 == 0) {
+                        orderIndex.update(order);
+                    } else {
+                        orderIndex.remove(order);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writing.set(false);
+        reader.join();
+
+        assertNull(readError.get());
+        for (int customerId = 0; customerId < customers; customerId++) {
+            Collection<Order> orders = orderIndex.findRestingOrdersByCustomer(customerId);
+            // the odd orders belong to the odd customers, which have no order left
+            assertEquals(customerId % 2 == 0 ? writers * ordersPerWriter / customers : 0, orders.size());
+            assertTrue(orders.stream().allMatch(order -> order.getRemainingQuantity() == 4));
+        }
+
+        // a query keeps the orders it was given
+        Collection<Order> orders = orderIndex.findRestingOrdersByCustomer(0);
+        assertSame(orders, orderIndex.findRestingOrdersByCustomer(0));
+        Order removed = orders.iterator().next();
+        orderIndex.add(new BuyOrder(-1, 0, 1, 100, 10, 10, Order.NO_EXPIRY, 0));
+        orderIndex.remove(removed);
+        assertEquals(writers * ordersPerWriter / customers, orders.size());
+        assertTrue(orders.contains(removed));
+        Collection<Order> changed = orderIndex.findRestingOrdersByCustomer(0);
+        assertEquals(orders.size(), changed.size());
+        assertFalse(changed.contains(removed));
+        assertTrue(changed.stream().anyMatch(order -> order.getId() == -1));
+        assertThrows(UnsupportedOperationException.class, () -> orders.add(orders.iterator().next()));
+
+        // order books sharing the index may give the same id to orders of customers of a same stripe
+        Order sameId = new BuyOrder(-1, 64, 1, 100, 10, 10, Order.NO_EXPIRY, 0);
+        orderIndex.add(sameId);
+        assertEquals(List.of(sameId), List.copyOf(orderIndex.findRestingOrdersByCustomer(64)));
+        orderIndex.remove(sameId);
+        assertTrue(orderIndex.findRestingOrdersByCustomer(64).isEmpty());
+        assertTrue(orderIndex.findRestingOrdersByCustomer(0).stream().anyMatch(order -> order.getId() == -1));
+    }
 
-        orderManager.buy(customerId, bookId, 10, null);
-        orderManager.buy(customerId, bookId, 10, null);
+    /**
+     * Events of the books of a test, received from one of the global dispatchers. The dispatchers are shared
+     * by every test, so the listener only keeps the events of the given books, and is unregistered on close.
+     */
+    private static final class Events<E> implements AutoCloseable {
+        private final List<E> received = new CopyOnWriteArrayList<>();
+
+        private Runnable unregister;
+
+        /**
+         * Wait until at least the given number of events are received, then return the events
+         */
+        List<E> await(int count) {
+            awaitCondition(() -> received.size() >= count);
+            return received;
+        }
+
+        List<E> get() {
+            return received;
+        }
+
+        @Override
+        public void close() {
+            unregister.run();
+        }
+    }
 
-        Thread.sleep(1000);
+    private static Events<MatchingResult> listenToMatches(int... bookIds) {
+        Events<MatchingResult> matches = new Events<>();
+        MatchingResultListener listener = result -> {
+            if (isOneOf(result.getBuyOrder().getBookId(), bookIds)) {
+                matches.received.add(result);
+            }
+        };
+        MatchingResultDispatcher.getInstance().registerListener(listener);
+        matches.unregister = () -> MatchingResultDispatcher.getInstance().unregisterListener(listener);
+        return matches;
+    }
+
+    private static Events<Order> listenToExpiredOrders(int... bookIds) {
+        Events<Order> expiredOrders = new Events<>();
+        OrderExpiredListener listener = order -> {
+            if (isOneOf(order.getBookId(), bookIds)) {
+                expiredOrders.received.add(order);
+            }
+        };
+        OrderExpiredEventDispatcher.getInstance().registerListener(listener);
+        expiredOrders.unregister = () -> OrderExpiredEventDispatcher.getInstance().unregisterListener(listener);
+        return expiredOrders;
+    }
+
+    private static Events<DepthUpdate> listenToDepthUpdates(int... bookIds) {
+        Events<DepthUpdate> updates = new Events<>();
+        DepthUpdateListener listener = update -> {
+            if (isOneOf(update.getBookId(), bookIds)) {
+                updates.received.add(update);
+            }
+        };
+        DepthUpdateDispatcher.getInstance().registerListener(listener);
+        updates.unregister = () -> DepthUpdateDispatcher.getInstance().unregisterListener(listener);
+        return updates;
+    }
+
+    /**
+     * Apply the updates in turn, and return the levels they leave: book, side and price of a level,
+     * to its quantity and order count
+     */
+    private static Map<String, List<Long>> levelsOf(List<DepthUpdate> updates) {
+        Map<String, List<Long>> levels = new HashMap<>();
+        for (DepthUpdate update : updates) {
+            String level = update.getBookId() + " " + update.getSide() + " " + update.getPrice();
+            if (update.getAction() == DepthUpdateAction.REMOVED) {
+                levels.remove(level);
+            } else {
+                levels.put(level, List.of(update.getQuantity(), (long) update.getOrderCount()));
+            }
+        }
+        return levels;
+    }
+
+    private static boolean isOneOf(int bookId, int[] bookIds) {
+        return IntStream.of(bookIds).anyMatch(id -> id == bookId);
+    }
+
+    private static void assertMatched(MatchingResult result, int buyerId, int sellerId, int bookId, int buyPrice, int sellPrice) {
+        assertEquals(result.getBuyOrder().getCustomerId(), buyerId);
+        assertEquals(result.getSellOrder().getCustomerId(), sellerId);
+        assertEquals(result.getSellOrder().getBookId(), bookId);
+        assertEquals(result.getBuyOrder().getBookId(), bookId);
+        assertEquals(result.getSellOrder().getExpectedPrice(), sellPrice);
+        assertEquals(result.getBuyOrder().getExpectedPrice(), buyPrice);
+    }
+
+    /**
+     * Wait for the order index, which is updated asynchronously, to hold the given number of resting orders
+     * of the customer, then return them
+     */
+    private static Collection<Order> awaitOrders(OrderManager orderManager, int customerId, int count) {
+        awaitCondition(() -> orderManager.findUnMatchedOrdersByCustomer(customerId).size() == count);
+        return orderManager.findUnMatchedOrdersByCustomer(customerId);
+    }
 
-        assertFalse(success.get());
+    /**
+     * Poll the condition until it holds or a few seconds passed, the assertions that follow tell which
+     */
+    private static void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
     }
 }
@@ -0,0 +1,86 @@
+package com.example;
+
+import org.example.entities.Order;
+import org.example.entities.OrderType;
+import org.example.orderbook.LadderType;
+import org.example.orderbook.MatchHandler;
+import org.example.orderbook.PriceLevelPool;
+import org.example.orderbook.RestingBuyQueue;
+import org.example.orderbook.SelfTradePolicy;
+import org.example.store.HeapOrderStore;
+import org.example.store.OrderStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PriceLevelSoakTest {
+    private static final int DISTINCT_PRICES = 2_000_000;
+
+    /**
+     * Number of live price levels kept by the moving book
+     */
+    private static final int DEPTH = 32;
+
+    private static final int BUYER_ID = 1;
+
+    private static final int SELLER_ID = 2;
+
+    private static final int BOOK_ID = 1;
+
+    @Test
+    public void givenAMovingTreeLadder_whenMillionsOfPricesAreQuoted_thenLevelsAreReclaimedAndReused() {
+        soak(LadderType.TREE);
+    }
+
+    @Test
+    public void givenAMovingArrayLadder_whenMillionsOfPricesAreQuoted_thenLevelsAreReclaimedAndReused() {
+        soak(LadderType.ARRAY);
+    }
+
+    /**
+     * Quote a buy order on every price of an increasing range, keeping only the last {@link #DEPTH} prices alive:
+     * the oldest price is cancelled once the book is deep enough, and every other price is traded away at once.
+     */
+    private void soak(LadderType ladderType) {
+        OrderStore store = new HeapOrderStore();
+        PriceLevelPool levelPool = new PriceLevelPool();
+        RestingBuyQueue queue = new RestingBuyQueue(store, ladderType, SelfTradePolicy.SKIP, levelPool, null);
+        MatchHandler matchHandler = (buyOrder, sellOrder, quantity, price) -> {
+        };
+        int[] handles = new int[DEPTH];
+        long[] ids = new long[DEPTH];
+        long nextId = 0;
+
+        for (int price = 1; price <= DISTINCT_PRICES; price++) {
+            int slot = price % DEPTH;
+            if (price > DEPTH && store.contains(handles[slot], ids[slot])) {
+                queue.remove(handles[slot]);
+            }
+
+            ids[slot] = ++nextId;
+            handles[slot] = store.allocate(ids[slot], OrderType.BUY, BUYER_ID, BOOK_ID, price, 1, Order.NO_EXPIRY);
+            queue.add(handles[slot]);
+
+            if (price % 2 == 0) {
+                // only the best level can trade with a sell at the best price
+                int sellOrder = store.allocate(++nextId, OrderType.SELL, SELLER_ID, BOOK_ID, price, 1, Order.NO_EXPIRY);
+                assertTrue(queue.match(sellOrder, matchHandler));
+                assertEquals(0, store.getRemainingQuantity(sellOrder));
+                store.free(sellOrder);
+            }
+            assertTrue(store.size() <= DEPTH);
+        }
+
+        for (int slot = 0; slot < DEPTH; slot++) {
+            if (store.contains(handles[slot], ids[slot])) {
+                queue.remove(handles[slot]);
+            }
+        }
+
+        assertTrue(queue.isEmpty());
+        assertEquals(0, store.size());
+        // every level ever created is back in the pool, and there were never more than the live depth
+        assertTrue(levelPool.getCreatedLevels() <= DEPTH);
+        assertEquals(levelPool.getCreatedLevels(), levelPool.size());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.benchmark;
+
+import org.example.entities.BestBidOffer;
+import org.example.orderbook.BestBidOfferCache;
+import org.example.orderbook.FIFOOrderBook;
+import org.example.orderbook.OrderBookConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure a matching thread publishing the best bid and offer of its books while other threads poll them.
+ * Each invocation of the matching thread moves the best bid and the best ask of a book, so every
+ * invocation publishes. Compare {@code matching} with the cache disabled to see the cost of publishing,
+ * and {@code poll} with the number of polling threads to see the cost of reading books being written.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class BestBidOfferBenchmark {
+    private static final int REQUESTS_PER_INVOCATION = 4;
+
+    private static final int BOOKS = 1024;
+
+    private static final int PRICE = 100;
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    private BestBidOfferCache cache;
+
+    private FIFOOrderBook orderBook;
+
+    private int bookId;
+
+    @State(Scope.Thread)
+    public static class Poller {
+        private int bookId;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new BestBidOfferCache();
+        orderBook = new FIFOOrderBook(OrderBookConfig.builder()
+                .metricsEnabled(false)
+                .depthUpdatesEnabled(false)
+                .bestBidOfferCache(cacheEnabled ? cache : null)
+                .build());
+        for (int book = 0; book < BOOKS; book++) {
+            orderBook.buy(1, book, PRICE - 1, 10, null);
+            orderBook.sell(2, book, PRICE + 1, 10, null);
+        }
+    }
+
+    /**
+     * A buy and a sell improve the best prices of a book, then 2 orders take them
+     */
+    @Benchmark
+    @Group("publishing")
+    @GroupThreads(1)
+    @OperationsPerInvocation(REQUESTS_PER_INVOCATION)
+    public void matching() {
+        bookId = (bookId + 1) % BOOKS;
+        orderBook.buy(3, bookId, PRICE, null);
+        orderBook.sell(4, bookId, PRICE + 1, null);
+        orderBook.sell(5, bookId, PRICE, null);
+        orderBook.buy(6, bookId, PRICE + 1, null);
+    }
+
+    @Benchmark
+    @Group("publishing")
+    @GroupThreads(2)
+    public BestBidOffer poll(Poller poller) {
+        poller.bookId = (poller.bookId + 1) % BOOKS;
+        return cache.get(poller.bookId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BestBidOfferBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
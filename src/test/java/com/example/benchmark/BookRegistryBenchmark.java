@@ -0,0 +1,82 @@
+package com.example.benchmark;
+
+import org.example.orderbook.FIFOOrderBook;
+import org.example.orderbook.LadderType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the cost of matching an order in one book while the
+ * {@link FIFOOrderBook} holds an increasing number of other books.
+ * Every book rests the same depth on both sides, so the matching cost
+ * should only depend on the depth of the book being matched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookRegistryBenchmark {
+    private static final int BUYER_ID = 1;
+
+    private static final int SELLER_ID = 2;
+
+    private static final int MID_PRICE = 1_000;
+
+    @Param({"10", "1000", "100000"})
+    public int booksPerPartition;
+
+    @Param({"10"})
+    public int levelsPerSide;
+
+    @Param({"TREE", "ARRAY"})
+    public LadderType ladderType;
+
+    private FIFOOrderBook orderBook;
+
+    private int bookId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderBook = new FIFOOrderBook(ladderType);
+        for (int book = 0; book < booksPerPartition; book++) {
+            for (int level = 1; level <= levelsPerSide; level++) {
+                orderBook.buy(BUYER_ID, book, MID_PRICE - level, null);
+                orderBook.sell(SELLER_ID, book, MID_PRICE + level, null);
+            }
+        }
+        bookId = booksPerPartition / 2;
+    }
+
+    /**
+     * Rest a sell order at the mid price, then match it with a buy order
+     */
+    @Benchmark
+    public void restThenMatch() {
+        orderBook.sell(SELLER_ID, bookId, MID_PRICE, null);
+        orderBook.buy(BUYER_ID, bookId, MID_PRICE, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BookRegistryBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
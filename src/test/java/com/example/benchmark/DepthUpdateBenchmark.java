@@ -0,0 +1,145 @@
+package com.example.benchmark;
+
+import org.example.dispatchers.DepthUpdateDispatcher;
+import org.example.dispatchers.DepthUpdateListener;
+import org.example.dispatchers.NewRestingOrderEventDispatcher;
+import org.example.dispatchers.NewRestingOrderListener;
+import org.example.entities.DepthUpdate;
+import org.example.entities.Order;
+import org.example.orderbook.DispatchMode;
+import org.example.orderbook.FIFOOrderBook;
+import org.example.orderbook.OrderBookConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the throughput of a {@link FIFOOrderBook} in {@link DispatchMode#BATCH} without depth tracking,
+ * with depth tracking but no listener, and with a listener receiving the conflated updates of every batch.
+ * A batch is one invocation, whose requests touch the same levels several times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class DepthUpdateBenchmark {
+    private static final int REQUESTS_PER_INVOCATION = 8;
+
+    private static final int BOOKS = 64;
+
+    private static final int SELL_PRICE = 100;
+
+    public enum Depth {
+        DISABLED, NOT_LISTENED, LISTENED
+    }
+
+    @Param({"DISABLED", "NOT_LISTENED", "LISTENED"})
+    public Depth depth;
+
+    private FIFOOrderBook orderBook;
+
+    private NewRestingOrderListener restingOrderListener;
+
+    private DepthUpdateListener depthListener;
+
+    private Order lastRestingOrder;
+
+    private int bookId;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        orderBook = new FIFOOrderBook(OrderBookConfig.builder()
+                .dispatchMode(DispatchMode.BATCH)
+                .depthUpdatesEnabled(depth != Depth.DISABLED)
+                .build());
+        for (int book = 0; book < BOOKS; book++) {
+            // a deep level under the traded ones, so every book keeps some depth
+            orderBook.sell(1, book, SELL_PRICE + 50, 10, null);
+            orderBook.buy(1, book, SELL_PRICE - 50, 10, null);
+        }
+        orderBook.flush();
+
+        restingOrderListener = new NewRestingOrderListener() {
+            @Override
+            public void onNewRestingOrder(Order order) {
+                lastRestingOrder = order;
+            }
+
+            @Override
+            public void onNewRestingOrderBatch(List<Order> orders) {
+                lastRestingOrder = orders.get(orders.size() - 1);
+            }
+        };
+        NewRestingOrderEventDispatcher.getInstance().registerListener(restingOrderListener);
+        if (depth == Depth.LISTENED) {
+            depthListener = new DepthUpdateListener() {
+                @Override
+                public void onDepthUpdate(DepthUpdate update) {
+                    blackhole.consume(update);
+                }
+
+                @Override
+                public void onDepthUpdateBatch(List<DepthUpdate> updates) {
+                    blackhole.consume(updates.size());
+                }
+            };
+            DepthUpdateDispatcher.getInstance().registerListener(depthListener);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        NewRestingOrderEventDispatcher.getInstance().unregisterListener(restingOrderListener);
+        if (depthListener != null) {
+            DepthUpdateDispatcher.getInstance().unregisterListener(depthListener);
+        }
+    }
+
+    /**
+     * 3 sells join 2 levels, a buy takes the first level, 2 buys fill the second one in 2 trades,
+     * then a sell rests away from the spread and is cancelled in the next batch.
+     * Levels added and emptied in the batch give no update: the batch publishes the level of the resting sell,
+     * and the removal of the level cancelled after the previous batch.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_INVOCATION)
+    public void batch() {
+        bookId = (bookId + 1) % BOOKS;
+        orderBook.sell(2, bookId, SELL_PRICE, null);
+        orderBook.sell(3, bookId, SELL_PRICE, null);
+        orderBook.sell(4, bookId, SELL_PRICE + 1, 2, null);
+        orderBook.buy(5, bookId, SELL_PRICE, 2, null);
+        orderBook.buy(5, bookId, SELL_PRICE + 1, null);
+        orderBook.buy(7, bookId, SELL_PRICE + 1, null);
+        orderBook.sell(6, bookId, SELL_PRICE + 40, null);
+        orderBook.flush();
+        orderBook.cancel(lastRestingOrder);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DepthUpdateBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
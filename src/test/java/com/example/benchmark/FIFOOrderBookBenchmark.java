@@ -0,0 +1,121 @@
+package com.example.benchmark;
+
+import org.example.dispatchers.NewRestingOrderEventDispatcher;
+import org.example.dispatchers.NewRestingOrderListener;
+import org.example.entities.Order;
+import org.example.orderbook.FIFOOrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add, match and cancel orders on a single {@link FIFOOrderBook} book
+ * holding an increasing number of resting orders on each side.
+ * Every benchmark leaves the book as it found it, so the depth stays constant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FIFOOrderBookBenchmark {
+    private static final int BOOK_ID = 1;
+
+    private static final int BUYER_ID = 1;
+
+    private static final int SELLER_ID = 2;
+
+    private static final int MID_PRICE = 10_000;
+
+    private static final int MAX_LEVELS_PER_SIDE = 100;
+
+    /**
+     * Resting orders on each side of the book
+     */
+    @Param({"10", "1000", "100000"})
+    public int depth;
+
+    private FIFOOrderBook orderBook;
+
+    private NewRestingOrderListener listener;
+
+    private Order lastRestingOrder;
+
+    private int deepestSellPrice;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderBook = new FIFOOrderBook();
+        int levels = Math.min(depth, MAX_LEVELS_PER_SIDE);
+        for (int i = 0; i < depth; i++) {
+            orderBook.buy(BUYER_ID, BOOK_ID, MID_PRICE - 1 - i % levels, null);
+            orderBook.sell(SELLER_ID, BOOK_ID, MID_PRICE + 1 + i % levels, null);
+        }
+        deepestSellPrice = MID_PRICE + levels;
+
+        listener = order -> lastRestingOrder = order;
+        NewRestingOrderEventDispatcher.getInstance().registerListener(listener);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        NewRestingOrderEventDispatcher.getInstance().unregisterListener(listener);
+    }
+
+    /**
+     * Rest a sell order at the back of the deepest level, then cancel it
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void addThenCancel() {
+        orderBook.sell(SELLER_ID, BOOK_ID, deepestSellPrice, null);
+        orderBook.cancel(lastRestingOrder);
+    }
+
+    /**
+     * Rest a sell order at a new best price, then match it with a buy order
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void addThenMatch() {
+        orderBook.sell(SELLER_ID, BOOK_ID, MID_PRICE, null);
+        orderBook.buy(BUYER_ID, BOOK_ID, MID_PRICE, null);
+    }
+
+    /**
+     * Match the best resting sell order with a buy order, then put an equivalent sell order
+     * back at the back of its level
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void matchThenAdd() {
+        orderBook.buy(BUYER_ID, BOOK_ID, MID_PRICE + 1, null);
+        orderBook.sell(SELLER_ID, BOOK_ID, MID_PRICE + 1, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FIFOOrderBookBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.benchmark;
+
+import org.example.orderbook.JournalSyncPolicy;
+import org.example.orderbook.OrderBookConfig;
+import org.example.orderbook.QueueBasedOrderBook;
+import org.example.sequencer.BusySpinWaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of the command journal on the throughput of a {@link QueueBasedOrderBook}: without journal,
+ * journaled without forcing, forced at most every 10ms, and forced after every batch. The ring buffer
+ * is small, so the producer is held back once it is full and the throughput measured in steady state
+ * is the throughput of the event loop, journal included. The larger the batches, the fewer forces
+ * per command, so {@link JournalSyncPolicy#BATCH} gets cheaper as the load grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+    private static final int RING_SIZE = 1 << 10;
+
+    private static final int BOOK_ID = 1;
+
+    private static final int PRICE = 100;
+
+    /**
+     * Sync policy of the journal, or OFF to run without journal
+     */
+    @Param({"OFF", "NONE", "INTERVAL", "BATCH"})
+    public String journal;
+
+    private Path journalDirectory;
+
+    private QueueBasedOrderBook orderBook;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        OrderBookConfig.OrderBookConfigBuilder config = OrderBookConfig.builder();
+        if (!journal.equals("OFF")) {
+            journalDirectory = Files.createTempDirectory("journal-benchmark");
+            config.journalDirectory(journalDirectory).journalSyncPolicy(JournalSyncPolicy.valueOf(journal));
+        }
+        orderBook = new QueueBasedOrderBook(config.build(), RING_SIZE, new BusySpinWaitStrategy());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        orderBook.close();
+        if (journalDirectory != null) {
+            try (Stream<Path> files = Files.walk(journalDirectory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * A sell then a matching buy, so the book stays empty and only the journal grows
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void sellThenBuy() {
+        orderBook.sell(1, BOOK_ID, PRICE, null);
+        orderBook.buy(2, BOOK_ID, PRICE, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JournalBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
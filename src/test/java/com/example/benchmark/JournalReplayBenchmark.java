@@ -0,0 +1,119 @@
+package com.example.benchmark;
+
+import org.example.orderbook.EventLoopConfig;
+import org.example.orderbook.JournalReplayer;
+import org.example.orderbook.OrderBookConfig;
+import org.example.orderbook.PartitionedOrderBook;
+import org.example.orderbook.ReplayConfig;
+import org.example.orderbook.ReplayReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of a {@link JournalReplayer}, in commands per microsecond, replaying the journals of 4 partitions
+ * one after the other or at the same time, with and without writing the fills. The flow is recorded once:
+ * buys and sells around a moving price on 64 books, so orders rest, trade and leave the books at a steady rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalReplayBenchmark {
+    private static final int PARTITIONS = 4;
+
+    private static final int BOOKS = 64;
+
+    private static final int COMMANDS = 2_000_000;
+
+    private static final int PRICE = 1_000;
+
+    private static final int SPREAD = 20;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean writeFills;
+
+    private Path directory;
+
+    private JournalReplayer replayer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("replay-benchmark");
+        Path journalDirectory = directory.resolve("journal");
+        OrderBookConfig config = OrderBookConfig.builder()
+                .journalDirectory(journalDirectory)
+                .snapshotIntervalMillis(0)
+                .metricsEnabled(false)
+                .build();
+        PartitionedOrderBook orderBook = new PartitionedOrderBook(PARTITIONS, config, EventLoopConfig.defaults());
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < COMMANDS; i++) {
+            int bookId = random.nextInt(BOOKS);
+            int price = PRICE + random.nextInt(-SPREAD, SPREAD);
+            if (random.nextBoolean()) {
+                orderBook.buy(i, bookId, price, 1 + random.nextInt(10), null);
+            } else {
+                orderBook.sell(i, bookId, price, 1 + random.nextInt(10), null);
+            }
+        }
+        orderBook.close();
+
+        replayer = new JournalReplayer(ReplayConfig.builder()
+                .journalDirectory(journalDirectory)
+                .parallelism(parallelism)
+                .fillsDirectory(writeFills ? directory.resolve("fills") : null)
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public ReplayReport replay() {
+        return replayer.replay();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JournalReplayBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.example.OrderManager;
+import org.example.dispatchers.MatchingResultDispatcher;
+import org.example.dispatchers.MatchingResultListener;
+import org.example.dispatchers.NewRestingOrderEventDispatcher;
+import org.example.dispatchers.NewRestingOrderListener;
+import org.example.dispatchers.OrderCancelListener;
+import org.example.dispatchers.OrderCancelledEventDispatcher;
+import org.example.entities.MatchingResult;
+import org.example.entities.Order;
+import org.example.order.OrderIdSequencer;
+import org.example.orderbook.PartitionedOrderBook;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replay a {@link LoadProfile} against an {@link OrderManager} backed by a {@link PartitionedOrderBook}
+ * at a fixed rate, and record the latency from the submission of every request to the delivery of
+ * its first event by the dispatchers: a matching result, a new resting order or a cancel result.
+ *
+ * <p>Requests are sent on a fixed schedule. When the engine stalls, the sender falls behind and
+ * sends the late requests back to back, and their latency is measured from the time they should
+ * have been sent. This avoids coordinated omission: a stall is accounted to every request it
+ * delayed, not only to the one that was waiting. The latency measured from the actual send
+ * time is recorded too, to show the difference.
+ *
+ * <p>Orders of a partition get their ids in the order they are submitted, so the single sender
+ * thread knows the id of every order it submits and finds the send time of an order back from
+ * the id in its events. Histograms are written to the output directory of the profile.
+ *
+ * <p>Run with {@code mvn -Platency verify -Dlatency.args="ratePerSecond=100000 partitions=4"}.
+ */
+public class LatencyHarness {
+    /**
+     * Send times tracked per partition, must exceed the number of requests in flight
+     */
+    private static final int TRACKED_ORDERS = 1 << 20;
+
+    private static final int CANCEL_CANDIDATES = 1 << 12;
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final long START_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final LoadProfile profile;
+
+    private final PartitionedOrderBook orderBook;
+
+    private final OrderManager orderManager;
+
+    private final Histogram correctedHistogram;
+
+    private final Histogram uncorrectedHistogram;
+
+    /**
+     * Intended and actual send time of the orders of each partition, indexed by order id sequence.
+     * An intended time of 0 means the order is not waiting for its first event.
+     */
+    private final long[][] intendedTimes;
+
+    private final long[][] sendTimes;
+
+    /**
+     * Number of orders submitted to each partition, only used by the sender
+     */
+    private final long[] submittedOrders;
+
+    /**
+     * Intended and actual send time of the cancel requests waiting for their result
+     */
+    private final Map<Order, long[]> pendingCancels;
+
+    /**
+     * Recently rested orders that can be cancelled
+     */
+    private final AtomicReferenceArray<Order> cancelCandidates;
+
+    private final AtomicInteger candidateCursor;
+
+    private final AtomicLong deliveredRequests;
+
+    private final SplittableRandom random;
+
+    private long sentRequests;
+
+    private long lateRequests;
+
+    private LatencyHarness(LoadProfile profile) {
+        this.profile = profile;
+        this.orderBook = new PartitionedOrderBook(profile.getPartitions(), profile.getWaitStrategy()::create);
+        this.orderManager = new OrderManager(orderBook);
+        this.correctedHistogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        this.uncorrectedHistogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        this.intendedTimes = new long[profile.getPartitions()][TRACKED_ORDERS];
+        this.sendTimes = new long[profile.getPartitions()][TRACKED_ORDERS];
+        this.submittedOrders = new long[profile.getPartitions()];
+        this.pendingCancels = new ConcurrentHashMap<>();
+        this.cancelCandidates = new AtomicReferenceArray<>(CANCEL_CANDIDATES);
+        this.candidateCursor = new AtomicInteger();
+        this.deliveredRequests = new AtomicLong();
+        this.random = new SplittableRandom(profile.getSeed());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.parse(args);
+        System.out.println("Load profile: " + profile);
+
+        // OrderManager log every match to the console, which would flood the output
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        LatencyHarness harness = new LatencyHarness(profile);
+        try {
+            harness.run();
+        } finally {
+            System.setOut(console);
+        }
+        harness.report(console);
+    }
+
+    private void run() throws InterruptedException {
+        MatchingResultListener matchingResultListener = this::onMatched;
+        NewRestingOrderListener newRestingOrderListener = this::onNewRestingOrder;
+        OrderCancelListener orderCancelListener = this::onCancelled;
+        MatchingResultDispatcher.getInstance().registerListener(matchingResultListener);
+        NewRestingOrderEventDispatcher.getInstance().registerListener(newRestingOrderListener);
+        OrderCancelledEventDispatcher.getInstance().registerListener(orderCancelListener);
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / profile.getRatePerSecond();
+        long totalRequests = (long) profile.getRatePerSecond() * (profile.getWarmupSeconds() + profile.getDurationSeconds());
+        long warmupRequests = (long) profile.getRatePerSecond() * profile.getWarmupSeconds();
+        long start = System.nanoTime() + START_DELAY_NANOS;
+        for (long i = 0; i < totalRequests; i++) {
+            long intendedTime = start + i * intervalNanos;
+            if (!waitUntil(intendedTime)) {
+                lateRequests += i >= warmupRequests ? 1 : 0;
+            }
+            // requests of the warmup are sent but not recorded
+            sendRandomRequest(i >= warmupRequests ? intendedTime : 0, System.nanoTime());
+        }
+
+        // wait for the events of the last requests
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (deliveredRequests.get() < sentRequests && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        orderManager.close();
+        MatchingResultDispatcher.getInstance().unregisterListener(matchingResultListener);
+        NewRestingOrderEventDispatcher.getInstance().unregisterListener(newRestingOrderListener);
+        OrderCancelledEventDispatcher.getInstance().unregisterListener(orderCancelListener);
+    }
+
+    /**
+     * Wait until the given time, return false if it has already passed
+     */
+    private static boolean waitUntil(long time) {
+        long remaining = time - System.nanoTime();
+        if (remaining < 0) return false;
+
+        while (remaining > 0) {
+            if (remaining > TimeUnit.MICROSECONDS.toNanos(100)) {
+                LockSupport.parkNanos(remaining / 2);
+            } else {
+                Thread.onSpinWait();
+            }
+            remaining = time - System.nanoTime();
+        }
+        return true;
+    }
+
+    /**
+     * @param intendedTime time the request should have been sent at, 0 if the request must not be recorded
+     */
+    private void sendRandomRequest(long intendedTime, long sendTime) {
+        if (random.nextDouble() < profile.getCancelRatio()) {
+            Order order = cancelCandidates.getAndSet(random.nextInt(CANCEL_CANDIDATES), null);
+            if (order != null) {
+                if (intendedTime != 0) {
+                    pendingCancels.put(order, new long[]{intendedTime, sendTime});
+                    sentRequests += 1;
+                }
+                orderManager.cancel(order);
+                return;
+            }
+        }
+
+        int customerId = random.nextInt(profile.getCustomers());
+        int bookId = random.nextInt(profile.getBooks());
+        int price = Math.max(1, (int) Math.round(profile.getMidPrice() + nextGaussian() * profile.getPriceDeviation()));
+        int quantity = 1 + random.nextInt(profile.getMaxQuantity());
+        Long expireAfterSeconds = random.nextDouble() < profile.getExpiringRatio() ? profile.getExpireAfterSeconds() : null;
+
+        int partitionId = orderBook.getPartitionId(bookId);
+        int slot = (int) (++submittedOrders[partitionId] & (TRACKED_ORDERS - 1));
+        intendedTimes[partitionId][slot] = intendedTime;
+        sendTimes[partitionId][slot] = sendTime;
+        if (intendedTime != 0) {
+            sentRequests += 1;
+        }
+
+        if (random.nextBoolean()) {
+            orderManager.buy(customerId, bookId, price, quantity, expireAfterSeconds);
+        } else {
+            orderManager.sell(customerId, bookId, price, quantity, expireAfterSeconds);
+        }
+    }
+
+    private void onMatched(MatchingResult result) {
+        // the incoming order is the most recent one
+        Order buyOrder = result.getBuyOrder();
+        Order sellOrder = result.getSellOrder();
+        recordOrder(buyOrder.getId() > sellOrder.getId() ? buyOrder : sellOrder);
+    }
+
+    private void onNewRestingOrder(Order order) {
+        recordOrder(order);
+        cancelCandidates.set(candidateCursor.getAndIncrement() & (CANCEL_CANDIDATES - 1), order);
+    }
+
+    private void onCancelled(Order order, boolean isCancelled) {
+        long[] times = pendingCancels.remove(order);
+        if (times != null) {
+            record(times[0], times[1]);
+        }
+    }
+
+    /**
+     * Record the latency of an order on its first event, the next events of the order are ignored
+     */
+    private void recordOrder(Order order) {
+        int partitionId = OrderIdSequencer.getPartitionId(order.getId());
+        int slot = (int) (OrderIdSequencer.getSequence(order.getId()) & (TRACKED_ORDERS - 1));
+        long intendedTime = intendedTimes[partitionId][slot];
+        if (intendedTime != 0) {
+            intendedTimes[partitionId][slot] = 0;
+            record(intendedTime, sendTimes[partitionId][slot]);
+        }
+    }
+
+    private void record(long intendedTime, long sendTime) {
+        long now = System.nanoTime();
+        correctedHistogram.recordValue(Math.min(now - intendedTime, HIGHEST_TRACKABLE_NANOS));
+        uncorrectedHistogram.recordValue(Math.min(now - sendTime, HIGHEST_TRACKABLE_NANOS));
+        deliveredRequests.incrementAndGet();
+    }
+
+    private double nextGaussian() {
+        // Box-Muller, SplittableRandom has no gaussian generator
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private void report(PrintStream out) throws FileNotFoundException {
+        out.printf("Sent %d requests, %d sent late, %d delivered%n", sentRequests, lateRequests, deliveredRequests.get());
+        out.printf("%-12s %10s %10s %10s %10s %10s %10s%n", "latency(us)", "p50", "p90", "p99", "p99.9", "p99.99", "max");
+        printSummary(out, "corrected", correctedHistogram);
+        printSummary(out, "uncorrected", uncorrectedHistogram);
+
+        File directory = new File(profile.getOutputDirectory());
+        directory.mkdirs();
+        String prefix = "latency-" + System.currentTimeMillis();
+        writeDistribution(new File(directory, prefix + "-corrected.hgrm"), correctedHistogram);
+        writeDistribution(new File(directory, prefix + "-uncorrected.hgrm"), uncorrectedHistogram);
+        out.println("Histograms written to " + directory.getAbsolutePath() + File.separator + prefix + "-*.hgrm");
+    }
+
+    private static void printSummary(PrintStream out, String name, Histogram histogram) {
+        out.printf("%-12s %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", name,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getValueAtPercentile(99.99) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static void writeDistribution(File file, Histogram histogram) throws FileNotFoundException {
+        try (PrintStream stream = new PrintStream(file)) {
+            // values are recorded in nanoseconds and written in microseconds
+            histogram.outputPercentileDistribution(stream, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.benchmark;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Order mix and offered load replayed by the {@link LatencyHarness}.
+ *
+ * <p>Every setting can be overridden from the command line with {@code name=value} arguments,
+ * for example {@code ratePerSecond=200000 partitions=4 cancelRatio=0.2}.
+ */
+@Builder(toBuilder = true)
+@Getter
+public class LoadProfile {
+    /**
+     * Requests sent per second, whether the engine keeps up or not
+     */
+    @Builder.Default
+    private final int ratePerSecond = 50_000;
+
+    @Builder.Default
+    private final int durationSeconds = 30;
+
+    /**
+     * Requests sent during the first seconds are not recorded
+     */
+    @Builder.Default
+    private final int warmupSeconds = 5;
+
+    @Builder.Default
+    private final int partitions = 2;
+
+    /**
+     * Wait strategy of the partition event loops
+     */
+    @Builder.Default
+    private final QueueBasedOrderBookBenchmark.WaitStrategyType waitStrategy = QueueBasedOrderBookBenchmark.WaitStrategyType.YIELDING;
+
+    @Builder.Default
+    private final int books = 100;
+
+    @Builder.Default
+    private final int customers = 1_000;
+
+    /**
+     * Share of the requests that cancel a resting order, the others are split evenly between buy and sell
+     */
+    @Builder.Default
+    private final double cancelRatio = 0.1;
+
+    @Builder.Default
+    private final int midPrice = 10_000;
+
+    /**
+     * Standard deviation of the prices around the mid price, in ticks
+     */
+    @Builder.Default
+    private final double priceDeviation = 5;
+
+    @Builder.Default
+    private final int maxQuantity = 5;
+
+    /**
+     * Share of the orders that expire
+     */
+    @Builder.Default
+    private final double expiringRatio = 0.2;
+
+    @Builder.Default
+    private final long expireAfterSeconds = 1;
+
+    @Builder.Default
+    private final long seed = 42;
+
+    /**
+     * Directory the histograms are written to
+     */
+    @Builder.Default
+    private final String outputDirectory = "target/latency";
+
+    public static LoadProfile parse(String[] args) {
+        LoadProfileBuilder builder = builder();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) throw new IllegalArgumentException("Expected name=value: " + arg);
+
+            String name = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "ratePerSecond": builder.ratePerSecond(Integer.parseInt(value)); break;
+                case "durationSeconds": builder.durationSeconds(Integer.parseInt(value)); break;
+                case "warmupSeconds": builder.warmupSeconds(Integer.parseInt(value)); break;
+                case "partitions": builder.partitions(Integer.parseInt(value)); break;
+                case "waitStrategy": builder.waitStrategy(QueueBasedOrderBookBenchmark.WaitStrategyType.valueOf(value)); break;
+                case "books": builder.books(Integer.parseInt(value)); break;
+                case "customers": builder.customers(Integer.parseInt(value)); break;
+                case "cancelRatio": builder.cancelRatio(Double.parseDouble(value)); break;
+                case "midPrice": builder.midPrice(Integer.parseInt(value)); break;
+                case "priceDeviation": builder.priceDeviation(Double.parseDouble(value)); break;
+                case "maxQuantity": builder.maxQuantity(Integer.parseInt(value)); break;
+                case "expiringRatio": builder.expiringRatio(Double.parseDouble(value)); break;
+                case "expireAfterSeconds": builder.expireAfterSeconds(Long.parseLong(value)); break;
+                case "seed": builder.seed(Long.parseLong(value)); break;
+                case "outputDirectory": builder.outputDirectory(value); break;
+                default: throw new IllegalArgumentException("Unknown setting: " + name);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "ratePerSecond=" + ratePerSecond + " durationSeconds=" + durationSeconds
+                + " warmupSeconds=" + warmupSeconds + " partitions=" + partitions + " waitStrategy=" + waitStrategy
+                + " books=" + books
+                + " customers=" + customers + " cancelRatio=" + cancelRatio + " midPrice=" + midPrice
+                + " priceDeviation=" + priceDeviation + " maxQuantity=" + maxQuantity
+                + " expiringRatio=" + expiringRatio + " expireAfterSeconds=" + expireAfterSeconds + " seed=" + seed;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.benchmark;
+
+import org.example.clock.ManualClock;
+import org.example.dispatchers.NewRestingOrderEventDispatcher;
+import org.example.dispatchers.NewRestingOrderListener;
+import org.example.entities.Order;
+import org.example.orderbook.FIFOOrderBook;
+import org.example.orderbook.OrderBookConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the throughput of a {@link FIFOOrderBook} with and without metrics,
+ * on a flow that touches every counter: resting orders, trades over several levels,
+ * same-customer skips, cancels and expired orders. Time is a {@link ManualClock},
+ * so orders expire at the same point of the flow on every run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class MetricsOverheadBenchmark {
+    private static final int REQUESTS_PER_INVOCATION = 8;
+
+    private static final int BOOKS = 64;
+
+    private static final int BUYER_ID = 1;
+
+    private static final int SELL_PRICE = 100;
+
+    @Param({"false", "true"})
+    public boolean metricsEnabled;
+
+    private ManualClock clock;
+
+    private FIFOOrderBook orderBook;
+
+    private NewRestingOrderListener listener;
+
+    private Order lastRestingOrder;
+
+    private int bookId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        clock = new ManualClock(0);
+        orderBook = new FIFOOrderBook(OrderBookConfig.builder().metricsEnabled(metricsEnabled).clock(clock).build());
+        for (int book = 0; book < BOOKS; book++) {
+            // an order of the buyer at the best sell price, skipped by every buy
+            orderBook.sell(BUYER_ID, book, SELL_PRICE, null);
+        }
+
+        listener = order -> lastRestingOrder = order;
+        NewRestingOrderEventDispatcher.getInstance().registerListener(listener);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        NewRestingOrderEventDispatcher.getInstance().unregisterListener(listener);
+    }
+
+    /**
+     * 3 sells rest on 3 levels, a buy sweeps 2 of them after skipping the buyer's own order,
+     * another buy takes the third one, then a sell is rested and cancelled,
+     * and a sell expiring after 1 second is rested then expires before the next invocation
+     */
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_INVOCATION)
+    public void mixedFlow() {
+        bookId = (bookId + 1) % BOOKS;
+        orderBook.sell(2, bookId, SELL_PRICE, null);
+        orderBook.sell(3, bookId, SELL_PRICE + 1, null);
+        orderBook.sell(4, bookId, SELL_PRICE + 2, null);
+        orderBook.buy(BUYER_ID, bookId, SELL_PRICE + 1, 2, null);
+        orderBook.buy(BUYER_ID, bookId, SELL_PRICE + 2, null);
+        orderBook.sell(5, bookId, SELL_PRICE + 10, null);
+        orderBook.cancel(lastRestingOrder);
+        orderBook.sell(6, bookId, SELL_PRICE + 20, 1L);
+        clock.advance(1000);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MetricsOverheadBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.benchmark;
+
+import org.example.dispatchers.NewRestingOrderEventDispatcher;
+import org.example.entities.Order;
+import org.example.orderbook.FIFOOrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.profile.GCProfiler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay the kind of flow used in OrderManagerTest (several sells resting at
+ * different prices, buys matching them, then a cancel of the last resting order)
+ * directly on a {@link FIFOOrderBook}. Run with the GC profiler to get the number
+ * of bytes allocated per order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderChurnBenchmark {
+    private static final int REQUESTS_PER_INVOCATION = 8;
+
+    private static final int BOOK_ID = 1;
+
+    private static final int BUYER_ID = 1;
+
+    private static final int SELL_PRICE = 9;
+
+    private FIFOOrderBook orderBook;
+
+    private Order lastRestingOrder;
+
+    @Setup
+    public void setUp() {
+        orderBook = new FIFOOrderBook();
+        NewRestingOrderEventDispatcher.getInstance().registerListener(order -> lastRestingOrder = order);
+    }
+
+    /**
+     * 4 sells rest on 4 price levels, 3 buys match the 3 cheapest ones
+     * and the last sell is cancelled, so the book is empty again after every invocation
+     */
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_INVOCATION)
+    public void restMatchCancel() {
+        orderBook.sell(2, BOOK_ID, SELL_PRICE + 3, null);
+        Order toCancel = lastRestingOrder;
+        orderBook.sell(3, BOOK_ID, SELL_PRICE + 2, null);
+        orderBook.sell(4, BOOK_ID, SELL_PRICE + 1, 60L);
+        orderBook.sell(5, BOOK_ID, SELL_PRICE, null);
+        orderBook.buy(BUYER_ID, BOOK_ID, SELL_PRICE + 2, null);
+        orderBook.buy(BUYER_ID, BOOK_ID, SELL_PRICE + 2, null);
+        orderBook.buy(BUYER_ID, BOOK_ID, SELL_PRICE + 2, null);
+        orderBook.cancel(toCancel);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderChurnBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
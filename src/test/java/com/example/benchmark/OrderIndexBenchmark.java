@@ -0,0 +1,112 @@
+package com.example.benchmark;
+
+import org.example.entities.BuyOrder;
+import org.example.entities.Order;
+import org.example.index.OrderIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the {@link OrderIndex} written by several threads, one per partition, while other threads query it.
+ * Every writer keeps a fixed number of resting orders per customer: each invocation adds an order, updates
+ * it after a trade, and removes the oldest order of the customer. Queries iterate over the orders they get.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class OrderIndexBenchmark {
+    private static final int CUSTOMERS = 1024;
+
+    /**
+     * Resting orders of every customer per writer
+     */
+    private static final int ORDERS_PER_CUSTOMER = 8;
+
+    private static final int OPERATIONS_PER_INVOCATION = 3;
+
+    private OrderIndex orderIndex;
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private Order[] restingOrders;
+
+        private long nextId;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            restingOrders = new Order[CUSTOMERS * ORDERS_PER_CUSTOMER];
+            // writers use distinct ids, like the partitions of the engine
+            nextId = (long) threadParams.getThreadIndex() << 40;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        private int customerId;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderIndex = new OrderIndex();
+    }
+
+    @Benchmark
+    @Group("index")
+    @GroupThreads(2)
+    @OperationsPerInvocation(OPERATIONS_PER_INVOCATION)
+    public void write(Writer writer) {
+        int slot = writer.next;
+        writer.next = (slot + 1) % writer.restingOrders.length;
+        int customerId = slot % CUSTOMERS;
+        Order oldest = writer.restingOrders[slot];
+        if (oldest != null) {
+            orderIndex.remove(oldest);
+        }
+        long id = writer.nextId++;
+        orderIndex.add(new BuyOrder(id, customerId, 1, 100, 10, 10, Order.NO_EXPIRY, slot));
+        Order traded = new BuyOrder(id, customerId, 1, 100, 10, 6, Order.NO_EXPIRY, slot);
+        orderIndex.update(traded);
+        writer.restingOrders[slot] = traded;
+    }
+
+    @Benchmark
+    @Group("index")
+    @GroupThreads(2)
+    public void query(Reader reader, Blackhole blackhole) {
+        reader.customerId = (reader.customerId + 1) % CUSTOMERS;
+        for (Order order : orderIndex.findRestingOrdersByCustomer(reader.customerId)) {
+            blackhole.consume(order);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderIndexBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.benchmark;
+
+import org.example.dispatchers.NewRestingOrderEventDispatcher;
+import org.example.dispatchers.NewRestingOrderListener;
+import org.example.entities.Order;
+import org.example.orderbook.FIFOOrderBook;
+import org.example.orderbook.OrderBookConfig;
+import org.example.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Churn orders on top of very deep books, with the order records kept on the heap
+ * or off the heap. Run with the GC profiler to compare the heap usage and the
+ * GC count/time of both {@link StorageMode storage modes} side by side.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=2g"})
+public class OrderStorageBenchmark {
+    private static final int REQUESTS_PER_INVOCATION = 4;
+
+    private static final int BOOKS = 100;
+
+    private static final int LEVELS_PER_SIDE = 100;
+
+    private static final int BUYER_ID = 1;
+
+    private static final int SELLER_ID = 2;
+
+    private static final int MID_PRICE = 10_000;
+
+    @Param({"1000000", "4000000"})
+    public int restingOrders;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public StorageMode storageMode;
+
+    private FIFOOrderBook orderBook;
+
+    private NewRestingOrderListener listener;
+
+    private Order lastRestingOrder;
+
+    private int bookId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderBook = new FIFOOrderBook(OrderBookConfig.builder().storageMode(storageMode).build());
+        // deep books, with the resting orders spread over both sides of every book
+        for (int i = 0; i < restingOrders / 2; i++) {
+            int book = i % BOOKS;
+            int level = 1 + (i / BOOKS) % LEVELS_PER_SIDE;
+            orderBook.buy(BUYER_ID, book, MID_PRICE - level, null);
+            orderBook.sell(SELLER_ID, book, MID_PRICE + level, null);
+        }
+
+        listener = order -> lastRestingOrder = order;
+        NewRestingOrderEventDispatcher.getInstance().registerListener(listener);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        NewRestingOrderEventDispatcher.getInstance().unregisterListener(listener);
+    }
+
+    /**
+     * Rest a sell order at the mid price and cancel it, then rest and match another one,
+     * so the depth of the books never change
+     */
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_INVOCATION)
+    public void churn() {
+        bookId = (bookId + 1) % BOOKS;
+        orderBook.sell(SELLER_ID, bookId, MID_PRICE, null);
+        orderBook.cancel(lastRestingOrder);
+        orderBook.sell(SELLER_ID, bookId, MID_PRICE, null);
+        orderBook.buy(BUYER_ID, bookId, MID_PRICE, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderStorageBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
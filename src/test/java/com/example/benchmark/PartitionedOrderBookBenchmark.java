@@ -0,0 +1,124 @@
+package com.example.benchmark;
+
+import org.example.orderbook.OrderBatch;
+import org.example.orderbook.PartitionedOrderBook;
+import org.example.sequencer.YieldingWaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a {@link PartitionedOrderBook} fed by 4 producer threads, for an increasing
+ * number of partitions. Every producer cycles through its own set of books, so the
+ * requests are spread over all the partitions. The numbers only scale as long as the
+ * machine has a core for each event loop and each producer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class PartitionedOrderBookBenchmark {
+    private static final int BOOKS_PER_PRODUCER = 64;
+
+    private static final int PRICE = 100;
+
+    /**
+     * Number of sell and buy pairs submitted together by {@link #restThenMatchInBatches}
+     */
+    private static final int PAIRS_PER_BATCH = 64;
+
+    @Param({"1", "2", "4", "8"})
+    public int partitions;
+
+    private PartitionedOrderBook orderBook;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderBook = new PartitionedOrderBook(partitions, YieldingWaitStrategy::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        orderBook.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        private int customerId;
+
+        private int firstBookId;
+
+        private int bookIndex;
+
+        private final OrderBatch batch = new OrderBatch(2 * PAIRS_PER_BATCH);
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            customerId = threadParams.getThreadIndex() * 2;
+            firstBookId = threadParams.getThreadIndex() * BOOKS_PER_PRODUCER;
+        }
+
+        private int nextBookId() {
+            bookIndex = (bookIndex + 1) % BOOKS_PER_PRODUCER;
+            return firstBookId + bookIndex;
+        }
+    }
+
+    /**
+     * A sell then a matching buy in the next book of the producer
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void restThenMatch(Producer producer) {
+        int bookId = producer.nextBookId();
+        orderBook.sell(producer.customerId, bookId, PRICE, null);
+        orderBook.buy(producer.customerId + 1, bookId, PRICE, null);
+    }
+
+    /**
+     * Same orders as {@link #restThenMatch}, submitted in batches, so the ring of each partition
+     * is claimed and published once per batch instead of once per order
+     */
+    @Benchmark
+    @OperationsPerInvocation(2 * PAIRS_PER_BATCH)
+    public void restThenMatchInBatches(Producer producer) {
+        OrderBatch batch = producer.batch;
+        batch.clear();
+        for (int i = 0; i < PAIRS_PER_BATCH; i++) {
+            int bookId = producer.nextBookId();
+            batch.sell(producer.customerId, bookId, PRICE, 1, null);
+            batch.buy(producer.customerId + 1, bookId, PRICE, 1, null);
+        }
+        orderBook.submit(batch);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PartitionedOrderBookBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.benchmark;
+
+import org.example.entities.Order;
+import org.example.entities.OrderType;
+import org.example.orderbook.RestingBuyQueue;
+import org.example.store.OrderStore;
+import org.example.store.StorageMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Churn the orders of a single price level: remove an order from a random position,
+ * like a cancel does, and append a new one at the tail.
+ * This is the linked list work behind every cancel and every new resting order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceLevelChurnBenchmark {
+    private static final int CUSTOMER_ID = 1;
+
+    private static final int BOOK_ID = 1;
+
+    private static final int PRICE = 100;
+
+    private static final int POSITIONS = 1 << 16;
+
+    /**
+     * Number of orders in the level
+     */
+    @Param({"10", "1000", "100000"})
+    public int levelDepth;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public StorageMode storageMode;
+
+    private OrderStore store;
+
+    private RestingBuyQueue queue;
+
+    /**
+     * Handles of the orders of the level
+     */
+    private int[] orders;
+
+    /**
+     * Precomputed positions to remove, so the benchmark does not measure the random generator
+     */
+    private int[] positions;
+
+    private int cursor;
+
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = storageMode.create();
+        queue = new RestingBuyQueue(store);
+        orders = new int[levelDepth];
+        for (int i = 0; i < levelDepth; i++) {
+            orders[i] = newOrder();
+            queue.add(orders[i]);
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        positions = new int[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            positions[i] = random.nextInt(levelDepth);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void removeThenAppend() {
+        int position = positions[cursor++ & (POSITIONS - 1)];
+        queue.remove(orders[position]);
+        orders[position] = newOrder();
+        queue.add(orders[position]);
+    }
+
+    private int newOrder() {
+        return store.allocate(++nextId, OrderType.BUY, CUSTOMER_ID, BOOK_ID, PRICE, 1, Order.NO_EXPIRY);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PriceLevelChurnBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
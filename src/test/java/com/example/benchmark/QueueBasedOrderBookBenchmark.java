@@ -0,0 +1,133 @@
+package com.example.benchmark;
+
+import org.example.orderbook.QueueBasedOrderBook;
+import org.example.sequencer.BlockingWaitStrategy;
+import org.example.sequencer.BusySpinWaitStrategy;
+import org.example.sequencer.SpinThenParkWaitStrategy;
+import org.example.sequencer.SpinThenYieldWaitStrategy;
+import org.example.sequencer.WaitStrategy;
+import org.example.sequencer.YieldingWaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submit orders to a {@link QueueBasedOrderBook} from 1 to 4 producer threads.
+ * The ring buffer is small, so producers are held back once it is full and the
+ * throughput measured in steady state is the throughput of the event loop,
+ * including the hand-off between the producers and the event loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBasedOrderBookBenchmark {
+    private static final int RING_SIZE = 1 << 10;
+
+    private static final int PRICE = 100;
+
+    public enum WaitStrategyType {
+        BUSY_SPIN, YIELDING, SPIN_THEN_YIELD, SPIN_THEN_PARK, BLOCKING;
+
+        WaitStrategy create() {
+            switch (this) {
+                case BUSY_SPIN:
+                    return new BusySpinWaitStrategy();
+                case YIELDING:
+                    return new YieldingWaitStrategy();
+                case SPIN_THEN_YIELD:
+                    return new SpinThenYieldWaitStrategy();
+                case SPIN_THEN_PARK:
+                    return new SpinThenParkWaitStrategy();
+                default:
+                    return new BlockingWaitStrategy();
+            }
+        }
+    }
+
+    @Param({"YIELDING", "SPIN_THEN_PARK", "BLOCKING"})
+    public WaitStrategyType waitStrategy;
+
+    private QueueBasedOrderBook orderBook;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderBook = new QueueBasedOrderBook(RING_SIZE, waitStrategy.create());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        orderBook.close();
+    }
+
+    /**
+     * Each producer trades in its own book, a sell then a matching buy
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        private int customerId;
+
+        private int bookId;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            customerId = threadParams.getThreadIndex() * 2;
+            bookId = threadParams.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(2)
+    public void producers1(Producer producer) {
+        submit(producer);
+    }
+
+    @Benchmark
+    @Threads(2)
+    @OperationsPerInvocation(2)
+    public void producers2(Producer producer) {
+        submit(producer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(2)
+    public void producers4(Producer producer) {
+        submit(producer);
+    }
+
+    private void submit(Producer producer) {
+        orderBook.sell(producer.customerId, producer.bookId, PRICE, null);
+        orderBook.buy(producer.customerId + 1, producer.bookId, PRICE, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QueueBasedOrderBookBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
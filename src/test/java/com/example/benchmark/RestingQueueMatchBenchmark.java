@@ -0,0 +1,114 @@
+package com.example.benchmark;
+
+import org.example.entities.Order;
+import org.example.entities.OrderType;
+import org.example.orderbook.MatchHandler;
+import org.example.orderbook.RestingBuyQueue;
+import org.example.store.HeapOrderStore;
+import org.example.store.OrderStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Match a sell order against a {@link RestingBuyQueue} whose best level starts with
+ * orders that cannot be traded: expired orders, which are purged by the match,
+ * or orders of the seller itself, which are skipped.
+ * A tradable order always rests behind them.
+ *
+ * <p>Expired orders are purged by every match, so the level is rebuilt before each
+ * invocation. Those invocations are long enough for the per-invocation setup
+ * not to distort the numbers once there are a few blockers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestingQueueMatchBenchmark {
+    private static final int BUYER_ID = 1;
+
+    private static final int SELLER_ID = 2;
+
+    private static final int PRICE = 100;
+
+    private static final int BOOK_ID = 1;
+
+    public enum Blocker {
+        EXPIRED, SAME_CUSTOMER
+    }
+
+    /**
+     * Number of untradable orders at the head of the best level
+     */
+    @Param({"0", "10", "100", "1000"})
+    public int blockers;
+
+    @Param({"EXPIRED", "SAME_CUSTOMER"})
+    public Blocker blocker;
+
+    private OrderStore store;
+
+    private RestingBuyQueue queue;
+
+    private MatchHandler matchHandler;
+
+    private long nextId;
+
+    private long tradedQuantity;
+
+    @Setup(Level.Trial)
+    public void setUpQueue() {
+        store = new HeapOrderStore();
+        queue = new RestingBuyQueue(store);
+        matchHandler = (buyOrder, sellOrder, quantity, price) -> tradedQuantity += quantity;
+        if (blocker == Blocker.SAME_CUSTOMER) {
+            // skipped orders are never removed, so they are only added once
+            for (int i = 0; i < blockers; i++) {
+                queue.add(store.allocate(++nextId, OrderType.BUY, SELLER_ID, BOOK_ID, PRICE, 1, Order.NO_EXPIRY));
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpLevel() {
+        if (blocker == Blocker.EXPIRED) {
+            for (int i = 0; i < blockers; i++) {
+                queue.add(store.allocate(++nextId, OrderType.BUY, BUYER_ID, BOOK_ID, PRICE, 1, 0));
+            }
+        }
+        queue.add(store.allocate(++nextId, OrderType.BUY, BUYER_ID, BOOK_ID, PRICE, 1, Order.NO_EXPIRY));
+    }
+
+    @Benchmark
+    public long match() {
+        int sellOrder = store.allocate(++nextId, OrderType.SELL, SELLER_ID, BOOK_ID, PRICE, 1, Order.NO_EXPIRY);
+        queue.match(sellOrder, matchHandler);
+        store.free(sellOrder);
+        return tradedQuantity;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RestingQueueMatchBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
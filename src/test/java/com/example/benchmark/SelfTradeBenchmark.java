@@ -0,0 +1,140 @@
+package com.example.benchmark;
+
+import org.example.entities.Order;
+import org.example.entities.OrderType;
+import org.example.orderbook.LadderType;
+import org.example.orderbook.MatchHandler;
+import org.example.orderbook.PriceLevelPool;
+import org.example.orderbook.RestingBuyQueue;
+import org.example.orderbook.SelfTradePolicy;
+import org.example.store.HeapOrderStore;
+import org.example.store.OrderStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Match sell orders of a heavy customer against a {@link RestingBuyQueue} whose levels are
+ * crowded with buy orders of that same customer, under every {@link SelfTradePolicy}.
+ *
+ * <p>Each of the best levels starts with a run of orders of the heavy customer, followed
+ * by one order of another customer, so every match has to get past the run on every level
+ * it sweeps. The cost of a match should not grow with the length of the runs.
+ *
+ * <p>Cancelled runs and traded orders are put back before each invocation. With
+ * {@link SelfTradePolicy#SKIP} the runs are never removed, only the traded orders are,
+ * and with {@link SelfTradePolicy#CANCEL_INCOMING} the book is left untouched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelfTradeBenchmark {
+    private static final int HEAVY_CUSTOMER_ID = 1;
+
+    private static final int OTHER_CUSTOMER_ID = 2;
+
+    private static final int BEST_PRICE = 100;
+
+    private static final int BOOK_ID = 1;
+
+    /**
+     * Number of orders of the heavy customer at the head of every level
+     */
+    @Param({"1", "100", "10000"})
+    public int runLength;
+
+    /**
+     * Number of levels swept by every match
+     */
+    @Param({"1", "10"})
+    public int levels;
+
+    @Param({"SKIP", "CANCEL_RESTING", "CANCEL_INCOMING"})
+    public SelfTradePolicy policy;
+
+    private OrderStore store;
+
+    private RestingBuyQueue queue;
+
+    private MatchHandler matchHandler;
+
+    private long nextId;
+
+    private long tradedQuantity;
+
+    @Setup(Level.Trial)
+    public void setUpQueue() {
+        store = new HeapOrderStore();
+        queue = new RestingBuyQueue(store, LadderType.TREE, policy, new PriceLevelPool(), null);
+        matchHandler = (buyOrder, sellOrder, quantity, price) -> tradedQuantity += quantity;
+        if (policy != SelfTradePolicy.CANCEL_RESTING) {
+            // runs are left in the book, so they are only added once
+            for (int level = 0; level < levels; level++) {
+                addRun(BEST_PRICE - level);
+                if (policy == SelfTradePolicy.CANCEL_INCOMING) {
+                    // the match stops at the first run, nothing is ever traded
+                    addOtherOrder(BEST_PRICE - level);
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpLevels() {
+        if (policy == SelfTradePolicy.CANCEL_INCOMING) {
+            return;
+        }
+        for (int level = 0; level < levels; level++) {
+            if (policy == SelfTradePolicy.CANCEL_RESTING) {
+                addRun(BEST_PRICE - level);
+            }
+            addOtherOrder(BEST_PRICE - level);
+        }
+    }
+
+    @Benchmark
+    public long match() {
+        int sellOrder = store.allocate(
+                ++nextId, OrderType.SELL, HEAVY_CUSTOMER_ID, BOOK_ID, BEST_PRICE - levels + 1, levels, Order.NO_EXPIRY
+        );
+        queue.match(sellOrder, matchHandler);
+        store.free(sellOrder);
+        return tradedQuantity;
+    }
+
+    private void addRun(int price) {
+        for (int i = 0; i < runLength; i++) {
+            queue.add(store.allocate(++nextId, OrderType.BUY, HEAVY_CUSTOMER_ID, BOOK_ID, price, 1, Order.NO_EXPIRY));
+        }
+    }
+
+    private void addOtherOrder(int price) {
+        queue.add(store.allocate(++nextId, OrderType.BUY, OTHER_CUSTOMER_ID, BOOK_ID, price, 1, Order.NO_EXPIRY));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SelfTradeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.benchmark;
+
+import org.example.orderbook.OrderBookConfig;
+import org.example.orderbook.QueueBasedOrderBook;
+import org.example.sequencer.BusySpinWaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to restart a {@link QueueBasedOrderBook} holding many resting orders, either from a snapshot
+ * taken after the last command, or by replaying the whole journal. The journal of a trading day holds
+ * many more commands than there are resting orders at its end, so every resting order comes after a few
+ * trades on another book. The replay runs all of them through the matching engine again, while loading
+ * a snapshot only puts the resting orders back in place, whatever the length of the history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+public class SnapshotRestartBenchmark {
+    private static final int RING_SIZE = 1 << 16;
+
+    private static final int BOOK_ID = 1;
+
+    private static final int TRADED_BOOK_ID = 2;
+
+    private static final int TRADES_PER_RESTING_ORDER = 4;
+
+    private static final int PRICE_LEVELS = 1_000;
+
+    @Param({"1000000", "10000000"})
+    public int orderCount;
+
+    /**
+     * SNAPSHOT to restart from a snapshot, JOURNAL to replay the whole journal
+     */
+    @Param({"SNAPSHOT", "JOURNAL"})
+    public String restartFrom;
+
+    private Path journalDirectory;
+
+    private OrderBookConfig config;
+
+    private QueueBasedOrderBook restarted;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        journalDirectory = Files.createTempDirectory("snapshot-benchmark");
+        config = OrderBookConfig.builder()
+                .journalDirectory(journalDirectory)
+                .snapshotIntervalMillis(0)
+                .build();
+
+        QueueBasedOrderBook orderBook = new QueueBasedOrderBook(config, RING_SIZE, new BusySpinWaitStrategy());
+        for (int i = 0; i < orderCount; i++) {
+            for (int j = 0; j < TRADES_PER_RESTING_ORDER; j++) {
+                orderBook.sell(i, TRADED_BOOK_ID, PRICE_LEVELS, null);
+                orderBook.buy(i, TRADED_BOOK_ID, PRICE_LEVELS, null);
+            }
+            // nothing buys on this book, so the sell keeps resting
+            orderBook.sell(i, BOOK_ID, 1 + i % PRICE_LEVELS, null);
+        }
+        if (restartFrom.equals("SNAPSHOT")) {
+            orderBook.snapshot();
+        }
+        orderBook.close();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeRestarted() {
+        if (restarted != null) {
+            restarted.close();
+            restarted = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(journalDirectory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public QueueBasedOrderBook restart() {
+        restarted = new QueueBasedOrderBook(config, RING_SIZE, new BusySpinWaitStrategy());
+        return restarted;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SnapshotRestartBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}